@@ -0,0 +1,197 @@
+package com.example.expensemanagement.admission;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the API controllers, before any database work:
+ * <ul>
+ *   <li>each client (authenticated principal, otherwise remote address) has a
+ *       token bucket; when it is empty the request gets 429 with Retry-After.
+ *       The tenant header is not part of the key: a client could otherwise get
+ *       a fresh bucket per request by varying it. At most
+ *       expense.admission.max-clients buckets are kept; clients beyond that
+ *       share one until the sweep forgets idle ones,</li>
+ *   <li>expensive requests (searches, full listings, date ranges wider than
+ *       expense.admission.wide-range-days, snapshot exports, tenant moves and
+ *       report submissions) and cheap ones (by id, trees, writes) have separate concurrency limits, so a flood of
+ *       expensive requests cannot take the capacity cheap ones need; over the
+ *       limit the request gets 503 with Retry-After.</li>
+ * </ul>
+ * Rejections are written directly, without an error dispatch. All limiter
+ * state is updated with CAS operations only.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final double clientRate;
+    private final int clientBurst;
+    private final long wideRangeDays;
+    private final int maxClients;
+    private final ConcurrencyLimit expensive;
+    private final ConcurrencyLimit cheap;
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket overflow;
+
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    @Autowired
+    public AdmissionControlFilter(@Value("${expense.admission.enabled:true}") boolean enabled,
+                                  @Value("${expense.admission.client-rate:50}") double clientRate,
+                                  @Value("${expense.admission.client-burst:100}") int clientBurst,
+                                  @Value("${expense.admission.expensive-concurrency:8}") int expensiveConcurrency,
+                                  @Value("${expense.admission.cheap-concurrency:64}") int cheapConcurrency,
+                                  @Value("${expense.admission.wide-range-days:92}") long wideRangeDays,
+                                  @Value("${expense.admission.max-clients:100000}") int maxClients) {
+        this.enabled = enabled;
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.wideRangeDays = wideRangeDays;
+        this.maxClients = maxClients;
+        this.overflow = new TokenBucket(clientRate, clientBurst, System.nanoTime());
+        this.expensive = new ConcurrencyLimit(expensiveConcurrency);
+        this.cheap = new ConcurrencyLimit(cheapConcurrency);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+        TokenBucket bucket = bucketOf(clientOf(request), now);
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds(waitNanos), "Rate limit exceeded");
+            return;
+        }
+
+        ConcurrencyLimit limit = isExpensive(request) ? expensive : cheap;
+        if (!limit.tryAcquire()) {
+            overloaded.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server busy");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release();
+        }
+    }
+
+    /**
+     * Whether a request belongs to the expensive class
+     */
+    boolean isExpensive(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        // Snapshots, tenant moves and report jobs read whole shards or tenants
+        if (path.equals("/api/admin/snapshots") || path.startsWith("/api/admin/snapshots/")
+                || path.startsWith("/api/admin/tenants/") && path.endsWith("/move")) {
+            return true;
+        }
+        if (HttpMethod.POST.matches(request.getMethod()) && (path.equals("/api/reports") || path.equals("/api/reports/"))) {
+            return true;
+        }
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return false;
+        }
+        if (path.endsWith("/search") || path.equals("/api/expenses") || path.equals("/api/expenses/")
+                || path.startsWith("/api/expenses/currency/")) {
+            return true;
+        }
+        String startDate = request.getParameter("startDate");
+        String endDate = request.getParameter("endDate");
+        if (startDate != null && endDate != null) {
+            try {
+                return ChronoUnit.DAYS.between(LocalDate.parse(startDate), LocalDate.parse(endDate)) > wideRangeDays;
+            } catch (RuntimeException e) {
+                return false; // the controller reports the bad date
+            }
+        }
+        return false;
+    }
+
+    private TokenBucket bucketOf(String client, long now) {
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            return overflow;
+        }
+        TokenBucket created = new TokenBucket(clientRate, clientBurst, now);
+        bucket = buckets.putIfAbsent(client, created);
+        return bucket != null ? bucket : created;
+    }
+
+    private static String clientOf(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":" + status.value() + ",\"message\":\"" + message + "\"}");
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Forget clients whose bucket has refilled completely
+     */
+    @Scheduled(fixedDelayString = "${expense.admission.sweep-interval:PT1M}")
+    public void sweepIdleClients() {
+        long now = System.nanoTime();
+        buckets.forEach((client, bucket) -> {
+            if (bucket.isIdle(now)) {
+                buckets.remove(client, bucket);
+            }
+        });
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getOverloadedCount() {
+        return overloaded.sum();
+    }
+
+    public int getClientCount() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.expensemanagement.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of one client, kept as a single "theoretical arrival time"
+ * (the generic cell rate algorithm): a request is admitted when that time is
+ * at most the burst tolerance ahead of now, and pushes it one emission
+ * interval further. One CAS per admitted request, no locks.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take a token; returns 0 when admitted, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long arrival = Math.max(current, nowNanos);
+            long wait = arrival - nowNanos - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Full again: nothing is lost by forgetting this bucket
+     */
+    boolean isIdle(long nowNanos) {
+        return theoreticalArrival.get() <= nowNanos;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.expensemanagement.archive;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One immutable archive file of expenses sorted by moment, read through a
+ * read-only memory mapping.
+ * <pre>
+ * header: magic, version, rows, min moment, max moment, block count
+ * block index: per block min/max moment, rows, offset, compressed and raw length, CRC32
+ * blocks: deflate-compressed columns (ids, moment deltas, cents, currencies, ...)
+ * </pre>
+ * Moments are stored as epoch microseconds, the precision of the expenses table.
+ * The segment and block min/max moments let a range query skip whole files and
+ * only inflate the blocks it overlaps.
+ */
+public final class ArchiveSegment {
+
+    static final String EXTENSION = ".seg";
+
+    private static final int MAGIC = 0x45585347; // "EXSG"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 8 + 8 + 4;
+    private static final int BLOCK_ENTRY_BYTES = 8 + 8 + 4 + 8 + 4 + 4 + 4;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final long minMicros;
+    private final long maxMicros;
+    private final List<Block> blocks;
+
+    private record Block(long minMicros, long maxMicros, int rows, long offset, int length, int rawLength, int crc) {
+    }
+
+    private ArchiveSegment(Path file, MappedByteBuffer buffer, int rows, long minMicros, long maxMicros, List<Block> blocks) {
+        this.file = file;
+        this.buffer = buffer;
+        this.rows = rows;
+        this.minMicros = minMicros;
+        this.maxMicros = maxMicros;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Write expenses (sorted by moment) to a new segment file, atomically and durably
+     */
+    public static ArchiveSegment write(Path directory, List<Expense> expenses, int blockRows) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        long offset = HEADER_BYTES + (long) BLOCK_ENTRY_BYTES * ((expenses.size() + blockRows - 1) / blockRows);
+        for (int from = 0; from < expenses.size(); from += blockRows) {
+            List<Expense> slice = expenses.subList(from, Math.min(from + blockRows, expenses.size()));
+            byte[] raw = encode(slice);
+            byte[] compressed = deflate(raw);
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            blocks.add(new Block(micros(slice.get(0).getMoment()), micros(slice.get(slice.size() - 1).getMoment()),
+                    slice.size(), offset, compressed.length, raw.length, (int) crc.getValue()));
+            payloads.add(compressed);
+            offset += compressed.length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + BLOCK_ENTRY_BYTES * blocks.size());
+        header.putInt(MAGIC).putShort(VERSION).putInt(expenses.size())
+                .putLong(blocks.get(0).minMicros).putLong(blocks.get(blocks.size() - 1).maxMicros).putInt(blocks.size());
+        for (Block block : blocks) {
+            header.putLong(block.minMicros).putLong(block.maxMicros).putInt(block.rows)
+                    .putLong(block.offset).putInt(block.length).putInt(block.rawLength).putInt(block.crc);
+        }
+        header.flip();
+
+        // e.g. 1577836800000000-1609459199000000-42.seg: moment range and first id keep names unique
+        String name = blocks.get(0).minMicros + "-" + blocks.get(blocks.size() - 1).maxMicros + "-" + expenses.get(0).getId();
+        Path temporary = directory.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (byte[] payload : payloads) {
+                writeFully(channel, ByteBuffer.wrap(payload));
+            }
+            channel.force(true);
+        }
+        Path target = directory.resolve(name + EXTENSION);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * Map an existing segment file and read its header and block index
+     */
+    public static ArchiveSegment open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+            throw new IOException("Not an archive segment (or unsupported version): " + file);
+        }
+        int rows = buffer.getInt(6);
+        long minMicros = buffer.getLong(10);
+        long maxMicros = buffer.getLong(18);
+        int blockCount = buffer.getInt(26);
+        List<Block> blocks = new ArrayList<>(blockCount);
+        for (int i = 0, position = HEADER_BYTES; i < blockCount; i++, position += BLOCK_ENTRY_BYTES) {
+            blocks.add(new Block(buffer.getLong(position), buffer.getLong(position + 8), buffer.getInt(position + 16),
+                    buffer.getLong(position + 20), buffer.getInt(position + 28), buffer.getInt(position + 32),
+                    buffer.getInt(position + 36)));
+        }
+        return new ArchiveSegment(file, buffer, rows, minMicros, maxMicros, blocks);
+    }
+
+    public boolean overlaps(Instant start, Instant end) {
+        return maxMicros >= micros(start) && minMicros <= micros(end);
+    }
+
+    /**
+     * Pass every archived expense with start <= moment <= end to the consumer, in moment order.
+     * Category references carry only the id.
+     */
+    public void read(Instant start, Instant end, Consumer<Expense> consumer) {
+        long from = micros(start);
+        long to = micros(end);
+        for (Block block : blocks) {
+            if (block.maxMicros < from || block.minMicros > to) {
+                continue;
+            }
+            for (Expense expense : decode(inflate(block), block.rows)) {
+                long moment = micros(expense.getMoment());
+                if (moment >= from && moment <= to) {
+                    consumer.accept(expense);
+                }
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public Instant getMinMoment() {
+        return instant(minMicros);
+    }
+
+    public Instant getMaxMoment() {
+        return instant(maxMicros);
+    }
+
+    private byte[] inflate(Block block) {
+        ByteBuffer compressed = buffer.slice((int) block.offset, block.length);
+        CRC32 crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != block.crc) {
+            throw new IllegalStateException("Checksum mismatch in archive segment " + file + " at offset " + block.offset);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[block.rawLength];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive segment " + file, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Column by column, so similar values sit next to each other for the compressor
+    private static byte[] encode(List<Expense> expenses) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Expense expense : expenses) {
+                out.writeLong(expense.getId());
+            }
+            long previous = 0;
+            for (Expense expense : expenses) {
+                long moment = micros(expense.getMoment());
+                out.writeLong(moment - previous);
+                previous = moment;
+            }
+            for (Expense expense : expenses) {
+                out.writeLong(expense.getSum().setScale(2).unscaledValue().longValueExact());
+            }
+            for (Expense expense : expenses) {
+                out.writeUTF(expense.getCurrency());
+            }
+            for (Expense expense : expenses) {
+                out.writeByte(expense.getType().ordinal());
+            }
+            for (Expense expense : expenses) {
+                out.writeLong(expense.getCategory().getId());
+            }
+            for (Expense expense : expenses) {
+                out.writeLong(expense.getRecurringTransactionId() != null ? expense.getRecurringTransactionId() : 0);
+            }
+            for (Expense expense : expenses) {
+                out.writeBoolean(expense.getDescription() != null);
+                if (expense.getDescription() != null) {
+                    out.writeUTF(expense.getDescription());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Expense> decode(byte[] raw, int rows) {
+        List<Expense> expenses = new ArrayList<>(rows);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < rows; i++) {
+                Expense expense = new Expense();
+                expense.setId(in.readLong());
+                expenses.add(expense);
+            }
+            long moment = 0;
+            for (Expense expense : expenses) {
+                moment += in.readLong();
+                expense.setMoment(instant(moment));
+            }
+            for (Expense expense : expenses) {
+                expense.setSum(BigDecimal.valueOf(in.readLong(), 2));
+            }
+            for (Expense expense : expenses) {
+                expense.setCurrency(in.readUTF());
+            }
+            for (Expense expense : expenses) {
+                expense.setType(TransactionType.values()[in.readByte()]);
+            }
+            for (Expense expense : expenses) {
+                Category category = new Category();
+                category.setId(in.readLong());
+                expense.setCategory(category);
+            }
+            for (Expense expense : expenses) {
+                long recurringTransactionId = in.readLong();
+                expense.setRecurringTransactionId(recurringTransactionId != 0 ? recurringTransactionId : null);
+            }
+            for (Expense expense : expenses) {
+                if (in.readBoolean()) {
+                    expense.setDescription(in.readUTF());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return expenses;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static long micros(Instant instant) {
+        return Math.multiplyExact(instant.getEpochSecond(), 1_000_000L) + instant.getNano() / 1_000;
+    }
+
+    static Instant instant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
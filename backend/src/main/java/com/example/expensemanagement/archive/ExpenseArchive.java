@@ -0,0 +1,133 @@
+package com.example.expensemanagement.archive;
+
+import com.example.expensemanagement.entity.Expense;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier for old expenses: per tenant, a directory of immutable
+ * {@link ArchiveSegment} files under expense.archive.directory. Segments are
+ * mapped once at startup or when written and kept sorted by their first
+ * moment; readers work on a snapshot of the list, so appends never block them.
+ * Archived expenses are read-only.
+ */
+@Component
+public class ExpenseArchive {
+
+    private static final Comparator<ArchiveSegment> BY_MIN_MOMENT = Comparator.comparing(ArchiveSegment::getMinMoment);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int blockRows;
+
+    // tenant id -> segments sorted by min moment, replaced as a whole on append
+    private final Map<String, List<ArchiveSegment>> segments = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ExpenseArchive(@Value("${expense.archive.enabled:false}") boolean enabled,
+                          @Value("${expense.archive.directory:data/archive}") String directory,
+                          @Value("${expense.archive.block-rows:1024}") int blockRows) throws IOException {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.blockRows = blockRows;
+        if (enabled) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> tenants = Files.list(directory)) {
+            for (Path tenantDirectory : tenants.filter(Files::isDirectory).toList()) {
+                List<ArchiveSegment> loaded = new ArrayList<>();
+                try (Stream<Path> files = Files.list(tenantDirectory)) {
+                    for (Path file : files.toList()) {
+                        if (file.getFileName().toString().endsWith(ArchiveSegment.EXTENSION)) {
+                            loaded.add(ArchiveSegment.open(file));
+                        } else if (file.getFileName().toString().endsWith(".tmp")) {
+                            // Left behind by a crash before the rename; its rows are still in the database
+                            Files.delete(file);
+                        }
+                    }
+                }
+                loaded.sort(BY_MIN_MOMENT);
+                segments.put(tenantDirectory.getFileName().toString(), List.copyOf(loaded));
+                System.out.println("Loaded " + loaded.size() + " archive segments for tenant " + tenantDirectory.getFileName());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Write expenses of one tenant, sorted by moment, as a new segment
+     */
+    public ArchiveSegment append(String tenantId, List<Expense> expenses) {
+        try {
+            Path tenantDirectory = directory.resolve(tenantId);
+            Files.createDirectories(tenantDirectory);
+            ArchiveSegment segment = ArchiveSegment.write(tenantDirectory, expenses, blockRows);
+            segments.compute(tenantId, (tenant, current) -> {
+                List<ArchiveSegment> updated = new ArrayList<>(current != null ? current : List.of());
+                updated.add(segment);
+                updated.sort(BY_MIN_MOMENT);
+                return List.copyOf(updated);
+            });
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write archive segment for tenant " + tenantId, e);
+        }
+    }
+
+    public boolean hasSegments(String tenantId) {
+        return !segments.getOrDefault(tenantId, List.of()).isEmpty();
+    }
+
+    /**
+     * Segments of a tenant whose moment range overlaps [start, end]; all others are skipped
+     */
+    public List<ArchiveSegment> findSegments(String tenantId, Instant start, Instant end) {
+        List<ArchiveSegment> overlapping = new ArrayList<>();
+        for (ArchiveSegment segment : segments.getOrDefault(tenantId, List.of())) {
+            if (segment.getMinMoment().isAfter(end)) {
+                break;
+            }
+            if (segment.overlaps(start, end)) {
+                overlapping.add(segment);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Archived expenses of a tenant with start <= moment <= end. Categories carry only their id.
+     */
+    public List<Expense> findByMomentBetween(String tenantId, Instant start, Instant end) {
+        List<Expense> expenses = new ArrayList<>();
+        if (!enabled) {
+            return expenses;
+        }
+        for (ArchiveSegment segment : findSegments(tenantId, start, end)) {
+            segment.read(start, end, expense -> {
+                expense.setTenantId(tenantId);
+                expenses.add(expense);
+            });
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.expensemanagement.archive;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Moves expenses older than expense.archive.horizon from the expenses table
+ * into {@link ExpenseArchive} segments. Per tenant, the oldest rows are read
+ * through the (tenant_id, moment) index in chunks of expense.archive.segment-rows;
+ * each chunk becomes one segment, which is on disk before its rows are deleted.
+ * The chunk is read FOR UPDATE in the transaction that deletes it, so an edit
+ * of one of its rows either commits first (and is what gets archived) or waits
+ * and then finds the row gone. A crash between the segment write and the
+ * commit leaves rows in both tiers, which readers de-duplicate by id.
+ * <p>
+ * A tenant is archived inside its write gate, like any other write, so a
+ * shard move never copies rows that are being archived; tenants that are
+ * moving are skipped until the next run. Segments keep the ids of the shard
+ * they were archived on, so tenants with segments can't move (see
+ * {@code TenantMigrationService}).
+ */
+@Component
+@ConditionalOnProperty(name = "expense.archive.enabled", havingValue = "true")
+public class ExpenseArchiver {
+
+    private static final String SELECT_OLDEST =
+            "SELECT id, description, sum, currency, moment, type, category_id, recurring_transaction_id FROM expenses " +
+            "WHERE tenant_id = ? AND moment < ? ORDER BY moment, id LIMIT ? FOR UPDATE";
+
+    private static final String DELETE = "DELETE FROM expenses WHERE id = ?";
+
+    private final ExpenseArchive expenseArchive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRegistry shardRegistry;
+    private final Period horizon;
+    private final int segmentRows;
+
+    @Autowired
+    public ExpenseArchiver(ExpenseArchive expenseArchive,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ShardRegistry shardRegistry,
+                           @Value("${expense.archive.horizon:P2Y}") String horizon,
+                           @Value("${expense.archive.segment-rows:100000}") int segmentRows) {
+        this.expenseArchive = expenseArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRegistry = shardRegistry;
+        this.horizon = Period.parse(horizon);
+        this.segmentRows = segmentRows;
+    }
+
+    @Scheduled(fixedDelayString = "${expense.archive.interval:PT6H}", initialDelayString = "${expense.archive.interval:PT6H}")
+    public void archive() {
+        Instant cutoff = OffsetDateTime.now(ZoneOffset.UTC).minus(horizon).toInstant();
+        int archived = archiveOlderThan(cutoff);
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " expenses older than " + cutoff);
+        }
+    }
+
+    /**
+     * Archive every tenant's expenses with moment before the cutoff; returns the number moved
+     */
+    public int archiveOlderThan(Instant cutoff) {
+        int archived = 0;
+        for (String shard : shardRegistry.getShardNames()) {
+            for (String tenantId : shardRegistry.tenantsOn(shard)) {
+                archived += ShardContext.callOn(shard, () -> archiveTenant(tenantId, cutoff));
+            }
+        }
+        return archived;
+    }
+
+    private int archiveTenant(String tenantId, Instant cutoff) {
+        if (shardRegistry.refresh(tenantId) || !shardRegistry.tryEnterWrite(tenantId)) {
+            System.out.println("Skipped archiving tenant " + tenantId + " while it moves shards");
+            return 0;
+        }
+        try {
+            return archiveChunks(tenantId, cutoff);
+        } finally {
+            shardRegistry.exitWrite(tenantId);
+        }
+    }
+
+    private int archiveChunks(String tenantId, Instant cutoff) {
+        int archived = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> {
+                List<Expense> oldest = jdbcTemplate.query(SELECT_OLDEST, this::mapExpense,
+                        tenantId, cutoff.atOffset(ZoneOffset.UTC), segmentRows);
+                if (!oldest.isEmpty()) {
+                    expenseArchive.append(tenantId, oldest);
+                    jdbcTemplate.batchUpdate(DELETE, oldest, oldest.size(), (ps, expense) -> ps.setLong(1, expense.getId()));
+                }
+                return oldest.size();
+            });
+            archived += moved;
+            if (moved < segmentRows) {
+                return archived;
+            }
+        }
+    }
+
+    private Expense mapExpense(ResultSet rs, int rowNum) throws SQLException {
+        Expense expense = new Expense();
+        expense.setId(rs.getLong("id"));
+        expense.setDescription(rs.getString("description"));
+        expense.setSum(rs.getBigDecimal("sum"));
+        expense.setCurrency(rs.getString("currency"));
+        expense.setMoment(rs.getObject("moment", OffsetDateTime.class).toInstant());
+        expense.setType(TransactionType.valueOf(rs.getString("type")));
+        Category category = new Category();
+        category.setId(rs.getLong("category_id"));
+        expense.setCategory(category);
+        long recurringTransactionId = rs.getLong("recurring_transaction_id");
+        expense.setRecurringTransactionId(rs.wasNull() ? null : recurringTransactionId);
+        return expense;
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.expensemanagement.audit;
+
+import com.example.expensemanagement.dto.AuditEvent;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * History of expense and category writes in the audit_events table, with an
+ * image of the entity before and after each change.
+ * <p>
+ * Images are captured in the writing transaction but only queued once it
+ * commits, so rolled back writes leave no trace and the write itself pays no
+ * extra round trip. The queue is lock-free and bounded (a CAS-reserved slot
+ * count over a {@link ConcurrentLinkedQueue}); one writer thread drains it and
+ * inserts everything waiting in a single JDBC batch per tenant, so batches
+ * grow with the load.
+ * <p>
+ * Nothing is dropped. A failed batch is retried expense.audit.retries times
+ * with doubling backoff. When the queue is still full after
+ * expense.audit.offer-timeout, the committing thread does not wait any longer:
+ * it still holds its connection, and the writer may need one. Both kinds of
+ * event go to a spill file under expense.audit.spill-directory. The writer
+ * replays that file whenever the queue runs empty, and on startup. A replay
+ * cut short is replayed again from the start, so spilled events are written
+ * at least once. Entity ids in the history are those at the time of the
+ * change.
+ */
+@Component
+public class AuditTrail {
+
+    public enum EntityType { EXPENSE, CATEGORY }
+
+    public enum Action { CREATE, UPDATE, DELETE }
+
+    private static final String INSERT =
+            "INSERT INTO audit_events (tenant_id, entity_type, entity_id, action, occurred_at, before_image, after_image) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SPILL_FILE = "audit-events.jsonl";
+    private static final String REPLAY_FILE = "audit-events.replaying.jsonl";
+
+    private static final String COLUMNS =
+            "SELECT id, entity_type, entity_id, action, occurred_at, before_image, after_image FROM audit_events ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRegistry shardRegistry;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+    private final ObjectReader rowReader;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final int retries;
+    private final long retryBackoffNanos;
+    private final Path spillDirectory;
+    private final Object spillLock = new Object();
+
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Events queued, and events written or given up on; flush() waits for the second to catch up
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public AuditTrail(JdbcTemplate jdbcTemplate,
+                      ShardRegistry shardRegistry,
+                      ObjectMapper objectMapper,
+                      @Value("${expense.audit.enabled:true}") boolean enabled,
+                      @Value("${expense.audit.queue-capacity:65536}") int capacity,
+                      @Value("${expense.audit.batch-size:1000}") int batchSize,
+                      @Value("${expense.audit.flush-interval:PT0.2S}") Duration flushInterval,
+                      @Value("${expense.audit.offer-timeout:PT1S}") Duration offerTimeout,
+                      @Value("${expense.audit.retries:5}") int retries,
+                      @Value("${expense.audit.retry-backoff:PT0.1S}") Duration retryBackoff,
+                      @Value("${expense.audit.spill-directory:data/audit-spill}") String spillDirectory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRegistry = shardRegistry;
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writerFor(Row.class);
+        this.rowReader = objectMapper.readerFor(Row.class);
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.retries = retries;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.spillDirectory = Path.of(spillDirectory);
+        this.writer = new Thread(this::drain, "audit-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            this.writer.start();
+        }
+    }
+
+    /**
+     * Write what is still queued, then stop the writer
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(10_000);
+    }
+
+    // A change as queued: images are serialized on the writer thread
+    private record Event(String tenantId, EntityType entityType, Long entityId, Action action, Instant occurredAt,
+                         Map<String, Object> before, Map<String, Object> after) {
+    }
+
+    // A change as inserted and spilled, images as JSON
+    private record Row(String tenantId, EntityType entityType, Long entityId, Action action, Instant occurredAt,
+                       String before, String after) {
+
+        Object[] parameters() {
+            return new Object[]{tenantId, entityType.name(), entityId, action.name(), occurredAt.atOffset(ZoneOffset.UTC),
+                    before, after};
+        }
+    }
+
+    /**
+     * Image of an expense: its columns, with the category as an id
+     */
+    public static Map<String, Object> imageOf(Expense expense) {
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", expense.getId());
+        image.put("description", expense.getDescription());
+        image.put("sum", expense.getSum());
+        image.put("currency", expense.getCurrency());
+        image.put("moment", expense.getMoment());
+        image.put("type", expense.getType());
+        image.put("categoryId", expense.getCategory() != null ? expense.getCategory().getId() : null);
+        image.put("recurringTransactionId", expense.getRecurringTransactionId());
+        return image;
+    }
+
+    /**
+     * Image of a category: its columns, with the parent as an id
+     */
+    public static Map<String, Object> imageOf(Category category) {
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", category.getId());
+        image.put("name", category.getName());
+        image.put("type", category.getType());
+        image.put("parentId", category.getParent() != null ? category.getParent().getId() : null);
+        return image;
+    }
+
+    /**
+     * Record a change of the current tenant once the current transaction commits (at once
+     * without one). Images are null for the missing side of a create or delete.
+     */
+    public void recordAfterCommit(EntityType entityType, Long entityId, Action action,
+                                  Map<String, Object> before, Map<String, Object> after) {
+        if (!enabled) {
+            return;
+        }
+        String tenantId = TenantContext.getTenantId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(new Event(tenantId, entityType, entityId, action, Instant.now(), before, after));
+                }
+            });
+        } else {
+            offer(new Event(tenantId, entityType, entityId, action, Instant.now(), before, after));
+        }
+    }
+
+    private void offer(Event event) {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        while (!reserveSlot()) {
+            LockSupport.unpark(writer);
+            if (System.nanoTime() - deadline > 0) {
+                spill(List.of(rowOf(event)), "Audit queue full");
+                return;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        queue.offer(event);
+        queued.incrementAndGet();
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Event event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                batch.add(event);
+                size.decrementAndGet();
+            }
+            if (batch.isEmpty()) {
+                if (running) {
+                    replaySpilled();
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+            List<Row> failed = write(batch.stream().map(this::rowOf).toList(), running ? retries : 0);
+            if (!failed.isEmpty()) {
+                spill(failed, "Failed to write audit events");
+            }
+            done.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    private Row rowOf(Event event) {
+        return new Row(event.tenantId(), event.entityType(), event.entityId(), event.action(), event.occurredAt(),
+                toJson(event.before()), toJson(event.after()));
+    }
+
+    /**
+     * Insert the rows, each tenant's in one batch retried with doubling backoff; returns the rows not written
+     */
+    private List<Row> write(List<Row> rows, int retries) {
+        Map<String, List<Row>> rowsByTenant = new LinkedHashMap<>();
+        for (Row row : rows) {
+            rowsByTenant.computeIfAbsent(row.tenantId(), tenantId -> new ArrayList<>()).add(row);
+        }
+        List<Row> failed = new ArrayList<>();
+        rowsByTenant.forEach((tenantId, tenantRows) -> {
+            List<Object[]> parameters = tenantRows.stream().map(Row::parameters).toList();
+            long backoff = retryBackoffNanos;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    // Each tenant's rows go to its shard, after any move of the tenant has finished
+                    shardRegistry.runWriting(tenantId, () -> TenantContext.runAs(tenantId,
+                            () -> jdbcTemplate.batchUpdate(INSERT, parameters)));
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= retries) {
+                        System.err.println("Failed to write " + tenantRows.size() + " audit events of tenant " + tenantId
+                                + " after " + (attempt + 1) + " attempts: " + e.getMessage());
+                        failed.addAll(tenantRows);
+                        break;
+                    }
+                    LockSupport.parkNanos(this, backoff);
+                    backoff *= 2;
+                }
+            }
+        });
+        return failed;
+    }
+
+    // Appends to the spill file; only a failing disk loses events
+    private void spill(List<Row> rows, String reason) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (Row row : rows) {
+                lines.append(rowWriter.writeValueAsString(row)).append('\n');
+            }
+            synchronized (spillLock) {
+                Files.createDirectories(spillDirectory);
+                Files.writeString(spillDirectory.resolve(SPILL_FILE), lines, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spilled.addAndGet(rows.size());
+            System.err.println(reason + ", spilled " + rows.size() + " events to " + spillDirectory.resolve(SPILL_FILE));
+        } catch (IOException e) {
+            dropped.addAndGet(rows.size());
+            System.err.println(reason + ", and could not spill " + rows.size() + " events: " + e.getMessage());
+        }
+    }
+
+    // Spills keep arriving while a replay runs: they go to a fresh file, replayed next time
+    private void replaySpilled() {
+        Path spill = spillDirectory.resolve(SPILL_FILE);
+        Path replaying = spillDirectory.resolve(REPLAY_FILE);
+        try {
+            synchronized (spillLock) {
+                if (!Files.exists(replaying)) {
+                    if (!Files.exists(spill)) {
+                        return;
+                    }
+                    Files.move(spill, replaying, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            long replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                List<Row> rows = new ArrayList<>(batchSize);
+                for (String line = reader.readLine(); ; line = reader.readLine()) {
+                    Row row = line != null && !line.isBlank() ? readRow(line) : null;
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                    if (rows.size() == batchSize || line == null && !rows.isEmpty()) {
+                        if (!write(rows, retries).isEmpty()) {
+                            // Keep the file: the next replay starts over
+                            return;
+                        }
+                        replayed += rows.size();
+                        rows.clear();
+                    }
+                    if (line == null) {
+                        break;
+                    }
+                }
+            }
+            Files.delete(replaying);
+            System.out.println("Replayed " + replayed + " spilled audit events");
+        } catch (IOException e) {
+            System.err.println("Could not replay spilled audit events: " + e.getMessage());
+        }
+    }
+
+    private String toJson(Map<String, Object> image) {
+        if (image == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(image);
+        } catch (JsonProcessingException e) {
+            return "{\"error\":\"unserializable image\"}";
+        }
+    }
+
+    /**
+     * Wait until every event queued so far is written; false on timeout
+     */
+    public boolean flush(Duration timeout) {
+        long target = queued.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (done.get() < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(1_000_000);
+        }
+        return true;
+    }
+
+    // Only a crash during a spill leaves a line that can't be read back (torn at the end): skip it
+    private Row readRow(String line) {
+        try {
+            return rowReader.readValue(line);
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+            System.err.println("Skipped unreadable spilled audit event: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Events spilled to the file since startup, replayed or not
+     */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * Events lost because they could not be written nor spilled
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Changes of one entity of the current tenant in [from, to], newest first
+     */
+    public List<AuditEvent> history(EntityType entityType, Long entityId, Instant from, Instant to, int limit) {
+        return jdbcTemplate.query(COLUMNS + "WHERE tenant_id = ? AND entity_type = ? AND entity_id = ? "
+                        + "AND occurred_at BETWEEN ? AND ? ORDER BY occurred_at DESC, id DESC LIMIT ?",
+                this::mapEvent, TenantContext.getTenantId(), entityType.name(), entityId, utc(from), utc(to), limit);
+    }
+
+    /**
+     * Changes of the current tenant in [from, to], of one entity type or all, newest first
+     */
+    public List<AuditEvent> changes(EntityType entityType, Instant from, Instant to, int limit) {
+        if (entityType == null) {
+            return jdbcTemplate.query(COLUMNS + "WHERE tenant_id = ? AND occurred_at BETWEEN ? AND ? "
+                    + "ORDER BY occurred_at DESC, id DESC LIMIT ?", this::mapEvent, TenantContext.getTenantId(), utc(from), utc(to), limit);
+        }
+        return jdbcTemplate.query(COLUMNS + "WHERE tenant_id = ? AND entity_type = ? AND occurred_at BETWEEN ? AND ? "
+                        + "ORDER BY occurred_at DESC, id DESC LIMIT ?",
+                this::mapEvent, TenantContext.getTenantId(), entityType.name(), utc(from), utc(to), limit);
+    }
+
+    private AuditEvent mapEvent(ResultSet rs, int rowNum) throws SQLException {
+        return new AuditEvent(rs.getLong("id"), EntityType.valueOf(rs.getString("entity_type")), rs.getLong("entity_id"),
+                Action.valueOf(rs.getString("action")), rs.getObject("occurred_at", OffsetDateTime.class).toInstant(),
+                rs.getString("before_image"), rs.getString("after_image"));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
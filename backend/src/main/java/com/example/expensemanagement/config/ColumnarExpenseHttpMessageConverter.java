@@ -0,0 +1,105 @@
+package com.example.expensemanagement.config;
+
+import com.example.expensemanagement.entity.Expense;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes lists of expenses as a columnar "array of arrays" JSON document:
+ * <pre>{"columns":["id",...],"rows":[[1,...],[2,...]]}</pre>
+ * Field names are written once per response instead of once per row and
+ * moments are encoded as epoch milliseconds. Selected with
+ * {@code Accept: application/vnd.expense.columnar+json}; JSON stays the default
+ * for wildcards (see {@link JsonFirstContentNegotiationStrategy}).
+ */
+public class ColumnarExpenseHttpMessageConverter extends AbstractGenericHttpMessageConverter<Collection<?>> {
+
+    public static final MediaType COLUMNAR_JSON = MediaType.valueOf("application/vnd.expense.columnar+json");
+
+    static final List<String> COLUMNS = List.of("id", "description", "sum", "currency", "moment", "type", "categoryId");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public ColumnarExpenseHttpMessageConverter() {
+        super(COLUMNAR_JSON);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz);
+    }
+
+    // A null or wildcard media type asks which types can be produced: the columnar one, for lists of expenses
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> elementClass = resolved.asCollection().resolveGeneric(0);
+        return elementClass != null && Expense.class.isAssignableFrom(elementClass);
+    }
+
+    @Override
+    protected void writeInternal(Collection<?> expenses, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("columns");
+            for (String column : COLUMNS) {
+                generator.writeString(column);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("rows");
+            for (Object item : expenses) {
+                writeRow(generator, (Expense) item);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeRow(JsonGenerator generator, Expense expense) throws IOException {
+        generator.writeStartArray();
+        if (expense.getId() != null) generator.writeNumber(expense.getId()); else generator.writeNull();
+        generator.writeString(expense.getDescription());
+        if (expense.getSum() != null) generator.writeNumber(expense.getSum()); else generator.writeNull();
+        generator.writeString(expense.getCurrency());
+        if (expense.getMoment() != null) generator.writeNumber(expense.getMoment().toEpochMilli()); else generator.writeNull();
+        generator.writeString(expense.getType() != null ? expense.getType().name() : null);
+        if (expense.getCategory() != null && expense.getCategory().getId() != null) {
+            generator.writeNumber(expense.getCategory().getId());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public Collection<?> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Columnar format is write-only", inputMessage);
+    }
+
+    @Override
+    protected Collection<?> readInternal(Class<? extends Collection<?>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Columnar format is write-only", inputMessage);
+    }
+}
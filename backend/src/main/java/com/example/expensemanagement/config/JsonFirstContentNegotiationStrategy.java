@@ -0,0 +1,31 @@
+package com.example.expensemanagement.config;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.HeaderContentNegotiationStrategy;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Accept header, with application/json added just before each wildcard that
+ * covers it (at the wildcard's quality), and before * / * when there is no header.
+ * Spring picks the first producible type for a wildcard, in converter order, so
+ * without this the columnar converter (which must come before the JSON ones to
+ * write its type) would answer clients that accept anything.
+ */
+public class JsonFirstContentNegotiationStrategy extends HeaderContentNegotiationStrategy {
+
+    @Override
+    public List<MediaType> resolveMediaTypes(NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        List<MediaType> mediaTypes = new ArrayList<>();
+        for (MediaType mediaType : super.resolveMediaTypes(request)) {
+            if (mediaType.isWildcardSubtype() && mediaType.includes(MediaType.APPLICATION_JSON)) {
+                mediaTypes.add(MediaType.APPLICATION_JSON.copyQualityValue(mediaType));
+            }
+            mediaTypes.add(mediaType);
+        }
+        return mediaTypes;
+    }
+}
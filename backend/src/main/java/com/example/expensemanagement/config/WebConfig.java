@@ -0,0 +1,70 @@
+package com.example.expensemanagement.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Response formats offered through content negotiation in addition to JSON.
+ * Converter beans are picked up by Spring Boot's HttpMessageConverters and
+ * share the application's Jackson configuration (modules, date handling).
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * CBOR, selected with {@code Accept: application/cbor}
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Smile, selected with {@code Accept: application/x-jackson-smile}
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * Columnar JSON for list endpoints, selected with
+     * {@code Accept: application/vnd.expense.columnar+json}. It goes before the
+     * Jackson JSON converters, which would also accept the type as application/*+json.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ColumnarExpenseHttpMessageConverter());
+    }
+
+    /**
+     * Clients accepting anything (or sending no Accept header) get JSON, not the
+     * first converter's type
+     */
+    @Override
+    public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
+        configurer.strategies(List.of(new JsonFirstContentNegotiationStrategy()));
+    }
+
+    /**
+     * One ETag over the whole dashboard response; a matching If-None-Match gets 304 without a body
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> dashboardEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/dashboard");
+        return registration;
+    }
+}
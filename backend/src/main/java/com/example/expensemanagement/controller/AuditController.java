@@ -0,0 +1,82 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.audit.AuditTrail;
+import com.example.expensemanagement.dto.AuditEvent;
+import com.example.expensemanagement.dto.ErrorResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AuditController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final AuditTrail auditTrail;
+
+    @Autowired
+    public AuditController(AuditTrail auditTrail) {
+        this.auditTrail = auditTrail;
+    }
+
+    /**
+     * Get the recorded changes of one expense or category, newest first;
+     * from and to are ISO-8601 instants
+     */
+    @GetMapping("/{entityType}/{entityId}")
+    public ResponseEntity<?> getEntityHistory(
+            @PathVariable String entityType,
+            @PathVariable Long entityId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false, defaultValue = "100") int limit,
+            HttpServletRequest request) {
+        try {
+            checkLimit(limit);
+            List<AuditEvent> events = auditTrail.history(AuditTrail.EntityType.valueOf(entityType.toUpperCase()), entityId,
+                    from != null ? Instant.parse(from) : Instant.EPOCH, to != null ? Instant.parse(to) : Instant.now(), limit);
+            return new ResponseEntity<>(events, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Invalid audit query: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Get the recorded changes in a time range, of one entity type or all, newest first
+     */
+    @GetMapping
+    public ResponseEntity<?> getChanges(
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false, defaultValue = "100") int limit,
+            HttpServletRequest request) {
+        try {
+            checkLimit(limit);
+            List<AuditEvent> events = auditTrail.changes(
+                    entityType != null ? AuditTrail.EntityType.valueOf(entityType.toUpperCase()) : null,
+                    from != null ? Instant.parse(from) : Instant.EPOCH, to != null ? Instant.parse(to) : Instant.now(), limit);
+            return new ResponseEntity<>(events, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Invalid audit query: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+}
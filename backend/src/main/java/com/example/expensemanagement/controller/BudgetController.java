@@ -0,0 +1,142 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.BudgetStatus;
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.entity.Budget;
+import com.example.expensemanagement.service.BudgetService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@Profile("!logstore")
+@RequestMapping("/api/budgets")
+@CrossOrigin(origins = "http://localhost:3000")
+public class BudgetController {
+
+    private final BudgetService budgetService;
+
+    @Autowired
+    public BudgetController(BudgetService budgetService) {
+        this.budgetService = budgetService;
+    }
+
+    /**
+     * Create a new monthly budget for a category
+     */
+    @PostMapping
+    public ResponseEntity<?> createBudget(@Valid @RequestBody Budget budget, HttpServletRequest request) {
+        try {
+            Budget savedBudget = budgetService.saveBudget(budget);
+            System.out.println("Created new budget: " + savedBudget);
+            return new ResponseEntity<>(savedBudget, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Validation error creating budget: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error creating budget: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get all budgets
+     */
+    @GetMapping
+    public ResponseEntity<List<Budget>> getAllBudgets() {
+        try {
+            List<Budget> budgets = budgetService.findAllBudgets();
+            return new ResponseEntity<>(budgets, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving budgets: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get budget by ID
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Budget> getBudgetById(@PathVariable Long id) {
+        try {
+            Optional<Budget> budget = budgetService.findById(id);
+            return budget.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
+                         .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (Exception e) {
+            System.err.println("Error retrieving budget with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get current-month spend and percent used for all budgets
+     */
+    @GetMapping("/status")
+    public ResponseEntity<List<BudgetStatus>> getAllBudgetStatuses() {
+        try {
+            List<BudgetStatus> statuses = budgetService.findAllStatuses();
+            return new ResponseEntity<>(statuses, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving budget statuses: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get current-month spend and percent used for a budget
+     */
+    @GetMapping("/{id}/status")
+    public ResponseEntity<BudgetStatus> getBudgetStatus(@PathVariable Long id) {
+        try {
+            Optional<BudgetStatus> status = budgetService.findStatus(id);
+            return status.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
+                         .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (Exception e) {
+            System.err.println("Error retrieving status of budget " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Update an existing budget
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateBudget(@PathVariable Long id, @Valid @RequestBody Budget budget, HttpServletRequest request) {
+        try {
+            Budget updatedBudget = budgetService.updateBudget(id, budget);
+            System.out.println("Updated budget: " + updatedBudget);
+            return new ResponseEntity<>(updatedBudget, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Validation error updating budget with id " + id + ": " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            System.err.println("Error updating budget with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Delete a budget
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteBudget(@PathVariable Long id) {
+        try {
+            budgetService.deleteBudget(id);
+            System.out.println("Deleted budget with id: " + id);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (RuntimeException e) {
+            System.err.println("Error deleting budget with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.expensemanagement.controller;
 
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.dto.CategorySuggestion;
+import com.example.expensemanagement.dto.CategoryTreeNode;
 import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.dto.SpendDistribution;
 import com.example.expensemanagement.entity.Category;
 import com.example.expensemanagement.entity.TransactionType;
 import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.SpendDistributionService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -11,6 +16,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,12 +25,16 @@ import java.util.Optional;
 @RequestMapping("/api/categories")
 @CrossOrigin(origins = "http://localhost:3000")
 public class CategoryController {
+
+    private static final int MAX_BATCH_IDS = 1000;
     
     private final CategoryService categoryService;
+    private final SpendDistributionService spendDistributionService;
     
     @Autowired
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, SpendDistributionService spendDistributionService) {
         this.categoryService = categoryService;
+        this.spendDistributionService = spendDistributionService;
     }
     
     /**
@@ -60,6 +71,26 @@ public class CategoryController {
         }
     }
     
+    /**
+     * Get several categories at once, e.g. {@code ?ids=3,1,2}; items keep the request order, unknown ids are listed as missing
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getCategoryBatch(@RequestParam List<Long> ids, HttpServletRequest request) {
+        try {
+            if (ids.size() > MAX_BATCH_IDS) {
+                ErrorResponse errorResponse = new ErrorResponse("At most " + MAX_BATCH_IDS + " ids per request",
+                        HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+                return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+            }
+            BatchResult<Category> categories = categoryService.findByIds(ids);
+            return new ResponseEntity<>(categories, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving category batch: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     /**
      * Get category by ID
      */
@@ -139,14 +170,7 @@ public class CategoryController {
             List<Category> categories = categoryService.findByType(transactionType);
             
             // Create a custom response that includes parent information
-            List<CategoryTreeNode> treeNodes = categories.stream()
-                .map(cat -> new CategoryTreeNode(
-                    cat.getId(),
-                    cat.getName(),
-                    cat.getType(),
-                    cat.getParent() != null ? new ParentInfo(cat.getParent().getId(), cat.getParent().getName()) : null
-                ))
-                .toList();
+            List<CategoryTreeNode> treeNodes = CategoryTreeNode.of(categories);
             
             return new ResponseEntity<>(treeNodes, HttpStatus.OK);
         } catch (IllegalArgumentException e) {
@@ -158,41 +182,6 @@ public class CategoryController {
         }
     }
 
-    // Inner classes for tree structure response
-    public static class CategoryTreeNode {
-        private Long id;
-        private String name;
-        private TransactionType type;
-        private ParentInfo parent;
-
-        public CategoryTreeNode(Long id, String name, TransactionType type, ParentInfo parent) {
-            this.id = id;
-            this.name = name;
-            this.type = type;
-            this.parent = parent;
-        }
-
-        // Getters
-        public Long getId() { return id; }
-        public String getName() { return name; }
-        public TransactionType getType() { return type; }
-        public ParentInfo getParent() { return parent; }
-    }
-
-    public static class ParentInfo {
-        private Long id;
-        private String name;
-
-        public ParentInfo(Long id, String name) {
-            this.id = id;
-            this.name = name;
-        }
-
-        // Getters
-        public Long getId() { return id; }
-        public String getName() { return name; }
-    }
-    
     /**
      * Get child categories of a parent
      */
@@ -227,6 +216,54 @@ public class CategoryController {
         }
     }
     
+    /**
+     * Autocomplete category names for the category picker, with the ancestor path of each match
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<CategorySuggestion>> autocompleteCategories(
+            @RequestParam String q,
+            @RequestParam String type,
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        try {
+            TransactionType transactionType = TransactionType.valueOf(type.toUpperCase());
+            List<CategorySuggestion> suggestions = categoryService.suggestCategories(q, transactionType, Math.min(limit, 50));
+            return new ResponseEntity<>(suggestions, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid transaction type: " + type);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error autocompleting categories: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    /**
+     * Get the distribution of amounts (percentiles, histogram) of a category in a
+     * currency over a range of months, by default including its subcategories
+     */
+    @GetMapping("/{id}/distribution")
+    public ResponseEntity<?> getSpendDistribution(
+            @PathVariable Long id,
+            @RequestParam String currency,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false, defaultValue = "true") boolean subtree,
+            @RequestParam(required = false, defaultValue = "50,90") List<Double> percentiles,
+            HttpServletRequest request) {
+        try {
+            SpendDistribution distribution = spendDistributionService.distribution(id, currency,
+                    YearMonth.parse(from), YearMonth.parse(to), subtree, percentiles);
+            return new ResponseEntity<>(distribution, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println("Invalid distribution request for category " + id + ": " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            System.err.println("Error retrieving distribution for category " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+    
     /**
      * Update an existing category
      */
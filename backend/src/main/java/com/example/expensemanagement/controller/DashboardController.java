@@ -0,0 +1,59 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.Dashboard;
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.DashboardService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@CrossOrigin(origins = "http://localhost:3000")
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+    private final int maxPageSize;
+
+    @Autowired
+    public DashboardController(DashboardService dashboardService,
+                               @Value("${expense.dashboard.max-page-size:200}") int maxPageSize) {
+        this.dashboardService = dashboardService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Category tree, newest expenses and totals of a period in one response (ETag'd, see WebConfig)
+     */
+    @GetMapping
+    public ResponseEntity<?> getDashboard(
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            @RequestParam(required = false, defaultValue = "EXPENSE") String type,
+            @RequestParam(required = false, defaultValue = "50") int pageSize,
+            HttpServletRequest request) {
+        try {
+            ZoneId zone = ZoneId.of(timezone);
+            Dashboard dashboard = dashboardService.buildDashboard(TransactionType.valueOf(type.toUpperCase()),
+                    DateParams.startOfDay(startDate, zone), DateParams.endOfDay(endDate, zone), Math.max(1, Math.min(pageSize, maxPageSize)));
+            return new ResponseEntity<>(dashboard, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Invalid dashboard request: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error building dashboard: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Dashboard failed: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
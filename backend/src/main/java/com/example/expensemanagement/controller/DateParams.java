@@ -0,0 +1,25 @@
+package com.example.expensemanagement.controller;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Calendar-day request parameters (YYYY-MM-DD) turned into the instants
+ * bounding that day in the client's zone.
+ */
+final class DateParams {
+
+    private DateParams() {
+    }
+
+    // First instant of a calendar day in the client's zone
+    static Instant startOfDay(String date, ZoneId zone) {
+        return LocalDate.parse(date).atStartOfDay(zone).toInstant();
+    }
+
+    // Last millisecond of a calendar day in the client's zone
+    static Instant endOfDay(String date, ZoneId zone) {
+        return LocalDate.parse(date).plusDays(1).atStartOfDay(zone).toInstant().minusMillis(1);
+    }
+}
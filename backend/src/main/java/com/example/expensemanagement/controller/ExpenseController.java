@@ -1,8 +1,19 @@
 package com.example.expensemanagement.controller;
 
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.dto.CategoryTotal;
 import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.dto.Granularity;
+import com.example.expensemanagement.dto.RunningBalance;
+import com.example.expensemanagement.dto.TimeSeries;
 import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.BalanceService;
 import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.service.RankingService;
+import com.example.expensemanagement.service.TimeSeriesService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -13,6 +24,8 @@ import org.springframework.validation.annotation.Validated;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,12 +33,21 @@ import java.util.Optional;
 @RequestMapping("/api/expenses")
 @CrossOrigin(origins = "http://localhost:3000")
 public class ExpenseController {
+
+    private static final int MAX_BATCH_IDS = 1000;
     
     private final ExpenseService expenseService;
+    private final TimeSeriesService timeSeriesService;
+    private final RankingService rankingService;
+    private final BalanceService balanceService;
     
     @Autowired
-    public ExpenseController(ExpenseService expenseService) {
+    public ExpenseController(ExpenseService expenseService, TimeSeriesService timeSeriesService,
+                             RankingService rankingService, BalanceService balanceService) {
         this.expenseService = expenseService;
+        this.timeSeriesService = timeSeriesService;
+        this.rankingService = rankingService;
+        this.balanceService = balanceService;
     }
     
     /**
@@ -62,6 +84,42 @@ public class ExpenseController {
         }
     }
     
+    /**
+     * Get all expenses with only the requested fields, e.g. {@code fields=id,moment,sum,currency}
+     */
+    @GetMapping(params = "fields")
+    public ResponseEntity<ExpenseProjection> getAllExpenses(@RequestParam String fields) {
+        try {
+            return new ResponseEntity<>(expenseService.findAllExpenses(ExpenseField.parse(fields)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid fields '" + fields + "': " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error retrieving expenses: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    /**
+     * Get several expenses at once, e.g. {@code ?ids=3,1,2}; items keep the request order, unknown ids are listed as missing
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getExpenseBatch(@RequestParam List<Long> ids, HttpServletRequest request) {
+        try {
+            if (ids.size() > MAX_BATCH_IDS) {
+                ErrorResponse errorResponse = new ErrorResponse("At most " + MAX_BATCH_IDS + " ids per request",
+                        HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+                return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+            }
+            BatchResult<Expense> expenses = expenseService.findByIds(ids);
+            return new ResponseEntity<>(expenses, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving expense batch: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     /**
      * Get expense by ID
      */
@@ -91,6 +149,22 @@ public class ExpenseController {
         }
     }
     
+    /**
+     * Get expenses by currency with only the requested fields
+     */
+    @GetMapping(value = "/currency/{currency}", params = "fields")
+    public ResponseEntity<ExpenseProjection> getExpensesByCurrency(@PathVariable String currency, @RequestParam String fields) {
+        try {
+            return new ResponseEntity<>(expenseService.findByCurrency(ExpenseField.parse(fields), currency), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid fields '" + fields + "': " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error retrieving expenses by currency " + currency + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     /**
      * Search expenses by description
      */
@@ -105,6 +179,23 @@ public class ExpenseController {
         }
     }
     
+    /**
+     * Search expenses by description with only the requested fields
+     */
+    @GetMapping(value = "/search", params = "fields")
+    public ResponseEntity<ExpenseProjection> searchExpensesByDescription(@RequestParam String description,
+                                                                         @RequestParam String fields) {
+        try {
+            return new ResponseEntity<>(expenseService.findByDescriptionContaining(ExpenseField.parse(fields), description), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid fields '" + fields + "': " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error searching expenses by description '" + description + "': " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     /**
      * Get expenses by date range
      */
@@ -114,13 +205,10 @@ public class ExpenseController {
             @RequestParam String endDate,
             @RequestParam(required = false, defaultValue = "UTC") String timezone) {
         try {
-            // Convert date strings (YYYY-MM-DD) to Instant range using client timezone
-            // Parse the timezone offset (e.g., "+02:00", "-05:00")
-            String startDateTime = startDate + "T00:00:00.000" + (timezone.equals("UTC") ? "Z" : timezone);
-            String endDateTime = endDate + "T23:59:59.999" + (timezone.equals("UTC") ? "Z" : timezone);
-            
-            Instant start = Instant.parse(startDateTime);
-            Instant end = Instant.parse(endDateTime);
+            // Dates (YYYY-MM-DD) are calendar days in the client's zone: an offset ("+02:00") or a region id
+            ZoneId zone = ZoneId.of(timezone);
+            Instant start = DateParams.startOfDay(startDate, zone);
+            Instant end = DateParams.endOfDay(endDate, zone);
             List<Expense> expenses = expenseService.findByDateRange(start, end);
             return new ResponseEntity<>(expenses, HttpStatus.OK);
         } catch (Exception e) {
@@ -129,6 +217,116 @@ public class ExpenseController {
         }
     }
     
+    /**
+     * Get expenses by date range with only the requested fields
+     */
+    @GetMapping(value = "/date-range", params = "fields")
+    public ResponseEntity<ExpenseProjection> getExpensesByDateRange(
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            @RequestParam String fields) {
+        try {
+            ZoneId zone = ZoneId.of(timezone);
+            ExpenseProjection expenses = expenseService.findByDateRange(ExpenseField.parse(fields),
+                    DateParams.startOfDay(startDate, zone), DateParams.endOfDay(endDate, zone));
+            return new ResponseEntity<>(expenses, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving expenses by date range: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    /**
+     * Get income and expense sums per day, week or month for charts
+     */
+    @GetMapping("/time-series")
+    public ResponseEntity<TimeSeries> getTimeSeries(
+            @RequestParam String currency,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            @RequestParam(required = false, defaultValue = "DAY") String granularity) {
+        try {
+            TimeSeries series = timeSeriesService.buildTimeSeries(
+                    currency,
+                    LocalDate.parse(startDate),
+                    LocalDate.parse(endDate),
+                    ZoneId.of(timezone),
+                    Granularity.valueOf(granularity.toUpperCase()));
+            return new ResponseEntity<>(series, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error building time series: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    /**
+     * Get the running balance (income minus expenses) at the end of a day, in one currency or in all
+     */
+    @GetMapping("/balance")
+    public ResponseEntity<List<RunningBalance>> getBalance(
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String date,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone) {
+        try {
+            ZoneId zone = ZoneId.of(timezone);
+            Instant at = date != null ? DateParams.endOfDay(date, zone) : Instant.now();
+            List<RunningBalance> balances = currency != null
+                    ? List.of(balanceService.balanceAt(currency, at))
+                    : balanceService.balancesAt(at);
+            return new ResponseEntity<>(balances, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error computing balance: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Get the largest transactions of a currency in a date range
+     */
+    @GetMapping("/top")
+    public ResponseEntity<List<Expense>> getLargestExpenses(
+            @RequestParam String currency,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            @RequestParam(required = false, defaultValue = "EXPENSE") String type,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        try {
+            ZoneId zone = ZoneId.of(timezone);
+            List<Expense> expenses = rankingService.findLargest(currency, TransactionType.valueOf(type.toUpperCase()),
+                    DateParams.startOfDay(startDate, zone), DateParams.endOfDay(endDate, zone), limit);
+            return new ResponseEntity<>(expenses, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving largest expenses: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    /**
+     * Get the categories with the largest totals in a date range, optionally rolled up to root categories
+     */
+    @GetMapping("/top-categories")
+    public ResponseEntity<List<CategoryTotal>> getTopCategories(
+            @RequestParam String currency,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            @RequestParam(required = false, defaultValue = "EXPENSE") String type,
+            @RequestParam(required = false, defaultValue = "10") int limit,
+            @RequestParam(required = false, defaultValue = "false") boolean rollup) {
+        try {
+            ZoneId zone = ZoneId.of(timezone);
+            List<CategoryTotal> totals = rankingService.findTopCategories(currency, TransactionType.valueOf(type.toUpperCase()),
+                    DateParams.startOfDay(startDate, zone), DateParams.endOfDay(endDate, zone), limit, rollup);
+            return new ResponseEntity<>(totals, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving top categories: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     /**
      * Update an existing expense
      */
@@ -163,6 +361,5 @@ public class ExpenseController {
             System.err.println("Error deleting expense: " + e.getMessage());
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
-    }    
-
+    }
 }
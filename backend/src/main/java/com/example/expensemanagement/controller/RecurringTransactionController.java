@@ -0,0 +1,110 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.entity.RecurringTransaction;
+import com.example.expensemanagement.service.RecurringTransactionService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@Profile("!logstore")
+@RequestMapping("/api/recurring-transactions")
+@CrossOrigin(origins = "http://localhost:3000")
+public class RecurringTransactionController {
+
+    private final RecurringTransactionService recurringTransactionService;
+
+    @Autowired
+    public RecurringTransactionController(RecurringTransactionService recurringTransactionService) {
+        this.recurringTransactionService = recurringTransactionService;
+    }
+
+    /**
+     * Create a new recurring transaction
+     */
+    @PostMapping
+    public ResponseEntity<?> createRecurringTransaction(@Valid @RequestBody RecurringTransaction recurring,
+                                                        HttpServletRequest request) {
+        try {
+            RecurringTransaction saved = recurringTransactionService.saveRecurringTransaction(recurring);
+            System.out.println("Created new recurring transaction: " + saved);
+            return new ResponseEntity<>(saved, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Validation error creating recurring transaction: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("Error creating recurring transaction: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get all recurring transactions
+     */
+    @GetMapping
+    public ResponseEntity<List<RecurringTransaction>> getAllRecurringTransactions() {
+        try {
+            List<RecurringTransaction> recurring = recurringTransactionService.findAllRecurringTransactions();
+            return new ResponseEntity<>(recurring, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error retrieving recurring transactions: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get recurring transaction by ID
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<RecurringTransaction> getRecurringTransactionById(@PathVariable Long id) {
+        try {
+            Optional<RecurringTransaction> recurring = recurringTransactionService.findById(id);
+            return recurring.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
+                            .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (Exception e) {
+            System.err.println("Error retrieving recurring transaction with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Update an existing recurring transaction
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<RecurringTransaction> updateRecurringTransaction(@PathVariable Long id,
+                                                                           @RequestBody RecurringTransaction recurring) {
+        try {
+            RecurringTransaction updated = recurringTransactionService.updateRecurringTransaction(id, recurring);
+            System.out.println("Updated recurring transaction: " + updated);
+            return new ResponseEntity<>(updated, HttpStatus.OK);
+        } catch (RuntimeException e) {
+            System.err.println("Error updating recurring transaction with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Delete a recurring transaction
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteRecurringTransaction(@PathVariable Long id) {
+        try {
+            recurringTransactionService.deleteRecurringTransaction(id);
+            System.out.println("Deleted recurring transaction with id: " + id);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (RuntimeException e) {
+            System.err.println("Error deleting recurring transaction with id " + id + ": " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+}
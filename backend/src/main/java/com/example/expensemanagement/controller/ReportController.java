@@ -0,0 +1,101 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.dto.Report;
+import com.example.expensemanagement.dto.ReportJob;
+import com.example.expensemanagement.service.ReportJobService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = "http://localhost:3000")
+public class ReportController {
+
+    private final ReportJobService reportJobService;
+
+    @Autowired
+    public ReportController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
+    }
+
+    /**
+     * Submit a monthly income/expense report over a range of months and currencies;
+     * answers 202 with the job to poll (the same job for an identical running report)
+     */
+    @PostMapping
+    public ResponseEntity<?> submitReport(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam List<String> currencies,
+            @RequestParam(required = false, defaultValue = "UTC") String timezone,
+            HttpServletRequest request) {
+        try {
+            ReportJob job = reportJobService.submit(YearMonth.parse(from), YearMonth.parse(to), currencies, ZoneId.of(timezone));
+            return ResponseEntity.accepted().location(URI.create("/api/reports/" + job.getId())).body(job);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            System.err.println("Invalid report request: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Report refused: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Too many reports running, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE.value(), request.getRequestURI());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "10").body(errorResponse);
+        }
+    }
+
+    /**
+     * Get the state of a report job
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReportJob> getReportJob(@PathVariable String id) {
+        return reportJobService.findJob(id)
+                .map(job -> new ResponseEntity<>(job, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Get the report of a finished job, as an attachment with download=true;
+     * 202 with the job while it is still running
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getReportResult(@PathVariable String id,
+                                             @RequestParam(required = false, defaultValue = "false") boolean download,
+                                             HttpServletRequest request) {
+        Optional<ReportJob> job = reportJobService.findJob(id);
+        if (job.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        switch (job.get().getStatus()) {
+            case QUEUED, RUNNING -> {
+                return new ResponseEntity<>(job.get(), HttpStatus.ACCEPTED);
+            }
+            case FAILED -> {
+                ErrorResponse errorResponse = new ErrorResponse("Report failed: " + job.get().getError(),
+                        HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+                return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            default -> {
+                Report report = reportJobService.findResult(id).orElseThrow();
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (download) {
+                    response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"report-" + id + ".json\"");
+                }
+                return response.body(report);
+            }
+        }
+    }
+}
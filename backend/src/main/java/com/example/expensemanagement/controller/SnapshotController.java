@@ -0,0 +1,42 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.dto.SnapshotSummary;
+import com.example.expensemanagement.snapshot.SnapshotService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+
+@RestController
+@Profile("!logstore")
+@RequestMapping("/api/admin/snapshots")
+public class SnapshotController {
+
+    private final SnapshotService snapshotService;
+
+    @Autowired
+    public SnapshotController(SnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * Export the categories and expenses of every shard to its snapshot file
+     */
+    @PostMapping
+    public ResponseEntity<?> exportSnapshots(HttpServletRequest request) {
+        try {
+            List<SnapshotSummary> summaries = snapshotService.exportAll();
+            return new ResponseEntity<>(summaries, HttpStatus.CREATED);
+        } catch (Exception e) {
+            System.err.println("Error exporting snapshots: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Snapshot export failed: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.expensemanagement.controller;
+
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.service.DateRangeCache;
+import com.example.expensemanagement.service.SingleFlight;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantMigrationService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class TenantAdminController {
+
+    private final ShardRegistry shardRegistry;
+    private final TenantMigrationService tenantMigrationService;
+    private final SingleFlight singleFlight;
+    private final DateRangeCache dateRangeCache;
+
+    @Autowired
+    public TenantAdminController(ShardRegistry shardRegistry, TenantMigrationService tenantMigrationService,
+                                 SingleFlight singleFlight, DateRangeCache dateRangeCache) {
+        this.shardRegistry = shardRegistry;
+        this.tenantMigrationService = tenantMigrationService;
+        this.singleFlight = singleFlight;
+        this.dateRangeCache = dateRangeCache;
+    }
+
+    /**
+     * Get the tenants living on each shard
+     */
+    @GetMapping("/shards")
+    public ResponseEntity<Map<String, List<String>>> getShards() {
+        try {
+            Map<String, List<String>> shards = new LinkedHashMap<>();
+            for (String shard : shardRegistry.getShardNames()) {
+                shards.put(shard, shardRegistry.tenantsOn(shard));
+            }
+            return new ResponseEntity<>(shards, HttpStatus.OK);
+        } catch (Exception e) {
+            System.err.println("Error listing shards: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Move all data of a tenant to another shard
+     */
+    @PostMapping("/tenants/{tenantId}/move")
+    public ResponseEntity<?> moveTenant(@PathVariable String tenantId, @RequestParam String targetShard,
+                                        HttpServletRequest request) {
+        try {
+            Map<String, Integer> moved = tenantMigrationService.moveTenant(tenantId, targetShard);
+            return new ResponseEntity<>(moved, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid tenant move: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            System.err.println("Tenant move abandoned: " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse(e.getMessage(), HttpStatus.CONFLICT.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            System.err.println("Error moving tenant " + tenantId + ": " + e.getMessage());
+            ErrorResponse errorResponse = new ErrorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR.value(), request.getRequestURI());
+            return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the read coalescing counters (queries executed, calls coalesced, wait timeouts)
+     */
+    @GetMapping("/coalescing")
+    public ResponseEntity<Map<String, Long>> getCoalescingStats() {
+        return new ResponseEntity<>(singleFlight.getStats(), HttpStatus.OK);
+    }
+
+    /**
+     * Get the date-range cache counters and size
+     */
+    @GetMapping("/range-cache")
+    public ResponseEntity<Map<String, Long>> getRangeCacheStats() {
+        return new ResponseEntity<>(dateRangeCache.getStats(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.audit.AuditTrail;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+
+/**
+ * One recorded change of an expense or category, with JSON images of the
+ * entity before (null for a create) and after (null for a delete).
+ */
+public class AuditEvent {
+    private final Long id;
+    private final AuditTrail.EntityType entityType;
+    private final Long entityId;
+    private final AuditTrail.Action action;
+    private final Instant occurredAt;
+    @JsonRawValue
+    private final String before;
+    @JsonRawValue
+    private final String after;
+
+    public AuditEvent(Long id, AuditTrail.EntityType entityType, Long entityId, AuditTrail.Action action,
+                      Instant occurredAt, String before, String after) {
+        this.id = id;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+        this.occurredAt = occurredAt;
+        this.before = before;
+        this.after = after;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public AuditTrail.EntityType getEntityType() { return entityType; }
+    public Long getEntityId() { return entityId; }
+    public AuditTrail.Action getAction() { return action; }
+    public Instant getOccurredAt() { return occurredAt; }
+    public String getBefore() { return before; }
+    public String getAfter() { return after; }
+}
@@ -0,0 +1,21 @@
+package com.example.expensemanagement.dto;
+
+import java.util.List;
+
+/**
+ * Result of a batch get: the entities found, in the order their ids were first
+ * requested, and the requested ids that do not exist (or belong to another tenant)
+ */
+public class BatchResult<T> {
+    private final List<T> items;
+    private final List<Long> missing;
+
+    public BatchResult(List<T> items, List<Long> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+
+    // Getters
+    public List<T> getItems() { return items; }
+    public List<Long> getMissing() { return missing; }
+}
@@ -0,0 +1,37 @@
+package com.example.expensemanagement.dto;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * Spend against a budget in the current period
+ */
+public class BudgetStatus {
+    private final Long budgetId;
+    private final Long categoryId;
+    private final String currency;
+    private final YearMonth period;
+    private final BigDecimal amount;
+    private final BigDecimal spent;
+    private final BigDecimal percentUsed;
+
+    public BudgetStatus(Long budgetId, Long categoryId, String currency, YearMonth period,
+                        BigDecimal amount, BigDecimal spent, BigDecimal percentUsed) {
+        this.budgetId = budgetId;
+        this.categoryId = categoryId;
+        this.currency = currency;
+        this.period = period;
+        this.amount = amount;
+        this.spent = spent;
+        this.percentUsed = percentUsed;
+    }
+
+    // Getters
+    public Long getBudgetId() { return budgetId; }
+    public Long getCategoryId() { return categoryId; }
+    public String getCurrency() { return currency; }
+    public YearMonth getPeriod() { return period; }
+    public BigDecimal getAmount() { return amount; }
+    public BigDecimal getSpent() { return spent; }
+    public BigDecimal getPercentUsed() { return percentUsed; }
+}
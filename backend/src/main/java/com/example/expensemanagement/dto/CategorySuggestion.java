@@ -0,0 +1,28 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.util.List;
+
+/**
+ * Autocomplete match for a category name, with the names of its ancestors (root first)
+ */
+public class CategorySuggestion {
+    private final Long id;
+    private final String name;
+    private final TransactionType type;
+    private final List<String> path;
+
+    public CategorySuggestion(Long id, String name, TransactionType type, List<String> path) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.path = path;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public TransactionType getType() { return type; }
+    public List<String> getPath() { return path; }
+}
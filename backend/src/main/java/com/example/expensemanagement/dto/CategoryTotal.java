@@ -0,0 +1,23 @@
+package com.example.expensemanagement.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Total spend of one category in one currency
+ */
+public class CategoryTotal {
+    private final Long categoryId;
+    private final BigDecimal total;
+    private String name;
+
+    public CategoryTotal(Long categoryId, BigDecimal total) {
+        this.categoryId = categoryId;
+        this.total = total;
+    }
+
+    // Getters and setters
+    public Long getCategoryId() { return categoryId; }
+    public BigDecimal getTotal() { return total; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+}
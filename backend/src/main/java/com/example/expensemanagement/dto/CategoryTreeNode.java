@@ -0,0 +1,54 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.util.List;
+
+/**
+ * Category with its parent's id and name, for building trees on the client
+ */
+public class CategoryTreeNode {
+    private Long id;
+    private String name;
+    private TransactionType type;
+    private ParentInfo parent;
+
+    public CategoryTreeNode(Long id, String name, TransactionType type, ParentInfo parent) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.parent = parent;
+    }
+
+    public static List<CategoryTreeNode> of(List<Category> categories) {
+        return categories.stream()
+            .map(cat -> new CategoryTreeNode(
+                cat.getId(),
+                cat.getName(),
+                cat.getType(),
+                cat.getParent() != null ? new ParentInfo(cat.getParent().getId(), cat.getParent().getName()) : null
+            ))
+            .toList();
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public TransactionType getType() { return type; }
+    public ParentInfo getParent() { return parent; }
+
+    public static class ParentInfo {
+        private Long id;
+        private String name;
+
+        public ParentInfo(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        // Getters
+        public Long getId() { return id; }
+        public String getName() { return name; }
+    }
+}
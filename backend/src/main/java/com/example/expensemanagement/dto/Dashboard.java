@@ -0,0 +1,36 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.entity.Expense;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the main page shows for a period: the category tree of one type,
+ * the newest expenses of the period, how many there are in total and the
+ * period totals per currency
+ */
+public class Dashboard {
+    private final List<CategoryTreeNode> categories;
+    private final List<Expense> expenses;
+    private final long expenseCount;
+    private final Map<String, BigDecimal> expenseTotals;
+    private final Map<String, BigDecimal> incomeTotals;
+
+    public Dashboard(List<CategoryTreeNode> categories, List<Expense> expenses, long expenseCount,
+                     Map<String, BigDecimal> expenseTotals, Map<String, BigDecimal> incomeTotals) {
+        this.categories = categories;
+        this.expenses = expenses;
+        this.expenseCount = expenseCount;
+        this.expenseTotals = expenseTotals;
+        this.incomeTotals = incomeTotals;
+    }
+
+    // Getters
+    public List<CategoryTreeNode> getCategories() { return categories; }
+    public List<Expense> getExpenses() { return expenses; }
+    public long getExpenseCount() { return expenseCount; }
+    public Map<String, BigDecimal> getExpenseTotals() { return expenseTotals; }
+    public Map<String, BigDecimal> getIncomeTotals() { return incomeTotals; }
+}
@@ -0,0 +1,26 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Narrow projection of an expense used for aggregations
+ */
+public class ExpenseAmount {
+    private final Instant moment;
+    private final TransactionType type;
+    private final BigDecimal sum;
+
+    public ExpenseAmount(Instant moment, TransactionType type, BigDecimal sum) {
+        this.moment = moment;
+        this.type = type;
+        this.sum = sum;
+    }
+
+    // Getters
+    public Instant getMoment() { return moment; }
+    public TransactionType getType() { return type; }
+    public BigDecimal getSum() { return sum; }
+}
@@ -0,0 +1,184 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Expense fields a client can ask for with {@code fields=}. Each field knows its
+ * SQL column, how to read it from a row and how to take it from a loaded entity.
+ */
+public enum ExpenseField {
+    ID("id", "e.id") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getLong(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getId();
+        }
+    },
+    DESCRIPTION("description", "e.description") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getString(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getDescription();
+        }
+    },
+    SUM("sum", "e.sum") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getBigDecimal(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getSum();
+        }
+    },
+    CURRENCY("currency", "e.currency") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getString(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getCurrency();
+        }
+    },
+    MOMENT("moment", "e.moment") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            OffsetDateTime moment = rs.getObject(column, OffsetDateTime.class);
+            return moment != null ? moment.toInstant() : null;
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getMoment();
+        }
+    },
+    TYPE("type", "e.type") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return TransactionType.valueOf(rs.getString(column));
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getType();
+        }
+    },
+    CATEGORY_ID("categoryId", "e.category_id") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getLong(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getCategory() != null ? expense.getCategory().getId() : null;
+        }
+    },
+    CATEGORY_NAME("categoryName", "c.name") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            return rs.getString(column);
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getCategory() != null ? expense.getCategory().getName() : null;
+        }
+    },
+    RECURRING_TRANSACTION_ID("recurringTransactionId", "e.recurring_transaction_id") {
+        @Override
+        public Object read(ResultSet rs, int column) throws SQLException {
+            long id = rs.getLong(column);
+            return rs.wasNull() ? null : id;
+        }
+
+        @Override
+        public Object of(Expense expense) {
+            return expense.getRecurringTransactionId();
+        }
+    };
+
+    private final String name;
+    private final String column;
+
+    ExpenseField(String name, String column) {
+        this.name = name;
+        this.column = column;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Whether the field lives in the categories table
+     */
+    public boolean needsCategory() {
+        return this == CATEGORY_NAME;
+    }
+
+    /**
+     * Value of this field in a JDBC row (1-based column index)
+     */
+    public abstract Object read(ResultSet rs, int column) throws SQLException;
+
+    /**
+     * Value of this field in a loaded expense
+     */
+    public abstract Object of(Expense expense);
+
+    /**
+     * Fields of a comma-separated list like "id,moment,sum", in the given order without duplicates
+     */
+    public static List<ExpenseField> parse(String fields) {
+        List<ExpenseField> parsed = new ArrayList<>();
+        Set<ExpenseField> seen = EnumSet.noneOf(ExpenseField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            ExpenseField field = byName(trimmed);
+            if (seen.add(field)) {
+                parsed.add(field);
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No fields requested");
+        }
+        return parsed;
+    }
+
+    private static ExpenseField byName(String name) {
+        for (ExpenseField field : values()) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown expense field: " + name);
+    }
+}
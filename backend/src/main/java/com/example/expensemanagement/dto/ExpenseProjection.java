@@ -0,0 +1,61 @@
+package com.example.expensemanagement.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Expenses reduced to a requested set of fields. Serialized as an array of
+ * objects holding only those fields, written straight from the row values
+ * without building entities or maps.
+ */
+public class ExpenseProjection implements JsonSerializable {
+    private final List<ExpenseField> fields;
+    private final List<Object[]> rows;
+
+    public ExpenseProjection(List<ExpenseField> fields, List<Object[]> rows) {
+        this.fields = fields;
+        this.rows = rows;
+    }
+
+    // Getters
+    public List<ExpenseField> getFields() { return fields; }
+    public List<Object[]> getRows() { return rows; }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartArray();
+        for (Object[] row : rows) {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                generator.writeFieldName(fields.get(i).getName());
+                Object value = row[i];
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof BigDecimal number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof String text) {
+                    generator.writeString(text);
+                } else {
+                    // Instants and enums follow the application's Jackson configuration
+                    provider.defaultSerializeValue(value, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer)
+            throws IOException {
+        serialize(generator, provider);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.expensemanagement.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar period used to bucket time series. Periods are calendar dates in
+ * the client's zone, so a bucket spans 23 or 25 hours across DST changes.
+ */
+public enum Granularity {
+    DAY {
+        @Override
+        public LocalDate periodStart(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate periodStart) {
+            return periodStart.plusDays(1);
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDate periodStart(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public LocalDate next(LocalDate periodStart) {
+            return periodStart.plusWeeks(1);
+        }
+    },
+    MONTH {
+        @Override
+        public LocalDate periodStart(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate periodStart) {
+            return periodStart.plusMonths(1);
+        }
+    };
+
+    /**
+     * First day of the period containing the given date
+     */
+    public abstract LocalDate periodStart(LocalDate date);
+
+    /**
+     * First day of the period following the one starting at periodStart
+     */
+    public abstract LocalDate next(LocalDate periodStart);
+}
@@ -0,0 +1,62 @@
+package com.example.expensemanagement.dto;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Result of a report job: income and expense totals with their per-category
+ * breakdown for every month and currency of the requested range
+ */
+public class Report {
+    private final YearMonth from;
+    private final YearMonth to;
+    private final List<String> currencies;
+    private final String timezone;
+    private final List<Row> rows;
+
+    public Report(YearMonth from, YearMonth to, List<String> currencies, String timezone, List<Row> rows) {
+        this.from = from;
+        this.to = to;
+        this.currencies = currencies;
+        this.timezone = timezone;
+        this.rows = rows;
+    }
+
+    // Getters
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+    public List<String> getCurrencies() { return currencies; }
+    public String getTimezone() { return timezone; }
+    public List<Row> getRows() { return rows; }
+
+    /**
+     * One month in one currency; category totals are largest first
+     */
+    public static class Row {
+        private final YearMonth month;
+        private final String currency;
+        private final BigDecimal income;
+        private final BigDecimal expense;
+        private final List<CategoryTotal> incomeCategories;
+        private final List<CategoryTotal> expenseCategories;
+
+        public Row(YearMonth month, String currency, BigDecimal income, BigDecimal expense,
+                   List<CategoryTotal> incomeCategories, List<CategoryTotal> expenseCategories) {
+            this.month = month;
+            this.currency = currency;
+            this.income = income;
+            this.expense = expense;
+            this.incomeCategories = incomeCategories;
+            this.expenseCategories = expenseCategories;
+        }
+
+        // Getters
+        public YearMonth getMonth() { return month; }
+        public String getCurrency() { return currency; }
+        public BigDecimal getIncome() { return income; }
+        public BigDecimal getExpense() { return expense; }
+        public List<CategoryTotal> getIncomeCategories() { return incomeCategories; }
+        public List<CategoryTotal> getExpenseCategories() { return expenseCategories; }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.expensemanagement.dto;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * State of an asynchronous report: what was asked for and how far it got.
+ * The report itself is fetched separately once the job is DONE.
+ */
+public class ReportJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final Status status;
+    private final YearMonth from;
+    private final YearMonth to;
+    private final List<String> currencies;
+    private final String timezone;
+    private final int completedParts;
+    private final int totalParts;
+    private final Instant submittedAt;
+    private final Instant finishedAt;
+    private final String error;
+
+    public ReportJob(String id, Status status, YearMonth from, YearMonth to, List<String> currencies, String timezone,
+                     int completedParts, int totalParts, Instant submittedAt, Instant finishedAt, String error) {
+        this.id = id;
+        this.status = status;
+        this.from = from;
+        this.to = to;
+        this.currencies = currencies;
+        this.timezone = timezone;
+        this.completedParts = completedParts;
+        this.totalParts = totalParts;
+        this.submittedAt = submittedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    // Getters
+    public String getId() { return id; }
+    public Status getStatus() { return status; }
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+    public List<String> getCurrencies() { return currencies; }
+    public String getTimezone() { return timezone; }
+    public int getCompletedParts() { return completedParts; }
+    public int getTotalParts() { return totalParts; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getError() { return error; }
+}
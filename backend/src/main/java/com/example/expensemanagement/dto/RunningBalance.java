@@ -0,0 +1,32 @@
+package com.example.expensemanagement.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Income minus expenses in one currency over every transaction up to and
+ * including an instant, with the checkpoint it was computed from and the
+ * number of transactions scanned after it.
+ */
+public class RunningBalance {
+    private final String currency;
+    private final Instant at;
+    private final BigDecimal balance;
+    private final Instant checkpoint;
+    private final long scanned;
+
+    public RunningBalance(String currency, Instant at, BigDecimal balance, Instant checkpoint, long scanned) {
+        this.currency = currency;
+        this.at = at;
+        this.balance = balance;
+        this.checkpoint = checkpoint;
+        this.scanned = scanned;
+    }
+
+    // Getters
+    public String getCurrency() { return currency; }
+    public Instant getAt() { return at; }
+    public BigDecimal getBalance() { return balance; }
+    public Instant getCheckpoint() { return checkpoint; }
+    public long getScanned() { return scanned; }
+}
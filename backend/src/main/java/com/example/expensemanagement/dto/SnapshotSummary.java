@@ -0,0 +1,36 @@
+package com.example.expensemanagement.dto;
+
+import java.time.Instant;
+
+/**
+ * Outcome of exporting or restoring the snapshot of one shard
+ */
+public class SnapshotSummary {
+    private final String shard;
+    private final String file;
+    private final Instant createdAt;
+    private final long categories;
+    private final long expenses;
+    private final long bytes;
+    private final long millis;
+
+    public SnapshotSummary(String shard, String file, Instant createdAt, long categories, long expenses,
+                           long bytes, long millis) {
+        this.shard = shard;
+        this.file = file;
+        this.createdAt = createdAt;
+        this.categories = categories;
+        this.expenses = expenses;
+        this.bytes = bytes;
+        this.millis = millis;
+    }
+
+    // Getters
+    public String getShard() { return shard; }
+    public String getFile() { return file; }
+    public Instant getCreatedAt() { return createdAt; }
+    public long getCategories() { return categories; }
+    public long getExpenses() { return expenses; }
+    public long getBytes() { return bytes; }
+    public long getMillis() { return millis; }
+}
@@ -0,0 +1,56 @@
+package com.example.expensemanagement.dto;
+
+import com.example.expensemanagement.service.SpendSketch;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distribution of expense amounts of a category (optionally with its
+ * subcategories) in one currency over a range of months. Percentiles, min and
+ * max are approximate, within one percent of an actual amount.
+ */
+public class SpendDistribution {
+    private final Long categoryId;
+    private final String currency;
+    private final YearMonth from;
+    private final YearMonth to;
+    private final boolean subtree;
+    private final long count;
+    private final BigDecimal total;
+    private final BigDecimal min;
+    private final BigDecimal max;
+    private final Map<String, BigDecimal> percentiles;
+    private final List<SpendSketch.Bucket> histogram;
+
+    public SpendDistribution(Long categoryId, String currency, YearMonth from, YearMonth to, boolean subtree,
+                             long count, BigDecimal total, BigDecimal min, BigDecimal max,
+                             Map<String, BigDecimal> percentiles, List<SpendSketch.Bucket> histogram) {
+        this.categoryId = categoryId;
+        this.currency = currency;
+        this.from = from;
+        this.to = to;
+        this.subtree = subtree;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+        this.percentiles = percentiles;
+        this.histogram = histogram;
+    }
+
+    // Getters
+    public Long getCategoryId() { return categoryId; }
+    public String getCurrency() { return currency; }
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+    public boolean isSubtree() { return subtree; }
+    public long getCount() { return count; }
+    public BigDecimal getTotal() { return total; }
+    public BigDecimal getMin() { return min; }
+    public BigDecimal getMax() { return max; }
+    public Map<String, BigDecimal> getPercentiles() { return percentiles; }
+    public List<SpendSketch.Bucket> getHistogram() { return histogram; }
+}
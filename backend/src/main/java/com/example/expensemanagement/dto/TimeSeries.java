@@ -0,0 +1,55 @@
+package com.example.expensemanagement.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Income and expense sums per calendar period, one point per bucket
+ */
+public class TimeSeries {
+    private final String currency;
+    private final String timezone;
+    private final Granularity granularity;
+    private final List<Point> points;
+
+    public TimeSeries(String currency, String timezone, Granularity granularity, List<Point> points) {
+        this.currency = currency;
+        this.timezone = timezone;
+        this.granularity = granularity;
+        this.points = points;
+    }
+
+    // Getters
+    public String getCurrency() { return currency; }
+    public String getTimezone() { return timezone; }
+    public Granularity getGranularity() { return granularity; }
+    public List<Point> getPoints() { return points; }
+
+    public static class Point {
+        private final LocalDate period;
+        private final Instant start;
+        private BigDecimal income = BigDecimal.ZERO;
+        private BigDecimal expense = BigDecimal.ZERO;
+
+        public Point(LocalDate period, Instant start) {
+            this.period = period;
+            this.start = start;
+        }
+
+        public void add(ExpenseAmount amount) {
+            switch (amount.getType()) {
+                case INCOME -> income = income.add(amount.getSum());
+                case EXPENSE -> expense = expense.add(amount.getSum());
+            }
+        }
+
+        // Getters
+        public LocalDate getPeriod() { return period; }
+        public Instant getStart() { return start; }
+        public BigDecimal getIncome() { return income; }
+        public BigDecimal getExpense() { return expense; }
+        public BigDecimal getNet() { return income.subtract(expense); }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.expensemanagement.entity;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.TenantId;
+import jakarta.validation.constraints.Positive;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+@Entity
+@Table(name = "budgets", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_budgets_category_currency", columnNames = {"category_id", "currency"})
+})
+public class Budget {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    @JsonIgnore
+    private String tenantId;
+
+    @ManyToOne
+    @JoinColumn(name = "category_id", nullable = false)
+    private Category category;
+
+    @Column(nullable = false)
+    private String currency;
+
+    // Monthly limit, covering the category and all of its subcategories
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Positive(message = "Budget amount should be positive")
+    private BigDecimal amount;
+
+    // Default constructor
+    public Budget() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Budget budget = (Budget) o;
+        return Objects.equals(id, budget.id) &&
+               Objects.equals(currency, budget.currency) &&
+               Objects.equals(amount, budget.amount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, currency, amount);
+    }
+
+    @Override
+    public String toString() {
+        return "Budget{" +
+                "id=" + id +
+                ", categoryId=" + (category != null ? category.getId() : null) +
+                ", currency='" + currency + '\'' +
+                ", amount=" + amount +
+                '}';
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.expensemanagement.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.List;
 import java.util.Objects;
 
 @Entity
+// Indexes are defined by the versioned migrations in db/migration
 @Table(name = "categories")
 public class Category {
     
@@ -15,6 +18,11 @@ public class Category {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    @JsonIgnore
+    private String tenantId;
+    
     @Column(nullable = false)
     private String name;
     
@@ -55,6 +63,14 @@ public class Category {
         this.id = id;
     }
     
+    public String getTenantId() {
+        return tenantId;
+    }
+    
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+    
     public String getName() {
         return name;
     }
@@ -1,19 +1,30 @@
 package com.example.expensemanagement.entity;
 
 import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.TenantId;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Objects;
 import jakarta.validation.constraints.Positive;
 
 @Entity
-@Table(name = "expenses")
+// Indexes are defined by the versioned migrations in db/migration
+@Table(name = "expenses", uniqueConstraints = {
+        // At most one expense per occurrence of a recurring transaction
+        @UniqueConstraint(name = "uk_expenses_recurring_occurrence", columnNames = {"recurring_transaction_id", "moment"})
+})
 public class Expense {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    @JsonIgnore
+    private String tenantId;
+    
     @Column(nullable = true)
     private String description;
     
@@ -35,6 +46,10 @@ public class Expense {
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
     
+    // Template this expense was generated from, if any
+    @Column(name = "recurring_transaction_id", updatable = false)
+    private Long recurringTransactionId;
+    
     // Default constructor
     public Expense() {
     }
@@ -50,6 +65,14 @@ public class Expense {
         this.id = id;
     }
     
+    public String getTenantId() {
+        return tenantId;
+    }
+    
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+    
     public String getDescription() {
         return description;
     }
@@ -98,6 +121,14 @@ public class Expense {
         this.category = category;
     }
     
+    public Long getRecurringTransactionId() {
+        return recurringTransactionId;
+    }
+    
+    public void setRecurringTransactionId(Long recurringTransactionId) {
+        this.recurringTransactionId = recurringTransactionId;
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,24 @@
+package com.example.expensemanagement.entity;
+
+import java.time.ZonedDateTime;
+
+public enum Frequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY,
+    YEARLY;
+
+    /**
+     * The index-th occurrence counted from the anchor. Always computed from the
+     * anchor so month ends (the 31st) and local times survive short months and DST.
+     */
+    public ZonedDateTime occurrence(ZonedDateTime anchor, long index, int interval) {
+        long steps = index * interval;
+        return switch (this) {
+            case DAILY -> anchor.plusDays(steps);
+            case WEEKLY -> anchor.plusWeeks(steps);
+            case MONTHLY -> anchor.plusMonths(steps);
+            case YEARLY -> anchor.plusYears(steps);
+        };
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.expensemanagement.entity;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.TenantId;
+import jakarta.validation.constraints.Positive;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Template for a transaction that repeats (rent, salary, subscriptions).
+ * Occurrences are generated as regular expenses by the recurring scheduler.
+ */
+@Entity
+// Indexes are defined by the versioned migrations in db/migration
+@Table(name = "recurring_transactions")
+public class RecurringTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    @JsonIgnore
+    private String tenantId;
+
+    @Column(nullable = true)
+    private String description;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Positive(message = "Sum should be positive")
+    private BigDecimal sum;
+
+    @Column(nullable = false)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType type;
+
+    @ManyToOne
+    @JoinColumn(name = "category_id", nullable = false)
+    private Category category;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Frequency frequency;
+
+    // Repeat every interval frequency units, e.g. every 2 WEEKLY
+    @Column(name = "interval_count", nullable = false)
+    private int interval = 1;
+
+    // First occurrence; later ones are computed from it in the template's zone
+    @Column(name = "start_moment", nullable = false)
+    private Instant startMoment;
+
+    @Column(nullable = false)
+    private String zone = "UTC";
+
+    // No occurrences after this moment (optional)
+    @Column(name = "end_moment")
+    private Instant endMoment;
+
+    // Index of the next occurrence to generate and its moment
+    @Column(name = "next_occurrence", nullable = false)
+    private long nextOccurrence;
+
+    @Column(name = "next_due", nullable = false)
+    private Instant nextDue;
+
+    @Column(nullable = false)
+    private boolean active = true;
+
+    // Default constructor
+    public RecurringTransaction() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public void setSum(BigDecimal sum) {
+        this.sum = sum;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(Frequency frequency) {
+        this.frequency = frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    public Instant getStartMoment() {
+        return startMoment;
+    }
+
+    public void setStartMoment(Instant startMoment) {
+        this.startMoment = startMoment;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    public Instant getEndMoment() {
+        return endMoment;
+    }
+
+    public void setEndMoment(Instant endMoment) {
+        this.endMoment = endMoment;
+    }
+
+    public long getNextOccurrence() {
+        return nextOccurrence;
+    }
+
+    public void setNextOccurrence(long nextOccurrence) {
+        this.nextOccurrence = nextOccurrence;
+    }
+
+    public Instant getNextDue() {
+        return nextDue;
+    }
+
+    public void setNextDue(Instant nextDue) {
+        this.nextDue = nextDue;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecurringTransaction that = (RecurringTransaction) o;
+        return Objects.equals(id, that.id) &&
+               Objects.equals(description, that.description) &&
+               Objects.equals(sum, that.sum) &&
+               Objects.equals(currency, that.currency) &&
+               frequency == that.frequency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, description, sum, currency, frequency);
+    }
+
+    @Override
+    public String toString() {
+        return "RecurringTransaction{" +
+                "id=" + id +
+                ", description='" + description + '\'' +
+                ", sum=" + sum +
+                ", currency='" + currency + '\'' +
+                ", frequency=" + frequency +
+                ", interval=" + interval +
+                ", nextDue=" + nextDue +
+                ", active=" + active +
+                '}';
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.entity.TransactionType;
+
+/**
+ * Immutable stored form of a category; the parent is referenced by id (null for a root).
+ * frameBytes is the size of the log frame holding this version.
+ */
+record CategoryRow(long id, String tenantId, String name, TransactionType type, Long parentId, int frameBytes) {
+
+    CategoryRow withFrameBytes(int frameBytes) {
+        return new CategoryRow(id, tenantId, name, type, parentId, frameBytes);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable stored form of an expense; the category is referenced by id.
+ * Moments are kept as epoch microseconds, the precision of the expenses table.
+ * frameBytes is the size of the log frame holding this version.
+ */
+record ExpenseRow(long id, String tenantId, String description, BigDecimal sum, String currency, long momentMicros,
+                  TransactionType type, long categoryId, Long recurringTransactionId, int frameBytes) {
+
+    ExpenseRow withFrameBytes(int frameBytes) {
+        return new ExpenseRow(id, tenantId, description, sum, currency, momentMicros, type, categoryId,
+                recurringTransactionId, frameBytes);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * {@link CategoryRepository} on the log store. Every call materializes the
+ * tenant's categories as fresh entities with parents and children linked, so
+ * callers may modify what they get like detached JPA entities.
+ */
+public class LogCategoryRepository extends LogRepositorySupport<Category> implements CategoryRepository {
+
+    private static final Comparator<Category> BY_ID = Comparator.comparing(Category::getId);
+
+    private final LogStore logStore;
+
+    public LogCategoryRepository(LogStore logStore) {
+        super("Category");
+        this.logStore = logStore;
+    }
+
+    /**
+     * All categories of the current tenant by id, linked to their parents and children
+     */
+    Map<Long, Category> graph() {
+        Collection<CategoryRow> rows = logStore.categories(TenantContext.getTenantId());
+        Map<Long, Category> categories = new HashMap<>(rows.size() * 2);
+        for (CategoryRow row : rows) {
+            Category category = new Category(row.name(), row.type());
+            category.setId(row.id());
+            category.setTenantId(row.tenantId());
+            category.setChildren(new ArrayList<>());
+            categories.put(row.id(), category);
+        }
+        for (CategoryRow row : rows) {
+            Category parent = row.parentId() != null ? categories.get(row.parentId()) : null;
+            if (parent != null) {
+                Category category = categories.get(row.id());
+                category.setParent(parent);
+                parent.getChildren().add(category);
+            }
+        }
+        categories.values().forEach(category -> category.getChildren().sort(BY_ID));
+        return categories;
+    }
+
+    private List<Category> select(Predicate<Category> condition) {
+        return graph().values().stream().filter(condition).sorted(BY_ID).toList();
+    }
+
+    @Override
+    protected List<Category> loadAll() {
+        return select(category -> true);
+    }
+
+    @Override
+    protected List<Category> loadAllById(Collection<Long> ids) {
+        Map<Long, Category> graph = graph();
+        return ids.stream().distinct().map(graph::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    protected Optional<Category> load(Long id) {
+        if (id == null || logStore.findCategory(TenantContext.getTenantId(), id).isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(graph().get(id));
+    }
+
+    @Override
+    protected Category store(Category category) {
+        String tenantId = TenantContext.getTenantId();
+        Long parentId = category.getParent() != null ? category.getParent().getId() : null;
+        CategoryRow previous = category.getId() != null ? logStore.findCategory(tenantId, category.getId()).orElse(null) : null;
+        CategoryRow row = logStore.saveCategory(tenantId, category.getId(), category.getName(), category.getType(), parentId);
+        undoOnRollback(() -> logStore.undoSaveCategory(tenantId, row, previous));
+        category.setId(row.id());
+        category.setTenantId(tenantId);
+        return category;
+    }
+
+    @Override
+    protected boolean remove(Long id) {
+        String tenantId = TenantContext.getTenantId();
+        List<CategoryRow> deleted = logStore.deleteCategory(tenantId, id);
+        if (deleted.isEmpty()) {
+            return false;
+        }
+        undoOnRollback(() -> logStore.undoDeleteCategories(tenantId, deleted));
+        return true;
+    }
+
+    @Override
+    protected Long idOf(Category category) {
+        return category.getId();
+    }
+
+    @Override
+    protected long size() {
+        return logStore.categories(TenantContext.getTenantId()).size();
+    }
+
+    @Override
+    public Optional<Category> findById(Long id) {
+        return load(id);
+    }
+
+    @Override
+    public List<Category> findByIdIn(Collection<Long> ids) {
+        return loadAllById(ids);
+    }
+
+    @Override
+    public List<Category> findByType(TransactionType type) {
+        return select(category -> category.getType() == type);
+    }
+
+    @Override
+    public List<Category> findByTypeAndParentIsNull(TransactionType type) {
+        return select(category -> category.getType() == type && category.getParent() == null);
+    }
+
+    @Override
+    public List<Category> findByParentId(Long parentId) {
+        return select(category -> category.getParent() != null && category.getParent().getId().equals(parentId));
+    }
+
+    @Override
+    public List<Category> findByNameContainingIgnoreCaseAndType(String name, TransactionType type) {
+        String needle = name.toLowerCase(Locale.ROOT);
+        return select(category -> category.getType() == type && category.getName().toLowerCase(Locale.ROOT).contains(needle));
+    }
+
+    @Override
+    public List<Category> findByTypeOrderByHierarchy(TransactionType type) {
+        return findByType(type).stream()
+                .sorted(Comparator.comparing((Category category) -> category.getParent() != null ? category.getParent().getId() : null,
+                                Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(Category::getName))
+                .toList();
+    }
+}
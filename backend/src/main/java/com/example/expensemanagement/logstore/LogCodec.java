@@ -0,0 +1,177 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.entity.TransactionType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payloads of log frames. Every payload starts with an operation byte, the
+ * tenant and an id; puts carry the full row, so replaying a put never needs
+ * an earlier version.
+ * <pre>
+ * PUT_CATEGORY:      name, type, parent id (0 for a root)
+ * DELETE_CATEGORIES: count, further ids (a category is deleted with its subtree, in one frame)
+ * PUT_EXPENSE:       description?, sum, currency, moment micros, type, category id, recurring transaction id?
+ * DELETE_EXPENSE:    -
+ * </pre>
+ */
+final class LogCodec {
+
+    static final byte PUT_CATEGORY = 1;
+    static final byte DELETE_CATEGORIES = 2;
+    static final byte PUT_EXPENSE = 3;
+    static final byte DELETE_EXPENSE = 4;
+
+    /**
+     * Receives decoded frames during replay
+     */
+    interface Replay {
+        void putCategory(CategoryRow row);
+
+        void deleteCategories(String tenantId, List<Long> ids);
+
+        void putExpense(ExpenseRow row);
+
+        void deleteExpense(String tenantId, long id);
+    }
+
+    private LogCodec() {
+    }
+
+    static byte[] putCategory(CategoryRow row) {
+        return write(out -> {
+            header(out, PUT_CATEGORY, row.tenantId(), row.id());
+            out.writeUTF(row.name());
+            out.writeUTF(row.type().name());
+            out.writeLong(row.parentId() != null ? row.parentId() : 0);
+        });
+    }
+
+    static byte[] deleteCategories(String tenantId, List<Long> ids) {
+        return write(out -> {
+            header(out, DELETE_CATEGORIES, tenantId, ids.get(0));
+            out.writeInt(ids.size() - 1);
+            for (Long id : ids.subList(1, ids.size())) {
+                out.writeLong(id);
+            }
+        });
+    }
+
+    static byte[] putExpense(ExpenseRow row) {
+        return write(out -> {
+            header(out, PUT_EXPENSE, row.tenantId(), row.id());
+            out.writeBoolean(row.description() != null);
+            if (row.description() != null) {
+                out.writeUTF(row.description());
+            }
+            out.writeUTF(row.sum().toPlainString());
+            out.writeUTF(row.currency());
+            out.writeLong(row.momentMicros());
+            out.writeUTF(row.type().name());
+            out.writeLong(row.categoryId());
+            out.writeLong(row.recurringTransactionId() != null ? row.recurringTransactionId() : 0);
+        });
+    }
+
+    static byte[] deleteExpense(String tenantId, long id) {
+        return write(out -> header(out, DELETE_EXPENSE, tenantId, id));
+    }
+
+    /**
+     * Decode one payload and hand it to the replay
+     */
+    static void decode(ByteBuffer payload, Replay replay) {
+        int frameBytes = LogSegment.frameBytes(payload.remaining());
+        try {
+            DataInput in = new DataInputStream(new ByteBufferInputStream(payload));
+            byte operation = in.readByte();
+            String tenantId = in.readUTF();
+            long id = in.readLong();
+            switch (operation) {
+                case PUT_CATEGORY -> {
+                    String name = in.readUTF();
+                    TransactionType type = TransactionType.valueOf(in.readUTF());
+                    long parentId = in.readLong();
+                    replay.putCategory(new CategoryRow(id, tenantId, name, type, parentId != 0 ? parentId : null, frameBytes));
+                }
+                case DELETE_CATEGORIES -> {
+                    int more = in.readInt();
+                    List<Long> ids = new ArrayList<>(more + 1);
+                    ids.add(id);
+                    for (int i = 0; i < more; i++) {
+                        ids.add(in.readLong());
+                    }
+                    replay.deleteCategories(tenantId, ids);
+                }
+                case PUT_EXPENSE -> {
+                    String description = in.readBoolean() ? in.readUTF() : null;
+                    BigDecimal sum = new BigDecimal(in.readUTF());
+                    String currency = in.readUTF();
+                    long momentMicros = in.readLong();
+                    TransactionType type = TransactionType.valueOf(in.readUTF());
+                    long categoryId = in.readLong();
+                    long recurringTransactionId = in.readLong();
+                    replay.putExpense(new ExpenseRow(id, tenantId, description, sum, currency, momentMicros, type, categoryId,
+                            recurringTransactionId != 0 ? recurringTransactionId : null, frameBytes));
+                }
+                case DELETE_EXPENSE -> replay.deleteExpense(tenantId, id);
+                default -> throw new IOException("Unknown log operation " + operation);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode log frame", e);
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void header(DataOutputStream out, byte operation, String tenantId, long id) throws IOException {
+        out.writeByte(operation);
+        out.writeUTF(tenantId);
+        out.writeLong(id);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+    }
+}
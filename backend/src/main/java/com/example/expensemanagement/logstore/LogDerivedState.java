@@ -0,0 +1,81 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * With the logstore profile, amount sketches and balance checkpoints are kept
+ * in the database while the expenses they derive from are in the log. A log
+ * write is durable before the database transaction commits, so after a crash
+ * (or with a database that didn't survive the restart) they can lag behind
+ * the log. Both are rebuilt from the log for every tenant at startup, as a
+ * lifecycle phase ahead of the web server so no request writes meanwhile.
+ */
+@Component
+@Profile("logstore")
+public class LogDerivedState implements SmartLifecycle {
+
+    // The embedded web server starts in phase DEFAULT_PHASE - 2048
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final LogStore logStore;
+    private final SpendDistributionService spendDistributionService;
+    private final BalanceService balanceService;
+    private volatile boolean running;
+
+    @Autowired
+    public LogDerivedState(LogStore logStore,
+                           SpendDistributionService spendDistributionService,
+                           BalanceService balanceService) {
+        this.logStore = logStore;
+        this.spendDistributionService = spendDistributionService;
+        this.balanceService = balanceService;
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Rebuild the sketches and checkpoints of every tenant in the log; returns the number of tenants
+     */
+    public int rebuild() {
+        Instant now = Instant.now();
+        List<String> tenants = List.copyOf(logStore.tenantIds());
+        int checkpoints = 0;
+        for (String tenantId : tenants) {
+            checkpoints += TenantContext.callAs(tenantId, () -> {
+                spendDistributionService.rebuild(tenantId);
+                return balanceService.rebuildCheckpoints(tenantId, now);
+            });
+        }
+        System.out.println("Rebuilt derived state of " + tenants.size() + " tenants from the log store: "
+                + checkpoints + " balance checkpoints");
+        return tenants.size();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.repository.ExpenseProjectionRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@link ExpenseProjectionRepository} on the log store: the same finders run
+ * on {@link LogExpenseRepository} and the entities are reduced to the
+ * requested fields. Rows are in memory already, so there are no columns to
+ * save by selecting fewer.
+ */
+public class LogExpenseProjectionRepository extends ExpenseProjectionRepository {
+
+    private final LogExpenseRepository expenseRepository;
+
+    public LogExpenseProjectionRepository(LogExpenseRepository expenseRepository) {
+        super(null);
+        this.expenseRepository = expenseRepository;
+    }
+
+    @Override
+    public ExpenseProjection findAllOrderByMomentDesc(List<ExpenseField> fields) {
+        return project(fields, expenseRepository.findAllOrderByMomentDesc());
+    }
+
+    @Override
+    public ExpenseProjection findByCurrency(List<ExpenseField> fields, String currency) {
+        return project(fields, expenseRepository.findByCurrency(currency));
+    }
+
+    @Override
+    public ExpenseProjection findByMomentBetween(List<ExpenseField> fields, Instant startDate, Instant endDate) {
+        return project(fields, expenseRepository.findByMomentBetween(startDate, endDate));
+    }
+
+    @Override
+    public ExpenseProjection findByDescriptionContainingIgnoreCase(List<ExpenseField> fields, String description) {
+        return project(fields, expenseRepository.findByDescriptionContainingIgnoreCase(description));
+    }
+
+    private static ExpenseProjection project(List<ExpenseField> fields, List<Expense> expenses) {
+        List<Object[]> rows = expenses.stream()
+                .map(expense -> fields.stream().map(field -> field.of(expense)).toArray())
+                .toList();
+        return new ExpenseProjection(fields, rows);
+    }
+}
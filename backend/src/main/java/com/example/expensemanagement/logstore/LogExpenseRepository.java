@@ -0,0 +1,282 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.dto.CategoryTotal;
+import com.example.expensemanagement.dto.ExpenseAmount;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * {@link ExpenseRepository} on the log store. Range queries walk the moment
+ * index; everything else scans the tenant's primary index. Expenses come back
+ * with fresh category entities, shared within one call.
+ */
+public class LogExpenseRepository extends LogRepositorySupport<Expense> implements ExpenseRepository {
+
+    private static final Comparator<ExpenseRow> BY_ID = Comparator.comparingLong(ExpenseRow::id);
+
+    private final LogStore logStore;
+    private final LogCategoryRepository categoryRepository;
+
+    public LogExpenseRepository(LogStore logStore, LogCategoryRepository categoryRepository) {
+        super("Expense");
+        this.logStore = logStore;
+        this.categoryRepository = categoryRepository;
+    }
+
+    private static String tenant() {
+        return TenantContext.getTenantId();
+    }
+
+    private List<Expense> materialize(Collection<ExpenseRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Category> categories = categoryRepository.graph();
+        List<Expense> expenses = new ArrayList<>(rows.size());
+        for (ExpenseRow row : rows) {
+            Expense expense = new Expense();
+            expense.setId(row.id());
+            expense.setTenantId(row.tenantId());
+            expense.setDescription(row.description());
+            expense.setSum(row.sum());
+            expense.setCurrency(row.currency());
+            expense.setMoment(instant(row.momentMicros()));
+            expense.setType(row.type());
+            expense.setCategory(categories.get(row.categoryId()));
+            expense.setRecurringTransactionId(row.recurringTransactionId());
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+
+    private List<ExpenseRow> scan(Predicate<ExpenseRow> condition) {
+        return logStore.expenses(tenant()).stream().filter(condition).sorted(BY_ID).toList();
+    }
+
+    // start <= moment <= end
+    private Collection<ExpenseRow> between(Instant start, Instant end) {
+        return logStore.expensesBetween(tenant(), ceilMicros(start), floorMicros(end), true);
+    }
+
+    // start <= moment < end
+    private Collection<ExpenseRow> from(Instant start, Instant end) {
+        return logStore.expensesBetween(tenant(), ceilMicros(start), ceilMicros(end), false);
+    }
+
+    @Override
+    protected List<Expense> loadAll() {
+        return materialize(scan(row -> true));
+    }
+
+    @Override
+    protected List<Expense> loadAllById(Collection<Long> ids) {
+        String tenantId = tenant();
+        return materialize(ids.stream().distinct()
+                .map(id -> logStore.findExpense(tenantId, id).orElse(null))
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    @Override
+    protected Optional<Expense> load(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return logStore.findExpense(tenant(), id).map(row -> materialize(List.of(row)).get(0));
+    }
+
+    @Override
+    protected Expense store(Expense expense) {
+        if (expense.getCategory() == null || expense.getMoment() == null) {
+            throw new DataIntegrityViolationException("NULL not allowed for column "
+                    + (expense.getCategory() == null ? "CATEGORY_ID" : "MOMENT"));
+        }
+        String tenantId = tenant();
+        ExpenseRow previous = expense.getId() != null ? logStore.findExpense(tenantId, expense.getId()).orElse(null) : null;
+        ExpenseRow row = logStore.saveExpense(tenantId, expense.getId(), expense.getDescription(), expense.getSum(),
+                expense.getCurrency(), floorMicros(expense.getMoment()), expense.getType(), expense.getCategory().getId(),
+                expense.getRecurringTransactionId());
+        undoOnRollback(() -> logStore.undoExpense(tenantId, row.id(), row, previous));
+        expense.setId(row.id());
+        expense.setTenantId(tenantId);
+        expense.setMoment(instant(row.momentMicros()));
+        expense.setRecurringTransactionId(row.recurringTransactionId());
+        return expense;
+    }
+
+    @Override
+    protected boolean remove(Long id) {
+        String tenantId = tenant();
+        Optional<ExpenseRow> previous = logStore.findExpense(tenantId, id);
+        if (previous.isEmpty() || !logStore.deleteExpense(tenantId, id)) {
+            return false;
+        }
+        undoOnRollback(() -> logStore.undoExpense(tenantId, id, null, previous.get()));
+        return true;
+    }
+
+    @Override
+    protected Long idOf(Expense expense) {
+        return expense.getId();
+    }
+
+    @Override
+    protected long size() {
+        return logStore.expenses(tenant()).size();
+    }
+
+    @Override
+    public Optional<Expense> findById(Long id) {
+        return load(id);
+    }
+
+    @Override
+    public List<Expense> findByIdIn(Collection<Long> ids) {
+        return loadAllById(ids);
+    }
+
+    @Override
+    public List<Expense> findByCurrency(String currency) {
+        return materialize(scan(row -> row.currency().equals(currency)));
+    }
+
+    @Override
+    public List<Expense> findByMomentBetween(Instant startDate, Instant endDate) {
+        return materialize(between(startDate, endDate));
+    }
+
+    @Override
+    public List<Expense> findNewestByMomentBetween(Instant startDate, Instant endDate, Pageable pageable) {
+        Collection<ExpenseRow> newest = logStore.expensesBetweenDescending(tenant(), ceilMicros(startDate), floorMicros(endDate));
+        Stream<ExpenseRow> rows = newest.stream();
+        if (pageable.isPaged()) {
+            rows = rows.skip(pageable.getOffset()).limit(pageable.getPageSize());
+        }
+        return materialize(rows.toList());
+    }
+
+    @Override
+    public long countByMomentBetween(Instant startDate, Instant endDate) {
+        return between(startDate, endDate).size();
+    }
+
+    @Override
+    public List<Object[]> sumByTypeAndCurrency(Instant startDate, Instant endDate) {
+        Map<List<Object>, BigDecimal> sums = new LinkedHashMap<>();
+        for (ExpenseRow row : between(startDate, endDate)) {
+            sums.merge(List.of(row.type(), row.currency()), row.sum(), BigDecimal::add);
+        }
+        List<Object[]> result = new ArrayList<>();
+        sums.forEach((key, sum) -> result.add(new Object[]{key.get(0), key.get(1), sum}));
+        return result;
+    }
+
+    @Override
+    public List<Expense> findByDescriptionContainingIgnoreCase(String description) {
+        String needle = description.toLowerCase(Locale.ROOT);
+        return materialize(scan(row -> row.description() != null && row.description().toLowerCase(Locale.ROOT).contains(needle)));
+    }
+
+    @Override
+    public List<Expense> findAllOrderByMomentDesc() {
+        return materialize(logStore.expensesBetweenDescending(tenant(), Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Override
+    public List<Expense> findByCurrencyAndMomentBetween(String currency, Instant startDate, Instant endDate) {
+        return materialize(logStore.expensesBetweenDescending(tenant(), ceilMicros(startDate), floorMicros(endDate)).stream()
+                .filter(row -> row.currency().equals(currency))
+                .toList());
+    }
+
+    @Override
+    public Stream<ExpenseAmount> streamAmountsByCurrencyAndMomentRange(String currency, Instant start, Instant end) {
+        return from(start, end).stream()
+                .filter(row -> row.currency().equals(currency))
+                .map(row -> new ExpenseAmount(instant(row.momentMicros()), row.type(), row.sum()));
+    }
+
+    @Override
+    public List<String> findDistinctCurrencies() {
+        return logStore.expenses(tenant()).stream().map(ExpenseRow::currency).distinct().toList();
+    }
+
+    @Override
+    public Stream<Object[]> streamCategoryAmounts() {
+        return logStore.expenses(tenant()).stream()
+                .map(row -> new Object[]{row.categoryId(), row.currency(), instant(row.momentMicros()), row.sum()});
+    }
+
+    @Override
+    public List<Expense> findLargestByCurrencyAndTypeAndMomentBetween(String currency, TransactionType type,
+                                                                     Instant startDate, Instant endDate, Pageable pageable) {
+        List<ExpenseRow> largest = between(startDate, endDate).stream()
+                .filter(row -> row.currency().equals(currency) && row.type() == type)
+                .sorted(Comparator.comparing(ExpenseRow::sum).reversed().thenComparing(BY_ID))
+                .toList();
+        return materialize(page(largest, pageable));
+    }
+
+    @Override
+    public List<CategoryTotal> sumByCategory(String currency, TransactionType type, Instant startDate, Instant endDate,
+                                             Pageable pageable) {
+        Map<Long, BigDecimal> sums = new HashMap<>();
+        for (ExpenseRow row : between(startDate, endDate)) {
+            if (row.currency().equals(currency) && row.type() == type) {
+                sums.merge(row.categoryId(), row.sum(), BigDecimal::add);
+            }
+        }
+        List<CategoryTotal> totals = sums.entrySet().stream()
+                .map(entry -> new CategoryTotal(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(CategoryTotal::getTotal).reversed().thenComparing(CategoryTotal::getCategoryId))
+                .toList();
+        return page(totals, pageable);
+    }
+
+    @Override
+    public List<Object[]> sumByCategoryAndCurrency(TransactionType type, Instant start, Instant end) {
+        Map<List<Object>, BigDecimal> sums = new LinkedHashMap<>();
+        for (ExpenseRow row : from(start, end)) {
+            if (row.type() == type) {
+                sums.merge(List.of(row.categoryId(), row.currency()), row.sum(), BigDecimal::add);
+            }
+        }
+        List<Object[]> result = new ArrayList<>();
+        sums.forEach((key, sum) -> result.add(new Object[]{key.get(0), key.get(1), sum}));
+        return result;
+    }
+
+    // Moments are stored with microsecond precision, like the expenses table
+
+    static Instant instant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    static long floorMicros(Instant instant) {
+        return Math.multiplyExact(instant.getEpochSecond(), 1_000_000L) + instant.getNano() / 1_000;
+    }
+
+    static long ceilMicros(Instant instant) {
+        return floorMicros(instant) + (instant.getNano() % 1_000 != 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.expensemanagement.logstore;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * The generic part of {@link JpaRepository} on top of the log store: CRUD,
+ * sorting and paging over the current tenant's rows. Query by example is not
+ * supported. Subclasses map rows to entities and back, and register an undo
+ * for each write so that it is reverted if the surrounding transaction rolls
+ * back, unless another transaction has written the row since.
+ */
+abstract class LogRepositorySupport<T> implements JpaRepository<T, Long> {
+
+    // Transaction resource holding the undos of the log writes made in it
+    private static final Object UNDO_KEY = new Object();
+
+    private final String entityName;
+
+    LogRepositorySupport(String entityName) {
+        this.entityName = entityName;
+    }
+
+    /**
+     * All rows of the current tenant, by id
+     */
+    protected abstract List<T> loadAll();
+
+    protected abstract List<T> loadAllById(Collection<Long> ids);
+
+    protected abstract Optional<T> load(Long id);
+
+    /**
+     * Insert or replace the entity; sets the generated id on it
+     */
+    protected abstract T store(T entity);
+
+    protected abstract boolean remove(Long id);
+
+    protected abstract Long idOf(T entity);
+
+    protected abstract long size();
+
+    @Override
+    public <S extends T> S save(S entity) {
+        store(entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(Long id) {
+        return load(id);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return load(id).isPresent();
+    }
+
+    @Override
+    public List<T> findAll() {
+        return loadAll();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<Long> ids) {
+        List<Long> list = new ArrayList<>();
+        ids.forEach(list::add);
+        return loadAllById(list);
+    }
+
+    @Override
+    public long count() {
+        return size();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        remove(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        if (idOf(entity) != null) {
+            remove(idOf(entity));
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::remove);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        loadAll().forEach(this::delete);
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        List<T> all = new ArrayList<>(loadAll());
+        all.sort(comparator(sort));
+        return all;
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        List<T> all = pageable.getSort().isSorted() ? findAll(pageable.getSort()) : loadAll();
+        return new PageImpl<>(page(all, pageable), pageable, all.size());
+    }
+
+    @Override
+    public void flush() {
+        // Every write is already in the log
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    @Deprecated
+    public void deleteInBatch(Iterable<T> entities) {
+        deleteAllInBatch(entities);
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Long> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    @Deprecated
+    public T getOne(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public T getById(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getReferenceById(Long id) {
+        return load(id).orElseThrow(() -> new EntityNotFoundException(entityName + " not found with id: " + id));
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        throw queryByExample();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw queryByExample();
+    }
+
+    private static UnsupportedOperationException queryByExample() {
+        return new UnsupportedOperationException("Query by example is not supported by the log store");
+    }
+
+    /**
+     * Revert a write that already reached the log if the current transaction rolls back.
+     * Undos run newest first; without a transaction the write simply stands. An undo returns
+     * false when the row no longer holds what this transaction wrote: a later write wins.
+     */
+    static void undoOnRollback(BooleanSupplier undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Deque<BooleanSupplier> undos = (Deque<BooleanSupplier>) TransactionSynchronizationManager.getResource(UNDO_KEY);
+        if (undos == null) {
+            Deque<BooleanSupplier> registered = new ArrayDeque<>();
+            TransactionSynchronizationManager.bindResource(UNDO_KEY, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(UNDO_KEY);
+                    if (status != STATUS_ROLLED_BACK) {
+                        return;
+                    }
+                    for (BooleanSupplier pending : registered) {
+                        try {
+                            if (!pending.getAsBoolean()) {
+                                System.err.println("Kept a log store write after rollback: another transaction has written the row since");
+                            }
+                        } catch (RuntimeException e) {
+                            System.err.println("Could not undo a log store write after rollback: " + e.getMessage());
+                        }
+                    }
+                }
+            });
+            undos = registered;
+        }
+        undos.push(undo);
+    }
+
+    /**
+     * The page's slice of an already ordered list; all of it when unpaged
+     */
+    static <E> List<E> page(List<E> ordered, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return ordered;
+        }
+        int from = (int) Math.min(pageable.getOffset(), ordered.size());
+        return ordered.subList(from, Math.min(from + pageable.getPageSize(), ordered.size()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Comparable> values = Comparator.nullsFirst(Comparator.naturalOrder());
+            Comparator<T> byProperty = Comparator.comparing(
+                    entity -> (Comparable) new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()), values);
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+}
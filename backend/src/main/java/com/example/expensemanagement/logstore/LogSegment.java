@@ -0,0 +1,176 @@
+package com.example.expensemanagement.logstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * One file of the log, written and read through a read-write memory mapping
+ * of its full, preallocated size.
+ * <pre>
+ * header: magic, version, sequence, first covered sequence, next expense id, next category id
+ * frames: payload length, CRC32 of the payload, payload; a zero length ends the segment
+ * </pre>
+ * A segment written by compaction replaces all segments from its first covered
+ * sequence up to its own; any of those still on disk after a crash are stale.
+ * Appends happen under the store's write lock; {@link #force} may run concurrently.
+ */
+final class LogSegment {
+
+    static final String EXTENSION = ".log";
+
+    private static final int MAGIC = 0x45584c47; // "EXLG"
+    private static final short VERSION = 1;
+    static final int HEADER_BYTES = 4 + 2 + 8 + 8 + 8 + 8;
+    static final int FRAME_HEADER_BYTES = 4 + 4;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long sequence;
+    private final long firstCoveredSequence;
+    private final long nextExpenseId;
+    private final long nextCategoryId;
+
+    private volatile int position = HEADER_BYTES;
+    private int forced = HEADER_BYTES;
+
+    private LogSegment(Path file, MappedByteBuffer buffer, long sequence, long firstCoveredSequence,
+                       long nextExpenseId, long nextCategoryId) {
+        this.file = file;
+        this.buffer = buffer;
+        this.sequence = sequence;
+        this.firstCoveredSequence = firstCoveredSequence;
+        this.nextExpenseId = nextExpenseId;
+        this.nextCategoryId = nextCategoryId;
+    }
+
+    // e.g. segment-0000000000000042.log
+    static Path fileName(Path directory, long sequence, String extension) {
+        return directory.resolve(String.format("segment-%016d%s", sequence, extension));
+    }
+
+    /**
+     * Create and map a new, empty segment of the given size
+     */
+    static LogSegment create(Path file, long sequence, long firstCoveredSequence, long nextExpenseId, long nextCategoryId,
+                             int size) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, MAGIC).putShort(4, VERSION).putLong(6, sequence).putLong(14, firstCoveredSequence)
+                .putLong(22, nextExpenseId).putLong(30, nextCategoryId);
+        buffer.force(0, HEADER_BYTES);
+        return new LogSegment(file, buffer, sequence, firstCoveredSequence, nextExpenseId, nextCategoryId);
+    }
+
+    /**
+     * Map an existing segment and read its header; frames are read by {@link #replay}
+     */
+    static LogSegment open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+            throw new IOException("Not a log segment (or unsupported version): " + file);
+        }
+        return new LogSegment(file, buffer, buffer.getLong(6), buffer.getLong(14), buffer.getLong(22), buffer.getLong(30));
+    }
+
+    /**
+     * Hand every intact frame's payload to the consumer, in order. A damaged frame
+     * is a torn write when this is the last segment (the rest is zeroed and
+     * appends continue there) and corruption otherwise.
+     */
+    void replay(Consumer<ByteBuffer> payloads, boolean last) throws IOException {
+        int at = HEADER_BYTES;
+        while (at + FRAME_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(at);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || at + FRAME_HEADER_BYTES + length > buffer.capacity()
+                    || crc(buffer.slice(at + FRAME_HEADER_BYTES, length)) != buffer.getInt(at + 4)) {
+                if (!last) {
+                    throw new IOException("Corrupt frame at offset " + at + " of log segment " + file);
+                }
+                System.out.println("Truncating torn write at offset " + at + " of log segment " + file);
+                buffer.put(at, new byte[buffer.capacity() - at]);
+                buffer.force(at, buffer.capacity() - at);
+                break;
+            }
+            payloads.accept(buffer.slice(at + FRAME_HEADER_BYTES, length).asReadOnlyBuffer());
+            at += FRAME_HEADER_BYTES + length;
+        }
+        position = at;
+        forced = at;
+    }
+
+    /**
+     * Copy a frame into the mapping; false when it does not fit
+     */
+    boolean append(byte[] payload) {
+        int at = position;
+        if (at + FRAME_HEADER_BYTES + payload.length > buffer.capacity()) {
+            return false;
+        }
+        // Payload and checksum first: the length makes the frame visible to replay
+        buffer.put(at + FRAME_HEADER_BYTES, payload);
+        buffer.putInt(at + 4, crc(ByteBuffer.wrap(payload)));
+        buffer.putInt(at, payload.length);
+        position = at + FRAME_HEADER_BYTES + payload.length;
+        return true;
+    }
+
+    /**
+     * Write the frames appended since the last force through to the device
+     */
+    synchronized void force() {
+        int end = position;
+        if (end > forced) {
+            buffer.force(forced, end - forced);
+            forced = end;
+        }
+    }
+
+    static int frameBytes(int payloadLength) {
+        return FRAME_HEADER_BYTES + payloadLength;
+    }
+
+    private static int crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getFirstCoveredSequence() {
+        return firstCoveredSequence;
+    }
+
+    long getNextExpenseId() {
+        return nextExpenseId;
+    }
+
+    long getNextCategoryId() {
+        return nextCategoryId;
+    }
+
+    int getPosition() {
+        return position;
+    }
+}
@@ -0,0 +1,761 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.entity.TransactionType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Embedded storage for expenses and categories: an append-only log of
+ * checksummed frames in memory-mapped segment files, replayed into in-memory
+ * tables at startup.
+ * <ul>
+ *   <li>Every tenant has a primary index (id -> row) per entity and a moment
+ *       index over its expenses; reads never touch the files.</li>
+ *   <li>Writers append under one lock and then wait for the flusher thread,
+ *       which forces everything appended so far with a single sync: writers
+ *       arriving during a sync share the next one (group commit). A write is
+ *       visible once appended and acknowledged once synced.</li>
+ *   <li>Compaction rolls to a new segment and rewrites the current rows into
+ *       one segment that replaces all older ones. Changes made meanwhile are
+ *       also in the newer segments, which replay after it.</li>
+ * </ul>
+ * Foreign keys (an expense's category, a category's parent) and the one
+ * expense per recurring occurrence rule are checked like the database does.
+ * Writes take effect immediately. The repositories undo them with
+ * compensating writes when a surrounding Spring transaction rolls back, but
+ * other readers see them in the meantime.
+ */
+public class LogStore implements AutoCloseable {
+
+    private record MomentKey(long micros, long id) implements Comparable<MomentKey> {
+        @Override
+        public int compareTo(MomentKey other) {
+            int byMoment = Long.compare(micros, other.micros);
+            return byMoment != 0 ? byMoment : Long.compare(id, other.id);
+        }
+    }
+
+    private record Occurrence(long recurringTransactionId, long momentMicros) {
+    }
+
+    // Rows of one tenant: the concurrent maps are read without locking, every change holds the write lock
+    private static final class Tables {
+        final ConcurrentMap<Long, ExpenseRow> expenses = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<MomentKey, ExpenseRow> byMoment = new ConcurrentSkipListMap<>();
+        final ConcurrentMap<Long, CategoryRow> categories = new ConcurrentHashMap<>();
+        final Map<Long, Integer> expensesPerCategory = new HashMap<>();
+        final Set<Occurrence> occurrences = new HashSet<>();
+    }
+
+    private static final Tables NO_ROWS = new Tables();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final long compactionThreshold;
+    private final double compactionGarbageRatio;
+
+    private final ConcurrentMap<String, Tables> tenants = new ConcurrentHashMap<>();
+
+    // Guarded by writeLock
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<LogSegment> sealed = new ArrayList<>();
+    private LogSegment active;
+    private long appended;
+    private long totalBytes;
+    private long liveBytes;
+    private long nextExpenseId = 1;
+    private long nextCategoryId = 1;
+
+    // Group commit: guarded by commitMonitor
+    private final Object commitMonitor = new Object();
+    private long requested;
+    private long durable;
+    private RuntimeException syncFailure;
+    private boolean running = true;
+    private final Thread flusher;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    public LogStore(Path directory, int segmentSize, boolean sync, long compactionThreshold, double compactionGarbageRatio)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        recover();
+        this.flusher = new Thread(this::flushLoop, "logstore-flusher");
+        this.flusher.setDaemon(true);
+        if (sync) {
+            this.flusher.start();
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<LogSegment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".compacting")) {
+                    // Left behind by a crash before the rename; the segments it was replacing are intact
+                    Files.delete(file);
+                } else if (name.startsWith("segment-") && name.endsWith(LogSegment.EXTENSION)) {
+                    segments.add(LogSegment.open(file));
+                }
+            }
+        }
+        // A compacted segment replaces everything before it; older files are left over from a crash
+        for (LogSegment segment : List.copyOf(segments)) {
+            if (segment.getFirstCoveredSequence() < segment.getSequence()) {
+                for (LogSegment stale : List.copyOf(segments)) {
+                    if (stale.getSequence() < segment.getSequence()) {
+                        Files.delete(stale.getFile());
+                        segments.remove(stale);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            LogSegment segment = segments.get(i);
+            nextExpenseId = Math.max(nextExpenseId, segment.getNextExpenseId());
+            nextCategoryId = Math.max(nextCategoryId, segment.getNextCategoryId());
+            segment.replay(payload -> LogCodec.decode(payload, apply), i == segments.size() - 1);
+            totalBytes += segment.getPosition() - LogSegment.HEADER_BYTES;
+        }
+        if (segments.isEmpty()) {
+            active = LogSegment.create(LogSegment.fileName(directory, 1, LogSegment.EXTENSION), 1, 1, 0, 0, segmentSize);
+        } else {
+            active = segments.remove(segments.size() - 1);
+            sealed.addAll(segments);
+        }
+        System.out.println("Log store opened at " + directory + ": " + (sealed.size() + 1) + " segments, "
+                + tenants.values().stream().mapToLong(tables -> tables.expenses.size()).sum() + " expenses");
+    }
+
+    // Writes
+
+    /**
+     * Insert a category (id null or unknown) or replace one of the tenant's categories
+     */
+    CategoryRow saveCategory(String tenantId, Long id, String name, TransactionType type, Long parentId) {
+        require(name, "NAME");
+        require(type, "TYPE");
+        CategoryRow row;
+        long position;
+        writeLock.lock();
+        try {
+            Tables tables = tables(tenantId);
+            if (parentId != null && !tables.categories.containsKey(parentId)) {
+                throw new DataIntegrityViolationException("Parent category " + parentId + " does not exist");
+            }
+            long rowId = id != null && tables.categories.containsKey(id) ? id : nextCategoryId;
+            byte[] payload = LogCodec.putCategory(new CategoryRow(rowId, tenantId, name, type, parentId, 0));
+            position = append(payload);
+            row = new CategoryRow(rowId, tenantId, name, type, parentId, LogSegment.frameBytes(payload.length));
+            applyPutCategory(row);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return row;
+    }
+
+    /**
+     * Delete a category of the tenant with its subcategories; returns the deleted rows,
+     * parents first, or none if it does not exist
+     */
+    List<CategoryRow> deleteCategory(String tenantId, long id) {
+        List<CategoryRow> deleted = new ArrayList<>();
+        long position;
+        writeLock.lock();
+        try {
+            Tables tables = tenants.getOrDefault(tenantId, NO_ROWS);
+            if (!tables.categories.containsKey(id)) {
+                return deleted;
+            }
+            List<Long> subtree = subtree(tables, id);
+            for (Long categoryId : subtree) {
+                if (tables.expensesPerCategory.getOrDefault(categoryId, 0) > 0) {
+                    throw new DataIntegrityViolationException("Category " + categoryId + " is still referenced by expenses");
+                }
+                deleted.add(tables.categories.get(categoryId));
+            }
+            position = append(LogCodec.deleteCategories(tenantId, subtree));
+            applyDeleteCategories(tenantId, subtree);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return deleted;
+    }
+
+    /**
+     * Undo a save of a category: put the previous version back, or delete the row when there was
+     * none. Only while the row still holds the version written, and a new row only while nothing
+     * references it; false when another write got there since and the row is left alone.
+     */
+    boolean undoSaveCategory(String tenantId, CategoryRow written, CategoryRow previous) {
+        long position;
+        writeLock.lock();
+        try {
+            Tables tables = tenants.getOrDefault(tenantId, NO_ROWS);
+            if (tables.categories.get(written.id()) != written) {
+                return false;
+            }
+            if (previous != null) {
+                position = appendPutCategory(previous);
+            } else {
+                if (subtree(tables, written.id()).size() > 1 || tables.expensesPerCategory.getOrDefault(written.id(), 0) > 0) {
+                    return false;
+                }
+                position = append(LogCodec.deleteCategories(tenantId, List.of(written.id())));
+                applyDeleteCategories(tenantId, List.of(written.id()));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    /**
+     * Undo a delete: put the categories back exactly as they were, ids included, parents first;
+     * false when one of them was written again since
+     */
+    boolean undoDeleteCategories(String tenantId, List<CategoryRow> deleted) {
+        long position = -1;
+        writeLock.lock();
+        try {
+            Tables tables = tenants.getOrDefault(tenantId, NO_ROWS);
+            for (CategoryRow row : deleted) {
+                if (tables.categories.containsKey(row.id())) {
+                    return false;
+                }
+            }
+            for (CategoryRow row : deleted) {
+                position = appendPutCategory(row);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (position >= 0) {
+            awaitDurable(position);
+        }
+        return true;
+    }
+
+    // Under the write lock: put a category back, id included
+    private long appendPutCategory(CategoryRow row) {
+        Tables tables = tables(row.tenantId());
+        if (row.parentId() != null && !tables.categories.containsKey(row.parentId())) {
+            throw new DataIntegrityViolationException("Parent category " + row.parentId() + " does not exist");
+        }
+        byte[] payload = LogCodec.putCategory(row.withFrameBytes(0));
+        long position = append(payload);
+        applyPutCategory(row.withFrameBytes(LogSegment.frameBytes(payload.length)));
+        return position;
+    }
+
+    /**
+     * Insert an expense (id null or unknown) or replace one of the tenant's expenses
+     */
+    ExpenseRow saveExpense(String tenantId, Long id, String description, BigDecimal sum, String currency,
+                                  long momentMicros, TransactionType type, Long categoryId, Long recurringTransactionId) {
+        require(sum, "SUM");
+        require(currency, "CURRENCY");
+        require(type, "TYPE");
+        require(categoryId, "CATEGORY_ID");
+        ExpenseRow row;
+        long position;
+        writeLock.lock();
+        try {
+            Tables tables = tables(tenantId);
+            if (!tables.categories.containsKey(categoryId)) {
+                throw new DataIntegrityViolationException("Category " + categoryId + " does not exist");
+            }
+            ExpenseRow previous = id != null ? tables.expenses.get(id) : null;
+            long rowId = previous != null ? id : nextExpenseId;
+            // Like the column, the template reference cannot change once set
+            Long template = previous != null ? previous.recurringTransactionId() : recurringTransactionId;
+            if (template != null) {
+                Occurrence occurrence = new Occurrence(template, momentMicros);
+                boolean own = previous != null && previous.momentMicros() == momentMicros;
+                if (!own && tables.occurrences.contains(occurrence)) {
+                    throw new DataIntegrityViolationException("Occurrence of recurring transaction " + template
+                            + " at " + momentMicros + " already exists");
+                }
+            }
+            byte[] payload = LogCodec.putExpense(new ExpenseRow(rowId, tenantId, description, sum, currency, momentMicros,
+                    type, categoryId, template, 0));
+            position = append(payload);
+            row = new ExpenseRow(rowId, tenantId, description, sum, currency, momentMicros, type, categoryId, template,
+                    LogSegment.frameBytes(payload.length));
+            applyPutExpense(row);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return row;
+    }
+
+    /**
+     * Delete an expense of the tenant; false if it does not exist
+     */
+    boolean deleteExpense(String tenantId, long id) {
+        long position;
+        writeLock.lock();
+        try {
+            if (!tenants.getOrDefault(tenantId, NO_ROWS).expenses.containsKey(id)) {
+                return false;
+            }
+            position = append(LogCodec.deleteExpense(tenantId, id));
+            applyDeleteExpense(tenantId, id);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    /**
+     * Undo a write of an expense: put the previous version back exactly as it was, id included,
+     * or delete the row when there was none. written is the version the write left, null for a
+     * delete. Only while the row still holds it; false when another write got there since and
+     * the row is left alone.
+     */
+    boolean undoExpense(String tenantId, long id, ExpenseRow written, ExpenseRow previous) {
+        long position;
+        writeLock.lock();
+        try {
+            if (tenants.getOrDefault(tenantId, NO_ROWS).expenses.get(id) != written) {
+                return false;
+            }
+            if (previous != null) {
+                if (!tables(tenantId).categories.containsKey(previous.categoryId())) {
+                    throw new DataIntegrityViolationException("Category " + previous.categoryId() + " does not exist");
+                }
+                byte[] payload = LogCodec.putExpense(previous.withFrameBytes(0));
+                position = append(payload);
+                applyPutExpense(previous.withFrameBytes(LogSegment.frameBytes(payload.length)));
+            } else if (written != null) {
+                position = append(LogCodec.deleteExpense(tenantId, id));
+                applyDeleteExpense(tenantId, id);
+            } else {
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    // Reads
+
+    Optional<ExpenseRow> findExpense(String tenantId, long id) {
+        return Optional.ofNullable(tenants.getOrDefault(tenantId, NO_ROWS).expenses.get(id));
+    }
+
+    Collection<ExpenseRow> expenses(String tenantId) {
+        return tenants.getOrDefault(tenantId, NO_ROWS).expenses.values();
+    }
+
+    /**
+     * Expenses of the tenant with fromMicros <= moment <= toMicros (or < toMicros), by moment, then id
+     */
+    Collection<ExpenseRow> expensesBetween(String tenantId, long fromMicros, long toMicros, boolean toInclusive) {
+        return tenants.getOrDefault(tenantId, NO_ROWS).byMoment.subMap(
+                new MomentKey(fromMicros, Long.MIN_VALUE), true,
+                new MomentKey(toMicros, toInclusive ? Long.MAX_VALUE : Long.MIN_VALUE), toInclusive).values();
+    }
+
+    /**
+     * Like {@link #expensesBetween}, newest first
+     */
+    Collection<ExpenseRow> expensesBetweenDescending(String tenantId, long fromMicros, long toMicros) {
+        return tenants.getOrDefault(tenantId, NO_ROWS).byMoment.subMap(
+                new MomentKey(fromMicros, Long.MIN_VALUE), true,
+                new MomentKey(toMicros, Long.MAX_VALUE), true).descendingMap().values();
+    }
+
+    /**
+     * Tenants that have written to the log
+     */
+    public Set<String> tenantIds() {
+        return Collections.unmodifiableSet(tenants.keySet());
+    }
+
+    Optional<CategoryRow> findCategory(String tenantId, long id) {
+        return Optional.ofNullable(tenants.getOrDefault(tenantId, NO_ROWS).categories.get(id));
+    }
+
+    Collection<CategoryRow> categories(String tenantId) {
+        return tenants.getOrDefault(tenantId, NO_ROWS).categories.values();
+    }
+
+    // Applies one change to the tables (under the write lock, or during recovery)
+    private final LogCodec.Replay apply = new LogCodec.Replay() {
+        @Override
+        public void putCategory(CategoryRow row) {
+            applyPutCategory(row);
+        }
+
+        @Override
+        public void deleteCategories(String tenantId, List<Long> ids) {
+            applyDeleteCategories(tenantId, ids);
+        }
+
+        @Override
+        public void putExpense(ExpenseRow row) {
+            applyPutExpense(row);
+        }
+
+        @Override
+        public void deleteExpense(String tenantId, long id) {
+            applyDeleteExpense(tenantId, id);
+        }
+    };
+
+    private void applyPutCategory(CategoryRow row) {
+        CategoryRow previous = tables(row.tenantId()).categories.put(row.id(), row);
+        liveBytes += row.frameBytes() - (previous != null ? previous.frameBytes() : 0);
+        nextCategoryId = Math.max(nextCategoryId, row.id() + 1);
+    }
+
+    private void applyDeleteCategories(String tenantId, List<Long> ids) {
+        Tables tables = tables(tenantId);
+        for (Long id : ids) {
+            CategoryRow previous = tables.categories.remove(id);
+            if (previous != null) {
+                liveBytes -= previous.frameBytes();
+            }
+        }
+    }
+
+    private void applyPutExpense(ExpenseRow row) {
+        Tables tables = tables(row.tenantId());
+        // Index the new version before dropping the old one, so a range read running meanwhile
+        // finds the row under one of its moments rather than under neither
+        tables.byMoment.put(new MomentKey(row.momentMicros(), row.id()), row);
+        tables.expensesPerCategory.merge(row.categoryId(), 1, Integer::sum);
+        if (row.recurringTransactionId() != null) {
+            tables.occurrences.add(new Occurrence(row.recurringTransactionId(), row.momentMicros()));
+        }
+        ExpenseRow previous = tables.expenses.put(row.id(), row);
+        if (previous != null) {
+            unindex(tables, previous, row);
+        }
+        liveBytes += row.frameBytes();
+        nextExpenseId = Math.max(nextExpenseId, row.id() + 1);
+    }
+
+    private void applyDeleteExpense(String tenantId, long id) {
+        Tables tables = tables(tenantId);
+        ExpenseRow previous = tables.expenses.remove(id);
+        if (previous != null) {
+            unindex(tables, previous, null);
+        }
+    }
+
+    // Drop a row's index entries, except those its replacement (if any) shares with it
+    private void unindex(Tables tables, ExpenseRow row, ExpenseRow replacement) {
+        boolean sameMoment = replacement != null && replacement.momentMicros() == row.momentMicros();
+        if (!sameMoment) {
+            tables.byMoment.remove(new MomentKey(row.momentMicros(), row.id()));
+        }
+        tables.expensesPerCategory.merge(row.categoryId(), -1, Integer::sum);
+        if (row.recurringTransactionId() != null
+                && !(sameMoment && row.recurringTransactionId().equals(replacement.recurringTransactionId()))) {
+            tables.occurrences.remove(new Occurrence(row.recurringTransactionId(), row.momentMicros()));
+        }
+        liveBytes -= row.frameBytes();
+    }
+
+    private Tables tables(String tenantId) {
+        return tenants.computeIfAbsent(tenantId, id -> new Tables());
+    }
+
+    private static List<Long> subtree(Tables tables, long id) {
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (CategoryRow category : tables.categories.values()) {
+            if (category.parentId() != null) {
+                children.computeIfAbsent(category.parentId(), parent -> new ArrayList<>()).add(category.id());
+            }
+        }
+        List<Long> subtree = new ArrayList<>();
+        Deque<Long> pending = new ArrayDeque<>(List.of(id));
+        while (!pending.isEmpty()) {
+            Long next = pending.pop();
+            if (!subtree.contains(next)) {
+                subtree.add(next);
+                pending.addAll(children.getOrDefault(next, List.of()));
+            }
+        }
+        return subtree;
+    }
+
+    private static void require(Object value, String column) {
+        if (value == null) {
+            throw new DataIntegrityViolationException("NULL not allowed for column " + column);
+        }
+    }
+
+    // Log
+
+    // Under the write lock: copy a frame into the active segment, rolling to a new one when full
+    private long append(byte[] payload) {
+        if (LogSegment.HEADER_BYTES + LogSegment.frameBytes(payload.length) > segmentSize) {
+            throw new IllegalArgumentException("Log record of " + payload.length + " bytes exceeds the segment size");
+        }
+        if (!active.append(payload)) {
+            roll();
+            active.append(payload);
+        }
+        int frameBytes = LogSegment.frameBytes(payload.length);
+        appended += frameBytes;
+        totalBytes += frameBytes;
+        appends.increment();
+        return appended;
+    }
+
+    // Under the write lock: seal the active segment (synced, so the flusher only ever syncs the active one)
+    private void roll() {
+        active.force();
+        sealed.add(active);
+        long sequence = active.getSequence() + 1;
+        try {
+            active = LogSegment.create(LogSegment.fileName(directory, sequence, LogSegment.EXTENSION),
+                    sequence, sequence, 0, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create log segment " + sequence, e);
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (!sync) {
+            return;
+        }
+        synchronized (commitMonitor) {
+            if (requested < position) {
+                requested = position;
+                commitMonitor.notifyAll();
+            }
+            while (durable < position) {
+                if (syncFailure != null) {
+                    throw new IllegalStateException("Log store sync failed", syncFailure);
+                }
+                try {
+                    commitMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the log sync", e);
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (commitMonitor) {
+                while (running && requested <= durable) {
+                    try {
+                        commitMonitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (requested <= durable) {
+                    return;
+                }
+            }
+            long target;
+            LogSegment segment;
+            writeLock.lock();
+            try {
+                target = appended;
+                segment = active;
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                synchronized (commitMonitor) {
+                    syncFailure = e;
+                    commitMonitor.notifyAll();
+                }
+                return;
+            }
+            syncs.increment();
+            synchronized (commitMonitor) {
+                durable = Math.max(durable, target);
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    // Compaction
+
+    /**
+     * Compact when the log holds more than the threshold and mostly garbage (old versions, deletions)
+     */
+    @Scheduled(fixedDelayString = "${expense.logstore.compaction-interval:PT10M}")
+    public void compactIfWasteful() {
+        long total;
+        long live;
+        writeLock.lock();
+        try {
+            total = totalBytes;
+            live = liveBytes;
+        } finally {
+            writeLock.unlock();
+        }
+        if (total >= compactionThreshold && total - live > total * compactionGarbageRatio) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the current rows into one segment replacing all sealed ones
+     */
+    public synchronized void compact() {
+        List<LogSegment> replaced;
+        long sealedBytes;
+        long expenseIdMark;
+        long categoryIdMark;
+        writeLock.lock();
+        try {
+            roll();
+            replaced = List.copyOf(sealed);
+            sealedBytes = totalBytes;
+            expenseIdMark = nextExpenseId;
+            categoryIdMark = nextCategoryId;
+        } finally {
+            writeLock.unlock();
+        }
+
+        List<byte[]> payloads = new ArrayList<>();
+        long size = LogSegment.HEADER_BYTES;
+        for (Tables tables : tenants.values()) {
+            for (CategoryRow category : tables.categories.values()) {
+                payloads.add(LogCodec.putCategory(category));
+            }
+            for (ExpenseRow expense : tables.expenses.values()) {
+                payloads.add(LogCodec.putExpense(expense));
+            }
+        }
+        for (byte[] payload : payloads) {
+            size += LogSegment.frameBytes(payload.length);
+        }
+        if (size > Integer.MAX_VALUE) {
+            System.out.println("Log store compaction skipped: " + size + " bytes of rows do not fit one segment");
+            return;
+        }
+
+        LogSegment last = replaced.get(replaced.size() - 1);
+        Path temporary = LogSegment.fileName(directory, last.getSequence(), ".compacting");
+        Path target = LogSegment.fileName(directory, last.getSequence(), LogSegment.EXTENSION);
+        LogSegment compacted;
+        try {
+            Files.deleteIfExists(temporary);
+            LogSegment written = LogSegment.create(temporary, last.getSequence(), replaced.get(0).getFirstCoveredSequence(),
+                    expenseIdMark, categoryIdMark, (int) size);
+            payloads.forEach(written::append);
+            written.force();
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (LogSegment segment : replaced) {
+                if (segment.getSequence() != last.getSequence()) {
+                    Files.deleteIfExists(segment.getFile());
+                }
+            }
+            compacted = LogSegment.open(target);
+            compacted.replay(payload -> { }, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log store compaction failed", e);
+        }
+
+        writeLock.lock();
+        try {
+            sealed.removeAll(replaced);
+            sealed.add(0, compacted);
+            totalBytes = totalBytes - sealedBytes + compacted.getPosition() - LogSegment.HEADER_BYTES;
+        } finally {
+            writeLock.unlock();
+        }
+        compactions.increment();
+        System.out.println("Log store compacted " + replaced.size() + " segments: " + sealedBytes + " -> "
+                + (compacted.getPosition() - LogSegment.HEADER_BYTES) + " bytes");
+    }
+
+    /**
+     * Stop the flusher after the pending syncs and write the active segment through
+     */
+    @Override
+    public void close() {
+        synchronized (commitMonitor) {
+            running = false;
+            commitMonitor.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        try {
+            active.force();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Counters since startup and the current size
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("appends", appends.sum());
+        stats.put("syncs", syncs.sum());
+        stats.put("compactions", compactions.sum());
+        writeLock.lock();
+        try {
+            stats.put("segments", (long) sealed.size() + 1);
+            stats.put("logBytes", totalBytes);
+            stats.put("liveBytes", liveBytes);
+        } finally {
+            writeLock.unlock();
+        }
+        stats.put("expenses", tenants.values().stream().mapToLong(tables -> tables.expenses.size()).sum());
+        stats.put("categories", tenants.values().stream().mapToLong(tables -> tables.categories.size()).sum());
+        return stats;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.expensemanagement.logstore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * With the logstore profile, expenses and categories live in the embedded log
+ * store: its repositories take precedence over the JPA ones wherever
+ * ExpenseRepository, CategoryRepository or ExpenseProjectionRepository is
+ * injected. Features that work on the expenses table directly (sharding,
+ * archiving, synthetic data, snapshots) can't be combined with it and stop
+ * the startup; budgets and recurring transactions, whose tables reference
+ * categories by foreign key, are left out.
+ */
+@Configuration
+@Profile("logstore")
+public class LogStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public LogStore logStore(@Value("${expense.logstore.directory:./data/logstore}") String directory,
+                             @Value("${expense.logstore.segment-size:64MB}") DataSize segmentSize,
+                             @Value("${expense.logstore.sync:true}") boolean sync,
+                             @Value("${expense.logstore.compaction-threshold:64MB}") DataSize compactionThreshold,
+                             @Value("${expense.logstore.compaction-garbage-ratio:0.5}") double compactionGarbageRatio,
+                             Environment environment)
+            throws IOException {
+        requireCompatible(environment);
+        return new LogStore(Path.of(directory), Math.toIntExact(segmentSize.toBytes()), sync,
+                compactionThreshold.toBytes(), compactionGarbageRatio);
+    }
+
+    private static void requireCompatible(Environment environment) {
+        List<String> conflicts = new ArrayList<>();
+        for (String flag : List.of("expense.sharding.enabled", "expense.archive.enabled",
+                "expense.snapshot.restore-on-startup", "expense.snapshot.export-on-shutdown")) {
+            if (environment.getProperty(flag, Boolean.class, false)) {
+                conflicts.add(flag + "=true");
+            }
+        }
+        if (environment.acceptsProfiles(Profiles.of("synthetic-data"))) {
+            conflicts.add("profile synthetic-data");
+        }
+        if (!conflicts.isEmpty()) {
+            throw new IllegalStateException("The logstore profile keeps expenses outside the database and can't be combined with "
+                    + String.join(", ", conflicts));
+        }
+    }
+
+    @Bean
+    @Primary
+    public LogCategoryRepository logCategoryRepository(LogStore logStore) {
+        return new LogCategoryRepository(logStore);
+    }
+
+    @Bean
+    @Primary
+    public LogExpenseRepository logExpenseRepository(LogStore logStore, LogCategoryRepository logCategoryRepository) {
+        return new LogExpenseRepository(logStore, logCategoryRepository);
+    }
+
+    @Bean
+    @Primary
+    public LogExpenseProjectionRepository logExpenseProjectionRepository(LogExpenseRepository logExpenseRepository) {
+        return new LogExpenseProjectionRepository(logExpenseRepository);
+    }
+}
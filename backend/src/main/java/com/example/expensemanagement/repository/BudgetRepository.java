@@ -0,0 +1,26 @@
+package com.example.expensemanagement.repository;
+
+import com.example.expensemanagement.entity.Budget;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BudgetRepository extends JpaRepository<Budget, Long> {
+
+    /**
+     * Find budget by ID within the current tenant
+     * (JPQL gets Hibernate's tenant filter, EntityManager#find does not)
+     */
+    @Query("SELECT b FROM Budget b WHERE b.id = :id")
+    Optional<Budget> findById(@Param("id") Long id);
+
+    /**
+     * Find all budgets set for a category
+     */
+    List<Budget> findByCategoryId(Long categoryId);
+}
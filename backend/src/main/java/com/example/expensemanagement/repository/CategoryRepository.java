@@ -7,11 +7,26 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     
+    /**
+     * Find category by ID within the current tenant
+     * (JPQL gets Hibernate's tenant filter, EntityManager#find does not)
+     */
+    @Query("SELECT c FROM Category c WHERE c.id = :id")
+    Optional<Category> findById(@Param("id") Long id);
+    
+    /**
+     * Find categories of the current tenant by a list of ids, in no particular order
+     */
+    @Query("SELECT c FROM Category c WHERE c.id IN :ids")
+    List<Category> findByIdIn(@Param("ids") Collection<Long> ids);
+    
     /**
      * Find all categories by transaction type
      */
@@ -0,0 +1,77 @@
+package com.example.expensemanagement.repository;
+
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link ExpenseRepository} list finders as plain SQL that selects only the
+ * requested columns; the categories table is joined only when a category field
+ * other than its id is asked for. Rows are filtered by the current tenant
+ * explicitly, since they bypass Hibernate's tenant filter.
+ */
+@Repository
+public class ExpenseProjectionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ExpenseProjectionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public ExpenseProjection findAllOrderByMomentDesc(List<ExpenseField> fields) {
+        return query(fields, "", "ORDER BY e.moment DESC");
+    }
+
+    public ExpenseProjection findByCurrency(List<ExpenseField> fields, String currency) {
+        return query(fields, "AND e.currency = ?", "", currency);
+    }
+
+    public ExpenseProjection findByMomentBetween(List<ExpenseField> fields, Instant startDate, Instant endDate) {
+        return query(fields, "AND e.moment BETWEEN ? AND ?", "", utc(startDate), utc(endDate));
+    }
+
+    public ExpenseProjection findByDescriptionContainingIgnoreCase(List<ExpenseField> fields, String description) {
+        return query(fields, "AND UPPER(e.description) LIKE UPPER(?) ESCAPE '\\'", "", "%" + escapeLike(description) + "%");
+    }
+
+    private ExpenseProjection query(List<ExpenseField> fields, String condition, String order, Object... arguments) {
+        String columns = fields.stream().map(ExpenseField::getColumn).collect(Collectors.joining(", "));
+        boolean joinCategory = fields.stream().anyMatch(ExpenseField::needsCategory);
+        String sql = "SELECT " + columns + " FROM expenses e"
+                + (joinCategory ? " JOIN categories c ON c.id = e.category_id" : "")
+                + " WHERE e.tenant_id = ? " + condition + " " + order;
+
+        Object[] parameters = new Object[arguments.length + 1];
+        parameters[0] = TenantContext.getTenantId();
+        System.arraycopy(arguments, 0, parameters, 1, arguments.length);
+
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(sql, rs -> {
+            Object[] row = new Object[fields.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = fields.get(i).read(rs, i + 1);
+            }
+            rows.add(row);
+        }, parameters);
+        return new ExpenseProjection(fields, rows);
+    }
+
+    private static Object utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
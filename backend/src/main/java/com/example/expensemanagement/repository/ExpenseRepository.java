@@ -1,23 +1,56 @@
 package com.example.expensemanagement.repository;
 
+import com.example.expensemanagement.dto.CategoryTotal;
+import com.example.expensemanagement.dto.ExpenseAmount;
 import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     
+    // Find expense by id within the current tenant (JPQL gets Hibernate's tenant filter, EntityManager#find does not)
+    @Query("SELECT e FROM Expense e WHERE e.id = :id")
+    Optional<Expense> findById(@Param("id") Long id);
+    
+    // Find expenses of the current tenant by a list of ids, in no particular order
+    @Query("SELECT e FROM Expense e WHERE e.id IN :ids")
+    List<Expense> findByIdIn(@Param("ids") Collection<Long> ids);
+    
     // Find expenses by currency
     List<Expense> findByCurrency(String currency);
     
     // Find expenses between two dates
     List<Expense> findByMomentBetween(Instant startDate, Instant endDate);
     
+    // Newest expenses between two dates; the Pageable supplies the LIMIT
+    @Query("SELECT e FROM Expense e WHERE e.moment BETWEEN :startDate AND :endDate ORDER BY e.moment DESC, e.id DESC")
+    List<Expense> findNewestByMomentBetween(@Param("startDate") Instant startDate,
+                                            @Param("endDate") Instant endDate,
+                                            Pageable pageable);
+    
+    // Count expenses between two dates
+    long countByMomentBetween(Instant startDate, Instant endDate);
+    
+    // Totals per type and currency between two dates, as rows of {type, currency, sum}
+    @Query("SELECT e.type, e.currency, SUM(e.sum) FROM Expense e WHERE e.moment BETWEEN :startDate AND :endDate " +
+           "GROUP BY e.type, e.currency")
+    List<Object[]> sumByTypeAndCurrency(@Param("startDate") Instant startDate, @Param("endDate") Instant endDate);
+    
     // Find expenses by description containing text (case insensitive)
     List<Expense> findByDescriptionContainingIgnoreCase(String description);
     
@@ -30,4 +63,48 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     List<Expense> findByCurrencyAndMomentBetween(@Param("currency") String currency, 
                                                 @Param("startDate") Instant startDate, 
                                                 @Param("endDate") Instant endDate);
+
+    // Stream (moment, type, sum) in moment order for single-pass aggregation over [start, end)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.expensemanagement.dto.ExpenseAmount(e.moment, e.type, e.sum) FROM Expense e " +
+           "WHERE e.currency = :currency AND e.moment >= :start AND e.moment < :end ORDER BY e.moment ASC")
+    Stream<ExpenseAmount> streamAmountsByCurrencyAndMomentRange(@Param("currency") String currency,
+                                                               @Param("start") Instant start,
+                                                               @Param("end") Instant end);
+
+    // Currencies the current tenant has expenses in
+    @Query("SELECT DISTINCT e.currency FROM Expense e")
+    List<String> findDistinctCurrencies();
+
+    // Stream every expense as rows of {categoryId, currency, moment, sum}, for rebuilding derived state
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT e.category.id, e.currency, e.moment, e.sum FROM Expense e")
+    Stream<Object[]> streamCategoryAmounts();
+
+    // Largest transactions of one currency and type in a date range; the Pageable supplies the LIMIT.
+    // No index orders by sum after a range on moment, so the rows in range are sorted
+    @Query("SELECT e FROM Expense e WHERE e.currency = :currency AND e.type = :type " +
+           "AND e.moment BETWEEN :startDate AND :endDate ORDER BY e.sum DESC, e.id ASC")
+    List<Expense> findLargestByCurrencyAndTypeAndMomentBetween(@Param("currency") String currency,
+                                                              @Param("type") TransactionType type,
+                                                              @Param("startDate") Instant startDate,
+                                                              @Param("endDate") Instant endDate,
+                                                              Pageable pageable);
+
+    // Totals per category, largest first; the Pageable supplies the LIMIT (or none when unpaged)
+    @Query("SELECT new com.example.expensemanagement.dto.CategoryTotal(e.category.id, SUM(e.sum)) FROM Expense e " +
+           "WHERE e.currency = :currency AND e.type = :type AND e.moment BETWEEN :startDate AND :endDate " +
+           "GROUP BY e.category.id ORDER BY SUM(e.sum) DESC, e.category.id ASC")
+    List<CategoryTotal> sumByCategory(@Param("currency") String currency,
+                                      @Param("type") TransactionType type,
+                                      @Param("startDate") Instant startDate,
+                                      @Param("endDate") Instant endDate,
+                                      Pageable pageable);
+
+    // Totals per category and currency in [start, end), as rows of {categoryId, currency, sum}
+    @Query("SELECT e.category.id, e.currency, SUM(e.sum) FROM Expense e " +
+           "WHERE e.type = :type AND e.moment >= :start AND e.moment < :end GROUP BY e.category.id, e.currency")
+    List<Object[]> sumByCategoryAndCurrency(@Param("type") TransactionType type,
+                                            @Param("start") Instant start,
+                                            @Param("end") Instant end);
 }
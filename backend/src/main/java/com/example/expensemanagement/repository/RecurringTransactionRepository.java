@@ -0,0 +1,20 @@
+package com.example.expensemanagement.repository;
+
+import com.example.expensemanagement.entity.RecurringTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RecurringTransactionRepository extends JpaRepository<RecurringTransaction, Long> {
+
+    /**
+     * Find recurring transaction by ID within the current tenant
+     * (JPQL gets Hibernate's tenant filter, EntityManager#find does not)
+     */
+    @Query("SELECT r FROM RecurringTransaction r WHERE r.id = :id")
+    Optional<RecurringTransaction> findById(@Param("id") Long id);
+}
@@ -0,0 +1,329 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.dto.ExpenseAmount;
+import com.example.expensemanagement.dto.Granularity;
+import com.example.expensemanagement.dto.RunningBalance;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Running balance per currency from stored checkpoints in the
+ * balance_checkpoints table: each holds income minus expenses over every
+ * transaction before its period start.
+ * <p>
+ * Every expense write shifts the checkpoints after its moment in the writing
+ * transaction with one atomic UPDATE, so a backdated insert, edit or delete
+ * keeps all of them correct. That UPDATE locks every row it shifts until
+ * commit: all backdated writes of a (tenant, currency) lock its latest
+ * checkpoint and so serialize on it, while writes after the latest checkpoint
+ * shift nothing. A write also locks one of expense.balance.lock-stripes rows of
+ * its (tenant, currency) in balance_locks, picked by the id of the writing
+ * thread, so two such writes wait for each other only when their threads map
+ * to the same stripe. Checkpoint creation locks all of them, so it never
+ * computes a checkpoint while a write it can't see yet is in flight.
+ * A periodic job adds a checkpoint per period (month by default) up to now. A
+ * balance query reads the latest checkpoint at or before the instant and scans
+ * only the transactions after it: O(log checkpoints + transactions in one
+ * period). Scans and checkpoint creation merge in archived expenses when the
+ * range reaches into an archive segment.
+ */
+@Service
+public class BalanceService {
+
+    static final Instant GENESIS = Instant.parse("0001-01-01T00:00:00Z");
+
+    private static final String FIND_GENESIS =
+            "SELECT balance FROM balance_checkpoints WHERE tenant_id = ? AND currency = ? AND period_start = ?";
+
+    private static final String LOCK_STRIPE =
+            "SELECT stripe FROM balance_locks WHERE tenant_id = ? AND currency = ? AND stripe = ? FOR UPDATE";
+
+    private static final String INSERT_STRIPE = "INSERT INTO balance_locks (tenant_id, currency, stripe) VALUES (?, ?, ?)";
+
+    private static final String INSERT =
+            "INSERT INTO balance_checkpoints (tenant_id, currency, period_start, balance) VALUES (?, ?, ?, ?)";
+
+    private static final String SHIFT_LATER =
+            "UPDATE balance_checkpoints SET balance = balance + ? WHERE tenant_id = ? AND currency = ? AND period_start > ?";
+
+    private static final String FLOOR =
+            "SELECT period_start, balance FROM balance_checkpoints WHERE tenant_id = ? AND currency = ? AND period_start <= ? "
+            + "ORDER BY period_start DESC LIMIT 1";
+
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseArchive expenseArchive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRegistry shardRegistry;
+    private final Granularity granularity;
+    private final ZoneId zone;
+    private final int lockStripes;
+
+    @Autowired
+    public BalanceService(ExpenseRepository expenseRepository,
+                          ExpenseArchive expenseArchive,
+                          JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          ShardRegistry shardRegistry,
+                          @Value("${expense.balance.checkpoint-granularity:MONTH}") Granularity granularity,
+                          @Value("${expense.balance.zone:UTC}") String zone,
+                          @Value("${expense.balance.lock-stripes:16}") int lockStripes) {
+        this.expenseRepository = expenseRepository;
+        this.expenseArchive = expenseArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRegistry = shardRegistry;
+        this.granularity = granularity;
+        this.zone = ZoneId.of(zone);
+        this.lockStripes = lockStripes;
+    }
+
+    /**
+     * What one expense adds to the balance of its currency from its moment on
+     */
+    public record Change(String tenantId, String currency, Instant moment, BigDecimal amount) {
+    }
+
+    /**
+     * Capture what an expense contributes; null when it can't be placed (no sum, currency, type or moment).
+     * Capture before changing the expense, to remove the old contribution afterwards.
+     */
+    public Change changeOf(Expense expense) {
+        if (expense.getSum() == null || expense.getCurrency() == null || expense.getType() == null
+                || expense.getMoment() == null) {
+            return null;
+        }
+        String tenantId = expense.getTenantId() != null ? expense.getTenantId() : TenantContext.getTenantId();
+        return new Change(tenantId, expense.getCurrency(), expense.getMoment(), signed(expense.getType(), expense.getSum()));
+    }
+
+    /**
+     * Replace the removed contribution with the added one. Must run inside the writing
+     * transaction, on the expense's shard.
+     */
+    public void replace(Change removed, Change added) {
+        List<Change> changes = new ArrayList<>(2);
+        if (removed != null) {
+            changes.add(new Change(removed.tenantId(), removed.currency(), removed.moment(), removed.amount().negate()));
+        }
+        if (added != null) {
+            changes.add(added);
+        }
+        // Lock stripes in a fixed order, so two edits moving between currencies can't deadlock
+        changes.sort(Comparator.comparing(Change::tenantId).thenComparing(Change::currency));
+        int stripe = stripeOf(Thread.currentThread(), lockStripes);
+        for (Change change : changes) {
+            ensureGenesis(change.tenantId(), change.currency());
+            lockStripe(change.tenantId(), change.currency(), stripe);
+            jdbcTemplate.update(SHIFT_LATER, change.amount(), change.tenantId(), change.currency(), utc(change.moment()));
+        }
+    }
+
+    // One transaction runs on one thread, so its writes to a currency always take the same stripe
+    static int stripeOf(Thread thread, int stripes) {
+        return (int) Math.floorMod(thread.threadId(), (long) stripes);
+    }
+
+    // The genesis checkpoint records that the tenant has written the currency
+    private void ensureGenesis(String tenantId, String currency) {
+        if (jdbcTemplate.queryForList(FIND_GENESIS, BigDecimal.class, tenantId, currency, utc(GENESIS)).isEmpty()) {
+            // Another transaction may create it meanwhile
+            JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT, tenantId, currency, utc(GENESIS), BigDecimal.ZERO);
+        }
+    }
+
+    private void lockStripe(String tenantId, String currency, int stripe) {
+        if (jdbcTemplate.queryForList(LOCK_STRIPE, Integer.class, tenantId, currency, stripe).isEmpty()) {
+            // When another transaction created it meanwhile, wait for that one
+            JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT_STRIPE, tenantId, currency, stripe);
+            jdbcTemplate.queryForList(LOCK_STRIPE, Integer.class, tenantId, currency, stripe);
+        }
+    }
+
+    /**
+     * Amounts of the tenant's transactions in a currency with start <= moment < end, in moment order.
+     * Archived ones are merged in by id, as in {@code ExpenseService.findByDateRange}.
+     */
+    private Stream<ExpenseAmount> amounts(String tenantId, String currency, Instant start, Instant end) {
+        if (expenseArchive.findSegments(tenantId, start, end).isEmpty()) {
+            return expenseRepository.streamAmountsByCurrencyAndMomentRange(currency, start, end);
+        }
+        Map<Long, Expense> merged = new HashMap<>();
+        for (Expense expense : expenseArchive.findByMomentBetween(tenantId, start, end)) {
+            if (currency.equals(expense.getCurrency()) && expense.getMoment().isBefore(end)) {
+                merged.putIfAbsent(expense.getId(), expense);
+            }
+        }
+        for (Expense expense : expenseRepository.findByCurrencyAndMomentBetween(currency, start, end)) {
+            if (expense.getMoment().isBefore(end)) {
+                merged.put(expense.getId(), expense);
+            }
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparing(Expense::getMoment))
+                .map(expense -> new ExpenseAmount(expense.getMoment(), expense.getType(), expense.getSum()));
+    }
+
+    /**
+     * Balance of the current tenant in a currency over every transaction at or before the instant
+     */
+    @Transactional(readOnly = true)
+    public RunningBalance balanceAt(String currency, Instant at) {
+        String tenantId = TenantContext.getTenantId();
+        Instant checkpoint = GENESIS;
+        BigDecimal balance = BigDecimal.ZERO;
+        List<Object[]> floor = jdbcTemplate.query(FLOOR, (rs, rowNum) -> new Object[]{
+                rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getBigDecimal(2)}, tenantId, currency, utc(at));
+        if (!floor.isEmpty()) {
+            checkpoint = (Instant) floor.get(0)[0];
+            balance = (BigDecimal) floor.get(0)[1];
+        }
+        // Moments are stored in microseconds: the scan ends just after the instant
+        Instant end = at.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+        long scanned = 0;
+        try (Stream<ExpenseAmount> amounts = amounts(tenantId, currency, checkpoint, end)) {
+            for (ExpenseAmount amount : (Iterable<ExpenseAmount>) amounts::iterator) {
+                balance = balance.add(signed(amount.getType(), amount.getSum()));
+                scanned++;
+            }
+        }
+        return new RunningBalance(currency, at, balance, checkpoint, scanned);
+    }
+
+    /**
+     * Balances of the current tenant in every currency it has written, at the instant
+     */
+    @Transactional(readOnly = true)
+    public List<RunningBalance> balancesAt(Instant at) {
+        List<RunningBalance> balances = new ArrayList<>();
+        for (String currency : currencies(TenantContext.getTenantId())) {
+            balances.add(balanceAt(currency, at));
+        }
+        return balances;
+    }
+
+    /**
+     * Add the missing checkpoints up to now for every tenant and currency
+     */
+    @Scheduled(fixedDelayString = "${expense.balance.checkpoint-interval:PT1H}",
+               initialDelayString = "${expense.balance.checkpoint-interval:PT1H}")
+    public void createCheckpoints() {
+        Instant now = Instant.now();
+        int created = 0;
+        for (String shard : shardRegistry.getShardNames()) {
+            for (String tenantId : shardRegistry.tenantsOn(shard)) {
+                created += TenantContext.callAs(tenantId, () -> createCheckpoints(tenantId, now));
+            }
+        }
+        if (created > 0) {
+            System.out.println("Created " + created + " balance checkpoints");
+        }
+    }
+
+    /**
+     * Add the missing checkpoints of one tenant up to the instant, each currency in its own
+     * transaction; returns the number created. Must run as that tenant.
+     */
+    public int createCheckpoints(String tenantId, Instant now) {
+        int created = 0;
+        for (String currency : currencies(tenantId)) {
+            Integer count = transactionTemplate.execute(status -> createCheckpoints(tenantId, currency, now));
+            created += count != null ? count : 0;
+        }
+        return created;
+    }
+
+    /**
+     * Drop the checkpoints of one tenant and compute them again from its transactions, for
+     * transactions kept apart from the checkpoints (the log store), which a crash can leave
+     * ahead of them. Nothing may write the tenant's transactions meanwhile. Must run as that tenant.
+     */
+    public int rebuildCheckpoints(String tenantId, Instant now) {
+        transactionTemplate.executeWithoutResult(
+                status -> jdbcTemplate.update("DELETE FROM balance_checkpoints WHERE tenant_id = ?", tenantId));
+        return createCheckpoints(tenantId, now);
+    }
+
+    private int createCheckpoints(String tenantId, String currency, Instant now) {
+        // Wait for the writes in flight, and keep new ones out until the checkpoints are in
+        ensureGenesis(tenantId, currency);
+        for (int stripe = 0; stripe < lockStripes; stripe++) {
+            lockStripe(tenantId, currency, stripe);
+        }
+        Object[] latest = jdbcTemplate.queryForObject(FLOOR, (rs, rowNum) -> new Object[]{
+                rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getBigDecimal(2)}, tenantId, currency, utc(now));
+        Instant previous = (Instant) latest[0];
+        BigDecimal balance = (BigDecimal) latest[1];
+
+        LocalDate boundary;
+        if (previous.equals(GENESIS)) {
+            // The first checkpoint is the period after the first transaction
+            Instant first;
+            try (Stream<ExpenseAmount> amounts = amounts(tenantId, currency, GENESIS, now)) {
+                first = amounts.findFirst().map(ExpenseAmount::getMoment).orElse(null);
+            }
+            if (first == null) {
+                return 0;
+            }
+            boundary = granularity.next(granularity.periodStart(first.atZone(zone).toLocalDate()));
+        } else {
+            boundary = granularity.next(granularity.periodStart(previous.atZone(zone).toLocalDate()));
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Instant start = boundary.atStartOfDay(zone).toInstant(); !start.isAfter(now);
+             boundary = granularity.next(boundary), start = boundary.atStartOfDay(zone).toInstant()) {
+            try (Stream<ExpenseAmount> amounts = amounts(tenantId, currency, previous, start)) {
+                balance = amounts.map(amount -> signed(amount.getType(), amount.getSum())).reduce(balance, BigDecimal::add);
+            }
+            rows.add(new Object[]{tenantId, currency, utc(start), balance});
+            previous = start;
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+        return rows.size();
+    }
+
+    // Currencies with a genesis checkpoint (written since) or with expenses; must run as the tenant
+    private List<String> currencies(String tenantId) {
+        TreeSet<String> currencies = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT currency FROM balance_checkpoints WHERE tenant_id = ? AND period_start = ?",
+                String.class, tenantId, utc(GENESIS)));
+        currencies.addAll(expenseRepository.findDistinctCurrencies());
+        return new ArrayList<>(currencies);
+    }
+
+    private static BigDecimal signed(TransactionType type, BigDecimal sum) {
+        return type == TransactionType.INCOME ? sum : sum.negate();
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Loads entities by id in chunked IN queries and remembers every answer (found
+ * or missing) for the rest of the HTTP request, so an id requested twice, in one
+ * batch or across several batches of the same request, is queried once.
+ * Outside a request each call gets a fresh loader.
+ */
+public final class BatchLoader {
+
+    static final int CHUNK_SIZE = 100;
+
+    private static final String REQUEST_ATTRIBUTE = BatchLoader.class.getName();
+
+    // (entity kind, tenant) -> id -> entity, or empty when the id does not exist
+    private final Map<String, Map<Long, Optional<Object>>> loaded = new HashMap<>();
+
+    private BatchLoader() {
+    }
+
+    /**
+     * The loader of the current request, created on first use
+     */
+    public static BatchLoader current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new BatchLoader();
+        }
+        BatchLoader loader = (BatchLoader) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (loader == null) {
+            loader = new BatchLoader();
+            attributes.setAttribute(REQUEST_ATTRIBUTE, loader, RequestAttributes.SCOPE_REQUEST);
+        }
+        return loader;
+    }
+
+    /**
+     * Entities for the ids in the order first requested, plus the ids that were not found
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> BatchResult<T> load(String kind, List<Long> ids, Function<List<Long>, List<T>> query,
+                                                Function<T, Long> idOf) {
+        Map<Long, Optional<Object>> known = loaded.computeIfAbsent(kind + "@" + TenantContext.getTenantId(), key -> new HashMap<>());
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+
+        List<Long> unknown = requested.stream().filter(id -> !known.containsKey(id)).toList();
+        for (int from = 0; from < unknown.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = unknown.subList(from, Math.min(from + CHUNK_SIZE, unknown.size()));
+            for (Long id : chunk) {
+                known.put(id, Optional.empty());
+            }
+            for (T entity : query.apply(chunk)) {
+                known.put(idOf.apply(entity), Optional.of(entity));
+            }
+        }
+
+        List<T> items = new ArrayList<>(requested.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            Optional<Object> entity = known.get(id);
+            if (entity.isPresent()) {
+                items.add((T) entity.get());
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BatchResult<>(items, missing);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.BudgetStatus;
+import com.example.expensemanagement.entity.Budget;
+import com.example.expensemanagement.repository.BudgetRepository;
+import com.example.expensemanagement.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Profile("!logstore")
+@Transactional
+public class BudgetService {
+
+    private final BudgetRepository budgetRepository;
+    private final CategoryRepository categoryRepository;
+    private final BudgetSpendTracker budgetSpendTracker;
+
+    @Autowired
+    public BudgetService(BudgetRepository budgetRepository, CategoryRepository categoryRepository,
+                         BudgetSpendTracker budgetSpendTracker) {
+        this.budgetRepository = budgetRepository;
+        this.categoryRepository = categoryRepository;
+        this.budgetSpendTracker = budgetSpendTracker;
+    }
+
+    /**
+     * Save a new budget
+     */
+    public Budget saveBudget(Budget budget) {
+        validate(budget);
+        budget.setId(null);
+        return budgetRepository.save(budget);
+    }
+
+    /**
+     * Find all budgets
+     */
+    @Transactional(readOnly = true)
+    public List<Budget> findAllBudgets() {
+        return budgetRepository.findAll();
+    }
+
+    /**
+     * Find budget by ID
+     */
+    @Transactional(readOnly = true)
+    public Optional<Budget> findById(Long id) {
+        return budgetRepository.findById(id);
+    }
+
+    /**
+     * Update the amount or currency of an existing budget
+     */
+    public Budget updateBudget(Long id, Budget budgetDetails) {
+        Budget budget = budgetRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Budget not found with id: " + id));
+
+        if (budgetDetails.getAmount() != null) {
+            validateAmount(budgetDetails.getAmount());
+            budget.setAmount(budgetDetails.getAmount());
+        }
+        if (budgetDetails.getCurrency() != null && !budgetDetails.getCurrency().trim().isEmpty()) {
+            budget.setCurrency(budgetDetails.getCurrency().trim());
+        }
+
+        return budgetRepository.save(budget);
+    }
+
+    /**
+     * Delete a budget
+     */
+    public void deleteBudget(Long id) {
+        if (!budgetRepository.existsById(id)) {
+            throw new RuntimeException("Budget not found with id: " + id);
+        }
+        budgetRepository.deleteById(id);
+    }
+
+    /**
+     * Spend against a budget in the current month, read from the in-memory counters
+     */
+    @Transactional(readOnly = true)
+    public Optional<BudgetStatus> findStatus(Long id) {
+        return budgetRepository.findById(id).map(this::toStatus);
+    }
+
+    /**
+     * Spend against all budgets in the current month
+     */
+    @Transactional(readOnly = true)
+    public List<BudgetStatus> findAllStatuses() {
+        return budgetRepository.findAll().stream().map(this::toStatus).toList();
+    }
+
+    private BudgetStatus toStatus(Budget budget) {
+        Long categoryId = budget.getCategory().getId();
+        BigDecimal spent = budgetSpendTracker.spent(categoryId, budget.getCurrency());
+        BigDecimal percentUsed = spent.multiply(BigDecimal.valueOf(100))
+                .divide(budget.getAmount(), 1, RoundingMode.HALF_UP);
+        return new BudgetStatus(budget.getId(), categoryId, budget.getCurrency(), budgetSpendTracker.currentPeriod(),
+                budget.getAmount(), spent, percentUsed);
+    }
+
+    private void validate(Budget budget) {
+        if (budget.getCategory() == null || budget.getCategory().getId() == null
+                || !categoryRepository.existsById(budget.getCategory().getId())) {
+            throw new IllegalArgumentException("Budget must reference an existing category");
+        }
+        if (budget.getCurrency() == null || budget.getCurrency().trim().isEmpty()) {
+            throw new IllegalArgumentException("Budget currency cannot be empty");
+        }
+        if (budget.getAmount() == null) {
+            throw new IllegalArgumentException("Budget amount cannot be null");
+        }
+        validateAmount(budget.getAmount());
+    }
+
+    // Percent used divides by the amount
+    private static void validateAmount(BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Budget amount should be positive");
+        }
+    }
+}
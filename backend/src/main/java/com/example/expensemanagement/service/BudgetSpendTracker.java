@@ -0,0 +1,298 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantMovedEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Current-month spend per (tenant, category, currency), kept in memory so
+ * budget status reads are O(1). Counters are in minor units (cents) and roll up to
+ * every ancestor, so a budget on a parent category covers its subcategories.
+ * <p>
+ * Expense writes adjust the counters after their transaction commits; rolled
+ * back writes never touch them. A periodic reconciliation rebuilds the counters
+ * from the database, each tenant in its own read-only transaction on its shard,
+ * and corrects any drift. Writes committed while a tenant's counters are being
+ * rebuilt are recorded into the new counters too.
+ * <p>
+ * Reads never rebuild: the first read of a new month serves zero counters for
+ * that month and starts a rebuild in the background.
+ */
+@Component
+public class BudgetSpendTracker {
+
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final ShardRegistry shardRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final ZoneId zone;
+    private final TransactionTemplate tenantTransaction;
+    private final ThreadPoolExecutor rebuilder;
+    // Not the monitor reconcile() holds, so a read never waits for a rebuild
+    private final Object rollover = new Object();
+
+    private volatile Counters counters;
+    private volatile Rebuild rebuild;
+
+    @Autowired
+    public BudgetSpendTracker(ExpenseRepository expenseRepository,
+                              CategoryRepository categoryRepository,
+                              ShardRegistry shardRegistry,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${expense.budget.zone:UTC}") String zone) {
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.shardRegistry = shardRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.zone = ZoneId.of(zone);
+        this.counters = new Counters(currentPeriod());
+        // Never joins a caller's transaction: its session is bound to the caller's tenant and shard
+        this.tenantTransaction = new TransactionTemplate(transactionManager);
+        this.tenantTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tenantTransaction.setReadOnly(true);
+        // One rebuild at a time; requests while one is queued are dropped, the queued one covers them
+        this.rebuilder = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "budget-reconcile");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.rebuilder.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Spend contributed by one expense: the category and its ancestors it counts towards
+     */
+    public record Spend(String tenantId, List<Long> categoryPath, String currency, Instant moment, long cents) {
+    }
+
+    /**
+     * Capture what an expense contributes to budgets; null when it doesn't count (income, no category).
+     * Must be called inside the writing transaction, on the expense's shard, so the category chain
+     * can be loaded. The chain is read with plain SQL so it works for any tenant on the shard.
+     */
+    public Spend spendOf(Expense expense) {
+        if (expense.getType() != TransactionType.EXPENSE || expense.getCategory() == null
+                || expense.getCategory().getId() == null || expense.getSum() == null || expense.getMoment() == null) {
+            return null;
+        }
+        List<Long> path = new ArrayList<>();
+        for (Long id = expense.getCategory().getId(); id != null && !path.contains(id); ) {
+            path.add(id);
+            List<Long> parent = jdbcTemplate.queryForList("SELECT parent_id FROM categories WHERE id = ?", Long.class, id);
+            id = parent.isEmpty() ? null : parent.get(0);
+        }
+        String tenantId = expense.getTenantId() != null ? expense.getTenantId() : TenantContext.getTenantId();
+        return new Spend(tenantId, path, expense.getCurrency(), expense.getMoment(), toCents(expense.getSum()));
+    }
+
+    /**
+     * Replace the removed spend with the added one once the current transaction commits
+     */
+    public void afterCommit(Spend removed, Spend added) {
+        if (removed == null && added == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(removed, added);
+                }
+            });
+        } else {
+            apply(removed, added);
+        }
+    }
+
+    /**
+     * Spend of a category of the current tenant (including subcategories) in the current month
+     */
+    public BigDecimal spent(Long categoryId, String currency) {
+        LongAdder adder = currentCounters().spend.get(new SpendKey(TenantContext.getTenantId(), categoryId, currency));
+        return BigDecimal.valueOf(adder != null ? adder.sum() : 0L, 2);
+    }
+
+    public YearMonth currentPeriod() {
+        return YearMonth.now(zone);
+    }
+
+    /**
+     * Rebuild the counters for the current month from the database, tenant by tenant.
+     * Safe to call inside a transaction, which is suspended meanwhile.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${expense.budget.reconcile-interval:PT5M}",
+               initialDelayString = "${expense.budget.reconcile-interval:PT5M}")
+    public synchronized void reconcile() {
+        YearMonth period = currentPeriod();
+        Instant start = period.atDay(1).atStartOfDay(zone).toInstant();
+        Instant end = period.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant();
+
+        Rebuild running = new Rebuild(new Counters(period));
+        rebuild = running;
+        try {
+            for (String shard : shardRegistry.getShardNames()) {
+                for (String tenantId : shardRegistry.tenantsOn(shard)) {
+                    // From here on the tenant's commits go into the new counters as well. One committing
+                    // while its sums are read may be counted twice, until the next reconciliation.
+                    running.tenants.add(tenantId);
+                    ShardContext.runOn(shard, () -> TenantContext.runAs(tenantId, () -> tenantTransaction.executeWithoutResult(
+                            status -> reconcileTenant(tenantId, running.counters, start, end))));
+                }
+            }
+            counters = running.counters;
+        } finally {
+            rebuild = null;
+        }
+    }
+
+    /**
+     * Rebuild in the background, for callers that must not wait for it
+     */
+    public void requestReconcile() {
+        rebuilder.execute(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                System.err.println("Error reconciling budget spend: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Category ids change when a tenant moves shards
+     */
+    @EventListener
+    public void onTenantMoved(TenantMovedEvent event) {
+        requestReconcile();
+    }
+
+    private void reconcileTenant(String tenantId, Counters fresh, Instant start, Instant end) {
+        Map<Long, Long> parents = new HashMap<>();
+        for (Category category : categoryRepository.findByType(TransactionType.EXPENSE)) {
+            parents.put(category.getId(), category.getParent() != null ? category.getParent().getId() : null);
+        }
+
+        for (Object[] row : expenseRepository.sumByCategoryAndCurrency(TransactionType.EXPENSE, start, end)) {
+            long cents = toCents((BigDecimal) row[2]);
+            List<Long> path = new ArrayList<>();
+            for (Long id = (Long) row[0]; id != null && !path.contains(id); id = parents.get(id)) {
+                path.add(id);
+            }
+            fresh.add(tenantId, path, (String) row[1], cents);
+        }
+    }
+
+    private Counters currentCounters() {
+        Counters current = counters;
+        YearMonth period = currentPeriod();
+        if (!current.period.equals(period)) {
+            // First read of a new month: don't serve last month's totals, and don't rebuild on the read path
+            synchronized (rollover) {
+                current = counters;
+                if (!current.period.equals(period)) {
+                    current = new Counters(period);
+                    counters = current;
+                    requestReconcile();
+                }
+            }
+        }
+        return current;
+    }
+
+    private void apply(Spend removed, Spend added) {
+        // Rebuild before counters: a rebuild finishing in between has already swapped its counters in
+        Rebuild running = rebuild;
+        Counters current = counters;
+        apply(current, removed, added);
+        if (running != null && running.counters != current) {
+            apply(running.counters, removed != null && running.tenants.contains(removed.tenantId()) ? removed : null,
+                    added != null && running.tenants.contains(added.tenantId()) ? added : null);
+        }
+    }
+
+    private void apply(Counters target, Spend removed, Spend added) {
+        if (removed != null && target.period.equals(periodOf(removed.moment()))) {
+            target.add(removed.tenantId(), removed.categoryPath(), removed.currency(), -removed.cents());
+        }
+        if (added != null && target.period.equals(periodOf(added.moment()))) {
+            target.add(added.tenantId(), added.categoryPath(), added.currency(), added.cents());
+        }
+    }
+
+    private YearMonth periodOf(Instant moment) {
+        return YearMonth.from(moment.atZone(zone));
+    }
+
+    private static long toCents(BigDecimal sum) {
+        return sum.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private record SpendKey(String tenantId, Long categoryId, String currency) {
+    }
+
+    // Counters being built, and the tenants whose sums are (being) read into them
+    private record Rebuild(Counters counters, Set<String> tenants) {
+        private Rebuild(Counters counters) {
+            this(counters, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    private static final class Counters {
+        private final YearMonth period;
+        private final ConcurrentHashMap<SpendKey, LongAdder> spend = new ConcurrentHashMap<>();
+
+        private Counters(YearMonth period) {
+            this.period = period;
+        }
+
+        private void add(String tenantId, List<Long> categoryPath, String currency, long cents) {
+            for (Long categoryId : categoryPath) {
+                spend.computeIfAbsent(new SpendKey(tenantId, categoryId, currency), key -> new LongAdder()).add(cents);
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.CategorySuggestion;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantMovedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory autocomplete over category names, per tenant and transaction type.
+ * Names are indexed by their lower-case trigrams; a query of three or more
+ * characters intersects the posting lists of its trigrams and checks the few
+ * candidates left, shorter queries scan the (small) list of names. Matches are
+ * ranked exact name, name prefix, word prefix, then any infix; shorter names first.
+ * <p>
+ * A tenant's categories are loaded on its first query. After that the index is
+ * kept current by {@link CategoryService} mutations once they commit, and queries
+ * never touch the database. Each change installs a new immutable snapshot, so
+ * queries read without locking.
+ */
+@Component
+public class CategoryAutocomplete {
+
+    private static final int GRAM = 3;
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::rank)
+            .thenComparingInt(match -> match.node().name().length())
+            .thenComparing(match -> match.node().lowerName())
+            .thenComparingLong(match -> match.node().id());
+
+    private record Node(long id, String name, String lowerName, TransactionType type, Long parentId) {
+    }
+
+    private record Match(Node node, int rank) {
+    }
+
+    /**
+     * Names of one transaction type: nodes sorted by id and trigram -> sorted positions in nodes
+     */
+    private record TypeIndex(Node[] nodes, Map<String, int[]> grams) {
+    }
+
+    private record Snapshot(Map<Long, Node> byId, Map<TransactionType, TypeIndex> byType) {
+    }
+
+    // Mutations of one tenant are serialized on its holder; queries only read the volatile snapshot
+    private static final class TenantIndex {
+        private volatile Snapshot snapshot;
+        private long generation;
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final ConcurrentMap<String, TenantIndex> tenants = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CategoryAutocomplete(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * Best matches of the current tenant's categories of a type for a (partial) name
+     */
+    public List<CategorySuggestion> suggest(String query, TransactionType type, int limit) {
+        String needle = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (needle.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Snapshot snapshot = snapshot(TenantContext.getTenantId());
+        TypeIndex index = snapshot.byType().get(type);
+        if (index == null) {
+            return List.of();
+        }
+
+        List<Match> matches = new ArrayList<>();
+        if (needle.length() < GRAM) {
+            for (Node node : index.nodes()) {
+                addIfMatches(matches, node, needle);
+            }
+        } else {
+            for (int position : candidates(index, needle)) {
+                addIfMatches(matches, index.nodes()[position], needle);
+            }
+        }
+        matches.sort(RANKING);
+
+        List<CategorySuggestion> suggestions = new ArrayList<>(Math.min(limit, matches.size()));
+        for (Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+            Node node = match.node();
+            suggestions.add(new CategorySuggestion(node.id(), node.name(), node.type(), ancestors(snapshot, node)));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Once the current transaction commits, add or replace a category of the current tenant
+     */
+    public void putAfterCommit(Category category) {
+        String tenantId = TenantContext.getTenantId();
+        Node node = node(category);
+        afterCommit(() -> update(tenantId, byId -> byId.put(node.id(), node)));
+    }
+
+    /**
+     * Once the current transaction commits, remove a category of the current tenant and its subcategories
+     */
+    public void removeAfterCommit(Long categoryId) {
+        String tenantId = TenantContext.getTenantId();
+        afterCommit(() -> update(tenantId, byId -> {
+            Set<Long> removed = new HashSet<>();
+            removed.add(categoryId);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Node node : byId.values()) {
+                    if (node.parentId() != null && removed.contains(node.parentId()) && removed.add(node.id())) {
+                        changed = true;
+                    }
+                }
+            }
+            byId.keySet().removeAll(removed);
+        }));
+    }
+
+    /**
+     * Category ids change when a tenant moves shards
+     */
+    @EventListener
+    public void onTenantMoved(TenantMovedEvent event) {
+        TenantIndex tenant = tenants.computeIfAbsent(event.tenantId(), id -> new TenantIndex());
+        synchronized (tenant) {
+            tenant.snapshot = null;
+            tenant.generation++;
+        }
+    }
+
+    private Snapshot snapshot(String tenantId) {
+        TenantIndex tenant = tenants.computeIfAbsent(tenantId, id -> new TenantIndex());
+        Snapshot snapshot = tenant.snapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long generation;
+        synchronized (tenant) {
+            generation = tenant.generation;
+        }
+        Map<Long, Node> byId = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            byId.put(category.getId(), node(category));
+        }
+        Snapshot loaded = build(byId);
+        synchronized (tenant) {
+            // A mutation committed while loading, or this transaction may hold uncommitted
+            // categories: answer this query, let the next one load again
+            if (tenant.generation == generation && tenant.snapshot == null
+                    && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                tenant.snapshot = loaded;
+            }
+            return tenant.snapshot != null ? tenant.snapshot : loaded;
+        }
+    }
+
+    private void update(String tenantId, Consumer<Map<Long, Node>> change) {
+        TenantIndex tenant = tenants.computeIfAbsent(tenantId, id -> new TenantIndex());
+        synchronized (tenant) {
+            tenant.generation++;
+            if (tenant.snapshot != null) {
+                Map<Long, Node> byId = new HashMap<>(tenant.snapshot.byId());
+                change.accept(byId);
+                tenant.snapshot = build(byId);
+            }
+        }
+    }
+
+    private static Snapshot build(Map<Long, Node> byId) {
+        Map<TransactionType, List<Node>> nodesByType = new EnumMap<>(TransactionType.class);
+        for (Node node : byId.values()) {
+            nodesByType.computeIfAbsent(node.type(), type -> new ArrayList<>()).add(node);
+        }
+        Map<TransactionType, TypeIndex> byType = new EnumMap<>(TransactionType.class);
+        nodesByType.forEach((type, nodes) -> {
+            Node[] sorted = nodes.toArray(Node[]::new);
+            Arrays.sort(sorted, Comparator.comparingLong(Node::id));
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int position = 0; position < sorted.length; position++) {
+                for (String gram : grams(sorted[position].lowerName())) {
+                    List<Integer> positions = postings.computeIfAbsent(gram, g -> new ArrayList<>());
+                    if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                        positions.add(position);
+                    }
+                }
+            }
+            Map<String, int[]> grams = new HashMap<>(postings.size() * 2);
+            postings.forEach((gram, positions) -> grams.put(gram, positions.stream().mapToInt(Integer::intValue).toArray()));
+            byType.put(type, new TypeIndex(sorted, grams));
+        });
+        return new Snapshot(Map.copyOf(byId), byType);
+    }
+
+    // Positions whose names contain every trigram of the needle, smallest posting list first
+    private static int[] candidates(TypeIndex index, String needle) {
+        List<int[]> lists = new ArrayList<>();
+        for (String gram : grams(needle)) {
+            int[] positions = index.grams().get(gram);
+            if (positions == null) {
+                return new int[0];
+            }
+            lists.add(positions);
+        }
+        lists.sort(Comparator.comparingInt(positions -> positions.length));
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private static Collection<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static void addIfMatches(List<Match> matches, Node node, String needle) {
+        int at = node.lowerName().indexOf(needle);
+        if (at < 0) {
+            return;
+        }
+        int rank;
+        if (node.lowerName().equals(needle)) {
+            rank = 0;
+        } else if (at == 0) {
+            rank = 1;
+        } else if (startsWord(node.lowerName(), needle)) {
+            rank = 2;
+        } else {
+            rank = 3;
+        }
+        matches.add(new Match(node, rank));
+    }
+
+    private static boolean startsWord(String name, String needle) {
+        for (int at = name.indexOf(needle); at > 0; at = name.indexOf(needle, at + 1)) {
+            if (!Character.isLetterOrDigit(name.charAt(at - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> ancestors(Snapshot snapshot, Node node) {
+        LinkedList<String> path = new LinkedList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Long parentId = node.parentId(); parentId != null && seen.add(parentId); ) {
+            Node parent = snapshot.byId().get(parentId);
+            if (parent == null) {
+                break;
+            }
+            path.addFirst(parent.name());
+            parentId = parent.parentId();
+        }
+        return List.copyOf(path);
+    }
+
+    private static Node node(Category category) {
+        return new Node(category.getId(), category.getName(), category.getName().toLowerCase(Locale.ROOT), category.getType(),
+                category.getParent() != null ? category.getParent().getId() : null);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,22 +1,45 @@
 package com.example.expensemanagement.service;
 
+import com.example.expensemanagement.audit.AuditTrail;
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.dto.CategorySuggestion;
 import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
 import com.example.expensemanagement.entity.TransactionType;
 import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CategoryService {
     
     private final CategoryRepository categoryRepository;
+    private final SingleFlight singleFlight;
+    private final DateRangeCache dateRangeCache;
+    private final CategoryAutocomplete categoryAutocomplete;
+    private final AuditTrail auditTrail;
     
     @Autowired
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, SingleFlight singleFlight, DateRangeCache dateRangeCache,
+                           CategoryAutocomplete categoryAutocomplete, AuditTrail auditTrail) {
         this.categoryRepository = categoryRepository;
+        this.singleFlight = singleFlight;
+        this.dateRangeCache = dateRangeCache;
+        this.categoryAutocomplete = categoryAutocomplete;
+        this.auditTrail = auditTrail;
     }
     
     /**
@@ -29,14 +52,22 @@ public class CategoryService {
         if (category.getType() == null) {
             throw new IllegalArgumentException("Category type cannot be null");
         }
-        return categoryRepository.save(category);
+        checkParentVisible(category.getParent());
+        category.setId(null);
+        Category savedCategory = categoryRepository.save(category);
+        categoryAutocomplete.putAfterCommit(savedCategory);
+        auditTrail.recordAfterCommit(AuditTrail.EntityType.CATEGORY, savedCategory.getId(), AuditTrail.Action.CREATE,
+                null, AuditTrail.imageOf(savedCategory));
+        singleFlight.forgetAfterCommit();
+        return savedCategory;
     }
     
     /**
-     * Find all categories
+     * Find all categories. Like the other coalesced reads, it opens no transaction of its
+     * own: SingleFlight opens one for the caller that runs the query, so waiters hold no connection.
      */
     public List<Category> findAllCategories() {
-        return categoryRepository.findAll();
+        return singleFlight.execute("categories.all", List.of(), categoryRepository::findAll, CategoryService::initializeChildren);
     }
     
     /**
@@ -46,32 +77,43 @@ public class CategoryService {
         return categoryRepository.findById(id);
     }
     
+    /**
+     * Find categories by a list of ids, in request order, reporting the ids not found
+     */
+    public BatchResult<Category> findByIds(List<Long> ids) {
+        return BatchLoader.current().load("category", ids, categoryRepository::findByIdIn, Category::getId);
+    }
+    
     /**
      * Find categories by transaction type
      */
     public List<Category> findByType(TransactionType type) {
-        return categoryRepository.findByType(type);
+        return singleFlight.execute("categories.type", List.of(type), () -> categoryRepository.findByType(type),
+                CategoryService::initializeChildren);
     }
     
     /**
      * Find root categories by transaction type
      */
     public List<Category> findRootCategoriesByType(TransactionType type) {
-        return categoryRepository.findByTypeAndParentIsNull(type);
+        return singleFlight.execute("categories.roots", List.of(type),
+                () -> categoryRepository.findByTypeAndParentIsNull(type), CategoryService::initializeChildren);
     }
     
     /**
      * Find child categories of a parent
      */
     public List<Category> findChildCategories(Long parentId) {
-        return categoryRepository.findByParentId(parentId);
+        return singleFlight.execute("categories.children", List.of(parentId),
+                () -> categoryRepository.findByParentId(parentId), CategoryService::initializeChildren);
     }
     
     /**
      * Get hierarchical structure of categories for a specific type
      */
     public List<Category> findByTypeOrderByHierarchy(TransactionType type) {
-        return categoryRepository.findByTypeOrderByHierarchy(type);
+        return singleFlight.execute("categories.hierarchy", List.of(type),
+                () -> categoryRepository.findByTypeOrderByHierarchy(type), CategoryService::initializeChildren);
     }
     
     /**
@@ -80,6 +122,7 @@ public class CategoryService {
     public Category updateCategory(Long id, Category categoryDetails) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found with id: " + id));
+        Map<String, Object> previousImage = AuditTrail.imageOf(category);
         
         if (categoryDetails.getName() != null && !categoryDetails.getName().trim().isEmpty()) {
             category.setName(categoryDetails.getName().trim());
@@ -88,27 +131,58 @@ public class CategoryService {
             category.setType(categoryDetails.getType());
         }
         if (categoryDetails.getParent() != null) {
+            checkParentVisible(categoryDetails.getParent());
             category.setParent(categoryDetails.getParent());
         }
         
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        categoryAutocomplete.putAfterCommit(savedCategory);
+        auditTrail.recordAfterCommit(AuditTrail.EntityType.CATEGORY, id, AuditTrail.Action.UPDATE,
+                previousImage, AuditTrail.imageOf(savedCategory));
+        // Cached expenses embed their category
+        dateRangeCache.invalidateTenantAfterCommit(TenantContext.getTenantId());
+        singleFlight.forgetAfterCommit();
+        return savedCategory;
     }
     
     /**
      * Delete a category
      */
     public void deleteCategory(Long id) {
-        if (!categoryRepository.existsById(id)) {
-            throw new RuntimeException("Category not found with id: " + id);
+        Category category = categoryRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Category not found with id: " + id));
+        // Subcategories go with it by cascade: each gets its own event, deepest first
+        List<Category> subtree = new ArrayList<>();
+        Deque<Category> pending = new ArrayDeque<>(List.of(category));
+        while (!pending.isEmpty()) {
+            Category next = pending.poll();
+            subtree.add(next);
+            pending.addAll(categoryRepository.findByParentId(next.getId()));
         }
+        List<Map<String, Object>> previousImages = subtree.stream().map(AuditTrail::imageOf).toList();
         categoryRepository.deleteById(id);
+        categoryAutocomplete.removeAfterCommit(id);
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            auditTrail.recordAfterCommit(AuditTrail.EntityType.CATEGORY, subtree.get(i).getId(), AuditTrail.Action.DELETE,
+                    previousImages.get(i), null);
+        }
+        dateRangeCache.invalidateTenantAfterCommit(TenantContext.getTenantId());
+        singleFlight.forgetAfterCommit();
     }
     
     /**
      * Search categories by name and type
      */
     public List<Category> searchCategories(String name, TransactionType type) {
-        return categoryRepository.findByNameContainingIgnoreCaseAndType(name, type);
+        return singleFlight.execute("categories.search", List.of(name, type),
+                () -> categoryRepository.findByNameContainingIgnoreCaseAndType(name, type), CategoryService::initializeChildren);
+    }
+    
+    /**
+     * Autocomplete category names of a type from the in-memory index, best matches first
+     */
+    public List<CategorySuggestion> suggestCategories(String query, TransactionType type, int limit) {
+        return categoryAutocomplete.suggest(query, type, limit);
     }
     
     /**
@@ -117,4 +191,36 @@ public class CategoryService {
     public long countCategories() {
         return categoryRepository.count();
     }
+    
+    /**
+     * Load the categories of the given expenses with all their descendants, see {@link #initializeChildren}
+     */
+    static void initializeCategoryTrees(List<Expense> expenses) {
+        initializeChildren(expenses.stream().map(Expense::getCategory).toList());
+    }
+
+    /**
+     * Load the children of the given categories and all their descendants, so the
+     * categories can be serialized after the loading session is gone
+     */
+    static <C extends Collection<Category>> C initializeChildren(C categories) {
+        Set<Category> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Category> pending = new ArrayDeque<>(categories);
+        while (!pending.isEmpty()) {
+            Category category = pending.pop();
+            if (category == null || !visited.add(category) || category.getChildren() == null) {
+                continue;
+            }
+            Hibernate.initialize(category.getChildren());
+            pending.addAll(category.getChildren());
+        }
+        return categories;
+    }
+    
+    // Categories are per tenant: a parent must be one the current tenant can see
+    private void checkParentVisible(Category parent) {
+        if (parent != null && parent.getId() != null && !categoryRepository.existsById(parent.getId())) {
+            throw new IllegalArgumentException("Parent category not found with id: " + parent.getId());
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.dto.CategoryTreeNode;
+import com.example.expensemanagement.dto.Dashboard;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.TenantContext;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Builds the main page in one call. The category tree, the newest expenses of
+ * the period with their count, and the period totals are read at the same time
+ * on a small pool, each part in its own read-only transaction. When the pool is
+ * saturated the request thread reads the part itself.
+ */
+@Service
+public class DashboardService {
+
+    private static final Comparator<Expense> NEWEST_FIRST =
+            Comparator.comparing(Expense::getMoment).thenComparing(Expense::getId).reversed();
+
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final ExpenseService expenseService;
+    private final ExpenseArchive expenseArchive;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+
+    private record Totals(Map<String, BigDecimal> expenses, Map<String, BigDecimal> incomes) {
+    }
+
+    private record Page(List<Expense> expenses, long count) {
+    }
+
+    @Autowired
+    public DashboardService(ExpenseRepository expenseRepository,
+                            CategoryRepository categoryRepository,
+                            ExpenseService expenseService,
+                            ExpenseArchive expenseArchive,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${expense.dashboard.threads:8}") int threads) {
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.expenseService = expenseService;
+        this.expenseArchive = expenseArchive;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 8),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Category tree of a type, the newest pageSize expenses in [startDate, endDate], their count and totals
+     */
+    public Dashboard buildDashboard(TransactionType type, Instant startDate, Instant endDate, int pageSize) {
+        if (expenseArchive.isEnabled()
+                && !expenseArchive.findSegments(TenantContext.getTenantId(), startDate, endDate).isEmpty()) {
+            return buildFromMergedRange(type, startDate, endDate, pageSize);
+        }
+        CompletableFuture<List<CategoryTreeNode>> categories = readAsync(() -> categoryTree(type));
+        CompletableFuture<Page> page = readAsync(() -> {
+            // Serialized after the pool thread's session is gone
+            List<Expense> newest = expenseRepository.findNewestByMomentBetween(startDate, endDate, PageRequest.of(0, pageSize));
+            CategoryService.initializeCategoryTrees(newest);
+            return new Page(newest, expenseRepository.countByMomentBetween(startDate, endDate));
+        });
+        CompletableFuture<Totals> totals = readAsync(() -> totals(expenseRepository.sumByTypeAndCurrency(startDate, endDate)));
+        return new Dashboard(join(categories), join(page).expenses(), join(page).count(),
+                join(totals).expenses(), join(totals).incomes());
+    }
+
+    // Archived expenses are not in the table: page and total the merged (and cached) range in memory
+    private Dashboard buildFromMergedRange(TransactionType type, Instant startDate, Instant endDate, int pageSize) {
+        CompletableFuture<List<CategoryTreeNode>> categories = readAsync(() -> categoryTree(type));
+        List<Expense> expenses = new ArrayList<>(expenseService.findByDateRange(startDate, endDate));
+        List<Object[]> sums = new ArrayList<>();
+        for (Expense expense : expenses) {
+            sums.add(new Object[]{expense.getType(), expense.getCurrency(), expense.getSum()});
+        }
+        Totals totals = totals(sums);
+        expenses.sort(NEWEST_FIRST);
+        return new Dashboard(join(categories), List.copyOf(expenses.subList(0, Math.min(pageSize, expenses.size()))),
+                expenses.size(), totals.expenses(), totals.incomes());
+    }
+
+    private List<CategoryTreeNode> categoryTree(TransactionType type) {
+        List<Category> categories = categoryRepository.findByType(type);
+        return CategoryTreeNode.of(categories);
+    }
+
+    private static Totals totals(List<Object[]> rows) {
+        Map<String, BigDecimal> expenses = new TreeMap<>();
+        Map<String, BigDecimal> incomes = new TreeMap<>();
+        for (Object[] row : rows) {
+            Map<String, BigDecimal> totals = row[0] == TransactionType.INCOME ? incomes : expenses;
+            totals.merge((String) row[1], (BigDecimal) row[2], BigDecimal::add);
+        }
+        return new Totals(expenses, incomes);
+    }
+
+    // Run a read on the pool, in the caller's tenant and shard, inside its own read-only transaction
+    private <T> CompletableFuture<T> readAsync(Supplier<T> read) {
+        String tenantId = TenantContext.getTenantId();
+        String shard = ShardContext.getShard();
+        return CompletableFuture.supplyAsync(() -> TenantContext.callAs(tenantId, () -> shard != null
+                ? ShardContext.callOn(shard, () -> readOnlyTransaction.execute(status -> read.get()))
+                : readOnlyTransaction.execute(status -> read.get())), executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
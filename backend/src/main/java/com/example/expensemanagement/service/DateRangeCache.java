@@ -0,0 +1,238 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.tenant.TenantMovedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of date-range query results, keyed by tenant, currency (null for
+ * all currencies) and the normalized [start, end] instants. The client's
+ * timezone is already folded into the instants, so two zones asking for the
+ * same instants share one entry. Size is bounded by entry count and by the
+ * total number of cached expenses.
+ * <p>
+ * Each entry covers a span of UTC month buckets. A write only invalidates the
+ * entries whose span contains the month of the written moment, so a new
+ * expense today leaves last year's ranges cached. Every bucket has a version
+ * that writes bump before removing entries; a loader that raced with a write
+ * sees the changed version after its put and drops its own entry.
+ * Only calls outside a transaction or in a read-only one use the cache.
+ */
+@Component
+public class DateRangeCache {
+
+    private record Key(String tenantId, String currency, Instant start, Instant end) {
+    }
+
+    private record Bucket(String tenantId, long month) {
+    }
+
+    private record Entry(List<Expense> expenses, long firstMonth, long lastMonth) {
+    }
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxExpenses;
+
+    // Access-ordered for LRU eviction; guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedExpenses;
+
+    private final ConcurrentMap<Bucket, AtomicLong> bucketVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> tenantVersions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public DateRangeCache(@Value("${expense.range-cache.enabled:true}") boolean enabled,
+                          @Value("${expense.range-cache.max-entries:512}") int maxEntries,
+                          @Value("${expense.range-cache.max-expenses:500000}") long maxExpenses) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxExpenses = maxExpenses;
+    }
+
+    /**
+     * Cached result for the range, or the loader's result, cached if it fits. The loader
+     * passes its result through {@link #prepare} in its own transaction.
+     */
+    public List<Expense> get(String tenantId, String currency, Instant start, Instant end, Supplier<List<Expense>> loader) {
+        if (!enabled || !SingleFlight.mayShare()) {
+            return loader.get();
+        }
+        Key key = new Key(tenantId, currency, start, end);
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.expenses();
+        }
+
+        misses.increment();
+        long firstMonth = month(start);
+        long lastMonth = month(end);
+        long version = version(tenantId, firstMonth, lastMonth);
+        List<Expense> expenses = List.copyOf(loader.get());
+        if (expenses.size() > maxExpenses) {
+            return expenses;
+        }
+        Entry entry = new Entry(expenses, firstMonth, lastMonth);
+        put(key, entry);
+        if (version(tenantId, firstMonth, lastMonth) != version) {
+            remove(key, entry);
+        }
+        return expenses;
+    }
+
+    /**
+     * Pass loaded expenses to share if the cache would keep them, while the loading session is open
+     */
+    public List<Expense> prepare(List<Expense> expenses, Consumer<List<Expense>> share) {
+        if (enabled && SingleFlight.mayShare() && expenses.size() <= maxExpenses) {
+            share.accept(expenses);
+        }
+        return expenses;
+    }
+
+    /**
+     * Once the current transaction commits, drop the ranges containing the moment (all currencies when currency is null)
+     */
+    public void invalidateAfterCommit(String tenantId, String currency, Instant moment) {
+        if (!enabled || moment == null) {
+            return;
+        }
+        afterCommit(() -> invalidate(tenantId, currency, month(moment)));
+    }
+
+    /**
+     * Once the current transaction commits, drop every range of the tenant
+     */
+    public void invalidateTenantAfterCommit(String tenantId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> invalidateTenant(tenantId));
+    }
+
+    /**
+     * Entity ids change when a tenant moves shards
+     */
+    @EventListener
+    public void onTenantMoved(TenantMovedEvent event) {
+        invalidateTenant(event.tenantId());
+    }
+
+    private void invalidate(String tenantId, String currency, long month) {
+        bucketVersions.computeIfAbsent(new Bucket(tenantId, month), bucket -> new AtomicLong()).incrementAndGet();
+        removeIf((key, entry) -> key.tenantId().equals(tenantId)
+                && entry.firstMonth() <= month && month <= entry.lastMonth()
+                && (currency == null || key.currency() == null || key.currency().equals(currency)));
+    }
+
+    private void invalidateTenant(String tenantId) {
+        tenantVersions.computeIfAbsent(tenantId, tenant -> new AtomicLong()).incrementAndGet();
+        removeIf((key, entry) -> key.tenantId().equals(tenantId));
+    }
+
+    private long version(String tenantId, long firstMonth, long lastMonth) {
+        AtomicLong tenantVersion = tenantVersions.get(tenantId);
+        long version = tenantVersion != null ? tenantVersion.get() : 0;
+        for (long month = firstMonth; month <= lastMonth; month++) {
+            AtomicLong bucketVersion = bucketVersions.get(new Bucket(tenantId, month));
+            if (bucketVersion != null) {
+                version += bucketVersion.get();
+            }
+        }
+        return version;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            cachedExpenses -= previous.expenses().size();
+        }
+        cachedExpenses += entry.expenses().size();
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedExpenses > maxExpenses) && eldest.hasNext()) {
+            cachedExpenses -= eldest.next().getValue().expenses().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            cachedExpenses -= entry.expenses().size();
+        }
+    }
+
+    private synchronized void removeIf(BiPredicate<Key, Entry> condition) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            if (condition.test(next.getKey(), next.getValue())) {
+                cachedExpenses -= next.getValue().expenses().size();
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Months since the epoch, in UTC
+    private static long month(Instant instant) {
+        OffsetDateTime utc = instant.atOffset(ZoneOffset.UTC);
+        return (utc.getYear() - 1970L) * 12 + utc.getMonthValue() - 1;
+    }
+
+    /**
+     * Counters since startup and the current size
+     */
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("entries", (long) entries.size());
+        stats.put("expenses", cachedExpenses);
+        return stats;
+    }
+}
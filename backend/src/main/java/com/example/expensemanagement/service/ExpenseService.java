@@ -1,15 +1,30 @@
 package com.example.expensemanagement.service;
 
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.audit.AuditTrail;
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.entity.Category;
 import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseProjectionRepository;
 import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
 import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -17,20 +32,57 @@ import java.util.Optional;
 public class ExpenseService {
 
     private final ExpenseRepository expenseRepository;
+    private final ExpenseProjectionRepository expenseProjectionRepository;
+    private final CategoryRepository categoryRepository;
+    private final BudgetSpendTracker budgetSpendTracker;
+    private final ExpenseArchive expenseArchive;
+    private final SingleFlight singleFlight;
+    private final DateRangeCache dateRangeCache;
+    private final SpendDistributionService spendDistributionService;
+    private final BalanceService balanceService;
+    private final AuditTrail auditTrail;
 
     @Autowired
-    public ExpenseService(ExpenseRepository expenseRepository) {
+    public ExpenseService(ExpenseRepository expenseRepository, ExpenseProjectionRepository expenseProjectionRepository,
+                          CategoryRepository categoryRepository,
+                          BudgetSpendTracker budgetSpendTracker, ExpenseArchive expenseArchive,
+                          SingleFlight singleFlight, DateRangeCache dateRangeCache,
+                          SpendDistributionService spendDistributionService, BalanceService balanceService,
+                          AuditTrail auditTrail) {
         this.expenseRepository = expenseRepository;
+        this.expenseProjectionRepository = expenseProjectionRepository;
+        this.categoryRepository = categoryRepository;
+        this.budgetSpendTracker = budgetSpendTracker;
+        this.expenseArchive = expenseArchive;
+        this.singleFlight = singleFlight;
+        this.dateRangeCache = dateRangeCache;
+        this.spendDistributionService = spendDistributionService;
+        this.balanceService = balanceService;
+        this.auditTrail = auditTrail;
     }
 
     /**
      * Save a new expense
      */
     public Expense saveExpense(Expense expense) {
+        // Categories are per tenant: only reference one the current tenant can see
+        if (expense.getCategory() != null && expense.getCategory().getId() != null
+                && !categoryRepository.existsById(expense.getCategory().getId())) {
+            throw new IllegalArgumentException("Category not found with id: " + expense.getCategory().getId());
+        }
+        expense.setId(null);
         if (expense.getMoment() == null) {
             expense.setMoment(Instant.now());
         }
-        return expenseRepository.save(expense);
+        Expense savedExpense = expenseRepository.save(expense);
+        spendDistributionService.replace(null, spendDistributionService.sampleOf(savedExpense));
+        balanceService.replace(null, balanceService.changeOf(savedExpense));
+        auditTrail.recordAfterCommit(AuditTrail.EntityType.EXPENSE, savedExpense.getId(), AuditTrail.Action.CREATE,
+                null, AuditTrail.imageOf(savedExpense));
+        budgetSpendTracker.afterCommit(null, budgetSpendTracker.spendOf(savedExpense));
+        dateRangeCache.invalidateAfterCommit(TenantContext.getTenantId(), savedExpense.getCurrency(), savedExpense.getMoment());
+        singleFlight.forgetAfterCommit();
+        return savedExpense;
     }
 
     /**
@@ -42,43 +94,132 @@ public class ExpenseService {
     }
 
     /**
-     * Get all expenses
+     * Find expenses by a list of ids, in request order, reporting the ids not found
      */
     @Transactional(readOnly = true)
+    public BatchResult<Expense> findByIds(List<Long> ids) {
+        return BatchLoader.current().load("expense", ids, expenseRepository::findByIdIn, Expense::getId);
+    }
+
+    /**
+     * Get all expenses. Like the other coalesced reads, it joins a caller's transaction but
+     * opens none: SingleFlight opens one for the caller that runs the query, so waiters hold no connection.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Expense> findAllExpenses() {
-        return expenseRepository.findAllOrderByMomentDesc();
+        return singleFlight.execute("expenses.all", List.of(),
+                expenseRepository::findAllOrderByMomentDesc, CategoryService::initializeCategoryTrees);
     }
 
     /**
      * Find expenses by currency
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Expense> findByCurrency(String currency) {
-        return expenseRepository.findByCurrency(currency);
+        return singleFlight.execute("expenses.currency", List.of(currency),
+                () -> expenseRepository.findByCurrency(currency), CategoryService::initializeCategoryTrees);
     }
 
     /**
-     * Find expenses between two dates
+     * Find expenses between two dates, from the expenses table and the archive
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Expense> findByDateRange(Instant startDate, Instant endDate) {
-        return expenseRepository.findByMomentBetween(startDate, endDate);
+        return dateRangeCache.get(TenantContext.getTenantId(), null, startDate, endDate,
+                () -> singleFlight.execute("expenses.date-range", List.of(startDate, endDate),
+                        () -> dateRangeCache.prepare(loadByDateRange(startDate, endDate), CategoryService::initializeCategoryTrees),
+                        CategoryService::initializeCategoryTrees));
+    }
+
+    private List<Expense> loadByDateRange(Instant startDate, Instant endDate) {
+        List<Expense> hot = expenseRepository.findByMomentBetween(startDate, endDate);
+        List<Expense> archived = expenseArchive.findByMomentBetween(TenantContext.getTenantId(), startDate, endDate);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        // A row is in both tiers only if archiving was interrupted; the table copy wins
+        Map<Long, Expense> merged = new LinkedHashMap<>();
+        archived.forEach(expense -> merged.putIfAbsent(expense.getId(), expense));
+        hot.forEach(expense -> merged.put(expense.getId(), expense));
+        attachCategories(archived);
+        // Backdated or re-dated table rows can fall between archived ones
+        return merged.values().stream()
+                .sorted(Comparator.comparing(Expense::getMoment).thenComparing(Expense::getId))
+                .toList();
+    }
+
+    // Archived expenses reference their category by id only
+    private void attachCategories(List<Expense> archived) {
+        List<Long> ids = archived.stream().map(expense -> expense.getCategory().getId()).distinct().toList();
+        Map<Long, Category> categories = categoryRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+        for (Expense expense : archived) {
+            Category category = categories.get(expense.getCategory().getId());
+            if (category != null) {
+                expense.setCategory(category);
+            }
+        }
     }
 
     /**
      * Find expenses by description containing text
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Expense> findByDescriptionContaining(String description) {
-        return expenseRepository.findByDescriptionContainingIgnoreCase(description);
+        return singleFlight.execute("expenses.description", List.of(description),
+                () -> expenseRepository.findByDescriptionContainingIgnoreCase(description), CategoryService::initializeCategoryTrees);
     }
 
     /**
      * Find expenses by currency and date range
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Expense> findByCurrencyAndDateRange(String currency, Instant startDate, Instant endDate) {
-        return expenseRepository.findByCurrencyAndMomentBetween(currency, startDate, endDate);
+        return dateRangeCache.get(TenantContext.getTenantId(), currency, startDate, endDate,
+                () -> singleFlight.execute("expenses.currency-date-range", List.of(currency, startDate, endDate),
+                        () -> dateRangeCache.prepare(expenseRepository.findByCurrencyAndMomentBetween(currency, startDate, endDate),
+                                CategoryService::initializeCategoryTrees),
+                        CategoryService::initializeCategoryTrees));
+    }
+
+    /**
+     * Get all expenses, reduced to the requested fields
+     */
+    @Transactional(readOnly = true)
+    public ExpenseProjection findAllExpenses(List<ExpenseField> fields) {
+        return expenseProjectionRepository.findAllOrderByMomentDesc(fields);
+    }
+
+    /**
+     * Find expenses by currency, reduced to the requested fields
+     */
+    @Transactional(readOnly = true)
+    public ExpenseProjection findByCurrency(List<ExpenseField> fields, String currency) {
+        return expenseProjectionRepository.findByCurrency(fields, currency);
+    }
+
+    /**
+     * Find expenses by description containing text, reduced to the requested fields
+     */
+    @Transactional(readOnly = true)
+    public ExpenseProjection findByDescriptionContaining(List<ExpenseField> fields, String description) {
+        return expenseProjectionRepository.findByDescriptionContainingIgnoreCase(fields, description);
+    }
+
+    /**
+     * Find expenses between two dates, reduced to the requested fields
+     */
+    @Transactional(readOnly = true)
+    public ExpenseProjection findByDateRange(List<ExpenseField> fields, Instant startDate, Instant endDate) {
+        if (expenseArchive.isEnabled()
+                && !expenseArchive.findSegments(TenantContext.getTenantId(), startDate, endDate).isEmpty()) {
+            // Archived rows are not in the table: project the merged entities instead
+            List<Object[]> rows = findByDateRange(startDate, endDate).stream()
+                    .map(expense -> fields.stream().map(field -> field.of(expense)).toArray())
+                    .toList();
+            return new ExpenseProjection(fields, rows);
+        }
+        return expenseProjectionRepository.findByMomentBetween(fields, startDate, endDate);
     }
 
     /**
@@ -87,11 +228,24 @@ public class ExpenseService {
     public Expense updateExpense(Long id, Expense updatedExpense) {
         return expenseRepository.findById(id)
                 .map(expense -> {
+                    BudgetSpendTracker.Spend previousSpend = budgetSpendTracker.spendOf(expense);
+                    SpendDistributionService.Sample previousSample = spendDistributionService.sampleOf(expense);
+                    BalanceService.Change previousChange = balanceService.changeOf(expense);
+                    Map<String, Object> previousImage = AuditTrail.imageOf(expense);
+                    dateRangeCache.invalidateAfterCommit(TenantContext.getTenantId(), expense.getCurrency(), expense.getMoment());
                     expense.setDescription(updatedExpense.getDescription());
                     expense.setSum(updatedExpense.getSum());
                     expense.setCurrency(updatedExpense.getCurrency());
                     expense.setMoment(updatedExpense.getMoment());
-                    return expenseRepository.save(expense);
+                    Expense savedExpense = expenseRepository.save(expense);
+                    spendDistributionService.replace(previousSample, spendDistributionService.sampleOf(savedExpense));
+                    balanceService.replace(previousChange, balanceService.changeOf(savedExpense));
+                    auditTrail.recordAfterCommit(AuditTrail.EntityType.EXPENSE, id, AuditTrail.Action.UPDATE,
+                            previousImage, AuditTrail.imageOf(savedExpense));
+                    budgetSpendTracker.afterCommit(previousSpend, budgetSpendTracker.spendOf(savedExpense));
+                    dateRangeCache.invalidateAfterCommit(TenantContext.getTenantId(), savedExpense.getCurrency(), savedExpense.getMoment());
+                    singleFlight.forgetAfterCommit();
+                    return savedExpense;
                 })
                 .orElseThrow(() -> new RuntimeException("Expense not found with id: " + id));
     }
@@ -100,10 +254,17 @@ public class ExpenseService {
      * Delete an expense by ID
      */
     public void deleteExpense(Long id) {
-        if (!expenseRepository.existsById(id)) {
-            throw new RuntimeException("Expense not found with id: " + id);
-        }
-        expenseRepository.deleteById(id);
+        Expense expense = expenseRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Expense not found with id: " + id));
+        BudgetSpendTracker.Spend removedSpend = budgetSpendTracker.spendOf(expense);
+        expenseRepository.delete(expense);
+        spendDistributionService.replace(spendDistributionService.sampleOf(expense), null);
+        balanceService.replace(balanceService.changeOf(expense), null);
+        auditTrail.recordAfterCommit(AuditTrail.EntityType.EXPENSE, id, AuditTrail.Action.DELETE,
+                AuditTrail.imageOf(expense), null);
+        budgetSpendTracker.afterCommit(removedSpend, null);
+        dateRangeCache.invalidateAfterCommit(TenantContext.getTenantId(), expense.getCurrency(), expense.getMoment());
+        singleFlight.forgetAfterCommit();
     }
 
     /**
@@ -0,0 +1,49 @@
+package com.example.expensemanagement.service;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Inserts that may lose a race with another transaction inserting the same
+ * key. A failed statement aborts the whole transaction on PostgreSQL, so the
+ * insert runs under a savepoint and only the savepoint is rolled back when the
+ * key already exists.
+ */
+final class JdbcInserts {
+
+    private JdbcInserts() {
+    }
+
+    /**
+     * Run the INSERT unless a row with the same key exists; returns whether it inserted
+     */
+    static boolean insertIfAbsent(JdbcTemplate jdbcTemplate, String sql, Object... args) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                new ArgumentPreparedStatementSetter(args).setValues(statement);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                DataAccessException translated = jdbcTemplate.getExceptionTranslator().translate("insertIfAbsent", sql, e);
+                if (translated instanceof DuplicateKeyException) {
+                    return false;
+                }
+                throw e;
+            }
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+            return true;
+        }));
+    }
+}
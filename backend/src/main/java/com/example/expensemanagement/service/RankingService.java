@@ -0,0 +1,112 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.CategoryTotal;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional(readOnly = true)
+public class RankingService {
+
+    static final int MAX_LIMIT = 1000;
+
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+
+    @Autowired
+    public RankingService(ExpenseRepository expenseRepository, CategoryRepository categoryRepository) {
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * Find the largest transactions of a currency in a date range.
+     * Ordering and LIMIT are pushed into the database: idx_expenses_tenant_currency_type_moment
+     * seeks on currency and type with a range on moment, and the rows in range are sorted by sum.
+     */
+    public List<Expense> findLargest(String currency, TransactionType type, Instant startDate, Instant endDate, int limit) {
+        return expenseRepository.findLargestByCurrencyAndTypeAndMomentBetween(
+                currency, type, startDate, endDate, PageRequest.of(0, checkLimit(limit)));
+    }
+
+    /**
+     * Find the categories with the largest totals in a date range.
+     * The same index covers the scan (it carries sum and category_id), then the
+     * database groups, and without rollup orders and limits too. With rollup each
+     * total is attributed to its root category, a ranking the database can't
+     * compute from the flat grouping, so roots are selected with a bounded heap.
+     */
+    public List<CategoryTotal> findTopCategories(String currency, TransactionType type, Instant startDate, Instant endDate,
+                                                 int limit, boolean rollup) {
+        checkLimit(limit);
+        List<CategoryTotal> totals;
+        if (!rollup) {
+            totals = expenseRepository.sumByCategory(currency, type, startDate, endDate, PageRequest.of(0, limit));
+        } else {
+            totals = rollUpToRoots(
+                    expenseRepository.sumByCategory(currency, type, startDate, endDate, Pageable.unpaged()),
+                    type, limit);
+        }
+
+        Map<Long, Category> categories = categoryRepository.findAllById(
+                        totals.stream().map(CategoryTotal::getCategoryId).toList())
+                .stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+        totals.forEach(total -> {
+            Category category = categories.get(total.getCategoryId());
+            total.setName(category != null ? category.getName() : null);
+        });
+        return totals;
+    }
+
+    private List<CategoryTotal> rollUpToRoots(List<CategoryTotal> totals, TransactionType type, int limit) {
+        Map<Long, Long> rootOf = new HashMap<>();
+        Map<Long, Category> byId = categoryRepository.findByType(type).stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+        Map<Long, BigDecimal> rootTotals = new HashMap<>();
+        for (CategoryTotal total : totals) {
+            Long rootId = rootOf.computeIfAbsent(total.getCategoryId(), id -> findRoot(id, byId));
+            rootTotals.merge(rootId, total.getTotal(), BigDecimal::add);
+        }
+
+        TopNSelector<CategoryTotal> selector = new TopNSelector<>(limit,
+                Comparator.comparing(CategoryTotal::getTotal).thenComparing(CategoryTotal::getCategoryId, Comparator.reverseOrder()));
+        rootTotals.forEach((rootId, sum) -> selector.offer(new CategoryTotal(rootId, sum)));
+        return selector.result();
+    }
+
+    private Long findRoot(Long categoryId, Map<Long, Category> byId) {
+        Category category = byId.get(categoryId);
+        if (category == null) {
+            return categoryId;
+        }
+        while (category.getParent() != null) {
+            category = category.getParent();
+        }
+        return category.getId();
+    }
+
+    private int checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.Frequency;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates expenses for due recurring transactions.
+ * <p>
+ * Each run reads due templates through the (active, next_due) index, so a
+ * tick costs O(due items), expands their occurrences up to a per-run cap,
+ * writes them with one batched set-based insert and advances the templates
+ * with one batched update, all in a single transaction on one connection.
+ * After downtime the backlog is worked off over several ticks instead of
+ * flooding the pool. An occurrence is identified by (template, moment): the
+ * insert skips occurrences that already exist and a unique constraint backs
+ * that up, so re-runs and concurrent instances never duplicate expenses.
+ * Each tenant written holds its write gate until the transaction ends, and
+ * tenants being moved are left for a later run.
+ */
+@Component
+@Profile("!logstore")
+public class RecurringTransactionScheduler {
+
+    private static final String SELECT_DUE =
+            "SELECT id, tenant_id, description, sum, currency, type, category_id, frequency, interval_count, start_moment, zone, " +
+            "end_moment, next_occurrence, next_due FROM recurring_transactions " +
+            "WHERE active = TRUE AND next_due <= ? ORDER BY next_due LIMIT ?";
+
+    private static final String INSERT_OCCURRENCE =
+            "INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id, recurring_transaction_id) " +
+            "SELECT ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM expenses WHERE recurring_transaction_id = ? AND moment = ?)";
+
+    private static final String ADVANCE_TEMPLATE =
+            "UPDATE recurring_transactions SET next_occurrence = ?, next_due = ?, active = ? " +
+            "WHERE id = ? AND next_occurrence = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BudgetSpendTracker budgetSpendTracker;
+    private final DateRangeCache dateRangeCache;
+    private final SpendDistributionService spendDistributionService;
+    private final BalanceService balanceService;
+    private final ShardRegistry shardRegistry;
+    private final int maxOccurrencesPerRun;
+
+    @Autowired
+    public RecurringTransactionScheduler(JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager,
+                                         BudgetSpendTracker budgetSpendTracker,
+                                         DateRangeCache dateRangeCache,
+                                         SpendDistributionService spendDistributionService,
+                                         BalanceService balanceService,
+                                         ShardRegistry shardRegistry,
+                                         @Value("${expense.recurring.max-occurrences-per-run:500}") int maxOccurrencesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.budgetSpendTracker = budgetSpendTracker;
+        this.dateRangeCache = dateRangeCache;
+        this.spendDistributionService = spendDistributionService;
+        this.balanceService = balanceService;
+        this.shardRegistry = shardRegistry;
+        this.maxOccurrencesPerRun = maxOccurrencesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${expense.recurring.poll-interval:PT1M}")
+    public void generateDueOccurrences() {
+        int generated = generateDueOccurrences(Instant.now());
+        if (generated > 0) {
+            System.out.println("Generated " + generated + " recurring transaction occurrences");
+        }
+    }
+
+    /**
+     * Generate occurrences due at or before now on every shard, for all tenants at once;
+     * returns the number of expenses inserted
+     */
+    public int generateDueOccurrences(Instant now) {
+        int generated = 0;
+        for (String shard : shardRegistry.getShardNames()) {
+            // Gates of the tenants written, held until the transaction has committed
+            Set<String> entered = new HashSet<>();
+            try {
+                Integer count = ShardContext.callOn(shard, () -> transactionTemplate.execute(status -> generate(now, entered)));
+                generated += count != null ? count : 0;
+            } finally {
+                entered.forEach(shardRegistry::exitWrite);
+            }
+        }
+        return generated;
+    }
+
+    private int generate(Instant now, Set<String> entered) {
+        // Templates of tenants being moved stay due for a later run
+        Set<String> moving = new HashSet<>();
+        List<DueTemplate> templates = jdbcTemplate.query(SELECT_DUE, this::mapTemplate, utc(now), maxOccurrencesPerRun)
+                .stream()
+                .filter(template -> enterWrite(template.tenantId, entered, moving))
+                .toList();
+
+        List<Occurrence> occurrences = new ArrayList<>();
+        List<Object[]> advances = new ArrayList<>();
+        for (DueTemplate template : templates) {
+            int remaining = maxOccurrencesPerRun - occurrences.size();
+            if (remaining == 0) {
+                break;
+            }
+            long index = template.nextOccurrence;
+            Instant due = template.nextDue;
+            while (remaining > 0 && !due.isAfter(now) && template.allows(due)) {
+                occurrences.add(new Occurrence(template, due));
+                remaining--;
+                index++;
+                due = template.occurrence(index);
+            }
+            advances.add(new Object[]{index, utc(due), template.allows(due), template.id, template.nextOccurrence});
+        }
+        if (advances.isEmpty()) {
+            return 0;
+        }
+
+        int[][] inserted = jdbcTemplate.batchUpdate(INSERT_OCCURRENCE, occurrences, occurrences.size(), (ps, occurrence) -> {
+            DueTemplate template = occurrence.template;
+            ps.setString(1, template.tenantId);
+            ps.setString(2, template.description);
+            ps.setBigDecimal(3, template.sum);
+            ps.setString(4, template.currency);
+            ps.setObject(5, utc(occurrence.moment));
+            ps.setString(6, template.type.name());
+            ps.setLong(7, template.categoryId);
+            ps.setLong(8, template.id);
+            ps.setLong(9, template.id);
+            ps.setObject(10, utc(occurrence.moment));
+        });
+        jdbcTemplate.batchUpdate(ADVANCE_TEMPLATE, advances);
+
+        int count = 0;
+        int position = 0;
+        for (int[] batch : inserted) {
+            for (int rows : batch) {
+                if (rows > 0) {
+                    count++;
+                    Occurrence occurrence = occurrences.get(position);
+                    spendDistributionService.replace(null, spendDistributionService.sampleOf(occurrence.toExpense()));
+                    balanceService.replace(null, balanceService.changeOf(occurrence.toExpense()));
+                    budgetSpendTracker.afterCommit(null, budgetSpendTracker.spendOf(occurrence.toExpense()));
+                    dateRangeCache.invalidateAfterCommit(occurrence.template.tenantId, occurrence.template.currency, occurrence.moment);
+                }
+                position++;
+            }
+        }
+        return count;
+    }
+
+    private boolean enterWrite(String tenantId, Set<String> entered, Set<String> moving) {
+        if (entered.contains(tenantId)) {
+            return true;
+        }
+        if (moving.contains(tenantId) || shardRegistry.refresh(tenantId) || !shardRegistry.tryEnterWrite(tenantId)) {
+            moving.add(tenantId);
+            return false;
+        }
+        entered.add(tenantId);
+        return true;
+    }
+
+    private DueTemplate mapTemplate(ResultSet rs, int rowNum) throws SQLException {
+        DueTemplate template = new DueTemplate();
+        template.id = rs.getLong("id");
+        template.tenantId = rs.getString("tenant_id");
+        template.description = rs.getString("description");
+        template.sum = rs.getBigDecimal("sum");
+        template.currency = rs.getString("currency");
+        template.type = TransactionType.valueOf(rs.getString("type"));
+        template.categoryId = rs.getLong("category_id");
+        template.frequency = Frequency.valueOf(rs.getString("frequency"));
+        template.interval = rs.getInt("interval_count");
+        template.startMoment = rs.getObject("start_moment", OffsetDateTime.class).toInstant();
+        template.zone = ZoneId.of(rs.getString("zone"));
+        OffsetDateTime endMoment = rs.getObject("end_moment", OffsetDateTime.class);
+        template.endMoment = endMoment != null ? endMoment.toInstant() : null;
+        template.nextOccurrence = rs.getLong("next_occurrence");
+        template.nextDue = rs.getObject("next_due", OffsetDateTime.class).toInstant();
+        return template;
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private static final class DueTemplate {
+        private long id;
+        private String tenantId;
+        private String description;
+        private BigDecimal sum;
+        private String currency;
+        private TransactionType type;
+        private long categoryId;
+        private Frequency frequency;
+        private int interval;
+        private Instant startMoment;
+        private ZoneId zone;
+        private Instant endMoment;
+        private long nextOccurrence;
+        private Instant nextDue;
+
+        private boolean allows(Instant moment) {
+            return endMoment == null || !moment.isAfter(endMoment);
+        }
+
+        private Instant occurrence(long index) {
+            return frequency.occurrence(startMoment.atZone(zone), index, interval).toInstant();
+        }
+    }
+
+    private record Occurrence(DueTemplate template, Instant moment) {
+        private Expense toExpense() {
+            Category category = new Category();
+            category.setId(template.categoryId);
+            Expense expense = new Expense();
+            expense.setTenantId(template.tenantId);
+            expense.setSum(template.sum);
+            expense.setCurrency(template.currency);
+            expense.setMoment(moment);
+            expense.setType(template.type);
+            expense.setCategory(category);
+            return expense;
+        }
+    }
+}
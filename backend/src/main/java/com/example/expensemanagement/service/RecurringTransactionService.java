@@ -0,0 +1,109 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.RecurringTransaction;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.RecurringTransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Profile("!logstore")
+@Transactional
+public class RecurringTransactionService {
+
+    private final RecurringTransactionRepository recurringTransactionRepository;
+    private final CategoryRepository categoryRepository;
+
+    @Autowired
+    public RecurringTransactionService(RecurringTransactionRepository recurringTransactionRepository,
+                                       CategoryRepository categoryRepository) {
+        this.recurringTransactionRepository = recurringTransactionRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * Save a new recurring transaction; its first occurrence is due at the start moment
+     */
+    public RecurringTransaction saveRecurringTransaction(RecurringTransaction recurring) {
+        if (recurring.getCategory() == null || recurring.getCategory().getId() == null
+                || !categoryRepository.existsById(recurring.getCategory().getId())) {
+            throw new IllegalArgumentException("Recurring transaction must reference an existing category");
+        }
+        if (recurring.getFrequency() == null) {
+            throw new IllegalArgumentException("Frequency cannot be null");
+        }
+        if (recurring.getStartMoment() == null) {
+            throw new IllegalArgumentException("Start moment cannot be null");
+        }
+        if (recurring.getInterval() < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        if (recurring.getZone() == null) {
+            recurring.setZone("UTC");
+        }
+        try {
+            ZoneId.of(recurring.getZone());
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid zone: " + recurring.getZone());
+        }
+        recurring.setId(null);
+        recurring.setNextOccurrence(0);
+        recurring.setNextDue(recurring.getStartMoment());
+        recurring.setActive(recurring.getEndMoment() == null || !recurring.getStartMoment().isAfter(recurring.getEndMoment()));
+        return recurringTransactionRepository.save(recurring);
+    }
+
+    /**
+     * Find all recurring transactions
+     */
+    @Transactional(readOnly = true)
+    public List<RecurringTransaction> findAllRecurringTransactions() {
+        return recurringTransactionRepository.findAll();
+    }
+
+    /**
+     * Find recurring transaction by ID
+     */
+    @Transactional(readOnly = true)
+    public Optional<RecurringTransaction> findById(Long id) {
+        return recurringTransactionRepository.findById(id);
+    }
+
+    /**
+     * Update amount, description, end or active flag; the schedule itself is fixed
+     */
+    public RecurringTransaction updateRecurringTransaction(Long id, RecurringTransaction details) {
+        RecurringTransaction recurring = recurringTransactionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Recurring transaction not found with id: " + id));
+
+        recurring.setDescription(details.getDescription());
+        if (details.getSum() != null) {
+            recurring.setSum(details.getSum());
+        }
+        if (details.getCurrency() != null && !details.getCurrency().trim().isEmpty()) {
+            recurring.setCurrency(details.getCurrency().trim());
+        }
+        recurring.setEndMoment(details.getEndMoment());
+        recurring.setActive(details.isActive()
+                && (details.getEndMoment() == null || !recurring.getNextDue().isAfter(details.getEndMoment())));
+
+        return recurringTransactionRepository.save(recurring);
+    }
+
+    /**
+     * Delete a recurring transaction; expenses generated from it are kept
+     */
+    public void deleteRecurringTransaction(Long id) {
+        if (!recurringTransactionRepository.existsById(id)) {
+            throw new RuntimeException("Recurring transaction not found with id: " + id);
+        }
+        recurringTransactionRepository.deleteById(id);
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.dto.CategoryTotal;
+import com.example.expensemanagement.dto.Report;
+import com.example.expensemanagement.dto.ReportJob;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.TenantContext;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs multi-month, multi-currency reports in the background so they don't
+ * hold a servlet thread and a connection for seconds.
+ * <p>
+ * A job is split into one part per (month, currency); the parts run in
+ * parallel on a small dedicated pool, each in its own short read-only
+ * transaction. The pool size is what keeps reports from crowding out
+ * interactive requests: it bounds the connections and cores they take. Thread
+ * priorities would not help, as Linux ignores them for ordinary threads. The
+ * bounded queue refuses jobs instead of piling them up. Results stay in memory
+ * for polling or download until the retention period has passed, at most
+ * max-jobs-per-tenant per tenant: a new job evicts the tenant's oldest
+ * finished one, and is refused when all of them are still running.
+ * Submitting a report that is already queued or running for the tenant
+ * returns the existing job.
+ */
+@Service
+public class ReportJobService {
+
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final ExpenseService expenseService;
+    private final ExpenseArchive expenseArchive;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final int maxParts;
+    private final int maxJobsPerTenant;
+    private final Duration retention;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<JobKey, Job> activeJobs = new ConcurrentHashMap<>();
+
+    private record JobKey(String tenantId, YearMonth from, YearMonth to, List<String> currencies, ZoneId zone) {
+    }
+
+    private record Part(YearMonth month, String currency) {
+    }
+
+    private static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final JobKey key;
+        private final String shard;
+        private final int totalParts;
+        private final Instant submittedAt = Instant.now();
+        private final AtomicInteger completedParts = new AtomicInteger();
+        private volatile ReportJob.Status status = ReportJob.Status.QUEUED;
+        private volatile Instant finishedAt;
+        private volatile String error;
+        private volatile Report result;
+
+        private Job(JobKey key, String shard, int totalParts) {
+            this.key = key;
+            this.shard = shard;
+            this.totalParts = totalParts;
+        }
+
+        private ReportJob snapshot() {
+            return new ReportJob(id, status, key.from(), key.to(), key.currencies(), key.zone().getId(),
+                    completedParts.get(), totalParts, submittedAt, finishedAt, error);
+        }
+    }
+
+    @Autowired
+    public ReportJobService(ExpenseRepository expenseRepository,
+                            CategoryRepository categoryRepository,
+                            ExpenseService expenseService,
+                            ExpenseArchive expenseArchive,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${expense.reports.threads:2}") int threads,
+                            @Value("${expense.reports.queue-capacity:2000}") int queueCapacity,
+                            @Value("${expense.reports.max-parts:1000}") int maxParts,
+                            @Value("${expense.reports.max-jobs-per-tenant:20}") int maxJobsPerTenant,
+                            @Value("${expense.reports.retention:PT1H}") Duration retention) {
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.expenseService = expenseService;
+        this.expenseArchive = expenseArchive;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxParts = maxParts;
+        this.maxJobsPerTenant = maxJobsPerTenant;
+        this.retention = retention;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit a report of the current tenant for the months from..to in the given
+     * currencies and zone, or join the identical one already queued or running.
+     * Throws RejectedExecutionException when the report pool is too busy.
+     */
+    public ReportJob submit(YearMonth from, YearMonth to, List<String> currencies, ZoneId zone) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("The first month must not be after the last month");
+        }
+        List<String> sortedCurrencies = currencies.stream().map(String::trim).filter(currency -> !currency.isEmpty())
+                .distinct().sorted().toList();
+        if (sortedCurrencies.isEmpty()) {
+            throw new IllegalArgumentException("At least one currency is required");
+        }
+        List<Part> parts = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            for (String currency : sortedCurrencies) {
+                parts.add(new Part(month, currency));
+            }
+        }
+        if (parts.size() > maxParts) {
+            throw new IllegalArgumentException("A report may cover at most " + maxParts + " month-currency pairs");
+        }
+
+        JobKey key = new JobKey(TenantContext.getTenantId(), from, to, sortedCurrencies, zone);
+        Job job = new Job(key, ShardContext.getShard(), parts.size());
+        Job existing = activeJobs.putIfAbsent(key, job);
+        if (existing != null) {
+            return existing.snapshot();
+        }
+        if (executor.getQueue().remainingCapacity() < parts.size()) {
+            activeJobs.remove(key, job);
+            throw new RejectedExecutionException("Report queue is full");
+        }
+        synchronized (jobs) {
+            if (!makeRoom(key.tenantId())) {
+                activeJobs.remove(key, job);
+                throw new RejectedExecutionException("Tenant " + key.tenantId() + " has " + maxJobsPerTenant + " reports running");
+            }
+            jobs.put(job.id, job);
+        }
+        start(job, parts);
+        System.out.println("Submitted report job " + job.id + " with " + parts.size() + " parts for tenant " + key.tenantId());
+        return job.snapshot();
+    }
+
+    // Evict the tenant's oldest finished jobs down to one below the cap; false if running ones fill it
+    private boolean makeRoom(String tenantId) {
+        List<Job> own = jobs.values().stream().filter(job -> job.key.tenantId().equals(tenantId)).toList();
+        int excess = own.size() - maxJobsPerTenant + 1;
+        if (excess <= 0) {
+            return true;
+        }
+        List<Job> finished = own.stream()
+                .filter(job -> job.finishedAt != null)
+                .sorted(Comparator.comparing((Job job) -> job.finishedAt))
+                .limit(excess)
+                .toList();
+        finished.forEach(job -> jobs.remove(job.id, job));
+        return finished.size() == excess;
+    }
+
+    private void start(Job job, List<Part> parts) {
+        List<CompletableFuture<Report.Row>> rows = parts.stream()
+                .map(part -> readAsync(job, () -> {
+                    job.status = ReportJob.Status.RUNNING;
+                    Report.Row row = buildRow(job.key.zone(), part);
+                    job.completedParts.incrementAndGet();
+                    return row;
+                }))
+                .toList();
+        CompletableFuture.allOf(rows.toArray(CompletableFuture[]::new))
+                .thenApply(done -> withCategoryNames(job, rows.stream().map(CompletableFuture::join).toList()))
+                .whenComplete((report, failure) -> {
+                    if (failure != null) {
+                        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                        job.error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                        job.status = ReportJob.Status.FAILED;
+                        System.err.println("Report job " + job.id + " failed: " + job.error);
+                    } else {
+                        job.result = report;
+                        job.status = ReportJob.Status.DONE;
+                    }
+                    job.finishedAt = Instant.now();
+                    activeJobs.remove(job.key, job);
+                });
+    }
+
+    // One month in one currency; rows in the archive are only reachable through the merged date-range read
+    private Report.Row buildRow(ZoneId zone, Part part) {
+        Instant start = part.month().atDay(1).atStartOfDay(zone).toInstant();
+        // Moments are stored with microsecond precision: the last one of the month
+        Instant end = part.month().plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().minus(1, ChronoUnit.MICROS);
+        List<CategoryTotal> incomes;
+        List<CategoryTotal> expenses;
+        if (expenseArchive.isEnabled() && !expenseArchive.findSegments(TenantContext.getTenantId(), start, end).isEmpty()) {
+            List<Expense> rows = expenseService.findByDateRange(start, end).stream()
+                    .filter(expense -> expense.getCurrency().equals(part.currency()))
+                    .toList();
+            incomes = totalsByCategory(rows, TransactionType.INCOME);
+            expenses = totalsByCategory(rows, TransactionType.EXPENSE);
+        } else {
+            incomes = expenseRepository.sumByCategory(part.currency(), TransactionType.INCOME, start, end, Pageable.unpaged());
+            expenses = expenseRepository.sumByCategory(part.currency(), TransactionType.EXPENSE, start, end, Pageable.unpaged());
+        }
+        return new Report.Row(part.month(), part.currency(), total(incomes), total(expenses), incomes, expenses);
+    }
+
+    private static List<CategoryTotal> totalsByCategory(List<Expense> expenses, TransactionType type) {
+        Map<Long, BigDecimal> sums = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (expense.getType() == type) {
+                sums.merge(expense.getCategory().getId(), expense.getSum(), BigDecimal::add);
+            }
+        }
+        return sums.entrySet().stream()
+                .map(entry -> new CategoryTotal(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(CategoryTotal::getTotal).reversed().thenComparing(CategoryTotal::getCategoryId))
+                .toList();
+    }
+
+    private static BigDecimal total(List<CategoryTotal> totals) {
+        return totals.stream().map(CategoryTotal::getTotal).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // Runs on the thread that finished the last part, so it never waits for the queue
+    private Report withCategoryNames(Job job, List<Report.Row> rows) {
+        List<Long> ids = rows.stream()
+                .flatMap(row -> Stream.concat(row.getIncomeCategories().stream(), row.getExpenseCategories().stream()))
+                .map(CategoryTotal::getCategoryId)
+                .distinct()
+                .toList();
+        Map<Long, String> names = ids.isEmpty() ? Map.of() : inJobContext(job, () -> categoryRepository.findByIdIn(ids)).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName));
+        rows.forEach(row -> {
+            row.getIncomeCategories().forEach(total -> total.setName(names.get(total.getCategoryId())));
+            row.getExpenseCategories().forEach(total -> total.setName(names.get(total.getCategoryId())));
+        });
+        JobKey key = job.key;
+        return new Report(key.from(), key.to(), key.currencies(), key.zone().getId(), rows);
+    }
+
+    /**
+     * State of a job of the current tenant
+     */
+    public Optional<ReportJob> findJob(String id) {
+        return findOwnJob(id).map(Job::snapshot);
+    }
+
+    /**
+     * Report of a finished job of the current tenant; empty while it runs or if it failed
+     */
+    public Optional<Report> findResult(String id) {
+        return findOwnJob(id).map(job -> job.result);
+    }
+
+    private Optional<Job> findOwnJob(String id) {
+        Job job = jobs.get(id);
+        return job != null && job.key.tenantId().equals(TenantContext.getTenantId()) ? Optional.of(job) : Optional.empty();
+    }
+
+    /**
+     * Forget finished jobs once their retention has passed
+     */
+    @Scheduled(fixedDelayString = "${expense.reports.retention:PT1H}")
+    public void purgeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(expiredBefore));
+    }
+
+    // Run a part on the report pool, in the job's tenant and shard, inside its own read-only transaction
+    private <T> CompletableFuture<T> readAsync(Job job, Supplier<T> read) {
+        try {
+            return CompletableFuture.supplyAsync(() -> inJobContext(job, read), executor);
+        } catch (RejectedExecutionException e) {
+            // Another job took the queue space since the capacity check
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> T inJobContext(Job job, Supplier<T> read) {
+        return TenantContext.callAs(job.key.tenantId(), () -> job.shard != null
+                ? ShardContext.callOn(job.shard, () -> readOnlyTransaction.execute(status -> read.get()))
+                : readOnlyTransaction.execute(status -> read.get()));
+    }
+}
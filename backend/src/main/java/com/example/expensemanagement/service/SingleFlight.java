@@ -0,0 +1,201 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent reads: the first caller for a key (tenant,
+ * shard, operation, arguments) runs the query in a read-only transaction of its
+ * own, later callers arriving while it is in flight wait for and share its
+ * result. A waiting caller gives up after the timeout and runs the query itself.
+ * When anyone joined, the first caller prepares the result for sharing (loads
+ * what the waiters would otherwise load lazily, outside its session) before
+ * handing it out.
+ * <p>
+ * Only calls made outside a transaction are coalesced, and the transaction is
+ * opened here, by the caller that runs the query: waiters hold no connection
+ * while they wait. The coalesced service reads therefore join a caller's
+ * transaction but do not open one. A call inside a transaction runs the query
+ * in it, so it never waits with a connection held and never sees a result that
+ * ignores its own uncommitted writes. After a write commits, the tenant's
+ * in-flight keys are dropped, so readers that start after the commit do not
+ * join a query that started before it.
+ */
+@Component
+public class SingleFlight {
+
+    private record Key(String tenantId, String shard, String operation, List<?> arguments) {
+    }
+
+    private static final class Flight {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        private int waiters;
+        private boolean closed;
+
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        // No one can join after this: returns whether anyone did
+        synchronized boolean close() {
+            closed = true;
+            return waiters > 0;
+        }
+    }
+
+    private final boolean enabled;
+    private final Duration timeout;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ConcurrentMap<Key, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Autowired
+    public SingleFlight(PlatformTransactionManager transactionManager,
+                        @Value("${expense.coalescing.enabled:true}") boolean enabled,
+                        @Value("${expense.coalescing.timeout:PT5S}") Duration timeout) {
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public <T> T execute(String operation, List<?> arguments, Supplier<T> loader, Consumer<? super T> share) {
+        return execute(operation, arguments, timeout, loader, share);
+    }
+
+    /**
+     * Run the loader, or share the result of an identical call already in flight. A result
+     * that other callers get is passed to share first, in the loading transaction. Inside a
+     * transaction the loader runs in it, otherwise in a read-only transaction of its own.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, List<?> arguments, Duration timeout, Supplier<T> loader, Consumer<? super T> share) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+        if (!enabled) {
+            return readOnlyTransaction.execute(status -> loader.get());
+        }
+        Key key = new Key(TenantContext.getTenantId(), ShardContext.getShard(), operation, arguments);
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            if (existing.join()) {
+                coalesced.increment();
+                return (T) await(existing.result, timeout, loader);
+            }
+            // Its result is already being handed out: too late to share it
+            executions.increment();
+            return readOnlyTransaction.execute(status -> loader.get());
+        }
+
+        executions.increment();
+        try {
+            T result = readOnlyTransaction.execute(status -> {
+                T loaded = loader.get();
+                boolean shared = flight.close();
+                inFlight.remove(key, flight);
+                if (shared) {
+                    share.accept(loaded);
+                }
+                return loaded;
+            });
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.close();
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether results loaded for other callers may be used here: outside a transaction or in
+     * a read-only one, which has no uncommitted writes of its own that such a result would miss
+     */
+    public static boolean mayShare() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private Object await(CompletableFuture<Object> flight, Duration timeout, Supplier<?> loader) {
+        try {
+            return flight.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            executions.increment();
+            return readOnlyTransaction.execute(status -> loader.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Coalesced query failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced query", e);
+        }
+    }
+
+    /**
+     * Once the current transaction commits, stop handing out in-flight results of the current tenant
+     */
+    public void forgetAfterCommit() {
+        String tenantId = TenantContext.getTenantId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    forget(tenantId);
+                }
+            });
+        } else {
+            forget(tenantId);
+        }
+    }
+
+    private void forget(String tenantId) {
+        inFlight.keySet().removeIf(key -> key.tenantId().equals(tenantId));
+    }
+
+    /**
+     * Counters since startup: queries executed, calls served by another call's query, waits that timed out
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("executions", executions.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("inFlight", (long) inFlight.size());
+        return stats;
+    }
+}
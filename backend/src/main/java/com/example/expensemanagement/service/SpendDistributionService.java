@@ -0,0 +1,246 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.SpendDistribution;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Amount distributions per category from stored sketches, one
+ * {@link SpendSketch} per (tenant, category, currency, month) in the
+ * spend_sketches table.
+ * <p>
+ * Every expense write updates its sketch in the writing transaction, so the
+ * sketches always match the committed expenses; the row is locked while it is
+ * updated, and an edit moving an expense locks its two rows in key order. Archived expenses keep counting, as archiving doesn't go through
+ * the writes. A distribution query merges the sketches of the range and the
+ * category subtree, so it costs O(categories x months x buckets) and not
+ * O(expenses).
+ */
+@Service
+public class SpendDistributionService {
+
+    private static final String SELECT_FOR_UPDATE =
+            "SELECT sketch FROM spend_sketches WHERE tenant_id = ? AND currency = ? AND category_id = ? AND month_start = ? FOR UPDATE";
+
+    private static final String INSERT =
+            "INSERT INTO spend_sketches (tenant_id, currency, category_id, month_start, sketch) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String UPDATE =
+            "UPDATE spend_sketches SET sketch = ? WHERE tenant_id = ? AND currency = ? AND category_id = ? AND month_start = ?";
+
+    private static final String DELETE =
+            "DELETE FROM spend_sketches WHERE tenant_id = ? AND currency = ? AND category_id = ? AND month_start = ?";
+
+    private final CategoryRepository categoryRepository;
+    private final ExpenseRepository expenseRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ZoneId zone;
+
+    @Autowired
+    public SpendDistributionService(CategoryRepository categoryRepository,
+                                    ExpenseRepository expenseRepository,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${expense.distribution.zone:UTC}") String zone) {
+        this.categoryRepository = categoryRepository;
+        this.expenseRepository = expenseRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.zone = ZoneId.of(zone);
+    }
+
+    /**
+     * What one expense contributes to the sketches: its amount in its category's month sketch
+     */
+    public record Sample(String tenantId, Long categoryId, String currency, LocalDate month, long cents) {
+        private boolean sameSketch(Sample other) {
+            return tenantId.equals(other.tenantId) && categoryId.equals(other.categoryId)
+                    && currency.equals(other.currency) && month.equals(other.month);
+        }
+    }
+
+    /**
+     * Capture what an expense contributes; null when it can't be placed (no category, sum or moment).
+     * Capture before changing the expense, to remove the old contribution afterwards.
+     */
+    public Sample sampleOf(Expense expense) {
+        if (expense.getCategory() == null || expense.getCategory().getId() == null || expense.getSum() == null
+                || expense.getCurrency() == null || expense.getMoment() == null) {
+            return null;
+        }
+        String tenantId = expense.getTenantId() != null ? expense.getTenantId() : TenantContext.getTenantId();
+        return new Sample(tenantId, expense.getCategory().getId(), expense.getCurrency(), monthOf(expense.getMoment()),
+                toCents(expense.getSum()));
+    }
+
+    /**
+     * Replace the removed contribution with the added one. Must run inside the writing
+     * transaction, on the expense's shard.
+     */
+    public void replace(Sample removed, Sample added) {
+        if (removed != null && added != null && removed.sameSketch(added)) {
+            update(added, sketch -> {
+                sketch.update(removed.cents(), -1);
+                sketch.update(added.cents(), 1);
+            });
+            return;
+        }
+        List<Change> changes = new ArrayList<>(2);
+        if (removed != null) {
+            changes.add(new Change(removed, -1));
+        }
+        if (added != null) {
+            changes.add(new Change(added, 1));
+        }
+        // Lock sketches in a fixed order, so two edits moving between the same sketches can't deadlock
+        changes.sort(Comparator.comparing((Change change) -> change.sample().tenantId())
+                .thenComparing(change -> change.sample().currency())
+                .thenComparing(change -> change.sample().categoryId())
+                .thenComparing(change -> change.sample().month()));
+        for (Change change : changes) {
+            update(change.sample(), sketch -> sketch.update(change.sample().cents(), change.count()));
+        }
+    }
+
+    private record Change(Sample sample, int count) {
+    }
+
+    private void update(Sample key, Consumer<SpendSketch> change) {
+        Object[] where = {key.tenantId(), key.currency(), key.categoryId(), key.month()};
+        List<byte[]> stored = jdbcTemplate.query(SELECT_FOR_UPDATE, (rs, rowNum) -> rs.getBytes(1), where);
+        if (stored.isEmpty()) {
+            SpendSketch sketch = new SpendSketch();
+            change.accept(sketch);
+            if (sketch.isEmpty()) {
+                return;
+            }
+            if (JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT,
+                    key.tenantId(), key.currency(), key.categoryId(), key.month(), sketch.encode())) {
+                return;
+            }
+            // Another transaction created the sketch meanwhile: update that one
+            stored = jdbcTemplate.query(SELECT_FOR_UPDATE, (rs, rowNum) -> rs.getBytes(1), where);
+        }
+        SpendSketch sketch = SpendSketch.decode(stored.get(0));
+        change.accept(sketch);
+        if (sketch.isEmpty()) {
+            // No empty rows: a category with sketches always has expenses, which keep it from being deleted
+            jdbcTemplate.update(DELETE, where);
+        } else {
+            jdbcTemplate.update(UPDATE, sketch.encode(), key.tenantId(), key.currency(), key.categoryId(), key.month());
+        }
+    }
+
+    /**
+     * Distribution of amounts of a category of the current tenant in a currency over
+     * the months from..to, including its subcategories if asked; percentiles are 0 to 100
+     */
+    @Transactional(readOnly = true)
+    public SpendDistribution distribution(Long categoryId, String currency, YearMonth from, YearMonth to,
+                                          boolean subtree, List<Double> percentiles) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("The first month must not be after the last month");
+        }
+        for (double percentile : percentiles) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100");
+            }
+        }
+        Category category = categoryRepository.findById(categoryId)
+                .orElseThrow(() -> new RuntimeException("Category not found with id: " + categoryId));
+        List<Long> categoryIds = subtree ? subtreeIds(category) : List.of(categoryId);
+
+        String placeholders = String.join(", ", Collections.nCopies(categoryIds.size(), "?"));
+        List<Object> args = new ArrayList<>(List.of(TenantContext.getTenantId(), currency, from.atDay(1), to.atDay(1)));
+        args.addAll(categoryIds);
+        SpendSketch merged = new SpendSketch();
+        jdbcTemplate.query("SELECT sketch FROM spend_sketches WHERE tenant_id = ? AND currency = ? "
+                        + "AND month_start BETWEEN ? AND ? AND category_id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> merged.merge(SpendSketch.decode(rs.getBytes(1))), args.toArray());
+
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (double percentile : percentiles) {
+            values.put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                    merged.quantile(percentile / 100));
+        }
+        return new SpendDistribution(categoryId, currency, from, to, subtree, merged.getCount(), merged.getTotal(),
+                merged.quantile(0), merged.quantile(1), values, merged.buckets());
+    }
+
+    private List<Long> subtreeIds(Category category) {
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (Category candidate : categoryRepository.findByType(category.getType())) {
+            if (candidate.getParent() != null) {
+                children.computeIfAbsent(candidate.getParent().getId(), id -> new ArrayList<>()).add(candidate.getId());
+            }
+        }
+        List<Long> ids = new ArrayList<>();
+        Deque<Long> pending = new ArrayDeque<>(List.of(category.getId()));
+        while (!pending.isEmpty()) {
+            Long id = pending.poll();
+            if (!ids.contains(id)) {
+                ids.add(id);
+                pending.addAll(children.getOrDefault(id, List.of()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Recompute all sketches of a tenant from its expenses, for rows written around the
+     * services (bulk loads). Archived expenses are not in the repository and drop out.
+     * Must run as that tenant; returns the number of sketches written.
+     */
+    @Transactional
+    public int rebuild(String tenantId) {
+        Map<Sample, SpendSketch> sketches = new HashMap<>();
+        try (Stream<Object[]> rows = expenseRepository.streamCategoryAmounts()) {
+            rows.forEach(row -> {
+                // Keyed by the sketch, so the amount part of the key is always zero
+                Sample key = new Sample(tenantId, (Long) row[0], (String) row[1], monthOf((Instant) row[2]), 0);
+                sketches.computeIfAbsent(key, k -> new SpendSketch()).update(toCents((BigDecimal) row[3]), 1);
+            });
+        }
+
+        jdbcTemplate.update("DELETE FROM spend_sketches WHERE tenant_id = ?", tenantId);
+        List<Object[]> rows = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> rows.add(new Object[]{
+                tenantId, key.currency(), key.categoryId(), key.month(), sketch.encode()}));
+        jdbcTemplate.batchUpdate(INSERT, rows);
+        System.out.println("Rebuilt " + rows.size() + " spend sketches of tenant " + tenantId);
+        return rows.size();
+    }
+
+    private LocalDate monthOf(Instant moment) {
+        return YearMonth.from(moment.atZone(zone)).atDay(1);
+    }
+
+    private static long toCents(BigDecimal sum) {
+        return sum.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
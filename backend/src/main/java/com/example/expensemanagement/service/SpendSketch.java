@@ -0,0 +1,200 @@
+package com.example.expensemanagement.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mergeable summary of a set of amounts for approximate quantiles: a
+ * log-bucketed histogram (DDSketch style). An amount of c cents lands in
+ * bucket ceil(log_gamma(c)), so every quantile comes back within
+ * {@link #RELATIVE_ACCURACY} of an actual amount, whatever the distribution.
+ * <p>
+ * Unlike a t-digest, the sketch is just bucket counts: merging two sketches
+ * adds their counts and gives exactly the sketch of the combined amounts, and
+ * an amount can be removed again, which updates and deletes of expenses need.
+ * Amounts of zero or less are counted in one zero bucket.
+ */
+public final class SpendSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final byte VERSION = 1;
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long totalCents;
+
+    /**
+     * One bucket of the histogram: count amounts in (lower, upper]
+     */
+    public record Bucket(BigDecimal lower, BigDecimal upper, long count) {
+    }
+
+    /**
+     * Add an amount (weight 1) or remove it again (weight -1)
+     */
+    public void update(long cents, long weight) {
+        totalCents += cents * weight;
+        if (cents <= 0) {
+            zeroCount = Math.max(0, zeroCount + weight);
+            return;
+        }
+        // Counts never go below zero, even if an amount is removed that was never added
+        int index = index(cents);
+        long count = buckets.getOrDefault(index, 0L) + weight;
+        if (count > 0) {
+            buckets.put(index, count);
+        } else {
+            buckets.remove(index);
+        }
+    }
+
+    public void merge(SpendSketch other) {
+        other.buckets.forEach((index, count) -> buckets.merge(index, count, Long::sum));
+        zeroCount += other.zeroCount;
+        totalCents += other.totalCents;
+    }
+
+    public long getCount() {
+        long count = zeroCount;
+        for (long bucketCount : buckets.values()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return zeroCount == 0 && buckets.isEmpty();
+    }
+
+    public BigDecimal getTotal() {
+        return BigDecimal.valueOf(totalCents, 2);
+    }
+
+    /**
+     * Amount at quantile q (0 to 1), null for an empty sketch
+     */
+    public BigDecimal quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        long count = getCount();
+        if (count == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return BigDecimal.ZERO.setScale(2);
+        }
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (rank < seen) {
+                return amount(2 * Math.pow(GAMMA, bucket.getKey()) / (GAMMA + 1));
+            }
+        }
+        return amount(Math.pow(GAMMA, buckets.lastKey()));
+    }
+
+    /**
+     * Non-empty buckets in ascending order, the zero bucket first
+     */
+    public List<Bucket> buckets() {
+        List<Bucket> result = new ArrayList<>(buckets.size() + 1);
+        if (zeroCount > 0) {
+            result.add(new Bucket(null, BigDecimal.ZERO.setScale(2), zeroCount));
+        }
+        buckets.forEach((index, count) ->
+                result.add(new Bucket(amount(Math.pow(GAMMA, index - 1)), amount(Math.pow(GAMMA, index)), count)));
+        return result;
+    }
+
+    // Log-bucketed in cents: a bucket holds (gamma^(i-1), gamma^i]
+    private static int index(long cents) {
+        return (int) Math.ceil(Math.log(cents) / LOG_GAMMA);
+    }
+
+    private static BigDecimal amount(double cents) {
+        return BigDecimal.valueOf(cents).movePointLeft(2).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Serialized form: a version byte, then varints for the zero count, the
+     * total, the bucket count and per bucket its index (delta to the previous
+     * one) and count. A month of one category typically takes tens of bytes.
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 10 * (3 + 2 * buckets.size()));
+        buffer.put(VERSION);
+        putVarLong(buffer, zeroCount);
+        putVarLong(buffer, zigZag(totalCents));
+        putVarLong(buffer, buckets.size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            putVarLong(buffer, zigZag(bucket.getKey() - previous));
+            putVarLong(buffer, bucket.getValue());
+            previous = bucket.getKey();
+        }
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    public static SpendSketch decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch version " + version);
+            }
+            SpendSketch sketch = new SpendSketch();
+            sketch.zeroCount = getVarLong(buffer);
+            sketch.totalCents = unZigZag(getVarLong(buffer));
+            long size = getVarLong(buffer);
+            int index = 0;
+            for (long i = 0; i < size; i++) {
+                index += (int) unZigZag(getVarLong(buffer));
+                sketch.buckets.put(index, getVarLong(buffer));
+            }
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated sketch", e);
+        }
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in sketch");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.ExpenseAmount;
+import com.example.expensemanagement.dto.Granularity;
+import com.example.expensemanagement.dto.TimeSeries;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@Transactional(readOnly = true)
+public class TimeSeriesService {
+
+    // Ten years of days
+    static final int MAX_BUCKETS = 3660;
+
+    private final ExpenseRepository expenseRepository;
+
+    @Autowired
+    public TimeSeriesService(ExpenseRepository expenseRepository) {
+        this.expenseRepository = expenseRepository;
+    }
+
+    /**
+     * Sum income and expenses per calendar period between two local dates
+     * (inclusive) in the given zone. Buckets are laid out up front so empty
+     * periods are zero-filled, then rows are streamed in moment order and
+     * assigned in a single pass; memory is proportional to the bucket count,
+     * which is capped at MAX_BUCKETS.
+     */
+    public TimeSeries buildTimeSeries(String currency, LocalDate startDate, LocalDate endDate,
+                                      ZoneId zone, Granularity granularity) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date must not be before start date");
+        }
+
+        List<TimeSeries.Point> points = new ArrayList<>();
+        for (LocalDate period = granularity.periodStart(startDate); !period.isAfter(endDate); period = granularity.next(period)) {
+            if (points.size() == MAX_BUCKETS) {
+                throw new IllegalArgumentException("A time series can have at most " + MAX_BUCKETS
+                        + " periods: use a shorter range or a coarser granularity");
+            }
+            LocalDate bucketStart = period.isBefore(startDate) ? startDate : period;
+            points.add(new TimeSeries.Point(period, bucketStart.atStartOfDay(zone).toInstant()));
+        }
+        Instant end = endDate.plusDays(1).atStartOfDay(zone).toInstant();
+
+        try (Stream<ExpenseAmount> amounts = expenseRepository.streamAmountsByCurrencyAndMomentRange(
+                currency, points.get(0).getStart(), end)) {
+            int bucket = 0;
+            for (ExpenseAmount amount : (Iterable<ExpenseAmount>) amounts::iterator) {
+                while (bucket + 1 < points.size() && !amount.getMoment().isBefore(points.get(bucket + 1).getStart())) {
+                    bucket++;
+                }
+                points.get(bucket).add(amount);
+            }
+        }
+
+        return new TimeSeries(currency, zone.getId(), granularity, points);
+    }
+}
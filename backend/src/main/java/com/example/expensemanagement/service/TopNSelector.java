@@ -0,0 +1,44 @@
+package com.example.expensemanagement.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the N greatest items seen so far in a min-heap of size N, so
+ * selecting from a stream of M items costs O(M log N) time and O(N) memory.
+ */
+class TopNSelector<T> {
+
+    private final int limit;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<T> heap;
+
+    TopNSelector(int limit, Comparator<? super T> comparator) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(limit, comparator);
+    }
+
+    void offer(T item) {
+        if (heap.size() < limit) {
+            heap.add(item);
+        } else if (comparator.compare(item, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    /**
+     * Selected items, greatest first
+     */
+    List<T> result() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+}
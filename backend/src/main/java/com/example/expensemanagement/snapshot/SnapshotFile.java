@@ -0,0 +1,491 @@
+package com.example.expensemanagement.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Snapshot of the categories and expenses tables of one shard.
+ * <pre>
+ * header:  magic, version, created at (epoch micros), then per table its tag and last id
+ * blocks:  table tag, rows, raw length, compressed length, CRC32, deflate-compressed columns
+ * trailer: tag 0, then per table its tag and total rows
+ * </pre>
+ * Rows are stored in id order, column by column: ids and moments as
+ * zig-zag varint deltas, amounts as varint cents, strings through a per-block
+ * dictionary. Every block is checked against its CRC before it is inflated,
+ * and the trailer's row counts catch a truncated file.
+ */
+final class SnapshotFile {
+
+    static final String EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x4558534E; // "EXSN"
+    private static final short VERSION = 2;
+    private static final int LAST_IDS_OFFSET = 14;
+
+    enum Kind {
+        ID,     // positive id or null
+        MICROS, // timestamp as epoch microseconds, the precision of the tables
+        CENTS,  // amount with two decimals
+        STRING
+    }
+
+    record Column(String name, Kind kind) {
+    }
+
+    enum Table {
+        CATEGORIES(1, "categories", "parent_id", List.of(
+                new Column("id", Kind.ID), new Column("tenant_id", Kind.STRING), new Column("name", Kind.STRING),
+                new Column("type", Kind.STRING), new Column("parent_id", Kind.ID))),
+        // recurring_transaction_id is left out: the templates are not in the snapshot, so a
+        // restored occurrence is a plain expense rather than a reference to a missing row
+        EXPENSES(2, "expenses", null, List.of(
+                new Column("id", Kind.ID), new Column("tenant_id", Kind.STRING), new Column("description", Kind.STRING),
+                new Column("sum", Kind.CENTS), new Column("currency", Kind.STRING), new Column("moment", Kind.MICROS),
+                new Column("type", Kind.STRING), new Column("category_id", Kind.ID)));
+
+        final byte tag;
+        final String name;
+        // Loaded after all rows, so rows may reference later ones (a category's parent)
+        final String deferredColumn;
+        final List<Column> columns;
+
+        Table(int tag, String name, String deferredColumn, List<Column> columns) {
+            this.tag = (byte) tag;
+            this.name = name;
+            this.deferredColumn = deferredColumn;
+            this.columns = columns;
+        }
+
+        String selectSql() {
+            return "SELECT " + columns.stream().map(Column::name).collect(Collectors.joining(", ")) + " FROM " + name + " ORDER BY id";
+        }
+
+        /**
+         * Insert of every column but the deferred one
+         */
+        String insertSql() {
+            List<String> names = columns.stream().map(Column::name).filter(column -> !column.equals(deferredColumn)).toList();
+            return "INSERT INTO " + name + " (" + String.join(", ", names) + ") VALUES ("
+                    + names.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        }
+
+        int deferredIndex() {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).name().equals(deferredColumn)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Current row of a result set of {@link #selectSql()}, in its stored form
+         */
+        Object[] read(ResultSet rs) throws SQLException {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                switch (columns.get(i).kind()) {
+                    case ID -> {
+                        long id = rs.getLong(i + 1);
+                        row[i] = rs.wasNull() ? null : id;
+                    }
+                    case MICROS -> row[i] = micros(rs.getObject(i + 1, OffsetDateTime.class).toInstant());
+                    case CENTS -> row[i] = rs.getBigDecimal(i + 1).setScale(2).unscaledValue().longValueExact();
+                    case STRING -> row[i] = rs.getString(i + 1);
+                }
+            }
+            return row;
+        }
+
+        private static Table of(byte tag) throws IOException {
+            for (Table table : values()) {
+                if (table.tag == tag) {
+                    return table;
+                }
+            }
+            throw new IOException("Unknown table in snapshot: " + tag);
+        }
+    }
+
+    /**
+     * A block as read from the file; checked and inflated by {@link #decode()}, on any thread
+     */
+    record Block(Table table, int rows, int rawLength, byte[] compressed, int crc) {
+
+        /**
+         * Rows as JDBC parameters: ids as Long, moments as UTC OffsetDateTime, amounts as BigDecimal
+         */
+        List<Object[]> decode() {
+            CRC32 checksum = new CRC32();
+            checksum.update(compressed);
+            if ((int) checksum.getValue() != crc) {
+                throw new IllegalStateException("Checksum mismatch in a " + table.name + " block of the snapshot");
+            }
+            ByteBuffer raw = ByteBuffer.wrap(inflate(compressed, rawLength));
+            List<Object[]> result = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                result.add(new Object[table.columns.size()]);
+            }
+            try {
+                for (int c = 0; c < table.columns.size(); c++) {
+                    decodeColumn(raw, table.columns.get(c).kind(), result, c);
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IllegalStateException("Corrupt " + table.name + " block in the snapshot", e);
+            }
+            return result;
+        }
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and moves it in place on {@link #commit()}
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final Map<Table, Long> totals = new EnumMap<>(Table.class);
+        private final Map<Table, Long> lastIds = new EnumMap<>(Table.class);
+        private final Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        private boolean committed;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(micros(createdAt));
+            for (Table table : Table.values()) {
+                totals.put(table, 0L);
+                lastIds.put(table, 0L);
+                // Filled in by commit()
+                out.writeByte(table.tag);
+                out.writeLong(0);
+            }
+        }
+
+        Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        long getRows(Table table) {
+            return totals.get(table);
+        }
+
+        void write(Table table, List<Object[]> rows) throws IOException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            byte[] raw = encode(table, rows);
+            byte[] compressed = deflate(raw);
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            out.writeByte(table.tag);
+            out.writeInt(rows.size());
+            out.writeInt(raw.length);
+            out.writeInt(compressed.length);
+            out.writeInt((int) crc.getValue());
+            out.write(compressed);
+            totals.merge(table, (long) rows.size(), Long::sum);
+            lastIds.merge(table, (Long) rows.get(rows.size() - 1)[0], Math::max);
+        }
+
+        /**
+         * Write the trailer and make the file durable under its final name; returns its size
+         */
+        long commit() throws IOException {
+            out.writeByte(0);
+            for (Map.Entry<Table, Long> total : totals.entrySet()) {
+                out.writeByte(total.getKey().tag);
+                out.writeLong(total.getValue());
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(lastIds.size() * 9);
+            for (Map.Entry<Table, Long> lastId : lastIds.entrySet()) {
+                header.put(lastId.getKey().tag).putLong(lastId.getValue());
+            }
+            channel.write(header.flip(), LAST_IDS_OFFSET);
+            channel.force(true);
+            out.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return Files.size(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Reads the blocks of a snapshot in file order
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Instant createdAt;
+        private final Map<Table, Long> seen = new EnumMap<>(Table.class);
+        private final Map<Table, Long> lastIds = new EnumMap<>(Table.class);
+
+        Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Not a snapshot: " + file);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            this.createdAt = instant(in.readLong());
+            try {
+                for (int i = 0; i < Table.values().length; i++) {
+                    Table table = Table.of(in.readByte());
+                    lastIds.put(table, in.readLong());
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        long getRows(Table table) {
+            return seen.getOrDefault(table, 0L);
+        }
+
+        /**
+         * Highest id of the table in the snapshot (0 when it has no rows), known before any block is read
+         */
+        long getLastId(Table table) {
+            return lastIds.getOrDefault(table, 0L);
+        }
+
+        /**
+         * The next block, or null after the trailer (whose row counts are checked)
+         */
+        Block next() throws IOException {
+            try {
+                byte tag = in.readByte();
+                if (tag == 0) {
+                    for (int i = 0; i < Table.values().length; i++) {
+                        Table table = Table.of(in.readByte());
+                        long total = in.readLong();
+                        if (total != seen.getOrDefault(table, 0L)) {
+                            throw new IOException("Snapshot has " + seen.getOrDefault(table, 0L) + " " + table.name
+                                    + " rows, its trailer says " + total);
+                        }
+                    }
+                    return null;
+                }
+                Table table = Table.of(tag);
+                int rows = in.readInt();
+                int rawLength = in.readInt();
+                byte[] compressed = new byte[in.readInt()];
+                int crc = in.readInt();
+                in.readFully(compressed);
+                seen.merge(table, (long) rows, Long::sum);
+                return new Block(table, rows, rawLength, compressed, crc);
+            } catch (EOFException e) {
+                throw new IOException("Truncated snapshot", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Column by column, so similar values sit next to each other for the compressor
+    private static byte[] encode(Table table, List<Object[]> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 16);
+        for (int c = 0; c < table.columns.size(); c++) {
+            switch (table.columns.get(c).kind()) {
+                case ID, MICROS -> {
+                    long previous = 0;
+                    for (Object[] row : rows) {
+                        long value = row[c] != null ? (Long) row[c] : 0;
+                        putVarLong(out, zigZag(value - previous));
+                        previous = value;
+                    }
+                }
+                case CENTS -> {
+                    for (Object[] row : rows) {
+                        putVarLong(out, zigZag((Long) row[c]));
+                    }
+                }
+                case STRING -> {
+                    // Dictionary of the block's distinct values, then per row its index (0 for null)
+                    Map<String, Integer> dictionary = new LinkedHashMap<>();
+                    for (Object[] row : rows) {
+                        if (row[c] != null) {
+                            dictionary.putIfAbsent((String) row[c], dictionary.size() + 1);
+                        }
+                    }
+                    putVarLong(out, dictionary.size());
+                    for (String value : dictionary.keySet()) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        putVarLong(out, bytes.length);
+                        out.write(bytes, 0, bytes.length);
+                    }
+                    for (Object[] row : rows) {
+                        putVarLong(out, row[c] != null ? dictionary.get((String) row[c]) : 0);
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void decodeColumn(ByteBuffer raw, Kind kind, List<Object[]> rows, int c) {
+        switch (kind) {
+            case ID -> {
+                long value = 0;
+                for (Object[] row : rows) {
+                    value += unZigZag(getVarLong(raw));
+                    row[c] = value != 0 ? value : null;
+                }
+            }
+            case MICROS -> {
+                long value = 0;
+                for (Object[] row : rows) {
+                    value += unZigZag(getVarLong(raw));
+                    row[c] = instant(value).atOffset(ZoneOffset.UTC);
+                }
+            }
+            case CENTS -> {
+                for (Object[] row : rows) {
+                    row[c] = BigDecimal.valueOf(unZigZag(getVarLong(raw)), 2);
+                }
+            }
+            case STRING -> {
+                String[] dictionary = new String[(int) getVarLong(raw) + 1];
+                for (int i = 1; i < dictionary.length; i++) {
+                    byte[] bytes = new byte[(int) getVarLong(raw)];
+                    raw.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                for (Object[] row : rows) {
+                    row[c] = dictionary[(int) getVarLong(raw)];
+                }
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt snapshot block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void putVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in snapshot");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long micros(Instant instant) {
+        return Math.multiplyExact(instant.getEpochSecond(), 1_000_000L) + instant.getNano() / 1_000;
+    }
+
+    static Instant instant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.expensemanagement.snapshot;
+
+import com.example.expensemanagement.dto.SnapshotSummary;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.tenant.ShardContext;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshots of the categories and expenses of each shard, one
+ * {@link SnapshotFile} per shard under expense.snapshot.directory, for warm
+ * restarts of the in-memory database.
+ * <p>
+ * An export reads both tables in one repeatable-read transaction, so the
+ * snapshot is consistent. A restore only fills an empty shard: it reads the
+ * blocks in file order, loads the categories first (parents afterwards) and
+ * then inflates and inserts expense blocks on expense.snapshot.load-threads
+ * threads, each block one JDBC batch in its own transaction, keeping ids.
+ * H2 maintains every index of a row as it is inserted, so the expenses are
+ * loaded into a table holding only its primary key; the secondary indexes,
+ * the unique occurrence key and the category foreign key (checked then) are
+ * built once all blocks are in. It bypasses JPA and the per-expense bookkeeping; spend sketches and balance
+ * checkpoints are rebuilt per tenant afterwards. Recurring templates, budgets
+ * and the audit trail are not part of a snapshot, so restored expenses carry
+ * no recurring template.
+ * <p>
+ * The startup restore runs as a lifecycle phase ahead of the web server, so
+ * no request sees (or writes to) a half-loaded shard, and the shutdown export
+ * runs after the web server has stopped. Identity columns are moved past the
+ * snapshot's ids before the first row is loaded.
+ */
+@Component
+@Profile("!logstore")
+public class SnapshotService implements SmartLifecycle {
+
+    // The embedded web server starts in phase DEFAULT_PHASE - 2048
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    // Statements of H2's SCRIPT output that create a secondary index or a unique or foreign key
+    private static final Pattern CREATE_INDEX = Pattern.compile("CREATE INDEX (\\S+) ON ");
+    private static final Pattern ADD_KEY = Pattern.compile("ALTER TABLE \\S+ ADD CONSTRAINT (\\S+) (?:UNIQUE|FOREIGN KEY)");
+
+    private final ShardRegistry shardRegistry;
+    private final SpendDistributionService spendDistributionService;
+    private final BalanceService balanceService;
+    private final Path directory;
+    private final boolean restoreOnStartup;
+    private final boolean exportOnShutdown;
+    private final int blockRows;
+    private final int loadThreads;
+    private volatile boolean running;
+
+    @Autowired
+    public SnapshotService(ShardRegistry shardRegistry,
+                           SpendDistributionService spendDistributionService,
+                           BalanceService balanceService,
+                           @Value("${expense.snapshot.directory:data/snapshots}") String directory,
+                           @Value("${expense.snapshot.restore-on-startup:false}") boolean restoreOnStartup,
+                           @Value("${expense.snapshot.export-on-shutdown:false}") boolean exportOnShutdown,
+                           @Value("${expense.snapshot.block-rows:65536}") int blockRows,
+                           @Value("${expense.snapshot.load-threads:4}") int loadThreads) {
+        this.shardRegistry = shardRegistry;
+        this.spendDistributionService = spendDistributionService;
+        this.balanceService = balanceService;
+        this.directory = Path.of(directory);
+        this.restoreOnStartup = restoreOnStartup;
+        this.exportOnShutdown = exportOnShutdown;
+        this.blockRows = blockRows;
+        this.loadThreads = loadThreads;
+    }
+
+    @Override
+    public void start() {
+        if (restoreOnStartup) {
+            restoreAll();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (exportOnShutdown) {
+            try {
+                exportAll();
+            } catch (RuntimeException e) {
+                System.err.println("Snapshot export on shutdown failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Export every shard to its snapshot file, replacing the previous one
+     */
+    public synchronized List<SnapshotSummary> exportAll() {
+        List<SnapshotSummary> summaries = new ArrayList<>();
+        for (String shard : shardRegistry.getShardNames()) {
+            summaries.add(export(shard));
+        }
+        return summaries;
+    }
+
+    /**
+     * Restore every empty shard that has a snapshot file; shards with data are left alone
+     */
+    public synchronized List<SnapshotSummary> restoreAll() {
+        List<SnapshotSummary> summaries = new ArrayList<>();
+        for (String shard : shardRegistry.getShardNames()) {
+            Path file = fileOf(shard);
+            if (!Files.exists(file)) {
+                System.out.println("No snapshot to restore for shard " + shard + " at " + file);
+                continue;
+            }
+            DataSource dataSource = shardRegistry.getDataSource(shard);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            if (hasRows(jdbcTemplate)) {
+                System.out.println("Snapshot restore skipped: shard " + shard + " already has data");
+                continue;
+            }
+            summaries.add(restore(shard, file, dataSource, jdbcTemplate));
+        }
+        return summaries;
+    }
+
+    private SnapshotSummary export(String shard) {
+        long started = System.nanoTime();
+        Path file = fileOf(shard);
+        DataSource dataSource = shardRegistry.getDataSource(shard);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(blockRows);
+        TransactionTemplate snapshotTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        snapshotTransaction.setReadOnly(true);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        try {
+            Files.createDirectories(directory);
+            try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file)) {
+                snapshotTransaction.executeWithoutResult(status -> {
+                    for (SnapshotFile.Table table : SnapshotFile.Table.values()) {
+                        List<Object[]> block = new ArrayList<>(blockRows);
+                        jdbcTemplate.query(table.selectSql(), (RowCallbackHandler) rs -> {
+                            block.add(table.read(rs));
+                            if (block.size() == blockRows) {
+                                write(writer, table, block);
+                            }
+                        });
+                        write(writer, table, block);
+                    }
+                });
+                long bytes = writer.commit();
+                SnapshotSummary summary = new SnapshotSummary(shard, file.toString(), writer.getCreatedAt(),
+                        writer.getRows(SnapshotFile.Table.CATEGORIES), writer.getRows(SnapshotFile.Table.EXPENSES),
+                        bytes, (System.nanoTime() - started) / 1_000_000);
+                System.out.println("Exported snapshot of shard " + shard + ": " + summary.getCategories() + " categories, "
+                        + summary.getExpenses() + " expenses, " + bytes + " bytes in " + summary.getMillis() + " ms");
+                return summary;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + file, e);
+        }
+    }
+
+    private static void write(SnapshotFile.Writer writer, SnapshotFile.Table table, List<Object[]> block) {
+        try {
+            writer.write(table, block);
+            block.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SnapshotSummary restore(String shard, Path file, DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        long started = System.nanoTime();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor loaders = new ThreadPoolExecutor(loadThreads, loadThreads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "snapshot-load-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Bounds the blocks read ahead of the loaders, and so the memory they hold
+        Semaphore inFlight = new Semaphore(loadThreads * 2);
+        List<Future<?>> loads = new ArrayList<>();
+        List<Object[]> parents = new ArrayList<>();
+        List<String> deferredIndexes = new ArrayList<>();
+        try (SnapshotFile.Reader reader = new SnapshotFile.Reader(file)) {
+            for (SnapshotFile.Table table : SnapshotFile.Table.values()) {
+                // Keep new rows from colliding with the restored ids
+                jdbcTemplate.execute("ALTER TABLE " + table.name + " ALTER COLUMN id RESTART WITH " + (reader.getLastId(table) + 1));
+            }
+            deferredIndexes = dropSecondaryIndexes(jdbcTemplate, SnapshotFile.Table.EXPENSES.name);
+            for (SnapshotFile.Block block = reader.next(); block != null; block = reader.next()) {
+                if (block.table().deferredColumn != null) {
+                    // Categories come first and are few: load them in order before any expense
+                    load(block, jdbcTemplate, transactionManager, parents);
+                    continue;
+                }
+                inFlight.acquire();
+                SnapshotFile.Block expenses = block;
+                loads.add(loaders.submit(() -> {
+                    try {
+                        load(expenses, jdbcTemplate, transactionManager, null);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<?> load : loads) {
+                load.get();
+            }
+            long indexStarted = System.nanoTime();
+            createIndexes(jdbcTemplate, deferredIndexes);
+            long indexed = (System.nanoTime() - indexStarted) / 1_000_000;
+            jdbcTemplate.batchUpdate("UPDATE categories SET parent_id = ? WHERE id = ?", parents);
+            long loaded = (System.nanoTime() - started) / 1_000_000;
+
+            rebuildDerivedState(shard, jdbcTemplate);
+            SnapshotSummary summary = new SnapshotSummary(shard, file.toString(), reader.getCreatedAt(),
+                    reader.getRows(SnapshotFile.Table.CATEGORIES), reader.getRows(SnapshotFile.Table.EXPENSES),
+                    Files.size(file), (System.nanoTime() - started) / 1_000_000);
+            System.out.println("Restored snapshot of shard " + shard + " from " + reader.getCreatedAt() + ": "
+                    + summary.getCategories() + " categories, " + summary.getExpenses() + " expenses loaded in "
+                    + loaded + " ms (" + indexed + " ms building indexes), " + summary.getMillis()
+                    + " ms with sketches and balance checkpoints");
+            return summary;
+        } catch (IOException | ExecutionException | InterruptedException | RuntimeException e) {
+            loaders.shutdownNow();
+            // Blocks already being inserted must commit before the clean-up, or they would survive it
+            boolean interrupted = e instanceof InterruptedException;
+            try {
+                loaders.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException again) {
+                interrupted = true;
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            // The shard was empty: don't leave half a snapshot behind
+            clear(jdbcTemplate);
+            createIndexes(jdbcTemplate, deferredIndexes);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IllegalStateException("Could not restore snapshot " + file + ": " + cause.getMessage(), cause);
+        } finally {
+            loaders.shutdown();
+        }
+    }
+
+    private static void load(SnapshotFile.Block block, JdbcTemplate jdbcTemplate,
+                             DataSourceTransactionManager transactionManager, List<Object[]> parents) {
+        List<Object[]> rows = block.decode();
+        int deferred = block.table().deferredIndex();
+        if (deferred >= 0) {
+            List<Object[]> inserted = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                if (row[deferred] != null) {
+                    parents.add(new Object[]{row[deferred], row[0]});
+                }
+                Object[] values = new Object[row.length - 1];
+                System.arraycopy(row, 0, values, 0, deferred);
+                System.arraycopy(row, deferred + 1, values, deferred, row.length - deferred - 1);
+                inserted.add(values);
+            }
+            rows = inserted;
+        }
+        List<Object[]> batch = rows;
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> jdbcTemplate.batchUpdate(block.table().insertSql(), batch));
+    }
+
+    // Restored rows bypassed the services: rebuild what they maintain, and route each tenant to this shard
+    private void rebuildDerivedState(String shard, JdbcTemplate jdbcTemplate) {
+        Instant now = Instant.now();
+        for (String tenantId : jdbcTemplate.queryForList("SELECT DISTINCT tenant_id FROM categories", String.class)) {
+            if (!shard.equals(shardRegistry.shardFor(tenantId))) {
+                shardRegistry.place(tenantId, shard);
+            }
+            ShardContext.runOn(shard, () -> TenantContext.runAs(tenantId, () -> {
+                spendDistributionService.rebuild(tenantId);
+                balanceService.createCheckpoints(tenantId, now);
+            }));
+        }
+    }
+
+    /**
+     * Drop the secondary indexes, unique keys and foreign keys of an empty table; returns the
+     * statements that create them again, foreign keys checked against the loaded rows
+     */
+    private static List<String> dropSecondaryIndexes(JdbcTemplate jdbcTemplate, String table) {
+        List<String> created = new ArrayList<>();
+        for (String statement : jdbcTemplate.queryForList("SCRIPT NODATA NOSETTINGS TABLE " + table, String.class)) {
+            Matcher index = CREATE_INDEX.matcher(statement);
+            Matcher key = ADD_KEY.matcher(statement);
+            if (index.lookingAt()) {
+                jdbcTemplate.execute("DROP INDEX " + index.group(1));
+                created.add(statement);
+            } else if (key.lookingAt()) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT " + key.group(1));
+                created.add(statement.replace(" NOCHECK", ""));
+            }
+        }
+        return created;
+    }
+
+    // Removes each statement once it has run, so a failed restore only creates the rest again
+    private static void createIndexes(JdbcTemplate jdbcTemplate, List<String> statements) {
+        while (!statements.isEmpty()) {
+            jdbcTemplate.execute(statements.get(0));
+            statements.remove(0);
+        }
+    }
+
+    private static boolean hasRows(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM categories) OR EXISTS (SELECT 1 FROM expenses)", Boolean.class));
+    }
+
+    private static void clear(JdbcTemplate jdbcTemplate) {
+        // A partial rebuild leaves sketches and checkpoints of the restored tenants behind
+        List<String> tenants = jdbcTemplate.queryForList(
+                "SELECT tenant_id FROM categories UNION SELECT tenant_id FROM expenses", String.class);
+        for (String tenantId : tenants) {
+            jdbcTemplate.update("DELETE FROM spend_sketches WHERE tenant_id = ?", tenantId);
+            jdbcTemplate.update("DELETE FROM balance_checkpoints WHERE tenant_id = ?", tenantId);
+        }
+        jdbcTemplate.update("DELETE FROM expenses");
+        jdbcTemplate.update("UPDATE categories SET parent_id = NULL");
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    private Path fileOf(String shard) {
+        return directory.resolve(shard + SnapshotFile.EXTENSION);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.expensemanagement.synthetic;
+
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fills an empty database with a realistic, reproducible data set for load tests
+ * (profile synthetic-data). The same seed and settings always produce the same rows:
+ * <ul>
+ *   <li>a three-level category tree per transaction type,</li>
+ *   <li>expenses spread over the configured number of years before the end date,
+ *       mostly during the day,</li>
+ *   <li>Zipf-distributed categories (a few categories get most expenses),</li>
+ *   <li>skewed currencies (EUR 72%, USD 18%, GBP 7%, CHF 3%),</li>
+ *   <li>log-normal amounts; about one row in twenty is a (larger) income.</li>
+ * </ul>
+ * Rows are written with batched JDBC inserts, so millions of expenses take seconds,
+ * not minutes. Nothing is generated when the tenant already has categories.
+ */
+@Component
+@Profile("synthetic-data")
+public class SyntheticDataGenerator implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 5_000;
+
+    // Root category followed by its children
+    private static final String[][] EXPENSE_TREE = {
+            {"Food", "Groceries", "Restaurants", "Coffee", "Delivery"},
+            {"Housing", "Rent", "Utilities", "Internet", "Repairs"},
+            {"Transport", "Fuel", "Public transport", "Taxi", "Parking"},
+            {"Health", "Pharmacy", "Doctor", "Sport"},
+            {"Leisure", "Cinema", "Books", "Games", "Concerts"},
+            {"Shopping", "Clothes", "Electronics", "Household"},
+            {"Travel", "Flights", "Hotels", "Excursions"},
+            {"Family", "Kids", "Gifts", "Pets"}
+    };
+
+    private static final String[][] INCOME_TREE = {
+            {"Salary", "Base", "Bonus"},
+            {"Investments", "Dividends", "Interest"},
+            {"Other income", "Refunds", "Sales"}
+    };
+
+    // Third level, attached to some of the children
+    private static final String[] LEAVES = {"Online", "Local", "Subscription"};
+
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "CHF"};
+    private static final double[] CURRENCY_CUMULATIVE = {0.72, 0.90, 0.97, 1.0};
+
+    private static final double INCOME_SHARE = 0.05;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SpendDistributionService spendDistributionService;
+    private final BalanceService balanceService;
+    private final int expenses;
+    private final int years;
+    private final LocalDate endDate;
+    private final long seed;
+    private final String tenantId;
+
+    @Autowired
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate,
+                                  SpendDistributionService spendDistributionService,
+                                  BalanceService balanceService,
+                                  @Value("${expense.synthetic.expenses:1000000}") int expenses,
+                                  @Value("${expense.synthetic.years:5}") int years,
+                                  @Value("${expense.synthetic.end-date:2025-01-01}") String endDate,
+                                  @Value("${expense.synthetic.seed:42}") long seed,
+                                  @Value("${expense.synthetic.tenant:" + TenantContext.DEFAULT_TENANT + "}") String tenantId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.spendDistributionService = spendDistributionService;
+        this.balanceService = balanceService;
+        this.expenses = expenses;
+        this.years = years;
+        this.endDate = LocalDate.parse(endDate);
+        this.seed = seed;
+        this.tenantId = tenantId;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        TenantContext.runAs(tenantId, this::generate);
+    }
+
+    /**
+     * Generate the data set for the configured tenant unless it already has data
+     */
+    public void generate() {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories WHERE tenant_id = ?", Long.class, tenantId);
+        if (existing != null && existing > 0) {
+            System.out.println("Synthetic data skipped: tenant " + tenantId + " already has categories");
+            return;
+        }
+        long started = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        List<Long> expenseCategories = insertTree(TransactionType.EXPENSE, EXPENSE_TREE, random);
+        List<Long> incomeCategories = insertTree(TransactionType.INCOME, INCOME_TREE, random);
+        ZipfSampler categorySampler = new ZipfSampler(expenseCategories.size(), ZIPF_EXPONENT);
+
+        Instant end = endDate.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant start = endDate.minusYears(years).atStartOfDay(ZoneOffset.UTC).toInstant();
+        long days = ChronoUnit.DAYS.between(start, end);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < expenses; i++) {
+            Instant moment = start.plus(random.nextLong(days), ChronoUnit.DAYS).plusSeconds(secondOfDay(random));
+            if (random.nextDouble() < INCOME_SHARE) {
+                Long category = incomeCategories.get(random.nextInt(incomeCategories.size()));
+                batch.add(row("Income " + i, amount(random, 7.6, 0.4), currency(random), moment, TransactionType.INCOME, category));
+            } else {
+                Long category = expenseCategories.get(categorySampler.sample(random));
+                batch.add(row("Expense " + i, amount(random, 3.0, 1.1), currency(random), moment, TransactionType.EXPENSE, category));
+            }
+            if (batch.size() == BATCH_SIZE) {
+                insertExpenses(batch);
+                batch.clear();
+            }
+        }
+        insertExpenses(batch);
+        // The batched inserts bypass the services that keep the sketches and balance checkpoints current
+        spendDistributionService.rebuild(tenantId);
+        balanceService.createCheckpoints(tenantId, Instant.now());
+
+        System.out.println("Synthetic data: " + (expenseCategories.size() + incomeCategories.size()) + " categories, "
+                + expenses + " expenses for tenant " + tenantId + " in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    private List<Long> insertTree(TransactionType type, String[][] tree, SplittableRandom random) {
+        List<Long> assignable = new ArrayList<>();
+        for (String[] branch : tree) {
+            Long root = insertCategory(branch[0], type, null);
+            for (int i = 1; i < branch.length; i++) {
+                Long child = insertCategory(branch[i], type, root);
+                assignable.add(child);
+                int leaves = random.nextInt(LEAVES.length + 1);
+                for (int leaf = 0; leaf < leaves; leaf++) {
+                    assignable.add(insertCategory(branch[i] + " " + LEAVES[leaf], type, child));
+                }
+            }
+        }
+        // Popularity must not follow insertion order, or every tree would rank alike
+        for (int i = assignable.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            assignable.set(i, assignable.set(j, assignable.get(i)));
+        }
+        return assignable;
+    }
+
+    private Long insertCategory(String name, TransactionType type, Long parentId) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO categories (tenant_id, name, type, parent_id) VALUES (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, tenantId);
+            statement.setString(2, name);
+            statement.setString(3, type.name());
+            statement.setObject(4, parentId);
+            return statement;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    private void insertExpenses(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        }
+    }
+
+    private Object[] row(String description, BigDecimal sum, String currency, Instant moment,
+                         TransactionType type, Long categoryId) {
+        return new Object[]{tenantId, description, sum, currency, Timestamp.from(moment), type.name(), categoryId};
+    }
+
+    // Log-normal: median e^mu, long right tail
+    private static BigDecimal amount(SplittableRandom random, double mu, double sigma) {
+        double value = Math.exp(mu + sigma * random.nextGaussian());
+        return BigDecimal.valueOf(Math.max(0.01, value)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static String currency(SplittableRandom random) {
+        double draw = random.nextDouble();
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            if (draw < CURRENCY_CUMULATIVE[i]) {
+                return CURRENCIES[i];
+            }
+        }
+        return CURRENCIES[0];
+    }
+
+    // Nine in ten between 07:00 and 23:00
+    private static long secondOfDay(SplittableRandom random) {
+        if (random.nextInt(10) == 0) {
+            return random.nextLong(24 * 3600);
+        }
+        return 7 * 3600 + random.nextLong(16 * 3600);
+    }
+}
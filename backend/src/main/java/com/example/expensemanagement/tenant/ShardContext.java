@@ -0,0 +1,43 @@
+package com.example.expensemanagement.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * Explicit shard override for work that spans tenants (schedulers, tenant moves).
+ * When unset, connections are routed by the current tenant.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String getShard() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run an action against one shard, restoring the previous override afterwards
+     */
+    public static <T> T callOn(String shard, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static void runOn(String shard, Runnable action) {
+        callOn(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
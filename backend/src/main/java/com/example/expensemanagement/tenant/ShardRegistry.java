@@ -0,0 +1,308 @@
+package com.example.expensemanagement.tenant;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Shards and the placement of tenants on them. A tenant lives on the shard it
+ * was moved to, else the shard pinned in configuration, else a shard chosen by
+ * hash of its id. Moves are recorded in the tenant_shards table (V7) on the
+ * first shard so they survive restarts. Without sharding there is a single
+ * shard named "default" and every tenant lives on it.
+ * <p>
+ * Writes of a tenant pass a per-tenant gate that a move closes once the
+ * writes in flight on this node have drained. A gate exists only while someone
+ * holds or waits for it. The directory also records the tenants being moved, so
+ * other nodes refuse their writes and pick up the new placement once the move
+ * is done. Nodes re-read the whole directory at most once per directory-refresh
+ * interval, and a move waits that long after marking the tenant and draining
+ * before it copies, so writes starting elsewhere after the wait see the mark.
+ */
+public class ShardRegistry {
+
+    public static final String SINGLE_SHARD = "default";
+
+    private static final String SELECT_DIRECTORY = "SELECT tenant_id, shard, moving FROM tenant_shards";
+
+    private static final String RECORD =
+            "MERGE INTO tenant_shards USING (VALUES (CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(64)), CAST(? AS BOOLEAN))) "
+                    + "AS placed (tenant_id, shard, moving) ON tenant_shards.tenant_id = placed.tenant_id "
+                    + "WHEN MATCHED THEN UPDATE SET shard = placed.shard, moving = placed.moving "
+                    + "WHEN NOT MATCHED THEN INSERT (tenant_id, shard, moving) VALUES (placed.tenant_id, placed.shard, placed.moving)";
+
+    // Users counts the holders and waiters; it changes only inside writeGates.compute for the tenant
+    private static final class WriteGate {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+        int users;
+    }
+
+    private final Map<String, DataSource> shards;
+    private final List<String> hashOrder;
+    private final Map<String, String> placements = new ConcurrentHashMap<>();
+    private final Set<String> moving = ConcurrentHashMap.newKeySet();
+    private final Map<String, WriteGate> writeGates = new ConcurrentHashMap<>();
+    private final JdbcTemplate directory;
+    private final TransactionTemplate directoryTransaction;
+    private final Duration directoryRefresh;
+
+    // Guards reading the directory into placements against this node's own updates of it
+    private final Object directoryLock = new Object();
+    private volatile Set<String> movingInDirectory = Set.of();
+    private volatile boolean directoryLoaded;
+    private volatile long directoryLoadedAt;
+
+    /**
+     * Registry for a single, unsharded datasource
+     */
+    public ShardRegistry(DataSource dataSource) {
+        this.shards = Map.of(SINGLE_SHARD, dataSource);
+        this.hashOrder = List.of(SINGLE_SHARD);
+        this.directory = null;
+        this.directoryTransaction = null;
+        this.directoryRefresh = Duration.ZERO;
+    }
+
+    /**
+     * Registry for several shards; the directory is read once migrations have created it
+     */
+    public ShardRegistry(Map<String, DataSource> shards, Map<String, String> pinnedTenants, Duration directoryRefresh) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard must be configured");
+        }
+        pinnedTenants.forEach((tenant, shard) -> {
+            if (!shards.containsKey(shard)) {
+                throw new IllegalArgumentException("Tenant " + tenant + " is pinned to unknown shard " + shard);
+            }
+        });
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.hashOrder = shards.keySet().stream().sorted().toList();
+        this.placements.putAll(pinnedTenants);
+        DataSource first = shards.values().iterator().next();
+        this.directory = new JdbcTemplate(first);
+        this.directoryTransaction = new TransactionTemplate(new DataSourceTransactionManager(first));
+        this.directoryRefresh = directoryRefresh;
+    }
+    public Set<String> getShardNames() {
+        return shards.keySet();
+    }
+
+    public Map<String, DataSource> getDataSources() {
+        return shards;
+    }
+
+    public DataSource getDataSource(String shard) {
+        DataSource dataSource = shards.get(shard);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return dataSource;
+    }
+
+    public String shardFor(String tenantId) {
+        String placed = placements.get(tenantId);
+        return placed != null ? placed : hashOrder.get(Math.floorMod(tenantId.hashCode(), hashOrder.size()));
+    }
+
+    /**
+     * Shard for the current thread: an explicit override, else the current tenant's shard
+     */
+    public String currentShard() {
+        String shard = ShardContext.getShard();
+        return shard != null ? shard : shardFor(TenantContext.getTenantId());
+    }
+
+    /**
+     * Tenants with data on a shard that currently route to it
+     */
+    public List<String> tenantsOn(String shard) {
+        List<String> tenants = new ArrayList<>();
+        new JdbcTemplate(getDataSource(shard)).query("SELECT DISTINCT tenant_id FROM categories", rs -> {
+            String tenantId = rs.getString(1);
+            if (shard.equals(shardFor(tenantId))) {
+                tenants.add(tenantId);
+            }
+        });
+        return tenants;
+    }
+
+    public boolean isMoving(String tenantId) {
+        return moving.contains(tenantId);
+    }
+
+    /**
+     * Whether a tenant is moving, here or per the directory, which other nodes may have
+     * changed since this one read it; re-reads the directory if it is older than the
+     * refresh interval
+     */
+    public boolean refresh(String tenantId) {
+        if (directory == null) {
+            return isMoving(tenantId);
+        }
+        if (!directoryLoaded || System.nanoTime() - directoryLoadedAt >= directoryRefresh.toNanos()) {
+            loadDirectory();
+        }
+        return isMoving(tenantId) || movingInDirectory.contains(tenantId);
+    }
+
+    /**
+     * Read placements and move marks from the directory. Tenants this node is moving keep
+     * the placement it set, which may not be committed yet.
+     */
+    public void loadDirectory() {
+        if (directory == null) {
+            return;
+        }
+        synchronized (directoryLock) {
+            if (directoryLoaded && System.nanoTime() - directoryLoadedAt < directoryRefresh.toNanos()) {
+                return;
+            }
+            Set<String> marked = new HashSet<>();
+            directory.query(SELECT_DIRECTORY, rs -> {
+                String tenantId = rs.getString("tenant_id");
+                if (shards.containsKey(rs.getString("shard")) && !moving.contains(tenantId)) {
+                    placements.put(tenantId, rs.getString("shard"));
+                }
+                if (rs.getBoolean("moving")) {
+                    marked.add(tenantId);
+                }
+            });
+            movingInDirectory = marked;
+            directoryLoadedAt = System.nanoTime();
+            directoryLoaded = true;
+        }
+    }
+
+    /**
+     * Enter the tenant's write gate without waiting; false while a move holds it.
+     * Each successful call must be paired with {@link #exitWrite(String)}.
+     */
+    public boolean tryEnterWrite(String tenantId) {
+        WriteGate gate = acquireGate(tenantId);
+        boolean entered = false;
+        try {
+            // The timed variant honours fairness, so a move waiting to drain is not overtaken
+            entered = gate.lock.readLock().tryLock(0, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!entered) {
+            releaseGate(tenantId);
+        }
+        return entered;
+    }
+
+    public void exitWrite(String tenantId) {
+        writeGates.get(tenantId).lock.readLock().unlock();
+        releaseGate(tenantId);
+    }
+
+    /**
+     * Run a write of the tenant inside its gate, waiting for a move in progress to finish
+     */
+    public void runWriting(String tenantId, Runnable write) {
+        WriteGate gate = acquireGate(tenantId);
+        gate.lock.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            gate.lock.readLock().unlock();
+            releaseGate(tenantId);
+        }
+    }
+
+    private WriteGate acquireGate(String tenantId) {
+        return writeGates.compute(tenantId, (tenant, gate) -> {
+            WriteGate acquired = gate != null ? gate : new WriteGate();
+            acquired.users++;
+            return acquired;
+        });
+    }
+
+    // Drops the gate once no one holds or waits for it
+    private void releaseGate(String tenantId) {
+        writeGates.computeIfPresent(tenantId, (tenant, gate) -> --gate.users == 0 ? null : gate);
+    }
+
+    // Whether anyone holds or waits for the tenant's gate
+    boolean hasWriteGate(String tenantId) {
+        return writeGates.containsKey(tenantId);
+    }
+
+    /**
+     * Mark a tenant as moving here and in the directory, wait for its writes in flight
+     * on this node to finish, then for other nodes to read the mark; false if the writes
+     * did not drain in time, leaving the tenant unmarked
+     */
+    boolean beginMove(String tenantId, long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (directoryLock) {
+            moving.add(tenantId);
+            record(tenantId, shardFor(tenantId), true);
+        }
+        WriteGate gate = acquireGate(tenantId);
+        boolean drained = false;
+        try {
+            drained = gate.lock.writeLock().tryLock(timeout, unit);
+            if (drained) {
+                TimeUnit.NANOSECONDS.sleep(directoryRefresh.toNanos());
+            }
+        } finally {
+            if (!drained) {
+                releaseGate(tenantId);
+                endMove(tenantId);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Open the gate again after {@link #beginMove}, where the tenant now lives
+     */
+    void endMove(String tenantId) {
+        synchronized (directoryLock) {
+            record(tenantId, shardFor(tenantId), false);
+            moving.remove(tenantId);
+            if (movingInDirectory.contains(tenantId)) {
+                Set<String> marked = new HashSet<>(movingInDirectory);
+                marked.remove(tenantId);
+                movingInDirectory = marked;
+            }
+        }
+        WriteGate gate = writeGates.get(tenantId);
+        if (gate != null && gate.lock.isWriteLockedByCurrentThread()) {
+            gate.lock.writeLock().unlock();
+            releaseGate(tenantId);
+        }
+    }
+
+    /**
+     * Route a tenant to a shard from now on and record the placement
+     */
+    public void place(String tenantId, String shard) {
+        getDataSource(shard);
+        synchronized (directoryLock) {
+            record(tenantId, shard, isMoving(tenantId));
+            placements.put(tenantId, shard);
+        }
+    }
+
+    // One statement, in the caller's transaction on the first shard if there is one
+    private void record(String tenantId, String shard, boolean isMoving) {
+        if (directory != null) {
+            directoryTransaction.executeWithoutResult(status -> directory.update(RECORD, tenantId, shard, isMoving));
+        }
+    }
+}
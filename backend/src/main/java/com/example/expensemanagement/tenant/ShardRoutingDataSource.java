@@ -0,0 +1,24 @@
+package com.example.expensemanagement.tenant;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+
+/**
+ * Hands out connections of the current thread's shard, see {@link ShardRegistry#currentShard()}
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ShardRegistry shardRegistry;
+
+    public ShardRoutingDataSource(ShardRegistry shardRegistry) {
+        this.shardRegistry = shardRegistry;
+        setTargetDataSources(new HashMap<>(shardRegistry.getDataSources()));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return shardRegistry.currentShard();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.expensemanagement.tenant;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    /**
+     * Unsharded: every tenant shares the auto-configured datasource
+     */
+    @Bean
+    @ConditionalOnProperty(name = "expense.sharding.enabled", havingValue = "false", matchIfMissing = true)
+    public ShardRegistry singleShardRegistry(DataSource dataSource) {
+        return new ShardRegistry(dataSource);
+    }
+
+    /**
+     * Sharded: one pool per expense.sharding.shards.* entry
+     */
+    @Bean
+    @ConditionalOnProperty(name = "expense.sharding.enabled", havingValue = "true")
+    public ShardRegistry shardRegistry(ShardingProperties properties) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        properties.getShards().forEach((name, shard) -> shards.put(name, DataSourceBuilder.create()
+                .url(shard.getUrl())
+                .username(shard.getUsername())
+                .password(shard.getPassword())
+                .build()));
+        return new ShardRegistry(shards, properties.getTenants(), properties.getDirectoryRefresh());
+    }
+
+    /**
+     * Sharded: the application datasource routes each connection to the current tenant's shard
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "expense.sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardRegistry shardRegistry) {
+        return new ShardRoutingDataSource(shardRegistry);
+    }
+
+    /**
+     * Sharded: Flyway would only see the shard behind the routing datasource,
+     * so the same migrations are applied to every shard instead. The registry
+     * reads its directory once they have created it.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "expense.sharding.enabled", havingValue = "true")
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardRegistry shardRegistry) {
+        return flyway -> {
+            shardRegistry.getDataSources().forEach((shard, dataSource) -> {
+                System.out.println("Migrating schema on shard " + shard);
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(dataSource)
+                        .load()
+                        .migrate();
+            });
+            shardRegistry.loadDirectory();
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.expensemanagement.tenant;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * expense.sharding.* settings: the shard datasources and pinned tenant placements.
+ * Tenants without a pinned shard are placed by hash of their id.
+ */
+@ConfigurationProperties(prefix = "expense.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    // tenant id -> shard name
+    private Map<String, String> tenants = new HashMap<>();
+
+    // How stale this node's copy of the tenant_shards directory may get
+    private Duration directoryRefresh = Duration.ofSeconds(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(Map<String, Shard> shards) {
+        this.shards = shards;
+    }
+
+    public Map<String, String> getTenants() {
+        return tenants;
+    }
+
+    public void setTenants(Map<String, String> tenants) {
+        this.tenants = tenants;
+    }
+
+    public Duration getDirectoryRefresh() {
+        return directoryRefresh;
+    }
+
+    public void setDirectoryRefresh(Duration directoryRefresh) {
+        this.directoryRefresh = directoryRefresh;
+    }
+
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.expensemanagement.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * Tenant (household or company) the current thread works for. Set per request
+ * by {@link TenantFilter}; background jobs switch it with {@link #callAs}.
+ * Hibernate scopes every entity query to it and {@link ShardRoutingDataSource}
+ * routes connections by it.
+ */
+public final class TenantContext {
+
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static String getTenantId() {
+        String tenantId = CURRENT.get();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    public static void setTenantId(String tenantId) {
+        CURRENT.set(tenantId);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run an action on behalf of a tenant, restoring the previous tenant afterwards
+     */
+    public static <T> T callAs(String tenantId, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(tenantId);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static void runAs(String tenantId, Runnable action) {
+        callAs(tenantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.expensemanagement.tenant;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the tenant of each request from the X-Tenant-Id header. Requests
+ * without the header belong to the default tenant. Writes are refused while
+ * the tenant is being moved to another shard, and hold the tenant's write gate
+ * until they complete so that a move can wait for them.
+ */
+@Component
+public class TenantFilter extends OncePerRequestFilter {
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private static final String ADMIN_PATH = "/api/admin/";
+
+    private static final Pattern VALID_TENANT = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final ShardRegistry shardRegistry;
+
+    @Autowired
+    public TenantFilter(ShardRegistry shardRegistry) {
+        this.shardRegistry = shardRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String tenantId = request.getHeader(TENANT_HEADER);
+        if (tenantId == null || tenantId.isBlank()) {
+            tenantId = TenantContext.DEFAULT_TENANT;
+        } else if (!VALID_TENANT.matcher(tenantId).matches()) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid tenant id");
+            return;
+        }
+        boolean moving = shardRegistry.refresh(tenantId);
+        // Admin operations, tenant moves among them, are not writes of the tenant in the header
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !request.getRequestURI().startsWith(ADMIN_PATH);
+        if (write && (moving || !shardRegistry.tryEnterWrite(tenantId))) {
+            response.setHeader("Retry-After", "30");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Tenant is being moved, try again later");
+            return;
+        }
+
+        TenantContext.setTenantId(tenantId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
+            if (write) {
+                shardRegistry.exitWrite(tenantId);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.expensemanagement.tenant;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves all data of one tenant to another shard.
+ * <p>
+ * Writes of the tenant are refused while it moves, and the move waits for
+ * those already in flight on this node. Rows are copied table by table in one
+ * transaction on the target shard, getting new ids there with foreign keys
+ * remapped. Writes from elsewhere (other nodes, scheduled jobs) are fenced off
+ * rather than excluded: the source rows are locked and compared with what was
+ * copied before the tenant is routed to the target and they are deleted, and
+ * any difference abandons the move, leaving the tenant on the source.
+ * Tenants with archived expenses are refused: archive segments are files on
+ * the node that wrote them and carry the source shard's ids. All
+ * columns are copied as they are, so columns added to these tables later move
+ * along without changes here.
+ */
+@Service
+public class TenantMigrationService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Tables in copy order; deleted in reverse
+    private static final List<String> TABLES = List.of("categories", "recurring_transactions", "expenses", "budgets",
+            "spend_sketches", "balance_checkpoints", "audit_events");
+
+    private final ShardRegistry shardRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExpenseArchive expenseArchive;
+    private final Duration drainTimeout;
+
+    @Autowired
+    public TenantMigrationService(ShardRegistry shardRegistry, ApplicationEventPublisher eventPublisher,
+                                  ExpenseArchive expenseArchive,
+                                  @Value("${expense.sharding.move-drain-timeout:PT30S}") Duration drainTimeout) {
+        this.shardRegistry = shardRegistry;
+        this.eventPublisher = eventPublisher;
+        this.expenseArchive = expenseArchive;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Move a tenant to the target shard; returns the number of rows moved per table
+     */
+    public synchronized Map<String, Integer> moveTenant(String tenantId, String targetShard) {
+        String sourceShard = shardRegistry.shardFor(tenantId);
+        DataSource sourceDataSource = shardRegistry.getDataSource(sourceShard);
+        DataSource targetDataSource = shardRegistry.getDataSource(targetShard);
+        if (sourceShard.equals(targetShard)) {
+            throw new IllegalArgumentException("Tenant " + tenantId + " already lives on shard " + targetShard);
+        }
+
+        JdbcTemplate source = new JdbcTemplate(sourceDataSource);
+        JdbcTemplate target = new JdbcTemplate(targetDataSource);
+        beginMove(tenantId);
+        Map<String, Integer> moved = new LinkedHashMap<>();
+        try {
+            // Checked with the gate closed, so the archiver can't add a segment meanwhile
+            if (expenseArchive.hasSegments(tenantId)) {
+                throw new IllegalStateException("Tenant " + tenantId + " has archived expenses, which can't move shards");
+            }
+            Map<String, TableCopy> copies = new TransactionTemplate(new DataSourceTransactionManager(targetDataSource))
+                    .execute(status -> copyTenant(source, target, tenantId));
+            try {
+                new TransactionTemplate(new DataSourceTransactionManager(sourceDataSource)).executeWithoutResult(status -> {
+                    verifyUnchanged(source, tenantId, sourceShard, copies);
+                    shardRegistry.place(tenantId, targetShard);
+                    deleteTenant(source, tenantId);
+                });
+            } catch (RuntimeException e) {
+                // The source rows stay authoritative: route back to them and drop the copy
+                shardRegistry.place(tenantId, sourceShard);
+                new TransactionTemplate(new DataSourceTransactionManager(targetDataSource))
+                        .executeWithoutResult(status -> deleteTenant(target, tenantId));
+                throw e;
+            }
+            copies.forEach((table, copy) -> moved.put(table, copy.rows));
+        } finally {
+            shardRegistry.endMove(tenantId);
+        }
+
+        System.out.println("Moved tenant " + tenantId + " from shard " + sourceShard + " to " + targetShard + ": " + moved);
+        eventPublisher.publishEvent(new TenantMovedEvent(tenantId, sourceShard, targetShard));
+        return moved;
+    }
+
+    private void beginMove(String tenantId) {
+        boolean drained;
+        try {
+            drained = shardRegistry.beginMove(tenantId, drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for writes of tenant " + tenantId);
+        }
+        if (!drained) {
+            throw new IllegalStateException("Writes of tenant " + tenantId + " did not finish within " + drainTimeout
+                    + ", try again later");
+        }
+    }
+
+    private Map<String, TableCopy> copyTenant(JdbcTemplate source, JdbcTemplate target, String tenantId) {
+        Map<String, TableCopy> copies = new LinkedHashMap<>();
+
+        // Categories first without their parent, then the hierarchy with remapped ids
+        TableCopy categories = copyTable(source, target, "categories", tenantId, Map.of(), Set.of("parent_id"), true);
+        List<Object[]> parents = new ArrayList<>();
+        source.query("SELECT id, parent_id FROM categories WHERE tenant_id = ? AND parent_id IS NOT NULL",
+                (RowCallbackHandler) rs -> parents.add(new Object[]{
+                        categories.newIds.get(rs.getLong("parent_id")), categories.newIds.get(rs.getLong("id"))}),
+                tenantId);
+        target.batchUpdate("UPDATE categories SET parent_id = ? WHERE id = ?", parents);
+        copies.put("categories", categories);
+
+        TableCopy recurring = copyTable(source, target, "recurring_transactions", tenantId,
+                Map.of("category_id", categories.newIds), Set.of(), true);
+        copies.put("recurring_transactions", recurring);
+        copies.put("expenses", copyTable(source, target, "expenses", tenantId,
+                Map.of("category_id", categories.newIds, "recurring_transaction_id", recurring.newIds), Set.of(), false));
+        copies.put("budgets", copyTable(source, target, "budgets", tenantId,
+                Map.of("category_id", categories.newIds), Set.of(), false));
+        copies.put("spend_sketches", copyTable(source, target, "spend_sketches", tenantId,
+                Map.of("category_id", categories.newIds), Set.of(), false));
+        copies.put("balance_checkpoints", copyTable(source, target, "balance_checkpoints", tenantId,
+                Map.of(), Set.of(), false));
+        // The history keeps the entity ids of the source shard
+        copies.put("audit_events", copyTable(source, target, "audit_events", tenantId,
+                Map.of(), Set.of(), false));
+        return copies;
+    }
+
+    /**
+     * Lock the tenant's source rows until the end of the transaction and check that
+     * they are still the rows that were copied
+     */
+    private void verifyUnchanged(JdbcTemplate source, String tenantId, String sourceShard, Map<String, TableCopy> copies) {
+        for (String table : TABLES) {
+            Map<Long, Integer> current = new HashMap<>();
+            source.query("SELECT * FROM " + table + " WHERE tenant_id = ? ORDER BY id FOR UPDATE",
+                    (RowCallbackHandler) rs -> current.put(rs.getLong("id"), hashOf(rs)), tenantId);
+            if (!current.equals(copies.get(table).hashes)) {
+                throw new IllegalStateException("Tenant " + tenantId + " was written on shard " + sourceShard
+                        + " during the move (" + table + "), it stays there; try again");
+            }
+        }
+    }
+
+    private static int hashOf(ResultSet rs) throws SQLException {
+        int hash = 1;
+        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+            Object value = rs.getObject(i);
+            if (value instanceof byte[] bytes) {
+                hash = 31 * hash + Arrays.hashCode(bytes);
+            } else if (value instanceof Clob clob) {
+                hash = 31 * hash + clob.getSubString(1, (int) clob.length()).hashCode();
+            } else {
+                hash = 31 * hash + Objects.hashCode(value);
+            }
+        }
+        return hash;
+    }
+
+    private void deleteTenant(JdbcTemplate jdbcTemplate, String tenantId) {
+        jdbcTemplate.update("UPDATE categories SET parent_id = NULL WHERE tenant_id = ?", tenantId);
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            jdbcTemplate.update("DELETE FROM " + TABLES.get(i) + " WHERE tenant_id = ?", tenantId);
+        }
+        // Balance lock rows aren't copied: the target creates its own on first use
+        jdbcTemplate.update("DELETE FROM balance_locks WHERE tenant_id = ?", tenantId);
+    }
+
+    /**
+     * Copy every row of a table belonging to the tenant. The id column is left to the
+     * target's identity; remapped columns are translated through old-to-new id maps and
+     * skipped columns are left NULL. New ids are collected only when asked for, otherwise
+     * rows are inserted in JDBC batches.
+     */
+    private TableCopy copyTable(JdbcTemplate source, JdbcTemplate target, String table, String tenantId,
+                                Map<String, Map<Long, Long>> remapped, Set<String> skipped, boolean collectIds) {
+        TableCopy copy = new TableCopy();
+        source.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE tenant_id = ? ORDER BY id");
+            statement.setString(1, tenantId);
+            statement.setFetchSize(BATCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            if (copy.columns == null) {
+                copy.prepare(rs.getMetaData(), table, skipped);
+            }
+            Object[] values = new Object[copy.columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                String column = copy.columns.get(i);
+                Object value = rs.getObject(column);
+                Map<Long, Long> ids = remapped.get(column);
+                values[i] = ids != null && value != null ? ids.get(((Number) value).longValue()) : value;
+            }
+            if (collectIds) {
+                KeyHolder keys = new GeneratedKeyHolder();
+                target.update(connection -> {
+                    PreparedStatement insert = connection.prepareStatement(copy.insertSql, new String[]{"id"});
+                    for (int i = 0; i < values.length; i++) {
+                        insert.setObject(i + 1, values[i]);
+                    }
+                    return insert;
+                }, keys);
+                copy.newIds.put(rs.getLong("id"), keys.getKey().longValue());
+            } else {
+                copy.batch.add(values);
+                if (copy.batch.size() == BATCH_SIZE) {
+                    copy.flush(target);
+                }
+            }
+            copy.hashes.put(rs.getLong("id"), hashOf(rs));
+            copy.rows++;
+        });
+        copy.flush(target);
+        return copy;
+    }
+
+    private static final class TableCopy {
+        private final Map<Long, Long> newIds = new HashMap<>();
+        // Source id -> hash of the source row, to detect writes that raced the copy
+        private final Map<Long, Integer> hashes = new HashMap<>();
+        private final List<Object[]> batch = new ArrayList<>();
+        private List<String> columns;
+        private String insertSql;
+        private int rows;
+
+        private void prepare(ResultSetMetaData metaData, String table, Set<String> skipped) throws SQLException {
+            columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnLabel(i).toLowerCase();
+                if (!column.equals("id") && !skipped.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            insertSql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+        }
+
+        private void flush(JdbcTemplate target) {
+            if (!batch.isEmpty()) {
+                target.batchUpdate(insertSql, batch);
+                batch.clear();
+            }
+        }
+    }
+}
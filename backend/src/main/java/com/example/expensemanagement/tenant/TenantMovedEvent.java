@@ -0,0 +1,8 @@
+package com.example.expensemanagement.tenant;
+
+/**
+ * Published after a tenant's data was moved to another shard. Rows get new ids
+ * on the target shard, so in-memory state keyed by entity ids must be rebuilt.
+ */
+public record TenantMovedEvent(String tenantId, String fromShard, String toShard) {
+}
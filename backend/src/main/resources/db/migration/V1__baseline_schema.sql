@@ -0,0 +1,59 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update), including the
+-- indexes that were declared on the entities.
+
+CREATE TABLE categories (
+    id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id VARCHAR(255) NOT NULL,
+    name      VARCHAR(255) NOT NULL,
+    type      VARCHAR(255) NOT NULL CHECK (type IN ('EXPENSE', 'INCOME')),
+    parent_id BIGINT,
+    CONSTRAINT fk_categories_parent FOREIGN KEY (parent_id) REFERENCES categories (id)
+);
+
+CREATE TABLE recurring_transactions (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id       VARCHAR(255) NOT NULL,
+    description     VARCHAR(255),
+    sum             NUMERIC(19, 2) NOT NULL,
+    currency        VARCHAR(255) NOT NULL,
+    type            VARCHAR(255) NOT NULL CHECK (type IN ('EXPENSE', 'INCOME')),
+    category_id     BIGINT NOT NULL,
+    frequency       VARCHAR(255) NOT NULL CHECK (frequency IN ('DAILY', 'WEEKLY', 'MONTHLY', 'YEARLY')),
+    interval_count  INTEGER NOT NULL,
+    start_moment    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    zone            VARCHAR(255) NOT NULL,
+    end_moment      TIMESTAMP(6) WITH TIME ZONE,
+    next_occurrence BIGINT NOT NULL,
+    next_due        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    active          BOOLEAN NOT NULL,
+    CONSTRAINT fk_recurring_transactions_category FOREIGN KEY (category_id) REFERENCES categories (id)
+);
+
+CREATE TABLE expenses (
+    id                       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id                VARCHAR(255) NOT NULL,
+    description              VARCHAR(255),
+    sum                      NUMERIC(19, 2) NOT NULL,
+    currency                 VARCHAR(255) NOT NULL,
+    moment                   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    type                     VARCHAR(255) NOT NULL CHECK (type IN ('EXPENSE', 'INCOME')),
+    category_id              BIGINT NOT NULL,
+    recurring_transaction_id BIGINT,
+    CONSTRAINT uk_expenses_recurring_occurrence UNIQUE (recurring_transaction_id, moment),
+    CONSTRAINT fk_expenses_category FOREIGN KEY (category_id) REFERENCES categories (id)
+);
+
+CREATE TABLE budgets (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id   VARCHAR(255) NOT NULL,
+    category_id BIGINT NOT NULL,
+    currency    VARCHAR(255) NOT NULL,
+    amount      NUMERIC(19, 2) NOT NULL,
+    CONSTRAINT uk_budgets_category_currency UNIQUE (category_id, currency),
+    CONSTRAINT fk_budgets_category FOREIGN KEY (category_id) REFERENCES categories (id)
+);
+
+CREATE INDEX idx_categories_tenant_type ON categories (tenant_id, type);
+CREATE INDEX idx_expenses_tenant_moment_sum ON expenses (tenant_id, moment, sum);
+CREATE INDEX idx_expenses_tenant_currency_moment_sum ON expenses (tenant_id, currency, moment, sum);
+CREATE INDEX idx_recurring_active_next_due ON recurring_transactions (active, next_due);
@@ -0,0 +1,25 @@
+-- Composite indexes matching the ExpenseRepository and CategoryRepository finders.
+-- Hibernate adds "tenant_id = ?" to every entity query, so they lead with tenant_id.
+-- Foreign key columns (categories.parent_id for findByParentId, expenses.category_id,
+-- recurring_transactions.category_id) are already indexed by H2 with the constraint.
+
+-- findByTypeOrderByHierarchy, findByTypeAndParentIsNull, findByType,
+-- findByNameContainingIgnoreCaseAndType: seek on (tenant, type), rows come out
+-- in hierarchy order (root categories first, then by parent and name)
+DROP INDEX idx_categories_tenant_type;
+CREATE INDEX idx_categories_tenant_type_parent_name ON categories (tenant_id, type, parent_id, name);
+
+-- findAllOrderByMomentDesc, findByMomentBetween, findByDescriptionContainingIgnoreCase:
+-- idx_expenses_tenant_moment_sum (V1)
+
+-- findByCurrency, findByCurrencyAndMomentBetween, streamAmountsByCurrencyAndMomentRange:
+-- idx_expenses_tenant_currency_moment_sum (V1)
+
+-- findLargestByCurrencyAndTypeAndMomentBetween, sumByCategory: seek on currency and
+-- type, range on moment; sum and category_id make the aggregation index-only
+CREATE INDEX idx_expenses_tenant_currency_type_moment
+    ON expenses (tenant_id, currency, type, moment, sum, category_id);
+
+-- sumByCategoryAndCurrency (budget reconciliation): seek on type, range on moment
+CREATE INDEX idx_expenses_tenant_type_moment
+    ON expenses (tenant_id, type, moment, category_id, currency, sum);
@@ -0,0 +1,14 @@
+-- Amount sketches per (tenant, currency, category, month) for percentile queries,
+-- kept current by every expense write (SpendDistributionService). Empty sketches
+-- are deleted, so there is no foreign key to categories: a category with sketches
+-- still has expenses. The unique key serves the distribution query (seek on
+-- tenant and currency, category IN, range on month) and the per-write lookup.
+CREATE TABLE spend_sketches (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id   VARCHAR(255) NOT NULL,
+    currency    VARCHAR(255) NOT NULL,
+    category_id BIGINT NOT NULL,
+    month_start DATE NOT NULL,
+    sketch      VARBINARY(65536) NOT NULL,
+    CONSTRAINT uk_spend_sketches_key UNIQUE (tenant_id, currency, category_id, month_start)
+);
@@ -0,0 +1,13 @@
+-- Running balance checkpoints per (tenant, currency): balance is income minus
+-- expenses over every row with moment < period_start. The row at 0001-01-01 is
+-- the genesis checkpoint (balance 0); writes lock it to serialize per currency,
+-- then shift every later checkpoint (BalanceService). The unique key serves the
+-- floor lookup (latest period_start <= instant) and the range update.
+CREATE TABLE balance_checkpoints (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id    VARCHAR(255) NOT NULL,
+    currency     VARCHAR(255) NOT NULL,
+    period_start TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    balance      NUMERIC(19, 2) NOT NULL,
+    CONSTRAINT uk_balance_checkpoints_key UNIQUE (tenant_id, currency, period_start)
+);
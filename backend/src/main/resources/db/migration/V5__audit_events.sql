@@ -0,0 +1,19 @@
+-- Audit trail of expense and category writes (AuditTrail): one row per create,
+-- update or delete with JSON images before and after, written in batches after
+-- the change commits. No foreign keys: the history outlives deleted entities.
+CREATE TABLE audit_events (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tenant_id    VARCHAR(255) NOT NULL,
+    entity_type  VARCHAR(32) NOT NULL,
+    entity_id    BIGINT NOT NULL,
+    action       VARCHAR(16) NOT NULL,
+    occurred_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    before_image CHARACTER LARGE OBJECT,
+    after_image  CHARACTER LARGE OBJECT
+);
+
+-- History of one entity: seek on (tenant, type, id), range on time
+CREATE INDEX idx_audit_events_tenant_entity_time ON audit_events (tenant_id, entity_type, entity_id, occurred_at);
+
+-- Recent changes of a tenant: range on time
+CREATE INDEX idx_audit_events_tenant_time ON audit_events (tenant_id, occurred_at);
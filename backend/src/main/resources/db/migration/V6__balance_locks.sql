@@ -0,0 +1,10 @@
+-- Lock rows for running balances: an expense write locks one stripe of its
+-- (tenant, currency), checkpoint creation locks all of them (BalanceService),
+-- so writes no longer serialize on the genesis checkpoint. Rows are created on
+-- first use and hold no data, so tenant moves don't copy them.
+CREATE TABLE balance_locks (
+    tenant_id VARCHAR(255) NOT NULL,
+    currency  VARCHAR(255) NOT NULL,
+    stripe    INTEGER NOT NULL,
+    CONSTRAINT pk_balance_locks PRIMARY KEY (tenant_id, currency, stripe)
+);
@@ -0,0 +1,10 @@
+-- Directory of tenant placements (ShardRegistry): tenants moved off their
+-- pinned or hashed shard, and the tenants being moved. Only the first shard's
+-- copy is used. Shards that ran an earlier version already have the table,
+-- created by the registry itself, possibly without the moving column.
+CREATE TABLE IF NOT EXISTS tenant_shards (
+    tenant_id VARCHAR(64) PRIMARY KEY,
+    shard     VARCHAR(64) NOT NULL
+);
+
+ALTER TABLE tenant_shards ADD COLUMN IF NOT EXISTS moving BOOLEAN DEFAULT FALSE NOT NULL;
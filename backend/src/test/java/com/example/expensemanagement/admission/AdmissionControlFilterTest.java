@@ -0,0 +1,142 @@
+package com.example.expensemanagement.admission;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private static MockHttpServletRequest request(String uri, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    @Test
+    void clientOverItsBurstIsRejectedWithRetryAfter() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 1, 3, 8, 64, 92, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("/api/expenses/1", "10.0.0.1"), response, (req, res) -> { });
+            assertEquals(200, response.getStatus());
+        }
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(request("/api/expenses/1", "10.0.0.1"), rejected, (req, res) -> fail("should not reach the controller"));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(1, filter.getRateLimitedCount());
+
+        // Other clients have their own bucket
+        MockHttpServletResponse otherClient = new MockHttpServletResponse();
+        filter.doFilter(request("/api/expenses/1", "10.0.0.2"), otherClient, (req, res) -> { });
+        assertEquals(200, otherClient.getStatus());
+    }
+
+    @Test
+    void tenantHeaderDoesNotGiveAClientAnotherBucket() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 1, 2, 8, 64, 92, 1000);
+
+        // Given: a client that changes the tenant header on every request
+        int admitted = 0;
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request("/api/expenses/1", "10.0.0.1");
+            request.addHeader("X-Tenant-Id", "tenant-" + i);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, (req, res) -> { });
+            admitted += response.getStatus() == 200 ? 1 : 0;
+        }
+
+        // Then: it still has one bucket
+        assertEquals(2, admitted);
+        assertEquals(1, filter.getClientCount());
+
+        // And: an authenticated principal has its own, whatever the address
+        MockHttpServletRequest authenticated = request("/api/expenses/1", "10.0.0.1");
+        authenticated.setUserPrincipal(() -> "alice");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(authenticated, response, (req, res) -> { });
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void clientsBeyondTheCapShareOneBucket() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 1, 2, 8, 64, 92, 3);
+
+        // Given: as many clients as the cap
+        for (int i = 1; i <= 3; i++) {
+            filter.doFilter(request("/api/expenses/1", "10.0.0." + i), new MockHttpServletResponse(), (req, res) -> { });
+        }
+
+        // When: more clients arrive
+        int admitted = 0;
+        for (int i = 4; i <= 10; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("/api/expenses/1", "10.0.0." + i), response, (req, res) -> { });
+            admitted += response.getStatus() == 200 ? 1 : 0;
+        }
+
+        // Then: no more buckets are kept, and the newcomers share the burst of one
+        assertEquals(3, filter.getClientCount());
+        assertEquals(2, admitted);
+    }
+
+    @Test
+    void expensiveRequestsCannotTakeCheapCapacity() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 1000, 1000, 1, 1, 92, 1000);
+        AtomicReference<MockHttpServletResponse> secondExpensive = new AtomicReference<>();
+        AtomicReference<MockHttpServletResponse> cheap = new AtomicReference<>();
+
+        // While one expensive request is in flight, a second one is turned away but a cheap one is admitted
+        filter.doFilter(request("/api/expenses/search", "10.0.0.1"), new MockHttpServletResponse(), (req, res) -> {
+            secondExpensive.set(new MockHttpServletResponse());
+            filter.doFilter(request("/api/expenses/currency/EUR", "10.0.0.1"), secondExpensive.get(), (r, s) -> fail("should be rejected"));
+            cheap.set(new MockHttpServletResponse());
+            filter.doFilter(request("/api/categories/tree", "10.0.0.1"), cheap.get(), (r, s) -> { });
+        });
+
+        assertEquals(503, secondExpensive.get().getStatus());
+        assertEquals("1", secondExpensive.get().getHeader("Retry-After"));
+        assertEquals(200, cheap.get().getStatus());
+        assertEquals(1, filter.getOverloadedCount());
+
+        // The slot is released when the request completes
+        MockHttpServletResponse afterwards = new MockHttpServletResponse();
+        filter.doFilter(request("/api/expenses/search", "10.0.0.1"), afterwards, (req, res) -> { });
+        assertEquals(200, afterwards.getStatus());
+    }
+
+    @Test
+    void wideDateRangesAreExpensive() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 50, 100, 8, 64, 92, 1000);
+
+        MockHttpServletRequest narrow = request("/api/expenses/date-range", "10.0.0.1");
+        narrow.addParameter("startDate", "2024-01-01");
+        narrow.addParameter("endDate", "2024-01-31");
+        MockHttpServletRequest wide = request("/api/expenses/date-range", "10.0.0.1");
+        wide.addParameter("startDate", "2020-01-01");
+        wide.addParameter("endDate", "2024-01-31");
+
+        assertFalse(filter.isExpensive(narrow));
+        assertTrue(filter.isExpensive(wide));
+        assertFalse(filter.isExpensive(new MockHttpServletRequest("DELETE", "/api/expenses/1")));
+    }
+
+    @Test
+    void snapshotsTenantMovesAndReportSubmissionsAreExpensive() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 50, 100, 8, 64, 92, 1000);
+
+        assertTrue(filter.isExpensive(new MockHttpServletRequest("POST", "/api/admin/snapshots")));
+        assertTrue(filter.isExpensive(new MockHttpServletRequest("POST", "/api/admin/tenants/acme/move")));
+        assertTrue(filter.isExpensive(new MockHttpServletRequest("POST", "/api/reports")));
+
+        // Polling a report job and reading its stored result are cheap
+        assertFalse(filter.isExpensive(new MockHttpServletRequest("GET", "/api/reports/42")));
+        assertFalse(filter.isExpensive(new MockHttpServletRequest("GET", "/api/reports/42/result")));
+        assertFalse(filter.isExpensive(new MockHttpServletRequest("GET", "/api/admin/shards")));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.expensemanagement.archive;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.dto.RunningBalance;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"expense.archive.enabled=true", "expense.archive.segment-rows=2", "expense.archive.block-rows=1"})
+@ActiveProfiles("test")
+class ExpenseArchiverIntegrationTest {
+
+    private static final String TENANT = "archive-test";
+
+    @TempDir
+    static Path archiveDirectory;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("expense.archive.directory", () -> archiveDirectory.toString());
+    }
+
+    @Autowired
+    private ExpenseArchiver expenseArchiver;
+
+    @Autowired
+    private ExpenseArchive expenseArchive;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    private Expense saveExpense(Category category, String moment, String sum) {
+        Expense expense = new Expense();
+        expense.setDescription("Expense at " + moment);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(category.getType());
+        expense.setCategory(category);
+        return expenseService.saveExpense(expense);
+    }
+
+    @Test
+    void archiveOlderThan_shouldMoveOldRowsAndKeepThemReadable() throws Exception {
+        TenantContext.runAs(TENANT, () -> {
+            // Given
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            saveExpense(rent, "2019-03-01T10:00:00.123456Z", "700.00");
+            saveExpense(rent, "2019-04-01T10:00:00Z", "710.00");
+            saveExpense(rent, "2020-06-01T10:00:00Z", "720.50");
+            saveExpense(rent, "2024-06-01T10:00:00Z", "900.00");
+
+            // When
+            int archived = expenseArchiver.archiveOlderThan(Instant.parse("2023-01-01T00:00:00Z"));
+
+            // Then: three rows moved into two segments, the recent one stays in the table
+            assertEquals(3, archived);
+            assertEquals(1, expenseRepository.findByMomentBetween(Instant.parse("2000-01-01T00:00:00Z"), Instant.parse("2030-01-01T00:00:00Z")).size());
+
+            List<Expense> all = expenseService.findByDateRange(Instant.parse("2019-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:00Z"));
+            assertEquals(4, all.size());
+            Expense first = all.stream().filter(e -> e.getMoment().equals(Instant.parse("2019-03-01T10:00:00.123456Z"))).findFirst().orElseThrow();
+            assertEquals(0, new BigDecimal("700.00").compareTo(first.getSum()));
+            assertEquals("Rent", first.getCategory().getName(), "Archived rows should come back with their category");
+            assertEquals("Expense at 2019-03-01T10:00:00.123456Z", first.getDescription());
+
+            // Then: segments outside the range are skipped
+            assertEquals(2, expenseArchive.findSegments(TENANT, Instant.parse("2019-01-01T00:00:00Z"), Instant.parse("2021-01-01T00:00:00Z")).size());
+            assertEquals(1, expenseArchive.findSegments(TENANT, Instant.parse("2020-01-01T00:00:00Z"), Instant.parse("2021-01-01T00:00:00Z")).size());
+            assertTrue(expenseArchive.findSegments(TENANT, Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:00Z")).isEmpty());
+            assertEquals(1, expenseService.findByDateRange(Instant.parse("2019-03-15T00:00:00Z"), Instant.parse("2019-04-15T00:00:00Z")).size());
+            assertTrue(TenantContext.callAs("someone-else", () -> expenseService.findByDateRange(
+                    Instant.parse("2019-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:00Z"))).isEmpty());
+        });
+
+        // Then: segments survive a restart
+        ExpenseArchive reopened = new ExpenseArchive(true, archiveDirectory.toString(), 1);
+        assertEquals(3, reopened.findByMomentBetween(TENANT, Instant.parse("2019-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:00Z")).size());
+    }
+
+    @Test
+    void findByDateRange_shouldOrderTableRowsBetweenArchivedOnes() {
+        TenantContext.runAs(TENANT + "-order", () -> {
+            // Given: a row backdated between two archived ones (newer than the other test's cutoff)
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            saveExpense(rent, "2024-03-01T10:00:00Z", "700.00");
+            saveExpense(rent, "2024-05-01T10:00:00Z", "720.00");
+            expenseArchiver.archiveOlderThan(Instant.parse("2024-06-01T00:00:00Z"));
+            saveExpense(rent, "2024-04-01T10:00:00Z", "710.00");
+
+            // When
+            List<Expense> all = expenseService.findByDateRange(Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-06-01T00:00:00Z"));
+
+            // Then
+            assertEquals(List.of(Instant.parse("2024-03-01T10:00:00Z"), Instant.parse("2024-04-01T10:00:00Z"),
+                    Instant.parse("2024-05-01T10:00:00Z")), all.stream().map(Expense::getMoment).toList());
+        });
+    }
+
+    @Test
+    void balanceAt_shouldCountArchivedRows() {
+        String tenant = TENANT + "-balance";
+        TenantContext.runAs(tenant, () -> {
+            // Given: three rows archived, one left in the table
+            Category salary = categoryService.saveCategory(new Category("Salary", TransactionType.INCOME));
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            saveExpense(salary, "2024-01-10T10:00:00Z", "1000.00");
+            saveExpense(rent, "2024-02-10T10:00:00Z", "200.00");
+            saveExpense(rent, "2024-05-10T10:00:00Z", "50.00");
+            expenseArchiver.archiveOlderThan(Instant.parse("2024-06-01T00:00:00Z"));
+            saveExpense(rent, "2024-07-01T10:00:00Z", "25.00");
+
+            // Then: a scan from the genesis merges them in
+            assertEquals(0, new BigDecimal("725.00").compareTo(
+                    balanceService.balanceAt("EUR", Instant.parse("2024-12-31T00:00:00Z")).getBalance()));
+
+            // And: so do checkpoint creation and the scan after a checkpoint
+            assertEquals(7, balanceService.createCheckpoints(tenant, Instant.parse("2024-08-15T00:00:00Z")));
+            assertEquals(0, new BigDecimal("800.00").compareTo(
+                    balanceService.balanceAt("EUR", Instant.parse("2024-03-15T00:00:00Z")).getBalance()));
+            RunningBalance may = balanceService.balanceAt("EUR", Instant.parse("2024-05-31T00:00:00Z"));
+            assertEquals(Instant.parse("2024-05-01T00:00:00Z"), may.getCheckpoint());
+            assertEquals(1, may.getScanned());
+            assertEquals(0, new BigDecimal("750.00").compareTo(may.getBalance()));
+        });
+    }
+}
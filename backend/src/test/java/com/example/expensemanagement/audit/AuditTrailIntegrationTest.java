@@ -0,0 +1,219 @@
+package com.example.expensemanagement.audit;
+
+import com.example.expensemanagement.dto.AuditEvent;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuditTrailIntegrationTest {
+
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TempDir
+    private Path spillDirectory;
+
+    private Expense newExpense(Category category, String sum) {
+        Expense expense = new Expense();
+        expense.setDescription("Lunch");
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.parse("2024-05-10T12:00:00Z"));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expense;
+    }
+
+    @Test
+    void committedWritesAreRecordedWithImagesAndRollbacksAreNot() {
+        TenantContext.runAs("audit-a", () -> {
+            // Given
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Expense lunch = expenseService.saveExpense(newExpense(food, "12.50"));
+            Expense changed = newExpense(food, "14.00");
+            changed.setDescription("Lunch with dessert");
+            expenseService.updateExpense(lunch.getId(), changed);
+            expenseService.deleteExpense(lunch.getId());
+            Category renamed = new Category("Groceries", TransactionType.EXPENSE);
+            categoryService.updateCategory(food.getId(), renamed);
+
+            // And: a write that rolls back
+            Long[] rolledBackId = new Long[1];
+            transactionTemplate.executeWithoutResult(status -> {
+                rolledBackId[0] = expenseService.saveExpense(newExpense(food, "99.00")).getId();
+                status.setRollbackOnly();
+            });
+
+            // When
+            assertTrue(auditTrail.flush(FLUSH_TIMEOUT));
+
+            // Then: the expense's history, newest first
+            List<AuditEvent> history = auditTrail.history(AuditTrail.EntityType.EXPENSE, lunch.getId(),
+                    Instant.EPOCH, Instant.now(), 100);
+            assertEquals(List.of(AuditTrail.Action.DELETE, AuditTrail.Action.UPDATE, AuditTrail.Action.CREATE),
+                    history.stream().map(AuditEvent::getAction).toList());
+            AuditEvent update = history.get(1);
+            assertTrue(update.getBefore().contains("\"description\":\"Lunch\""), update.getBefore());
+            assertTrue(update.getBefore().contains("\"sum\":12.50"), update.getBefore());
+            assertTrue(update.getAfter().contains("\"description\":\"Lunch with dessert\""), update.getAfter());
+            assertTrue(update.getAfter().contains("\"categoryId\":" + food.getId()), update.getAfter());
+            assertNull(history.get(0).getAfter());
+            assertNull(history.get(2).getBefore());
+
+            List<AuditEvent> categoryHistory = auditTrail.history(AuditTrail.EntityType.CATEGORY, food.getId(),
+                    Instant.EPOCH, Instant.now(), 100);
+            assertEquals(2, categoryHistory.size());
+            assertTrue(categoryHistory.get(0).getAfter().contains("\"name\":\"Groceries\""));
+
+            assertTrue(auditTrail.history(AuditTrail.EntityType.EXPENSE, rolledBackId[0], Instant.EPOCH, Instant.now(), 100)
+                    .isEmpty());
+            assertEquals(5, auditTrail.changes(null, Instant.EPOCH, Instant.now(), 100).size());
+        });
+
+        // Other tenants don't see the history
+        TenantContext.runAs("audit-b", () ->
+                assertTrue(auditTrail.changes(null, Instant.EPOCH, Instant.now(), 100).isEmpty()));
+    }
+
+    @Test
+    void deletingACategoryRecordsEveryCategoryOfItsSubtree() {
+        TenantContext.runAs("audit-tree", () -> {
+            // Given
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category groceries = categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE, food));
+            Category fruit = categoryService.saveCategory(new Category("Fruit", TransactionType.EXPENSE, groceries));
+
+            // When
+            categoryService.deleteCategory(food.getId());
+            assertTrue(auditTrail.flush(FLUSH_TIMEOUT));
+
+            // Then
+            List<AuditEvent> deletes = auditTrail.changes(AuditTrail.EntityType.CATEGORY, Instant.EPOCH, Instant.now(), 100)
+                    .stream().filter(event -> event.getAction() == AuditTrail.Action.DELETE).toList();
+            assertEquals(List.of(fruit.getId(), groceries.getId(), food.getId()),
+                    deletes.stream().map(AuditEvent::getEntityId).sorted(Comparator.reverseOrder()).toList());
+            AuditEvent fruitDelete = deletes.stream().filter(event -> event.getEntityId().equals(fruit.getId())).findFirst().orElseThrow();
+            assertTrue(fruitDelete.getBefore().contains("\"parentId\":" + groceries.getId()), fruitDelete.getBefore());
+        });
+    }
+
+    @Test
+    void eventsThatCannotBeWrittenAreSpilledAndReplayed() throws Exception {
+        // Given: an audit trail whose table is gone, with room for one queued event
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:audit-spill;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("ALTER TABLE audit_events RENAME TO audit_events_away");
+        AuditTrail failing = new AuditTrail(jdbc, new ShardRegistry(dataSource), objectMapper, true, 1, 1,
+                Duration.ofMillis(10), Duration.ofMillis(10), 1, Duration.ofMillis(200), spillDirectory.toString());
+        try {
+            // When: failed inserts and a full queue
+            TenantContext.runAs("audit-spill", () -> {
+                for (long id = 1; id <= 5; id++) {
+                    failing.recordAfterCommit(AuditTrail.EntityType.EXPENSE, id, AuditTrail.Action.CREATE, null, Map.<String, Object>of("id", id));
+                }
+            });
+            assertTrue(failing.flush(FLUSH_TIMEOUT));
+            assertTrue(failing.getSpilled() > 0);
+
+            // Then: once the table is back, every event is written
+            jdbc.execute("ALTER TABLE audit_events_away RENAME TO audit_events");
+            long deadline = System.nanoTime() + FLUSH_TIMEOUT.toNanos();
+            while (jdbc.queryForObject("SELECT COUNT(*) FROM audit_events", Long.class) < 5 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), jdbc.queryForList(
+                    "SELECT entity_id FROM audit_events WHERE tenant_id = 'audit-spill' ORDER BY entity_id", Long.class));
+            assertEquals(0, failing.getDropped());
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    @Test
+    void historyIsServedPerEntityAndTimeRange() throws Exception {
+        Long[] ids = new Long[2];
+        Instant[] between = new Instant[1];
+        TenantContext.runAs("audit-c", () -> {
+            Category travel = categoryService.saveCategory(new Category("Travel", TransactionType.EXPENSE));
+            Expense ticket = expenseService.saveExpense(newExpense(travel, "80.00"));
+            assertTrue(auditTrail.flush(FLUSH_TIMEOUT));
+            between[0] = Instant.now();
+            expenseService.deleteExpense(ticket.getId());
+            assertTrue(auditTrail.flush(FLUSH_TIMEOUT));
+            ids[0] = travel.getId();
+            ids[1] = ticket.getId();
+        });
+
+        mockMvc.perform(get("/api/audit/expense/" + ids[1]).header(TenantFilter.TENANT_HEADER, "audit-c"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].action").value("DELETE"))
+                .andExpect(jsonPath("$[0].before.sum").value(80.0))
+                .andExpect(jsonPath("$[1].after.description").value("Lunch"));
+        mockMvc.perform(get("/api/audit/expense/" + ids[1]).header(TenantFilter.TENANT_HEADER, "audit-c")
+                        .param("to", between[0].toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].action").value("CREATE"));
+        mockMvc.perform(get("/api/audit").header(TenantFilter.TENANT_HEADER, "audit-c").param("entityType", "category"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].entityId").value(ids[0]));
+        mockMvc.perform(get("/api/audit").header(TenantFilter.TENANT_HEADER, "audit-c").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/audit/budget/1").header(TenantFilter.TENANT_HEADER, "audit-c"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.expensemanagement.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replays mixed read and write traffic against ExpenseController and CategoryController
+ * on a synthetic data set and reports throughput and p50/p99/p999 latency per operation.
+ * Run with {@code mvn test -Pbenchmark -Dtest=HttpLoadBenchmark}; tune with
+ * -Dloadtest.expenses, -Dloadtest.threads, -Dloadtest.seconds and -Dloadtest.seed.
+ * The data set and the request script are deterministic for a given seed; only the
+ * interleaving of the worker threads varies between runs.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "expense.synthetic.expenses=${loadtest.expenses:500000}",
+        "expense.synthetic.seed=${loadtest.seed:42}",
+        "expense.synthetic.tenant=" + HttpLoadBenchmark.TENANT,
+        "spring.jpa.show-sql=false",
+        "expense.admission.enabled=false"
+})
+@ActiveProfiles({"test", "synthetic-data"})
+class HttpLoadBenchmark {
+
+    static final String TENANT = "loadtest";
+
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private static final int SECONDS = Integer.getInteger("loadtest.seconds", 30);
+    private static final long SEED = Long.getLong("loadtest.seed", 42);
+
+    // Matches the generator's defaults: five years up to 2025-01-01
+    private static final LocalDate FIRST_DAY = LocalDate.parse("2020-01-01");
+    private static final int DAYS = 5 * 365;
+
+    private static final String[] CURRENCIES = {"EUR", "EUR", "EUR", "USD", "GBP"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    private List<Long> categoryIds;
+
+    // Expenses created by the harness, updated and deleted later in the run
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+
+    private enum Operation {
+        DATE_RANGE_WEEK(30), TIME_SERIES_YEAR(10), TOP_CATEGORIES_MONTH(10), TOP_EXPENSES_MONTH(10),
+        CATEGORY_TREE(5), CATEGORY_BY_ID(10), EXPENSE_BY_ID(5), CREATE_EXPENSE(12), UPDATE_EXPENSE(5), DELETE_EXPENSE(3);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        categoryIds = new ArrayList<>();
+        JsonNode categories = objectMapper.readTree(send(get("/api/categories/type/EXPENSE")).body());
+        categories.forEach(category -> categoryIds.add(category.get("id").asLong()));
+        assertFalse(categoryIds.isEmpty(), "Synthetic data set was not generated");
+
+        System.out.println("Warming up for " + WARMUP_SECONDS + " s with " + THREADS + " threads");
+        run(WARMUP_SECONDS, SEED);
+        System.out.println("Measuring for " + SECONDS + " s with " + THREADS + " threads");
+        Map<Operation, Recorder> results = run(SECONDS, SEED + 1);
+
+        report(results);
+        Recorder total = new Recorder();
+        results.values().forEach(total::addAll);
+        assertEquals(0, total.errors, "Requests failed during the run");
+    }
+
+    private Map<Operation, Recorder> run(int seconds, long seed) throws Exception {
+        List<Map<Operation, Recorder>> perThread = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < THREADS; t++) {
+            Map<Operation, Recorder> recorders = new LinkedHashMap<>();
+            for (Operation operation : Operation.values()) {
+                recorders.put(operation, new Recorder());
+            }
+            perThread.add(recorders);
+            SplittableRandom random = new SplittableRandom(seed * 1_000 + t);
+            workers.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        Operation operation = pick(random);
+                        long started = System.nanoTime();
+                        int status = execute(operation, random);
+                        recorders.get(operation).record(System.nanoTime() - started, status);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+
+        Map<Operation, Recorder> merged = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Recorder recorder = new Recorder();
+            perThread.forEach(recorders -> recorder.addAll(recorders.get(operation)));
+            recorder.seconds = seconds;
+            merged.put(operation, recorder);
+        }
+        return merged;
+    }
+
+    private Operation pick(SplittableRandom random) {
+        int total = Arrays.stream(Operation.values()).mapToInt(operation -> operation.weight).sum();
+        int draw = random.nextInt(total);
+        for (Operation operation : Operation.values()) {
+            draw -= operation.weight;
+            if (draw < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private int execute(Operation operation, SplittableRandom random) {
+        try {
+            LocalDate day = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            String currency = CURRENCIES[random.nextInt(CURRENCIES.length)];
+            switch (operation) {
+                case DATE_RANGE_WEEK:
+                    return send(get("/api/expenses/date-range?startDate=" + day + "&endDate=" + day.plusDays(6))).statusCode();
+                case TIME_SERIES_YEAR:
+                    return send(get("/api/expenses/time-series?currency=" + currency + "&startDate=" + day
+                            + "&endDate=" + day.plusYears(1) + "&granularity=MONTH")).statusCode();
+                case TOP_CATEGORIES_MONTH:
+                    return send(get("/api/expenses/top-categories?currency=" + currency + "&startDate=" + day
+                            + "&endDate=" + day.plusMonths(1) + "&rollup=true")).statusCode();
+                case TOP_EXPENSES_MONTH:
+                    return send(get("/api/expenses/top?currency=" + currency + "&startDate=" + day
+                            + "&endDate=" + day.plusMonths(1) + "&limit=20")).statusCode();
+                case CATEGORY_TREE:
+                    return send(get("/api/categories/type/EXPENSE/tree")).statusCode();
+                case CATEGORY_BY_ID:
+                    return send(get("/api/categories/" + randomCategory(random))).statusCode();
+                case EXPENSE_BY_ID: {
+                    // Taken out of the queue while in use so a concurrent delete cannot remove it
+                    Long id = createdIds.poll();
+                    if (id == null) {
+                        return send(get("/api/categories/" + randomCategory(random))).statusCode();
+                    }
+                    try {
+                        return send(get("/api/expenses/" + id)).statusCode();
+                    } finally {
+                        createdIds.add(id);
+                    }
+                }
+                case CREATE_EXPENSE: {
+                    HttpResponse<String> response = send(write("POST", "/api/expenses", expenseJson(random, day)));
+                    if (response.statusCode() == 201) {
+                        createdIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+                    }
+                    return response.statusCode();
+                }
+                case UPDATE_EXPENSE: {
+                    Long id = createdIds.poll();
+                    if (id == null) {
+                        return 200;
+                    }
+                    try {
+                        return send(write("PUT", "/api/expenses/" + id, expenseJson(random, day))).statusCode();
+                    } finally {
+                        createdIds.add(id);
+                    }
+                }
+                case DELETE_EXPENSE: {
+                    Long id = createdIds.poll();
+                    return id != null ? send(write("DELETE", "/api/expenses/" + id, null)).statusCode() : 204;
+                }
+                default:
+                    throw new IllegalArgumentException(operation.name());
+            }
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private Long randomCategory(SplittableRandom random) {
+        return categoryIds.get(random.nextInt(categoryIds.size()));
+    }
+
+    private String expenseJson(SplittableRandom random, LocalDate day) {
+        return "{\"description\":\"Load test\",\"sum\":" + (1 + random.nextInt(20_000)) / 100.0
+                + ",\"currency\":\"" + CURRENCIES[random.nextInt(CURRENCIES.length)] + "\""
+                + ",\"moment\":\"" + day + "T12:00:00Z\",\"type\":\"EXPENSE\""
+                + ",\"category\":{\"id\":" + randomCategory(random) + "}}";
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest write(String method, String path, String json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .method(method, json != null ? HttpRequest.BodyPublishers.ofString(json) : HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("X-Tenant-Id", TENANT)
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void report(Map<Operation, Recorder> results) {
+        System.out.printf("%-22s %9s %7s %10s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        Recorder total = new Recorder();
+        total.seconds = SECONDS;
+        results.forEach((operation, recorder) -> {
+            print(operation.name(), recorder);
+            total.addAll(recorder);
+        });
+        print("TOTAL", total);
+    }
+
+    private void print(String name, Recorder recorder) {
+        long[] sorted = recorder.sortedLatencies();
+        System.out.printf("%-22s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", name, sorted.length, recorder.errors,
+                sorted.length / (double) recorder.seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    // Latency samples (nanoseconds) and failed requests of one operation; owned by one thread until merged
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private int seconds;
+
+        void record(long nanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (status < 200 || status >= 300) {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], 200);
+            }
+            errors += other.errors;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
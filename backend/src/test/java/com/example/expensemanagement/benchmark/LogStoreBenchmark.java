@@ -0,0 +1,130 @@
+package com.example.expensemanagement.benchmark;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.logstore.LogCategoryRepository;
+import com.example.expensemanagement.logstore.LogExpenseRepository;
+import com.example.expensemanagement.logstore.LogStore;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the embedded log store with H2 in file mode behind the same
+ * repository contracts: write throughput of single-row saves from concurrent
+ * threads, then the latency of one-week date-range reads.
+ * Run with {@code mvn test -Pbenchmark -Dtest=LogStoreBenchmark}; tune with
+ * -Dstorebench.expenses, -Dstorebench.threads and -Dstorebench.reads.
+ * Both stores acknowledge a save once it is on disk in their own sense: the log
+ * store after its group sync, H2 after its commit.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class LogStoreBenchmark {
+
+    private static final String TENANT = "storebench";
+    private static final int EXPENSES = Integer.getInteger("storebench.expenses", 100_000);
+    private static final int THREADS = Integer.getInteger("storebench.threads", 8);
+    private static final int READS = Integer.getInteger("storebench.reads", 2_000);
+    private static final Instant FIRST_DAY = Instant.parse("2020-01-01T00:00:00Z");
+    private static final int DAYS = 5 * 365;
+
+    private static Path h2Directory;
+
+    @DynamicPropertySource
+    static void fileDatabase(DynamicPropertyRegistry registry) throws IOException {
+        h2Directory = Files.createTempDirectory("storebench-h2");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + h2Directory.resolve("expenses"));
+    }
+
+    @Autowired
+    private ExpenseRepository jpaExpenseRepository;
+
+    @Autowired
+    private CategoryRepository jpaCategoryRepository;
+
+    @Test
+    void writeThroughputAndRangeReadLatency() throws Exception {
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "store", "writes/s", "read p50 ms", "read p99 ms", "rows/read");
+        run("h2-file", jpaExpenseRepository, jpaCategoryRepository);
+        try (LogStore logStore = new LogStore(Files.createTempDirectory("storebench-log"), 64 << 20, true,
+                Long.MAX_VALUE, 0.5)) {
+            LogCategoryRepository categories = new LogCategoryRepository(logStore);
+            run("logstore", new LogExpenseRepository(logStore, categories), categories);
+        }
+    }
+
+    private void run(String name, ExpenseRepository expenses, CategoryRepository categories) throws Exception {
+        List<Category> saved = TenantContext.callAs(TENANT, () -> {
+            List<Category> list = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                list.add(categories.save(new Category("Category " + i, TransactionType.EXPENSE)));
+            }
+            return list;
+        });
+
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> writers = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            SplittableRandom random = new SplittableRandom(42 + t);
+            writers.add(workers.submit(() -> TenantContext.runAs(TENANT, () -> {
+                for (int i = 0; i < EXPENSES / THREADS; i++) {
+                    Expense expense = new Expense();
+                    expense.setDescription("Expense " + i);
+                    expense.setSum(BigDecimal.valueOf(random.nextInt(1, 100_000), 2));
+                    expense.setCurrency("EUR");
+                    expense.setMoment(FIRST_DAY.plusSeconds(random.nextLong(DAYS * 86_400L)));
+                    expense.setType(TransactionType.EXPENSE);
+                    expense.setCategory(saved.get(random.nextInt(saved.size())));
+                    expenses.save(expense);
+                }
+            })));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        double writeSeconds = (System.nanoTime() - started) / 1e9;
+        workers.shutdown();
+
+        SplittableRandom random = new SplittableRandom(7);
+        long[] latencies = new long[READS];
+        long rows = 0;
+        for (int i = 0; i < READS; i++) {
+            Instant start = FIRST_DAY.plus(random.nextInt(DAYS - 7), ChronoUnit.DAYS);
+            Instant end = start.plus(7, ChronoUnit.DAYS).minusMillis(1);
+            long readStarted = System.nanoTime();
+            rows += TenantContext.callAs(TENANT, () -> expenses.findByMomentBetween(start, end)).size();
+            latencies[i] = System.nanoTime() - readStarted;
+        }
+        Arrays.sort(latencies);
+        assertTrue(rows > 0, "Range reads returned nothing");
+        System.out.printf("%-10s %12.0f %12.3f %12.3f %12.1f%n", name, (EXPENSES / THREADS * THREADS) / writeSeconds,
+                latencies[READS / 2] / 1e6, latencies[(int) Math.ceil(READS * 0.99) - 1] / 1e6, rows / (double) READS);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.expensemanagement.benchmark;
+
+import com.example.expensemanagement.config.ColumnarExpenseHttpMessageConverter;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and serialization CPU per 10k expenses for every
+ * negotiable response format. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ResponseFormatBenchmark {
+
+    private static final int EXPENSES = 10_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private static final Type EXPENSE_LIST = new ParameterizedTypeReference<List<Expense>>() {}.getType();
+
+    @Test
+    void serializeTenThousandExpenses() throws Exception {
+        List<Expense> expenses = generateExpenses();
+
+        System.out.printf("%-22s %12s %12s %14s%n", "format", "raw bytes", "gzip bytes", "cpu ms/10k");
+        report("json", new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build()),
+                MediaType.APPLICATION_JSON, expenses);
+        report("columnar-json", new ColumnarExpenseHttpMessageConverter(),
+                ColumnarExpenseHttpMessageConverter.COLUMNAR_JSON, expenses);
+        report("cbor", new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()),
+                MediaType.APPLICATION_CBOR, expenses);
+        report("smile", new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build()),
+                MediaType.valueOf("application/x-jackson-smile"), expenses);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void report(String name, GenericHttpMessageConverter<?> converter, MediaType mediaType,
+                        List<Expense> expenses) throws Exception {
+        GenericHttpMessageConverter<Object> writer = (GenericHttpMessageConverter<Object>) converter;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            write(writer, mediaType, expenses);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        byte[] body = null;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            body = write(writer, mediaType, expenses);
+        }
+        double cpuMillis = (threads.getCurrentThreadCpuTime() - cpuStart) / 1_000_000.0 / MEASURED_ROUNDS;
+
+        System.out.printf("%-22s %12d %12d %14.2f%n", name, body.length, gzip(body).length, cpuMillis);
+    }
+
+    private byte[] write(GenericHttpMessageConverter<Object> writer, MediaType mediaType, List<Expense> expenses)
+            throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        writer.write(expenses, EXPENSE_LIST, mediaType, message);
+        return message.getBodyAsBytes();
+    }
+
+    private byte[] gzip(byte[] body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private List<Expense> generateExpenses() {
+        Random random = new Random(42);
+        String[] currencies = {"EUR", "USD", "GBP"};
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Category category = new Category("Category " + i, TransactionType.EXPENSE);
+            category.setId((long) i + 1);
+            categories.add(category);
+        }
+
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        List<Expense> expenses = new ArrayList<>(EXPENSES);
+        for (int i = 0; i < EXPENSES; i++) {
+            Expense expense = new Expense();
+            expense.setId((long) i + 1);
+            expense.setDescription("Expense " + i);
+            expense.setSum(BigDecimal.valueOf(random.nextInt(100_000) + 1, 2));
+            expense.setCurrency(currencies[random.nextInt(currencies.length)]);
+            expense.setMoment(base.plus(random.nextInt(365 * 24 * 60), ChronoUnit.MINUTES));
+            expense.setType(TransactionType.EXPENSE);
+            expense.setCategory(categories.get(random.nextInt(categories.size())));
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.expensemanagement.benchmark;
+
+import com.example.expensemanagement.dto.SnapshotSummary;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.snapshot.SnapshotService;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Times a snapshot export and a warm-start restore of one shard holding many
+ * expenses, between two in-memory databases.
+ * Run with {@code mvn test -Pbenchmark -Dtest=SnapshotBenchmark}; tune with
+ * -Dsnapshotbench.expenses, -Dsnapshotbench.block-rows and -Dsnapshotbench.threads.
+ * The seed row is H2's own INSERT ... SELECT into the fully indexed table; the
+ * restore loads into the primary key alone and builds the other indexes
+ * afterwards (its log line splits the two). H2 builds an index at about the
+ * cost of maintaining it row by row, so the gain is the loader threads no
+ * longer contending on the index maps: it grows with the cores. The per-tenant
+ * sketch and checkpoint rebuild runs against the test database here, where the
+ * tenant has no rows, so the restore time is essentially the bulk load.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class SnapshotBenchmark {
+
+    private static final int EXPENSES = Integer.getInteger("snapshotbench.expenses", 1_000_000);
+    private static final int BLOCK_ROWS = Integer.getInteger("snapshotbench.block-rows", 65_536);
+    private static final int THREADS = Integer.getInteger("snapshotbench.threads", 4);
+
+    @Autowired
+    private SpendDistributionService spendDistributionService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    private static DataSource freshDatabase(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+
+    @Test
+    void exportAndRestoreThroughput() throws Exception {
+        DataSource source = freshDatabase("snapshotbench-source");
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        sourceJdbc.update("INSERT INTO categories (tenant_id, name, type) SELECT 'snapshotbench', 'Category ' || X, 'EXPENSE' "
+                + "FROM SYSTEM_RANGE(1, 50)");
+        long seedStarted = System.nanoTime();
+        sourceJdbc.update("INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id) "
+                + "SELECT 'snapshotbench', 'Expense ' || MOD(X, 1000), MOD(X * 7919, 100000) / 100.0, "
+                + "CASE MOD(X, 3) WHEN 0 THEN 'EUR' WHEN 1 THEN 'USD' ELSE 'CHF' END, "
+                + "DATEADD(SECOND, X * 17, TIMESTAMP WITH TIME ZONE '2015-01-01 00:00:00+00'), 'EXPENSE', 1 + MOD(X, 50) "
+                + "FROM SYSTEM_RANGE(1, ?)", EXPENSES);
+        long seedMillis = (System.nanoTime() - seedStarted) / 1_000_000;
+
+        Path directory = Files.createTempDirectory("snapshotbench");
+        SnapshotSummary exported = new SnapshotService(new ShardRegistry(source), spendDistributionService, balanceService,
+                directory.toString(), false, false, BLOCK_ROWS, THREADS).exportAll().get(0);
+
+        DataSource target = freshDatabase("snapshotbench-target");
+        long started = System.nanoTime();
+        SnapshotSummary restored = new SnapshotService(new ShardRegistry(target), spendDistributionService, balanceService,
+                directory.toString(), false, false, BLOCK_ROWS, THREADS).restoreAll().get(0);
+        long restoreMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(EXPENSES, restored.getExpenses());
+        assertEquals((long) EXPENSES, new JdbcTemplate(target).queryForObject("SELECT COUNT(*) FROM expenses", Long.class));
+        System.out.printf("%-8s %12s %12s %14s %12s%n", "phase", "expenses", "ms", "expenses/s", "bytes/row");
+        System.out.printf("%-8s %12d %12d %14.0f %12s%n", "seed", EXPENSES, seedMillis,
+                EXPENSES * 1000.0 / Math.max(1, seedMillis), "-");
+        System.out.printf("%-8s %12d %12d %14.0f %12.1f%n", "export", exported.getExpenses(), exported.getMillis(),
+                exported.getExpenses() * 1000.0 / Math.max(1, exported.getMillis()), (double) exported.getBytes() / EXPENSES);
+        System.out.printf("%-8s %12d %12d %14.0f %12.1f%n", "restore", restored.getExpenses(), restoreMillis,
+                restored.getExpenses() * 1000.0 / Math.max(1, restoreMillis), (double) restored.getBytes() / EXPENSES);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.expensemanagement.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Time-to-first-request and resident memory of the packaged application, started
+ * as a regular fat jar and with the fast-start profile (AOT + AppCDS archive).
+ * Build both first, then run:
+ * <pre>
+ * mvn -Pfast-start package -DskipTests
+ * mvn test -Pbenchmark -Dtest=StartupBenchmark
+ * </pre>
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path FAT_JAR = TARGET.resolve("expense-management-0.0.1-SNAPSHOT.jar");
+    private static final Path FAST_START = TARGET.resolve("fast-start");
+    private static final Path FAST_START_JAR = FAST_START.resolve("expense-management-0.0.1-SNAPSHOT-fast-start.jar");
+
+    @Test
+    void timeToFirstRequest() throws Exception {
+        assumeTrue(Files.exists(FAT_JAR) && Files.exists(FAST_START_JAR) && Files.exists(FAST_START.resolve("application.jsa")),
+                "Run mvn -Pfast-start package -DskipTests first");
+
+        System.out.printf("%-12s %22s %16s%n", "start", "first request ms (p50)", "RSS MiB (p50)");
+        report("fat jar", TARGET, List.of("-jar", FAT_JAR.getFileName().toString()));
+        report("fast-start", FAST_START, List.of("-XX:SharedArchiveFile=application.jsa", "-Xlog:cds=error",
+                "-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-start",
+                "-jar", FAST_START_JAR.getFileName().toString()));
+    }
+
+    private void report(String name, Path workingDirectory, List<String> arguments) throws Exception {
+        long[] millis = new long[ROUNDS];
+        long[] rssKib = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] sample = start(workingDirectory, arguments);
+            millis[i] = sample[0];
+            rssKib[i] = sample[1];
+        }
+        Arrays.sort(millis);
+        Arrays.sort(rssKib);
+        System.out.printf("%-12s %22d %16.1f%n", name, millis[ROUNDS / 2], rssKib[ROUNDS / 2] / 1024.0);
+    }
+
+    // Returns {milliseconds until the first successful request, RSS in KiB right after it}
+    private long[] start(Path workingDirectory, List<String> arguments) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(arguments);
+        command.add("--server.port=" + port);
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(workingDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            URI uri = URI.create("http://localhost:" + port + "/api/categories");
+            while (!respondsOk(uri)) {
+                if (!process.isAlive() || System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS)) {
+                    throw new IllegalStateException("Application did not start: " + command);
+                }
+                Thread.sleep(10);
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new long[]{millis, residentKib(process.pid())};
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private boolean respondsOk(URI uri) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+            connection.setConnectTimeout(200);
+            connection.setReadTimeout(5_000);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // VmRSS from /proc (Linux); -1 elsewhere
+    private long residentKib(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
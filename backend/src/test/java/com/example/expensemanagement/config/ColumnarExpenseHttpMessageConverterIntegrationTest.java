@@ -0,0 +1,99 @@
+package com.example.expensemanagement.config;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ColumnarExpenseHttpMessageConverterIntegrationTest {
+
+    private static final String TENANT = "columnar-test";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Test
+    void canWriteListsOfExpensesForAnyMediaTypeItProduces() {
+        ColumnarExpenseHttpMessageConverter converter = new ColumnarExpenseHttpMessageConverter();
+        Type expenses = new ParameterizedTypeReference<List<Expense>>() {}.getType();
+
+        assertTrue(converter.canWrite(expenses, List.class, null));
+        assertTrue(converter.canWrite(expenses, List.class, MediaType.ALL));
+        assertTrue(converter.canWrite(expenses, List.class, MediaType.valueOf("application/*")));
+        assertTrue(converter.canWrite(expenses, List.class, ColumnarExpenseHttpMessageConverter.COLUMNAR_JSON));
+        assertFalse(converter.canWrite(expenses, List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(ResolvableType.forClassWithGenerics(List.class, String.class).getType(), List.class, null));
+    }
+
+    @Test
+    void columnarJsonOnlyWhenAskedFor() throws Exception {
+        Long id = TenantContext.callAs(TENANT, () -> {
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Expense expense = new Expense();
+            expense.setDescription("Groceries");
+            expense.setSum(new BigDecimal("42.50"));
+            expense.setCurrency("EUR");
+            expense.setMoment(Instant.parse("2024-03-01T10:00:00Z"));
+            expense.setType(TransactionType.EXPENSE);
+            expense.setCategory(food);
+            return expenseService.saveExpense(expense).getId();
+        });
+
+        // When asked for: column names once, one array per row
+        mockMvc.perform(get("/api/expenses").header(TenantFilter.TENANT_HEADER, TENANT)
+                        .header(HttpHeaders.ACCEPT, "application/vnd.expense.columnar+json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(ColumnarExpenseHttpMessageConverter.COLUMNAR_JSON))
+                .andExpect(jsonPath("$.columns").value(contains(
+                        "id", "description", "sum", "currency", "moment", "type", "categoryId")))
+                .andExpect(jsonPath("$.rows.length()").value(1))
+                .andExpect(jsonPath("$.rows[0][0]").value(id))
+                .andExpect(jsonPath("$.rows[0][1]").value("Groceries"))
+                .andExpect(jsonPath("$.rows[0][2]").value(42.50))
+                .andExpect(jsonPath("$.rows[0][4]").value(Instant.parse("2024-03-01T10:00:00Z").toEpochMilli()))
+                .andExpect(jsonPath("$.rows[0][5]").value("EXPENSE"));
+
+        // Otherwise plain JSON, also for clients accepting anything
+        for (String accept : List.of("", "*/*", "application/json", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")) {
+            mockMvc.perform(get("/api/expenses").header(TenantFilter.TENANT_HEADER, TENANT)
+                            .header(HttpHeaders.ACCEPT, accept))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$[0].description").value("Groceries"));
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.expensemanagement.logstore;
+
+import com.example.expensemanagement.ExpenseManagementApplication;
+import com.example.expensemanagement.audit.AuditTrail;
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.dto.RunningBalance;
+import com.example.expensemanagement.dto.SpendDistribution;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles({"test", "logstore"})
+class LogStoreIntegrationTest {
+
+    private static final String TENANT = "log-a";
+    private static final long MAY_1 = LogExpenseRepository.floorMicros(Instant.parse("2024-05-01T00:00:00Z"));
+
+    @DynamicPropertySource
+    static void logDirectory(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("logstore-test");
+        registry.add("expense.logstore.directory", directory::toString);
+    }
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private SpendDistributionService spendDistributionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path directory;
+
+    private LogStore open(int segmentSize) throws IOException {
+        return new LogStore(directory, segmentSize, true, Long.MAX_VALUE, 0.5);
+    }
+
+    private static ExpenseRow save(LogStore store, Long id, long categoryId, String sum, long momentMicros) {
+        return store.saveExpense(TENANT, id, "Lunch", new BigDecimal(sum), "EUR", momentMicros, TransactionType.EXPENSE,
+                categoryId, null);
+    }
+
+    @Test
+    void servicesReadAndWriteThroughTheLog() {
+        assertInstanceOf(LogExpenseRepository.class, expenseRepository);
+        TenantContext.runAs("log-services", () -> {
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category groceries = categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE, food));
+            Expense expense = new Expense();
+            expense.setDescription("Market");
+            expense.setSum(new BigDecimal("12.30"));
+            expense.setCurrency("EUR");
+            expense.setMoment(Instant.parse("2024-05-02T10:15:30.123456789Z"));
+            expense.setType(TransactionType.EXPENSE);
+            expense.setCategory(groceries);
+            Expense saved = expenseService.saveExpense(expense);
+
+            List<Expense> found = expenseService.findByDateRange(Instant.parse("2024-05-02T00:00:00Z"),
+                    Instant.parse("2024-05-02T23:59:59.999Z"));
+            assertEquals(List.of(saved.getId()), found.stream().map(Expense::getId).toList());
+            assertEquals(Instant.parse("2024-05-02T10:15:30.123456Z"), found.get(0).getMoment());
+            assertEquals("Food", found.get(0).getCategory().getParent().getName());
+            assertEquals(List.of("Groceries"), categoryService.findByType(TransactionType.EXPENSE).stream()
+                    .filter(category -> category.getParent() != null).map(Category::getName).toList());
+            assertThrows(DataIntegrityViolationException.class, () -> categoryService.deleteCategory(food.getId()));
+
+            TenantContext.runAs("log-other", () -> assertTrue(expenseService.findById(saved.getId()).isEmpty()));
+        });
+    }
+
+    private static Expense newExpense(Category category, String sum, String currency, String moment) {
+        Expense expense = new Expense();
+        expense.setDescription("Market");
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expense;
+    }
+
+    @Test
+    void rolledBackWritesAreUndoneInTheLog() {
+        TenantContext.runAs("log-rollback", () -> {
+            // Given
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Expense kept = expenseService.saveExpense(newExpense(food, "10.00", "EUR", "2024-05-01T10:00:00Z"));
+            Expense removed = expenseService.saveExpense(newExpense(food, "20.00", "EUR", "2024-05-02T10:00:00Z"));
+
+            // When: an insert, an edit that moves the moment and a delete, all rolled back
+            Long[] insertedId = new Long[1];
+            transactionTemplate.executeWithoutResult(status -> {
+                insertedId[0] = expenseService.saveExpense(newExpense(food, "30.00", "EUR", "2024-05-03T10:00:00Z")).getId();
+                expenseService.updateExpense(kept.getId(), newExpense(food, "11.00", "EUR", "2024-06-01T10:00:00Z"));
+                expenseService.deleteExpense(removed.getId());
+                status.setRollbackOnly();
+            });
+
+            // Then
+            assertTrue(expenseRepository.findById(insertedId[0]).isEmpty());
+            Expense restored = expenseRepository.findById(kept.getId()).orElseThrow();
+            assertEquals(new BigDecimal("10.00"), restored.getSum());
+            assertEquals(Instant.parse("2024-05-01T10:00:00Z"), restored.getMoment());
+            assertTrue(expenseRepository.findById(removed.getId()).isPresent());
+            assertEquals(List.of(kept.getId(), removed.getId()), expenseRepository.findByMomentBetween(
+                    Instant.parse("2024-05-01T00:00:00Z"), Instant.parse("2024-06-30T00:00:00Z")).stream().map(Expense::getId).toList());
+        });
+    }
+
+    @Test
+    void rollbackKeepsAWriteMadeSinceByAnotherTransaction() {
+        TenantContext.runAs("log-rollback-race", () -> {
+            // Given
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Long id = expenseService.saveExpense(newExpense(food, "10.00", "EUR", "2024-05-01T10:00:00Z")).getId();
+
+            // When: a transaction edits the row, another writer edits it on top, then the first rolls back
+            transactionTemplate.executeWithoutResult(status -> {
+                Expense mine = expenseRepository.findById(id).orElseThrow();
+                mine.setSum(new BigDecimal("11.00"));
+                expenseRepository.save(mine);
+                CompletableFuture.runAsync(() -> TenantContext.runAs("log-rollback-race", () -> {
+                    Expense theirs = expenseRepository.findById(id).orElseThrow();
+                    theirs.setSum(new BigDecimal("12.00"));
+                    expenseRepository.save(theirs);
+                })).join();
+                status.setRollbackOnly();
+            });
+
+            // Then: the later write stands
+            assertEquals(new BigDecimal("12.00"), expenseRepository.findById(id).orElseThrow().getSum());
+        });
+    }
+
+    @Test
+    void derivedStateAndAuditTrailSurviveARestart() {
+        String tenant = "log-restart";
+        Long categoryId;
+        Long expenseId;
+        try (ConfigurableApplicationContext first = startApplication()) {
+            // Given
+            Long[] ids = TenantContext.callAs(tenant, () -> {
+                CategoryService categories = first.getBean(CategoryService.class);
+                ExpenseService expenses = first.getBean(ExpenseService.class);
+                Category food = categories.saveCategory(new Category("Food", TransactionType.EXPENSE));
+                Long id = expenses.saveExpense(newExpense(food, "10.00", "EUR", "2024-05-01T10:00:00Z")).getId();
+                expenses.saveExpense(newExpense(food, "20.00", "EUR", "2024-05-20T10:00:00Z"));
+                expenses.saveExpense(newExpense(food, "5.00", "EUR", "2024-06-10T10:00:00Z"));
+                first.getBean(BalanceService.class).createCheckpoints(tenant, Instant.parse("2024-07-01T00:00:00Z"));
+                return new Long[]{food.getId(), id};
+            });
+            categoryId = ids[0];
+            expenseId = ids[1];
+            assertTrue(first.getBean(AuditTrail.class).flush(Duration.ofSeconds(10)));
+
+            // And: a crash between the log writes and their database commits left the derived state behind
+            JdbcTemplate jdbcTemplate = first.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("DELETE FROM spend_sketches");
+            jdbcTemplate.update("DELETE FROM balance_checkpoints");
+        }
+
+        // When
+        try (ConfigurableApplicationContext second = startApplication()) {
+            TenantContext.runAs(tenant, () -> {
+                SpendDistribution distribution = second.getBean(SpendDistributionService.class).distribution(
+                        categoryId, "EUR", YearMonth.of(2024, 5), YearMonth.of(2024, 6), false, List.of(50.0));
+                RunningBalance june = second.getBean(BalanceService.class).balanceAt("EUR", Instant.parse("2024-06-30T00:00:00Z"));
+
+                // Then
+                assertEquals(3, distribution.getCount());
+                assertEquals(0, new BigDecimal("35.00").compareTo(distribution.getTotal()));
+                assertEquals(Instant.parse("2024-06-01T00:00:00Z"), june.getCheckpoint());
+                assertEquals(0, new BigDecimal("-35.00").compareTo(june.getBalance()));
+                assertFalse(second.getBean(AuditTrail.class).history(AuditTrail.EntityType.EXPENSE, expenseId,
+                        Instant.now().minus(Duration.ofHours(1)), Instant.now(), 10).isEmpty());
+            });
+        }
+    }
+
+    // The whole application on this test's log directory, as a restart would bring it up
+    private ConfigurableApplicationContext startApplication() {
+        return new SpringApplicationBuilder(ExpenseManagementApplication.class)
+                .profiles("test", "logstore")
+                .web(WebApplicationType.NONE)
+                .run("--expense.logstore.directory=" + directory, "--expense.audit.spill-directory=" + directory.resolve("spill"));
+    }
+
+    @Test
+    void projectionsBalancesAndSketchesReadTheLog() {
+        TenantContext.runAs("log-derived", () -> {
+            // Given
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            expenseService.saveExpense(newExpense(food, "10.00", "EUR", "2024-05-01T10:00:00Z"));
+            expenseService.saveExpense(newExpense(food, "4.50", "USD", "2024-05-02T10:00:00Z"));
+
+            // When
+            ExpenseProjection projection = expenseService.findByCurrency(List.of(ExpenseField.SUM, ExpenseField.CATEGORY_NAME), "USD");
+            List<RunningBalance> balances = balanceService.balancesAt(Instant.parse("2024-06-01T00:00:00Z"));
+
+            // Then
+            assertEquals(1, projection.getRows().size());
+            assertArrayEquals(new Object[]{new BigDecimal("4.50"), "Food"}, projection.getRows().get(0));
+            assertEquals(List.of("EUR", "USD"), balances.stream().map(RunningBalance::getCurrency).toList());
+            assertEquals(0, new BigDecimal("-10.00").compareTo(balances.get(0).getBalance()));
+            assertEquals(2, spendDistributionService.rebuild("log-derived"));
+        });
+    }
+
+    @Test
+    void refusesFeaturesThatReadTheDatabaseDirectly() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("expense.archive.enabled", "true")
+                .withProperty("expense.snapshot.restore-on-startup", "true");
+        environment.setActiveProfiles("logstore", "synthetic-data");
+
+        IllegalStateException refused = assertThrows(IllegalStateException.class, () -> new LogStoreConfig().logStore(
+                directory.toString(), DataSize.ofKilobytes(64), true, DataSize.ofMegabytes(64), 0.5, environment));
+
+        assertTrue(refused.getMessage().contains("expense.archive.enabled=true"), refused.getMessage());
+        assertTrue(refused.getMessage().contains("expense.snapshot.restore-on-startup=true"), refused.getMessage());
+        assertTrue(refused.getMessage().contains("synthetic-data"), refused.getMessage());
+    }
+
+    @Test
+    void recoversRowsAndIdsAfterRestart() throws IOException {
+        long categoryId;
+        long kept;
+        long deleted;
+        try (LogStore store = open(1 << 16)) {
+            categoryId = store.saveCategory(TENANT, null, "Food", TransactionType.EXPENSE, null).id();
+            kept = save(store, null, categoryId, "10.00", MAY_1).id();
+            deleted = save(store, null, categoryId, "20.00", MAY_1 + 1).id();
+            save(store, kept, categoryId, "11.00", MAY_1 + 2);
+            assertTrue(store.deleteExpense(TENANT, deleted));
+        }
+
+        try (LogStore store = open(1 << 16)) {
+            assertEquals(List.of(kept), store.expenses(TENANT).stream().map(ExpenseRow::id).toList());
+            ExpenseRow row = store.findExpense(TENANT, kept).orElseThrow();
+            assertEquals(new BigDecimal("11.00"), row.sum());
+            assertEquals(1, store.expensesBetween(TENANT, MAY_1 + 2, MAY_1 + 2, true).size());
+            assertTrue(store.expensesBetween(TENANT, MAY_1, MAY_1 + 1, true).isEmpty());
+            assertTrue(save(store, null, categoryId, "5.00", MAY_1).id() > deleted);
+            assertThrows(DataIntegrityViolationException.class, () -> save(store, null, categoryId + 100, "5.00", MAY_1));
+        }
+    }
+
+    @Test
+    void truncatesTornWriteAtTheEndOfTheLog() throws IOException {
+        long categoryId;
+        try (LogStore store = open(1 << 16)) {
+            categoryId = store.saveCategory(TENANT, null, "Food", TransactionType.EXPENSE, null).id();
+            for (int i = 0; i < 3; i++) {
+                save(store, null, categoryId, "1.00", MAY_1 + i);
+            }
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(LogSegment.EXTENSION)).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Walk to the last frame and damage its payload, as a torn write would
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long at = LogSegment.HEADER_BYTES;
+            long last = at;
+            while (true) {
+                length.clear();
+                channel.read(length, at);
+                int payload = length.getInt(0);
+                if (payload == 0) {
+                    break;
+                }
+                last = at;
+                at += LogSegment.frameBytes(payload);
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f, 0x7f}), last + LogSegment.FRAME_HEADER_BYTES + 2);
+        }
+
+        try (LogStore store = open(1 << 16)) {
+            assertEquals(2, store.expenses(TENANT).size());
+            save(store, null, categoryId, "2.00", MAY_1 + 10);
+        }
+        try (LogStore store = open(1 << 16)) {
+            assertEquals(3, store.expenses(TENANT).size());
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyCurrentRows() throws IOException {
+        long categoryId;
+        List<Long> live = new ArrayList<>();
+        long logBytesBefore;
+        try (LogStore store = open(4096)) {
+            categoryId = store.saveCategory(TENANT, null, "Food", TransactionType.EXPENSE, null).id();
+            long updated = save(store, null, categoryId, "1.00", MAY_1).id();
+            for (int i = 0; i < 200; i++) {
+                save(store, updated, categoryId, i + 1 + ".00", MAY_1 + i);
+            }
+            live.add(updated);
+            for (int i = 0; i < 50; i++) {
+                long id = save(store, null, categoryId, "3.00", MAY_1 + 1000 + i).id();
+                if (i % 2 == 0) {
+                    store.deleteExpense(TENANT, id);
+                } else {
+                    live.add(id);
+                }
+            }
+            logBytesBefore = store.getStats().get("logBytes");
+            assertTrue(store.getStats().get("segments") > 2);
+
+            store.compact();
+
+            assertEquals(2, store.getStats().get("segments"));
+            assertTrue(store.getStats().get("logBytes") < logBytesBefore / 4);
+            assertEquals(store.getStats().get("liveBytes"), store.getStats().get("logBytes"));
+            save(store, live.get(0), categoryId, "999.00", MAY_1 + 500);
+        }
+
+        try (LogStore store = open(4096)) {
+            assertEquals(live.stream().sorted().toList(), store.expenses(TENANT).stream().map(ExpenseRow::id).sorted().toList());
+            assertEquals(new BigDecimal("999.00"), store.findExpense(TENANT, live.get(0)).orElseThrow().sum());
+            assertTrue(save(store, null, categoryId, "1.00", MAY_1).id() > live.get(live.size() - 1));
+        }
+    }
+
+    @Test
+    void concurrentWritersShareSyncs() throws Exception {
+        long categoryId;
+        try (LogStore store = open(1 << 20)) {
+            categoryId = store.saveCategory(TENANT, null, "Food", TransactionType.EXPENSE, null).id();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread * 1000;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        save(store, null, categoryId, "1.00", MAY_1 + offset + i);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            executor.shutdown();
+            assertEquals(400, store.expenses(TENANT).size());
+            assertTrue(store.getStats().get("syncs") <= store.getStats().get("appends"));
+        }
+        try (LogStore store = open(1 << 20)) {
+            assertEquals(400, store.expenses(TENANT).size());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.expensemanagement.repository;
+
+import org.junit.jupiter.api.function.ThrowingSupplier;
+import org.opentest4j.AssertionFailedError;
+
+import java.util.List;
+
+/**
+ * Query-count guardrails: fail when a request or service call executes more SQL
+ * statements than its budget, listing the statements so an N+1 pattern is easy
+ * to spot. Needs {@link StatementCountingConfiguration} in the test context.
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    /**
+     * Run the action on this thread and fail if it executed more than budget statements
+     */
+    public static <T> T assertAtMost(int budget, String what, ThrowingSupplier<T> action) {
+        return assertAtMost(budget, what, null, action);
+    }
+
+    /**
+     * Like {@link #assertAtMost(int, String, ThrowingSupplier)}, also counting
+     * statements other threads execute as the tenant while the action runs
+     */
+    public static <T> T assertAtMost(int budget, String what, String tenantId, ThrowingSupplier<T> action) {
+        Object[] result = new Object[1];
+        List<String> statements = StatementCountingDataSource.record(tenantId, () -> {
+            try {
+                result[0] = action.get();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        if (statements.size() > budget) {
+            throw new AssertionFailedError(what + " executed " + statements.size() + " SQL statements, its budget is "
+                    + budget + ":\n  " + String.join("\n  ", statements));
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+}
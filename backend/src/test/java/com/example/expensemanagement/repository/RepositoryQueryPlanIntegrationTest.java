@@ -0,0 +1,218 @@
+package com.example.expensemanagement.repository;
+
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every ExpenseRepository and CategoryRepository finder against seeded data,
+ * captures the SQL Hibernate issues and fails when H2's EXPLAIN shows a table scan
+ * or an index that is walked without a condition on its leading column.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.expensemanagement.repository.CapturingStatementInspector")
+@ActiveProfiles("test")
+class RepositoryQueryPlanIntegrationTest {
+
+    private static final String[] TENANTS = {"plan-a", "plan-b", "plan-c"};
+    private static final String[] CURRENCIES = {"EUR", "EUR", "EUR", "USD", "GBP"};
+    private static final int EXPENSES_PER_TENANT = 3_000;
+
+    // "/* PUBLIC.INDEX_NAME: CONDITIONS */" or "/* PUBLIC.TABLE.tableScan */" per table in the plan
+    private static final Pattern TABLE_ACCESS = Pattern.compile("/\\* PUBLIC\\.([A-Z0-9_]+)(\\.tableScan)?(?::(.*?))?\\s*\\*/", Pattern.DOTALL);
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2024-03-01T00:00:00Z");
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long someCategoryId;
+
+    @BeforeEach
+    void seed() {
+        Random random = new Random(7);
+        for (String tenant : TENANTS) {
+            List<Long> leaves = new ArrayList<>();
+            for (TransactionType type : TransactionType.values()) {
+                for (int root = 0; root < 5; root++) {
+                    Long rootId = insertCategory(tenant, type + " " + root, type, null);
+                    for (int child = 0; child < 4; child++) {
+                        Long childId = insertCategory(tenant, type + " " + root + "." + child, type, rootId);
+                        if (type == TransactionType.EXPENSE) {
+                            leaves.add(childId);
+                        }
+                    }
+                }
+            }
+            someCategoryId = leaves.get(0);
+
+            List<Object[]> rows = new ArrayList<>(EXPENSES_PER_TENANT);
+            for (int i = 0; i < EXPENSES_PER_TENANT; i++) {
+                Instant moment = START.minus(365, ChronoUnit.DAYS).plus(random.nextInt(2 * 365 * 24), ChronoUnit.HOURS);
+                rows.add(new Object[]{tenant, "Expense " + i, random.nextInt(100_000) / 100.0,
+                        CURRENCIES[random.nextInt(CURRENCIES.length)], Timestamp.from(moment),
+                        random.nextInt(10) == 0 ? "INCOME" : "EXPENSE", leaves.get(random.nextInt(leaves.size()))});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private Long insertCategory(String tenant, String name, TransactionType type, Long parentId) {
+        jdbcTemplate.update("INSERT INTO categories (tenant_id, name, type, parent_id) VALUES (?, ?, ?, ?)",
+                tenant, name, type.name(), parentId);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM categories WHERE tenant_id = ?", Long.class, tenant);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM expenses WHERE tenant_id LIKE 'plan-%'");
+        jdbcTemplate.update("UPDATE categories SET parent_id = NULL WHERE tenant_id LIKE 'plan-%'");
+        jdbcTemplate.update("DELETE FROM categories WHERE tenant_id LIKE 'plan-%'");
+    }
+
+    @TestFactory
+    Stream<DynamicTest> everyFinderShouldUseAnIndex() {
+        Map<String, Runnable> finders = new LinkedHashMap<>();
+        finders.put("ExpenseRepository.findById", () -> expenseRepository.findById(1L));
+        finders.put("ExpenseRepository.findByIdIn", () -> expenseRepository.findByIdIn(List.of(1L, 2L, 3L)));
+        finders.put("ExpenseRepository.findByCurrency", () -> expenseRepository.findByCurrency("USD"));
+        finders.put("ExpenseRepository.findByMomentBetween", () -> expenseRepository.findByMomentBetween(START, END));
+        finders.put("ExpenseRepository.findNewestByMomentBetween",
+                () -> expenseRepository.findNewestByMomentBetween(START, END, PageRequest.of(0, 50)));
+        finders.put("ExpenseRepository.countByMomentBetween", () -> expenseRepository.countByMomentBetween(START, END));
+        finders.put("ExpenseRepository.sumByTypeAndCurrency", () -> expenseRepository.sumByTypeAndCurrency(START, END));
+        finders.put("ExpenseRepository.findByDescriptionContainingIgnoreCase",
+                () -> expenseRepository.findByDescriptionContainingIgnoreCase("nse 1"));
+        finders.put("ExpenseRepository.findAllOrderByMomentDesc", () -> expenseRepository.findAllOrderByMomentDesc());
+        finders.put("ExpenseRepository.findByCurrencyAndMomentBetween",
+                () -> expenseRepository.findByCurrencyAndMomentBetween("EUR", START, END));
+        finders.put("ExpenseRepository.streamAmountsByCurrencyAndMomentRange", () -> transactionTemplate.executeWithoutResult(
+                status -> expenseRepository.streamAmountsByCurrencyAndMomentRange("EUR", START, END).forEach(amount -> { })));
+        finders.put("ExpenseRepository.findLargestByCurrencyAndTypeAndMomentBetween",
+                () -> expenseRepository.findLargestByCurrencyAndTypeAndMomentBetween("EUR", TransactionType.EXPENSE,
+                        START, END, PageRequest.of(0, 10)));
+        finders.put("ExpenseRepository.sumByCategory", () -> expenseRepository.sumByCategory("EUR",
+                TransactionType.EXPENSE, START, END, PageRequest.of(0, 10)));
+        finders.put("ExpenseRepository.sumByCategoryAndCurrency",
+                () -> expenseRepository.sumByCategoryAndCurrency(TransactionType.EXPENSE, START, END));
+        finders.put("CategoryRepository.findById", () -> categoryRepository.findById(someCategoryId));
+        finders.put("CategoryRepository.findByIdIn", () -> categoryRepository.findByIdIn(List.of(someCategoryId, 1L)));
+        finders.put("CategoryRepository.findByType", () -> categoryRepository.findByType(TransactionType.EXPENSE));
+        finders.put("CategoryRepository.findByTypeAndParentIsNull",
+                () -> categoryRepository.findByTypeAndParentIsNull(TransactionType.INCOME));
+        finders.put("CategoryRepository.findByParentId", () -> categoryRepository.findByParentId(someCategoryId));
+        finders.put("CategoryRepository.findByNameContainingIgnoreCaseAndType",
+                () -> categoryRepository.findByNameContainingIgnoreCaseAndType("se 1", TransactionType.EXPENSE));
+        finders.put("CategoryRepository.findByTypeOrderByHierarchy",
+                () -> categoryRepository.findByTypeOrderByHierarchy(TransactionType.EXPENSE));
+
+        return finders.entrySet().stream().map(finder -> DynamicTest.dynamicTest(finder.getKey(), () -> {
+            List<String> statements = CapturingStatementInspector.capture(
+                    () -> TenantContext.runAs(TENANTS[1], finder.getValue()));
+            assertFalse(statements.isEmpty(), "No SQL captured");
+            for (String sql : statements) {
+                assertIndexed(explain(sql), sql);
+            }
+        }));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> rankingQueriesSeekOnCurrencyAndType() {
+        Map<String, Runnable> finders = new LinkedHashMap<>();
+        finders.put("ExpenseRepository.findLargestByCurrencyAndTypeAndMomentBetween",
+                () -> expenseRepository.findLargestByCurrencyAndTypeAndMomentBetween("EUR", TransactionType.EXPENSE,
+                        START, END, PageRequest.of(0, 10)));
+        finders.put("ExpenseRepository.sumByCategory", () -> expenseRepository.sumByCategory("EUR",
+                TransactionType.EXPENSE, START, END, PageRequest.of(0, 10)));
+
+        // ORDER BY sum after a range on moment is sorted, whatever the index: the seek is what the index buys
+        return finders.entrySet().stream().map(finder -> DynamicTest.dynamicTest(finder.getKey(), () -> {
+            List<String> statements = CapturingStatementInspector.capture(() -> TenantContext.runAs(TENANTS[1], finder.getValue()));
+            // Categories of the ranked expenses are fetched separately
+            for (String sql : statements.stream().filter(sql -> sql.contains(" from expenses ")).toList()) {
+                String plan = explain(sql);
+                Matcher access = TABLE_ACCESS.matcher(plan);
+                assertTrue(access.find(), () -> "Unrecognised plan:\n" + plan);
+                assertEquals("IDX_EXPENSES_TENANT_CURRENCY_TYPE_MOMENT", access.group(1), () -> "Plan:\n" + plan);
+                assertTrue(access.group(3).contains("CURRENCY =") && access.group(3).contains("TYPE ="), () -> "Plan:\n" + plan);
+            }
+        }));
+    }
+
+    private void assertIndexed(String plan, String sql) {
+        Map<String, String> leadingColumns = leadingIndexColumns();
+        Matcher access = TABLE_ACCESS.matcher(plan);
+        int tables = 0;
+        while (access.find()) {
+            tables++;
+            String index = access.group(1);
+            assertNull(access.group(2), () -> "Sequential scan of " + index + " for:\n" + sql + "\nPlan:\n" + plan);
+            String leading = leadingColumns.get(index);
+            String conditions = access.group(3) != null ? access.group(3) : "";
+            assertTrue(leading != null && Pattern.compile("(^|AND)\\s*" + leading + " (=|>=|<=|IN\\b|IS NULL)").matcher(conditions.trim()).find(),
+                    () -> "Index " + index + " is scanned without a condition on its leading column for:\n" + sql + "\nPlan:\n" + plan);
+        }
+        assertTrue(tables > 0, () -> "Unrecognised plan:\n" + plan);
+    }
+
+    private Map<String, String> leadingIndexColumns() {
+        Map<String, String> leading = new HashMap<>();
+        jdbcTemplate.query("SELECT index_name, column_name FROM information_schema.index_columns " +
+                "WHERE table_schema = 'PUBLIC' AND ordinal_position = 1",
+                rs -> { leading.put(rs.getString(1), rs.getString(2)); });
+        return leading;
+    }
+
+    // Parameters stay unbound: H2 plans a prepared statement before values are known
+    private String explain(String sql) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet plan = statement.executeQuery()) {
+                plan.next();
+                return plan.getString(1);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot explain " + sql, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.expensemanagement.repository;
+
+import com.example.expensemanagement.tenant.TenantContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records every SQL statement executed through the wrapped datasource while
+ * recording is on: Hibernate's queries, lazy loads and JdbcTemplate calls alike.
+ * A recording covers the current thread and, when given a tenant, any thread
+ * working for that tenant, such as the dashboard's parallel reads. A JDBC batch
+ * counts as one statement. Installed around the application datasource by
+ * {@link StatementCountingConfiguration}.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+    private static final Map<String, List<String>> RECORDED_FOR_TENANT = new ConcurrentHashMap<>();
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    /**
+     * Run an action and return the statements it executed on this thread
+     */
+    public static List<String> record(Runnable action) {
+        return record(null, action);
+    }
+
+    /**
+     * Run an action and return the statements executed on this thread, plus
+     * those executed on other threads as the given tenant meanwhile
+     */
+    public static List<String> record(String tenantId, Runnable action) {
+        List<String> previous = RECORDED.get();
+        List<String> statements = Collections.synchronizedList(new ArrayList<>());
+        RECORDED.set(statements);
+        List<String> previousForTenant = tenantId != null ? RECORDED_FOR_TENANT.put(tenantId, statements) : null;
+        try {
+            action.run();
+        } finally {
+            if (tenantId != null) {
+                if (previousForTenant != null) {
+                    RECORDED_FOR_TENANT.put(tenantId, previousForTenant);
+                } else {
+                    RECORDED_FOR_TENANT.remove(tenantId);
+                }
+            }
+            if (previous != null) {
+                previous.addAll(statements);
+                RECORDED.set(previous);
+            } else {
+                RECORDED.remove();
+            }
+        }
+        return List.copyOf(statements);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) -> switch (method.getName()) {
+            case "prepareStatement" -> proxy(PreparedStatement.class, result, executions((String) args[0]));
+            case "prepareCall" -> proxy(CallableStatement.class, result, executions((String) args[0]));
+            case "createStatement" -> proxy(Statement.class, result, executions(null));
+            default -> result;
+        });
+    }
+
+    // Records an execute* call: the prepared SQL, or the SQL passed to a plain statement
+    private static ResultHandler executions(String preparedSql) {
+        return (method, args, result) -> {
+            if (method.getName().startsWith("execute")) {
+                List<String> statements = RECORDED.get();
+                List<String> forTenant = RECORDED_FOR_TENANT.get(TenantContext.getTenantId());
+                if (statements != null || forTenant != null) {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String passed ? passed : preparedSql;
+                    String recorded = method.getName().equals("executeBatch") ? "batch: " + sql : sql;
+                    if (statements != null) {
+                        statements.add(recorded);
+                    }
+                    if (forTenant != null && forTenant != statements) {
+                        forTenant.add(recorded);
+                    }
+                }
+            }
+            return result;
+        };
+    }
+
+    private interface ResultHandler {
+        Object handle(Method method, Object[] args, Object result) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, ResultHandler handler) {
+        InvocationHandler invocation = (proxy, method, args) -> {
+            if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+                return method.invoke(target, args);
+            }
+            try {
+                return handler.handle(method, args, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocation);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.RunningBalance;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BalanceServiceIntegrationTest {
+
+    private static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Expense newExpense(TransactionType type, String sum, String currency, Instant moment) {
+        Expense expense = new Expense();
+        expense.setDescription(type + " " + sum);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(moment);
+        expense.setType(type);
+        // One category per type and tenant; balances don't depend on it
+        List<Category> categories = categoryService.findByType(type);
+        expense.setCategory(categories.isEmpty()
+                ? categoryService.saveCategory(new Category(type == TransactionType.INCOME ? "Salary" : "Food", type))
+                : categories.get(0));
+        return expense;
+    }
+
+    // Reference answer: a full scan of the tenant's expenses table
+    private BigDecimal fullScan(String tenantId, String currency, Instant at) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(CASE WHEN type = 'INCOME' THEN sum ELSE -sum END), 0) "
+                + "FROM expenses WHERE tenant_id = ? AND currency = ? AND moment <= ?",
+                BigDecimal.class, tenantId, currency, at.atOffset(ZoneOffset.UTC));
+    }
+
+    private void assertMatchesFullScan(String tenantId, Instant... instants) {
+        for (String currency : List.of("EUR", "USD")) {
+            for (Instant at : instants) {
+                RunningBalance balance = balanceService.balanceAt(currency, at);
+                assertEquals(0, fullScan(tenantId, currency, at).compareTo(balance.getBalance()),
+                        currency + " balance at " + at);
+            }
+        }
+    }
+
+    @Test
+    void balancesFollowBackdatedInsertsEditsAndDeletes() {
+        TenantContext.runAs("balance-a", () -> {
+            // Given: two years of income and expenses in two currencies, with monthly checkpoints
+            Random random = new Random(7);
+            for (int i = 0; i < 300; i++) {
+                TransactionType type = random.nextInt(5) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+                expenseService.saveExpense(newExpense(type, (1 + random.nextInt(50_000)) / 100 + "." + random.nextInt(10) + "5",
+                        random.nextBoolean() ? "EUR" : "USD", START.plus(random.nextInt(730 * 24), ChronoUnit.HOURS)));
+            }
+            int created = balanceService.createCheckpoints("balance-a", Instant.parse("2025-01-15T00:00:00Z"));
+            assertEquals(2 * 24, created);
+            Instant[] instants = {Instant.parse("2023-03-10T12:00:00Z"), Instant.parse("2023-07-01T00:00:00Z"),
+                    Instant.parse("2024-02-29T23:59:59Z"), Instant.parse("2024-12-31T23:59:59Z")};
+            assertMatchesFullScan("balance-a", instants);
+
+            // When: a backdated income, an edit moving an expense to another month and currency, a delete
+            expenseService.saveExpense(newExpense(TransactionType.INCOME, "1000.00", "EUR", Instant.parse("2023-02-01T08:00:00Z")));
+            Expense moved = expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "250.00", "USD",
+                    Instant.parse("2024-06-15T08:00:00Z")));
+            moved.setCurrency("EUR");
+            moved.setMoment(Instant.parse("2023-05-20T08:00:00Z"));
+            expenseService.updateExpense(moved.getId(), moved);
+            Expense deleted = expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "75.50", "USD",
+                    Instant.parse("2023-01-05T08:00:00Z")));
+            expenseService.deleteExpense(deleted.getId());
+
+            // Then: every checkpoint was shifted, and queries scan at most one month
+            assertMatchesFullScan("balance-a", instants);
+            RunningBalance late = balanceService.balanceAt("EUR", Instant.parse("2024-12-31T23:59:59Z"));
+            assertEquals(Instant.parse("2024-12-01T00:00:00Z"), late.getCheckpoint());
+            assertTrue(late.getScanned() < 30, "scanned " + late.getScanned());
+
+            // And: creating checkpoints again adds nothing until a new month starts
+            assertEquals(0, balanceService.createCheckpoints("balance-a", Instant.parse("2025-01-20T00:00:00Z")));
+        });
+    }
+
+    @Test
+    void balanceIncludesTransactionsAtTheInstantAndIsServedPerTenant() throws Exception {
+        TenantContext.runAs("balance-b", () -> {
+            expenseService.saveExpense(newExpense(TransactionType.INCOME, "100.00", "EUR", Instant.parse("2024-03-01T00:00:00Z")));
+            expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "30.25", "EUR", Instant.parse("2024-03-31T23:59:59Z")));
+            expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "10.00", "EUR", Instant.parse("2024-04-01T00:00:00Z")));
+            balanceService.createCheckpoints("balance-b", Instant.parse("2024-05-01T00:00:00Z"));
+
+            assertEquals(0, new BigDecimal("69.75").compareTo(
+                    balanceService.balanceAt("EUR", Instant.parse("2024-03-31T23:59:59Z")).getBalance()));
+            RunningBalance atBoundary = balanceService.balanceAt("EUR", Instant.parse("2024-04-01T00:00:00Z"));
+            assertEquals(0, new BigDecimal("59.75").compareTo(atBoundary.getBalance()));
+            assertEquals(1, atBoundary.getScanned());
+            assertEquals(0, BigDecimal.ZERO.compareTo(
+                    balanceService.balanceAt("EUR", Instant.parse("2024-02-29T00:00:00Z")).getBalance()));
+        });
+
+        mockMvc.perform(get("/api/expenses/balance").header(TenantFilter.TENANT_HEADER, "balance-b")
+                        .param("date", "2024-03-31").param("timezone", "UTC"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].currency").value("EUR"))
+                .andExpect(jsonPath("$[0].balance").value(69.75));
+        mockMvc.perform(get("/api/expenses/balance").header(TenantFilter.TENANT_HEADER, "balance-c")
+                        .param("currency", "EUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].balance").value(0));
+        mockMvc.perform(get("/api/expenses/balance").param("date", "not-a-date"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void writesOnDifferentStripesDoNotWaitForEachOther() throws Exception {
+        TenantContext.runAs("balance-d", () -> {
+            expenseService.saveExpense(newExpense(TransactionType.INCOME, "100.00", "EUR", Instant.parse("2024-01-01T00:00:00Z")));
+            expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "5.00", "EUR", Instant.parse("2024-01-02T00:00:00Z")));
+        });
+
+        // Given: a write of the currency holding its stripe in an open transaction
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> TenantContext.runAs("balance-d", () ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    expenseService.saveExpense(newExpense(TransactionType.EXPENSE, "10.00", "EUR", Instant.parse("2024-02-01T00:00:00Z")));
+                    written.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })));
+        holder.start();
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+
+        try {
+            // When: another write of the same currency on a thread with another stripe
+            CompletableFuture<Expense> other = new CompletableFuture<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    other.complete(TenantContext.callAs("balance-d", () -> expenseService.saveExpense(
+                            newExpense(TransactionType.EXPENSE, "20.00", "EUR", Instant.parse("2024-03-01T00:00:00Z")))));
+                } catch (Exception e) {
+                    other.completeExceptionally(e);
+                }
+            });
+            assertNotEquals(BalanceService.stripeOf(holder, 16), BalanceService.stripeOf(writer, 16));
+            writer.start();
+
+            // Then: it commits while the first one is still open
+            assertNotNull(other.get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        TenantContext.runAs("balance-d", () -> assertEquals(0, new BigDecimal("65.00").compareTo(
+                balanceService.balanceAt("EUR", Instant.parse("2024-12-31T00:00:00Z")).getBalance())));
+    }
+
+    @Test
+    void insertRacingAnExistingKeyLeavesTheTransactionUsable() {
+        String insert = "INSERT INTO balance_locks (tenant_id, currency, stripe) VALUES (?, ?, ?)";
+        jdbcTemplate.update(insert, "balance-e", "EUR", 0);
+
+        // When: a writing transaction inserts the same key, then keeps writing
+        Boolean inserted = new TransactionTemplate(transactionManager).execute(status -> {
+            boolean first = JdbcInserts.insertIfAbsent(jdbcTemplate, insert, "balance-e", "EUR", 0);
+            jdbcTemplate.update(insert, "balance-e", "EUR", 1);
+            return first;
+        });
+
+        // Then: the insert reported the existing row and the rest of the transaction committed
+        assertEquals(Boolean.FALSE, inserted);
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM balance_locks WHERE tenant_id = 'balance-e'", Integer.class));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.BatchResult;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CapturingStatementInspector;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.expensemanagement.repository.CapturingStatementInspector")
+@ActiveProfiles("test")
+class BatchLoaderIntegrationTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @AfterEach
+    void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private List<Long> saveCategories(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(categoryService.saveCategory(new Category("Category " + i, TransactionType.EXPENSE)).getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void keepsRequestOrderAndReportsMissingIds() {
+        TenantContext.runAs("batch-a", () -> {
+            List<Long> ids = saveCategories(3);
+            Long foreign = TenantContext.callAs("batch-b", () -> saveCategories(1).get(0));
+
+            BatchResult<Category> result = categoryService.findByIds(
+                    List.of(ids.get(2), ids.get(0), -1L, ids.get(2), foreign, ids.get(1)));
+
+            assertEquals(List.of(ids.get(2), ids.get(0), ids.get(1)), result.getItems().stream().map(Category::getId).toList());
+            assertEquals(List.of(-1L, foreign), result.getMissing());
+        });
+    }
+
+    @Test
+    void resolvesIdsInChunksAndOnlyOncePerRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        TenantContext.runAs("batch-c", () -> {
+            List<Long> ids = saveCategories(BatchLoader.CHUNK_SIZE * 2 + 50);
+
+            List<String> first = CapturingStatementInspector.capture(() -> assertEquals(ids.size(),
+                    categoryService.findByIds(ids).getItems().size()));
+            assertEquals(3, first.size());
+
+            List<Long> repeated = new ArrayList<>(ids.subList(0, 10));
+            repeated.add(-5L);
+            List<String> second = CapturingStatementInspector.capture(() -> {
+                BatchResult<Category> result = categoryService.findByIds(repeated);
+                assertEquals(10, result.getItems().size());
+                assertEquals(List.of(-5L), result.getMissing());
+            });
+            assertEquals(1, second.size());
+            assertEquals(List.of(), CapturingStatementInspector.capture(() -> categoryService.findByIds(repeated)));
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.BudgetStatus;
+import com.example.expensemanagement.entity.Budget;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.BudgetRepository;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: spend counters only move when the writing transaction commits
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BudgetServiceIntegrationTest {
+
+    @Autowired
+    private BudgetService budgetService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private BudgetSpendTracker budgetSpendTracker;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void cleanUp() {
+        budgetRepository.deleteAll();
+        expenseRepository.deleteAll();
+        categoryRepository.findAll().stream().filter(c -> c.getParent() != null).forEach(categoryRepository::delete);
+        categoryRepository.deleteAll();
+        budgetSpendTracker.reconcile();
+    }
+
+    private Expense newExpense(Category category, String sum) {
+        Expense expense = new Expense();
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.now());
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expense;
+    }
+
+    @Test
+    void budgetStatus_shouldFollowExpenseWritesInSubcategories() {
+        // Given
+        Category food = categoryRepository.save(new Category("Food", TransactionType.EXPENSE));
+        Category groceries = categoryRepository.save(new Category("Groceries", TransactionType.EXPENSE, food));
+        Budget budget = new Budget();
+        budget.setCategory(food);
+        budget.setCurrency("EUR");
+        budget.setAmount(new BigDecimal("200.00"));
+        budget = budgetService.saveBudget(budget);
+
+        // When
+        Expense expense = expenseService.saveExpense(newExpense(groceries, "50.00"));
+
+        // Then
+        BudgetStatus status = budgetService.findStatus(budget.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("50.00").compareTo(status.getSpent()));
+        assertEquals(0, new BigDecimal("25.0").compareTo(status.getPercentUsed()));
+
+        // When
+        expenseService.updateExpense(expense.getId(), newExpense(groceries, "80.00"));
+
+        // Then
+        assertEquals(0, new BigDecimal("80.00").compareTo(budgetService.findStatus(budget.getId()).orElseThrow().getSpent()));
+
+        // When
+        expenseService.deleteExpense(expense.getId());
+
+        // Then
+        assertEquals(0, BigDecimal.ZERO.compareTo(budgetService.findStatus(budget.getId()).orElseThrow().getSpent()));
+    }
+
+    @Test
+    void reconcile_shouldRebuildCountersFromDatabase() {
+        // Given: a row written behind the service's back
+        Category travel = categoryRepository.save(new Category("Travel", TransactionType.EXPENSE));
+        expenseRepository.save(newExpense(travel, "12.34"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(budgetSpendTracker.spent(travel.getId(), "EUR")));
+
+        // When
+        budgetSpendTracker.reconcile();
+
+        // Then
+        assertEquals(0, new BigDecimal("12.34").compareTo(budgetSpendTracker.spent(travel.getId(), "EUR")));
+    }
+
+    @Test
+    void reconcile_shouldReadEachTenantInItsOwnTransaction() {
+        // Given: spend of the default tenant, and another tenant with none
+        Category travel = categoryRepository.save(new Category("Travel", TransactionType.EXPENSE));
+        expenseService.saveExpense(newExpense(travel, "40.00"));
+        String other = "budget-other-" + System.nanoTime();
+        TenantContext.runAs(other, () -> categoryRepository.save(new Category("Travel", TransactionType.EXPENSE)));
+
+        // When: reconciling from inside the other tenant's read-only transaction
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TenantContext.runAs(other, () -> readOnly.executeWithoutResult(status -> {
+            categoryRepository.findAll();
+            budgetSpendTracker.reconcile();
+        }));
+
+        // Then: each tenant's counters come from its own rows
+        assertEquals(0, new BigDecimal("40.00").compareTo(budgetSpendTracker.spent(travel.getId(), "EUR")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(TenantContext.callAs(other,
+                () -> budgetSpendTracker.spent(travel.getId(), "EUR"))));
+    }
+
+    @Test
+    void budgetAmount_shouldBePositiveOnCreateAndUpdate() throws Exception {
+        // Given
+        Category rent = categoryRepository.save(new Category("Rent", TransactionType.EXPENSE));
+        Budget zero = new Budget();
+        zero.setCategory(rent);
+        zero.setCurrency("EUR");
+        zero.setAmount(BigDecimal.ZERO);
+
+        // Then: a zero budget is refused, it would make percent used divide by zero
+        assertThrows(IllegalArgumentException.class, () -> budgetService.saveBudget(zero));
+
+        // When
+        zero.setAmount(new BigDecimal("900.00"));
+        Budget budget = budgetService.saveBudget(zero);
+        Budget update = new Budget();
+        update.setAmount(BigDecimal.ZERO);
+
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> budgetService.updateBudget(budget.getId(), update));
+        mockMvc.perform(put("/api/budgets/" + budget.getId()).contentType(MediaType.APPLICATION_JSON).content("{\"amount\":0}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Budget amount should be positive"));
+        mockMvc.perform(put("/api/budgets/" + budget.getId()).contentType(MediaType.APPLICATION_JSON).content("{\"amount\":-5}"))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, new BigDecimal("900.00").compareTo(budgetService.findById(budget.getId()).orElseThrow().getAmount()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(budgetService.findStatus(budget.getId()).orElseThrow().getPercentUsed()));
+
+        // And: a positive amount still goes through
+        mockMvc.perform(put("/api/budgets/" + budget.getId()).contentType(MediaType.APPLICATION_JSON).content("{\"amount\":950}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(950));
+    }
+}
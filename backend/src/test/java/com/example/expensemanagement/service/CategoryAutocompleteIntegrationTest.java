@@ -0,0 +1,84 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.CategorySuggestion;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CapturingStatementInspector;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.expensemanagement.repository.CapturingStatementInspector")
+@ActiveProfiles("test")
+class CategoryAutocompleteIntegrationTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private static List<String> names(List<CategorySuggestion> suggestions) {
+        return suggestions.stream().map(CategorySuggestion::getName).toList();
+    }
+
+    @Test
+    void ranksMatchesAndReturnsTheirAncestorPath() {
+        TenantContext.runAs("autocomplete-a", () -> {
+            Category housing = categoryService.saveCategory(new Category("Housing", TransactionType.EXPENSE));
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE, housing));
+            categoryService.saveCategory(new Category("Rent deposit", TransactionType.EXPENSE, rent));
+            categoryService.saveCategory(new Category("Car rental", TransactionType.EXPENSE));
+            categoryService.saveCategory(new Category("Parental support", TransactionType.EXPENSE));
+            categoryService.saveCategory(new Category("Rent income", TransactionType.INCOME));
+
+            List<CategorySuggestion> suggestions = categoryService.suggestCategories("rent", TransactionType.EXPENSE, 10);
+
+            assertEquals(List.of("Rent", "Rent deposit", "Car rental", "Parental support"), names(suggestions));
+            assertEquals(List.of("Housing"), suggestions.get(0).getPath());
+            assertEquals(List.of("Housing", "Rent"), suggestions.get(1).getPath());
+            assertEquals(List.of(), suggestions.get(2).getPath());
+            assertEquals(List.of("Rent", "Rent deposit"), names(categoryService.suggestCategories("Re", TransactionType.EXPENSE, 2)));
+            assertEquals(List.of("Rent income"), names(categoryService.suggestCategories("rent", TransactionType.INCOME, 10)));
+        });
+    }
+
+    @Test
+    void followsMutationsWithoutQueryingTheDatabase() {
+        TenantContext.runAs("autocomplete-b", () -> {
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category groceries = categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE, food));
+            categoryService.saveCategory(new Category("Organic groceries", TransactionType.EXPENSE, groceries));
+            assertEquals(2, categoryService.suggestCategories("groc", TransactionType.EXPENSE, 10).size());
+
+            Category renamed = new Category();
+            renamed.setName("Supermarket");
+            categoryService.updateCategory(groceries.getId(), renamed);
+
+            List<List<CategorySuggestion>> results = new ArrayList<>();
+            List<String> statements = CapturingStatementInspector.capture(() -> {
+                results.add(categoryService.suggestCategories("groc", TransactionType.EXPENSE, 10));
+                results.add(categoryService.suggestCategories("super", TransactionType.EXPENSE, 10));
+            });
+            assertEquals(List.of(), statements);
+            assertEquals(List.of("Organic groceries"), names(results.get(0)));
+            assertEquals(List.of("Food", "Supermarket"), results.get(0).get(0).getPath());
+            assertEquals(List.of("Supermarket"), names(results.get(1)));
+
+            categoryService.deleteCategory(food.getId());
+            assertEquals(List.of(), categoryService.suggestCategories("o", TransactionType.EXPENSE, 10));
+        });
+    }
+
+    @Test
+    void tenantsDoNotSeeEachOthersCategories() {
+        TenantContext.runAs("autocomplete-c", () -> categoryService.saveCategory(new Category("Utilities", TransactionType.EXPENSE)));
+        TenantContext.runAs("autocomplete-d", () ->
+                assertEquals(List.of(), categoryService.suggestCategories("util", TransactionType.EXPENSE, 10)));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.controller.DashboardController;
+import com.example.expensemanagement.dto.CategoryTreeNode;
+import com.example.expensemanagement.dto.Dashboard;
+import com.example.expensemanagement.dto.ErrorResponse;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DashboardServiceIntegrationTest {
+
+    private static final Instant START = Instant.parse("2024-05-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2024-05-31T23:59:59.999Z");
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Expense saveExpense(Category category, String sum, String currency, String moment) {
+        Expense expense = new Expense();
+        expense.setDescription("Expense at " + moment);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(category.getType());
+        expense.setCategory(category);
+        return expenseService.saveExpense(expense);
+    }
+
+    @Test
+    void returnsTreeNewestPageCountAndTotals() {
+        TenantContext.runAs("dashboard-a", () -> {
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE, food));
+            Category salary = categoryService.saveCategory(new Category("Salary", TransactionType.INCOME));
+            saveExpense(food, "10.00", "EUR", "2024-05-02T10:00:00Z");
+            Expense newest = saveExpense(food, "2.50", "USD", "2024-05-20T10:00:00Z");
+            Expense second = saveExpense(salary, "1000.00", "EUR", "2024-05-15T10:00:00Z");
+            saveExpense(food, "7.00", "EUR", "2024-05-10T10:00:00Z");
+            saveExpense(food, "99.00", "EUR", "2024-06-01T10:00:00Z");
+
+            Dashboard dashboard = dashboardService.buildDashboard(TransactionType.EXPENSE, START, END, 2);
+
+            assertEquals(List.of("Food", "Groceries"),
+                    dashboard.getCategories().stream().map(CategoryTreeNode::getName).sorted().toList());
+            assertEquals(List.of(newest.getId(), second.getId()),
+                    dashboard.getExpenses().stream().map(Expense::getId).toList());
+            assertEquals("Food", dashboard.getExpenses().get(0).getCategory().getName());
+            assertEquals(4, dashboard.getExpenseCount());
+            assertEquals(0, new BigDecimal("17.00").compareTo(dashboard.getExpenseTotals().get("EUR")));
+            assertEquals(0, new BigDecimal("2.50").compareTo(dashboard.getExpenseTotals().get("USD")));
+            assertEquals(0, new BigDecimal("1000.00").compareTo(dashboard.getIncomeTotals().get("EUR")));
+        });
+    }
+
+    @Test
+    void seesOnlyTheCallersTenant() {
+        TenantContext.runAs("dashboard-b", () -> {
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            saveExpense(rent, "500.00", "EUR", "2024-05-03T10:00:00Z");
+        });
+        TenantContext.runAs("dashboard-c", () -> {
+            Dashboard dashboard = dashboardService.buildDashboard(TransactionType.EXPENSE, START, END, 10);
+
+            assertEquals(List.of(), dashboard.getCategories());
+            assertEquals(List.of(), dashboard.getExpenses());
+            assertEquals(0, dashboard.getExpenseCount());
+            assertTrue(dashboard.getExpenseTotals().isEmpty());
+        });
+    }
+
+    @Test
+    void answersUnchangedDashboardWithNotModified() throws Exception {
+        TenantContext.runAs("dashboard-d", () -> {
+            Category travel = categoryService.saveCategory(new Category("Travel", TransactionType.EXPENSE));
+            saveExpense(travel, "80.00", "EUR", "2024-05-04T10:00:00Z");
+        });
+
+        String etag = mockMvc.perform(get("/api/dashboard").header(TenantFilter.TENANT_HEADER, "dashboard-d")
+                        .param("startDate", "2024-05-01").param("endDate", "2024-05-31"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/dashboard").header(TenantFilter.TENANT_HEADER, "dashboard-d")
+                        .param("startDate", "2024-05-01").param("endDate", "2024-05-31")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void answersBadParametersWith400AndFailuresWith500() throws Exception {
+        // Given an unknown timezone
+        // When the dashboard is requested
+        // Then the caller gets 400 with the reason
+        mockMvc.perform(get("/api/dashboard").header(TenantFilter.TENANT_HEADER, "dashboard-e")
+                        .param("startDate", "2024-05-01").param("endDate", "2024-05-31")
+                        .param("timezone", "Mars/Olympus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.path").value("/api/dashboard"));
+
+        // Given a service that fails for reasons of its own
+        DashboardService failing = mock(DashboardService.class);
+        when(failing.buildDashboard(any(), any(), any(), anyInt())).thenThrow(new IllegalStateException("database is down"));
+        DashboardController controller = new DashboardController(failing, 200);
+
+        // When the dashboard is requested
+        ResponseEntity<?> response = controller.getDashboard("2024-05-01", "2024-05-31", "UTC", "EXPENSE", 50,
+                new MockHttpServletRequest("GET", "/api/dashboard"));
+
+        // Then it is a server error, not the caller's fault
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(500, ((ErrorResponse) response.getBody()).getStatus());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DateRangeCacheIntegrationTest {
+
+    private static final Instant LAST_YEAR_START = Instant.parse("2023-03-01T00:00:00Z");
+    private static final Instant LAST_YEAR_END = Instant.parse("2023-03-31T23:59:59.999Z");
+    private static final Instant THIS_MONTH_START = Instant.parse("2024-06-01T00:00:00Z");
+    private static final Instant THIS_MONTH_END = Instant.parse("2024-06-30T23:59:59.999Z");
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private Expense saveExpense(Category category, String moment, String currency) {
+        Expense expense = new Expense();
+        expense.setDescription("Expense at " + moment);
+        expense.setSum(new BigDecimal("10.00"));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expenseService.saveExpense(expense);
+    }
+
+    @Test
+    void writeOnlyInvalidatesRangesContainingItsMonth() {
+        TenantContext.runAs("range-cache-a", () -> {
+            Category category = categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE));
+            saveExpense(category, "2023-03-10T12:00:00Z", "EUR");
+            saveExpense(category, "2024-06-10T12:00:00Z", "EUR");
+
+            List<Expense> lastYear = expenseService.findByDateRange(LAST_YEAR_START, LAST_YEAR_END);
+            List<Expense> thisMonth = expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END);
+            assertSame(lastYear, expenseService.findByDateRange(LAST_YEAR_START, LAST_YEAR_END));
+            assertSame(thisMonth, expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END));
+
+            saveExpense(category, "2024-06-20T12:00:00Z", "EUR");
+
+            assertSame(lastYear, expenseService.findByDateRange(LAST_YEAR_START, LAST_YEAR_END));
+            List<Expense> refreshed = expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END);
+            assertNotSame(thisMonth, refreshed);
+            assertEquals(2, refreshed.size());
+        });
+    }
+
+    @Test
+    void updateInvalidatesTheOldAndTheNewMonth() {
+        TenantContext.runAs("range-cache-b", () -> {
+            Category category = categoryService.saveCategory(new Category("Travel", TransactionType.EXPENSE));
+            Expense expense = saveExpense(category, "2023-03-10T12:00:00Z", "EUR");
+
+            assertEquals(1, expenseService.findByDateRange(LAST_YEAR_START, LAST_YEAR_END).size());
+            assertEquals(0, expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END).size());
+
+            expense.setMoment(Instant.parse("2024-06-15T12:00:00Z"));
+            expenseService.updateExpense(expense.getId(), expense);
+
+            assertEquals(0, expenseService.findByDateRange(LAST_YEAR_START, LAST_YEAR_END).size());
+            assertEquals(1, expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END).size());
+        });
+    }
+
+    @Test
+    void writeInOneCurrencyKeepsOtherCurrencyRanges() {
+        TenantContext.runAs("range-cache-c", () -> {
+            Category category = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            saveExpense(category, "2024-06-01T12:00:00Z", "USD");
+
+            List<Expense> dollars = expenseService.findByCurrencyAndDateRange("USD", THIS_MONTH_START, THIS_MONTH_END);
+            List<Expense> all = expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END);
+
+            saveExpense(category, "2024-06-02T12:00:00Z", "EUR");
+
+            assertSame(dollars, expenseService.findByCurrencyAndDateRange("USD", THIS_MONTH_START, THIS_MONTH_END));
+            assertNotSame(all, expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END));
+            assertEquals(2, expenseService.findByDateRange(THIS_MONTH_START, THIS_MONTH_END).size());
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.ExpenseField;
+import com.example.expensemanagement.dto.ExpenseProjection;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExpenseProjectionIntegrationTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Expense saveExpense(Category category, String description, String moment, String sum, String currency) {
+        Expense expense = new Expense();
+        expense.setDescription(description);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expenseService.saveExpense(expense);
+    }
+
+    @Test
+    void projectionCarriesOnlyTheRequestedFields() throws Exception {
+        JsonNode json = TenantContext.callAs("projection-a", () -> {
+            Category category = categoryService.saveCategory(new Category("Fuel", TransactionType.EXPENSE));
+            Expense expense = saveExpense(category, "Gas station", "2024-05-03T10:15:30Z", "42.50", "EUR");
+            saveExpense(category, "Parking", "2024-07-01T08:00:00Z", "3.00", "EUR");
+
+            ExpenseProjection projection = expenseService.findByDateRange(
+                    ExpenseField.parse("id,moment,sum,currency"),
+                    Instant.parse("2024-05-01T00:00:00Z"), Instant.parse("2024-05-31T23:59:59Z"));
+            assertEquals(1, projection.getRows().size());
+            assertEquals(expense.getId(), projection.getRows().get(0)[0]);
+            return objectMapper.valueToTree(projection);
+        });
+
+        JsonNode row = json.get(0);
+        assertEquals(List.of("id", "moment", "sum", "currency"), iterable(row.fieldNames()));
+        assertEquals("2024-05-03T10:15:30Z", row.get("moment").asText());
+        assertEquals(0, new BigDecimal("42.50").compareTo(row.get("sum").decimalValue()));
+        assertEquals("EUR", row.get("currency").asText());
+    }
+
+    @Test
+    void categoryNameJoinsTheCategoryAndFiltersMatchTheEntityFinders() {
+        TenantContext.runAs("projection-b", () -> {
+            Category category = categoryService.saveCategory(new Category("Books", TransactionType.EXPENSE));
+            saveExpense(category, "100% cotton_bag", "2024-01-10T00:00:00Z", "5.00", "USD");
+            saveExpense(category, "Novel", "2024-02-10T00:00:00Z", "12.00", "EUR");
+
+            List<ExpenseField> fields = ExpenseField.parse("description, categoryName, type");
+            ExpenseProjection all = expenseService.findAllExpenses(fields);
+            assertEquals(2, all.getRows().size());
+            assertArrayEquals(new Object[]{"Novel", "Books", TransactionType.EXPENSE}, all.getRows().get(0));
+
+            assertEquals(1, expenseService.findByCurrency(fields, "USD").getRows().size());
+            assertEquals(1, expenseService.findByDescriptionContaining(fields, "0% COTTON_").getRows().size());
+            assertEquals(0, expenseService.findByDescriptionContaining(fields, "0_ cotton").getRows().size());
+        });
+        TenantContext.runAs("projection-c", () ->
+                assertEquals(0, expenseService.findAllExpenses(ExpenseField.parse("id")).getRows().size()));
+    }
+
+    @Test
+    void unknownFieldsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ExpenseField.parse("id,tenantId"));
+        assertThrows(IllegalArgumentException.class, () -> ExpenseField.parse(" , "));
+        assertEquals(List.of(ExpenseField.SUM, ExpenseField.ID), ExpenseField.parse("sum,id,sum"));
+    }
+
+    private static List<String> iterable(Iterator<String> names) {
+        List<String> list = new ArrayList<>();
+        names.forEachRemaining(list::add);
+        return list;
+    }
+}
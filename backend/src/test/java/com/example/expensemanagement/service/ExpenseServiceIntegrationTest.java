@@ -1,6 +1,9 @@
 package com.example.expensemanagement.service;
 
+import com.example.expensemanagement.entity.Category;
 import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
 import com.example.expensemanagement.repository.ExpenseRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,12 +31,19 @@ class ExpenseServiceIntegrationTest {
     @Autowired
     private ExpenseRepository expenseRepository;
 
+    @Autowired
+    private CategoryRepository categoryRepository;
+
     private Expense getTestExpense() {
+        Category category = categoryRepository.save(new Category("Office", TransactionType.EXPENSE));
+
         Expense testExpense = new Expense();
         testExpense.setDescription("Office supplies");
         testExpense.setSum(BigDecimal.valueOf(150.75));
         testExpense.setCurrency("USD");
         testExpense.setMoment(Instant.now().minus(1, ChronoUnit.DAYS));
+        testExpense.setType(TransactionType.EXPENSE);
+        testExpense.setCategory(category);
 
         return testExpense;
     }
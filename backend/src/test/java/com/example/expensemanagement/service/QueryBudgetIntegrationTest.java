@@ -0,0 +1,118 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.audit.AuditTrail;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.StatementCountingConfiguration;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.expensemanagement.repository.QueryBudget.assertAtMost;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Each endpoint gets a fixed SQL statement budget, independent of how many
+ * categories and expenses it returns: a lazy load or eager fetch per row
+ * (N+1) blows the budget as soon as the data set has a few dozen rows.
+ * Every test uses its own tenant, so no result is served from a cache.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(StatementCountingConfiguration.class)
+@ActiveProfiles("test")
+class QueryBudgetIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    // Three levels: 4 roots, 3 children each, 2 grandchildren each; one expense per day of May 2024 on the leaves
+    private List<Expense> createData(String tenantId) {
+        return TenantContext.callAs(tenantId, () -> {
+            List<Category> leaves = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                Category root = categoryService.saveCategory(new Category("Root " + r, TransactionType.EXPENSE));
+                for (int c = 0; c < 3; c++) {
+                    Category child = categoryService.saveCategory(new Category("Child " + r + c, TransactionType.EXPENSE, root));
+                    for (int g = 0; g < 2; g++) {
+                        leaves.add(categoryService.saveCategory(new Category("Leaf " + r + c + g, TransactionType.EXPENSE, child)));
+                    }
+                }
+            }
+            List<Expense> expenses = new ArrayList<>();
+            for (int day = 1; day <= 31; day++) {
+                Expense expense = new Expense();
+                expense.setDescription("Day " + day);
+                expense.setSum(new BigDecimal("10.00"));
+                expense.setCurrency("EUR");
+                expense.setMoment(Instant.parse(String.format("2024-05-%02dT12:00:00Z", day)));
+                expense.setType(TransactionType.EXPENSE);
+                expense.setCategory(leaves.get(day % leaves.size()));
+                expenses.add(expenseService.saveExpense(expense));
+            }
+            // The audit writer inserts in the background as the tenant: finish before counting
+            auditTrail.flush(Duration.ofSeconds(10));
+            return expenses;
+        });
+    }
+
+    private void expectOk(int budget, String tenantId, MockHttpServletRequestBuilder request) {
+        String what = request.buildRequest(null).getRequestURI();
+        assertAtMost(budget, "GET " + what, tenantId, () -> mockMvc.perform(request.header(TenantFilter.TENANT_HEADER, tenantId))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void categoryEndpointsStayWithinBudget() {
+        String tenantId = "budget-categories";
+        List<Expense> expenses = createData(tenantId);
+        Long parentId = expenses.get(0).getCategory().getParent().getId();
+
+        expectOk(4, tenantId, get("/api/categories"));
+        expectOk(4, tenantId, get("/api/categories/type/EXPENSE"));
+        expectOk(4, tenantId, get("/api/categories/type/EXPENSE/roots"));
+        expectOk(4, tenantId, get("/api/categories/type/EXPENSE/tree"));
+        expectOk(4, tenantId, get("/api/categories/type/EXPENSE/hierarchy"));
+        expectOk(4, tenantId, get("/api/categories/" + parentId + "/children"));
+        expectOk(4, tenantId, get("/api/categories/search").param("name", "Leaf").param("type", "EXPENSE"));
+    }
+
+    @Test
+    void expenseEndpointsStayWithinBudget() {
+        String tenantId = "budget-expenses";
+        List<Expense> expenses = createData(tenantId);
+
+        expectOk(4, tenantId, get("/api/expenses"));
+        expectOk(4, tenantId, get("/api/expenses/" + expenses.get(0).getId()));
+        expectOk(4, tenantId, get("/api/expenses/currency/EUR"));
+        expectOk(4, tenantId, get("/api/expenses/search").param("description", "Day"));
+        expectOk(4, tenantId, get("/api/expenses/date-range").param("startDate", "2024-05-01").param("endDate", "2024-05-31"));
+        expectOk(4, tenantId, get("/api/expenses/batch").param("ids",
+                expenses.stream().map(expense -> expense.getId().toString()).toArray(String[]::new)));
+        expectOk(8, tenantId, get("/api/dashboard").param("startDate", "2024-05-01").param("endDate", "2024-05-31"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.CategoryTotal;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RankingServiceIntegrationTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2024-03-31T23:59:59Z");
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String tenant;
+    private Category housing;
+    private Category rent;
+    private Category utilities;
+    private Category food;
+
+    private void save(Category category, String sum, String currency, String moment) {
+        Expense expense = new Expense();
+        expense.setDescription(category.getName() + " " + sum);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(category.getType());
+        expense.setCategory(category);
+        expenseService.saveExpense(expense);
+    }
+
+    // Housing (rent 500, utilities 120 + 80) outranks food (300 + 250) only once rolled up
+    @BeforeEach
+    void seed() {
+        tenant = "ranking-" + System.nanoTime();
+        TenantContext.runAs(tenant, () -> {
+            housing = categoryService.saveCategory(new Category("Housing", TransactionType.EXPENSE));
+            rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE, housing));
+            utilities = categoryService.saveCategory(new Category("Utilities", TransactionType.EXPENSE, housing));
+            food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category salary = categoryService.saveCategory(new Category("Salary", TransactionType.INCOME));
+
+            save(rent, "500.00", "EUR", "2024-03-01T09:00:00Z");
+            save(utilities, "120.00", "EUR", "2024-03-10T09:00:00Z");
+            save(utilities, "80.00", "EUR", "2024-03-20T09:00:00Z");
+            save(food, "300.00", "EUR", "2024-03-05T09:00:00Z");
+            save(food, "250.00", "EUR", "2024-03-31T20:00:00Z");
+            // Outside the ranking: another currency, another type, another month
+            save(food, "9000.00", "USD", "2024-03-15T09:00:00Z");
+            save(salary, "3000.00", "EUR", "2024-03-25T09:00:00Z");
+            save(rent, "700.00", "EUR", "2024-04-01T09:00:00Z");
+        });
+    }
+
+    @Test
+    void findLargest_shouldRankOneCurrencyAndTypeInTheRange() throws Exception {
+        List<Expense> largest = TenantContext.callAs(tenant,
+                () -> rankingService.findLargest("EUR", TransactionType.EXPENSE, START, END, 3));
+
+        assertEquals(List.of("500.00", "300.00", "250.00"),
+                largest.stream().map(expense -> expense.getSum().toPlainString()).toList());
+
+        mockMvc.perform(get("/api/expenses/top").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].sum").value(500.00))
+                .andExpect(jsonPath("$[1].sum").value(300.00));
+        mockMvc.perform(get("/api/expenses/top").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("type", "income"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].sum").value(3000.00));
+    }
+
+    @Test
+    void findTopCategories_shouldRankLeavesOrRollThemUpToRoots() throws Exception {
+        // Without rollup: each category on its own
+        List<CategoryTotal> flat = TenantContext.callAs(tenant,
+                () -> rankingService.findTopCategories("EUR", TransactionType.EXPENSE, START, END, 10, false));
+        assertEquals(List.of(food.getId(), rent.getId(), utilities.getId()), flat.stream().map(CategoryTotal::getCategoryId).toList());
+        assertEquals(0, new BigDecimal("550.00").compareTo(flat.get(0).getTotal()));
+        assertEquals("Food", flat.get(0).getName());
+
+        // With rollup: subcategories count towards their root
+        List<CategoryTotal> rolledUp = TenantContext.callAs(tenant,
+                () -> rankingService.findTopCategories("EUR", TransactionType.EXPENSE, START, END, 10, true));
+        assertEquals(List.of(housing.getId(), food.getId()), rolledUp.stream().map(CategoryTotal::getCategoryId).toList());
+        assertEquals(0, new BigDecimal("700.00").compareTo(rolledUp.get(0).getTotal()));
+        assertEquals("Housing", rolledUp.get(0).getName());
+
+        mockMvc.perform(get("/api/expenses/top-categories").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("limit", "1").param("rollup", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Housing"))
+                .andExpect(jsonPath("$[0].total").value(700.00));
+        mockMvc.perform(get("/api/expenses/top-categories").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Food"))
+                .andExpect(jsonPath("$[0].total").value(550.00));
+    }
+
+    @Test
+    void limitsOutsideOneToMaxAreRejected() throws Exception {
+        TenantContext.runAs(tenant, () -> {
+            assertThrows(IllegalArgumentException.class,
+                    () -> rankingService.findLargest("EUR", TransactionType.EXPENSE, START, END, 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> rankingService.findTopCategories("EUR", TransactionType.EXPENSE, START, END, RankingService.MAX_LIMIT + 1, true));
+            assertEquals(5, rankingService.findLargest("EUR", TransactionType.EXPENSE, START, END, RankingService.MAX_LIMIT).size());
+        });
+
+        mockMvc.perform(get("/api/expenses/top").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/expenses/top-categories").header(TenantFilter.TENANT_HEADER, tenant)
+                        .param("currency", "EUR").param("startDate", "2024-03-01").param("endDate", "2024-03-31")
+                        .param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+}
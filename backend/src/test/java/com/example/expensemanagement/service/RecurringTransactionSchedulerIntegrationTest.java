@@ -0,0 +1,86 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.Frequency;
+import com.example.expensemanagement.entity.RecurringTransaction;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.repository.RecurringTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: the scheduler commits its own transaction
+@SpringBootTest
+@ActiveProfiles("test")
+class RecurringTransactionSchedulerIntegrationTest {
+
+    @Autowired
+    private RecurringTransactionScheduler scheduler;
+
+    @Autowired
+    private RecurringTransactionService recurringTransactionService;
+
+    @Autowired
+    private RecurringTransactionRepository recurringTransactionRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @AfterEach
+    void cleanUp() {
+        expenseRepository.deleteAll();
+        recurringTransactionRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void generateDueOccurrences_shouldCatchUpMonthEndsOnceAndOnlyOnce() {
+        // Given: rent on the last day of January at 09:00 Amsterdam time
+        Category rent = categoryRepository.save(new Category("Rent", TransactionType.EXPENSE));
+        RecurringTransaction recurring = new RecurringTransaction();
+        recurring.setDescription("Rent");
+        recurring.setSum(new BigDecimal("950.00"));
+        recurring.setCurrency("EUR");
+        recurring.setType(TransactionType.EXPENSE);
+        recurring.setCategory(rent);
+        recurring.setFrequency(Frequency.MONTHLY);
+        recurring.setStartMoment(Instant.parse("2024-01-31T08:00:00Z"));
+        recurring.setZone("Europe/Amsterdam");
+        recurring = recurringTransactionService.saveRecurringTransaction(recurring);
+
+        // When
+        int generated = scheduler.generateDueOccurrences(Instant.parse("2024-04-15T00:00:00Z"));
+        int regenerated = scheduler.generateDueOccurrences(Instant.parse("2024-04-15T00:00:00Z"));
+
+        // Then
+        assertEquals(3, generated);
+        assertEquals(0, regenerated, "A second run must not duplicate occurrences");
+        List<Instant> moments = expenseRepository.findAll().stream()
+                .map(Expense::getMoment)
+                .sorted(Comparator.naturalOrder())
+                .toList();
+        assertEquals(List.of(
+                Instant.parse("2024-01-31T08:00:00Z"),
+                Instant.parse("2024-02-29T08:00:00Z"),
+                Instant.parse("2024-03-31T07:00:00Z")), moments, "Month ends and local time should be kept across DST");
+
+        RecurringTransaction advanced = recurringTransactionRepository.findById(recurring.getId()).orElseThrow();
+        assertEquals(3, advanced.getNextOccurrence());
+        assertEquals(Instant.parse("2024-04-30T07:00:00Z"), advanced.getNextDue());
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.dto.Report;
+import com.example.expensemanagement.dto.ReportJob;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReportJobServiceIntegrationTest {
+
+    private static final YearMonth JANUARY = YearMonth.of(2023, 1);
+    private static final YearMonth MARCH = YearMonth.of(2023, 3);
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @SpyBean
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ExpenseArchive expenseArchive;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private void saveExpense(Category category, String sum, String currency, String moment) {
+        Expense expense = new Expense();
+        expense.setDescription("Expense at " + moment);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency(currency);
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(category.getType());
+        expense.setCategory(category);
+        expenseService.saveExpense(expense);
+    }
+
+    private void createData(String tenantId) {
+        TenantContext.runAs(tenantId, () -> {
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            Category salary = categoryService.saveCategory(new Category("Salary", TransactionType.INCOME));
+            for (int month = 1; month <= 3; month++) {
+                saveExpense(food, "10.00", "EUR", "2023-0" + month + "-05T12:00:00Z");
+                saveExpense(food, "5.50", "EUR", "2023-0" + month + "-20T12:00:00Z");
+                saveExpense(rent, "700.00", "EUR", "2023-0" + month + "-01T00:00:00Z");
+                saveExpense(salary, "3000.00", "EUR", "2023-0" + month + "-28T09:00:00Z");
+                saveExpense(food, "12.00", "USD", "2023-0" + month + "-10T12:00:00Z");
+            }
+            // The last microsecond of March belongs to March, the first of April does not
+            saveExpense(food, "1.00", "EUR", "2023-03-31T23:59:59.999999Z");
+            saveExpense(food, "99.00", "EUR", "2023-04-01T00:00:00Z");
+        });
+    }
+
+    private ReportJob awaitFinished(String tenantId, String id) throws InterruptedException {
+        return awaitFinished(reportJobService, tenantId, id);
+    }
+
+    private ReportJob awaitFinished(ReportJobService service, String tenantId, String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ReportJob job = TenantContext.callAs(tenantId, () -> service.findJob(id)).orElseThrow();
+            if (job.getStatus() == ReportJob.Status.DONE || job.getStatus() == ReportJob.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        fail("Report job " + id + " did not finish");
+        return null;
+    }
+
+    @Test
+    void reportCoversEveryMonthAndCurrency() throws Exception {
+        createData("report-a");
+        ReportJob submitted = TenantContext.callAs("report-a",
+                () -> reportJobService.submit(JANUARY, MARCH, List.of("USD", "EUR"), ZoneOffset.UTC));
+        assertEquals(6, submitted.getTotalParts());
+        assertEquals(List.of("EUR", "USD"), submitted.getCurrencies());
+
+        ReportJob finished = awaitFinished("report-a", submitted.getId());
+        assertEquals(ReportJob.Status.DONE, finished.getStatus());
+        assertEquals(6, finished.getCompletedParts());
+
+        Report report = TenantContext.callAs("report-a", () -> reportJobService.findResult(submitted.getId())).orElseThrow();
+        assertEquals(6, report.getRows().size());
+        Report.Row marchEur = report.getRows().stream()
+                .filter(row -> row.getMonth().equals(MARCH) && row.getCurrency().equals("EUR"))
+                .findFirst().orElseThrow();
+        assertEquals(0, new BigDecimal("716.50").compareTo(marchEur.getExpense()));
+        assertEquals(0, new BigDecimal("3000.00").compareTo(marchEur.getIncome()));
+        assertEquals("Rent", marchEur.getExpenseCategories().get(0).getName());
+        assertEquals("Salary", marchEur.getIncomeCategories().get(0).getName());
+        Report.Row januaryUsd = report.getRows().get(1);
+        assertEquals(JANUARY, januaryUsd.getMonth());
+        assertEquals(0, new BigDecimal("12.00").compareTo(januaryUsd.getExpense()));
+
+        // Other tenants don't see the job
+        assertTrue(TenantContext.callAs("report-other", () -> reportJobService.findJob(submitted.getId())).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> TenantContext.runAs("report-a",
+                () -> reportJobService.submit(MARCH, JANUARY, List.of("EUR"), ZoneId.of("UTC"))));
+    }
+
+    @Test
+    void identicalRunningSubmissionsShareOneJob() throws Exception {
+        createData("report-b");
+        // Hold every part until all submissions are in (the repository proxy has no real method to call on)
+        CountDownLatch gate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(gate.await(10, TimeUnit.SECONDS));
+            return List.of();
+        }).when(expenseRepository).sumByCategory(any(), any(), any(), any(), any());
+
+        ReportJob first = TenantContext.callAs("report-b",
+                () -> reportJobService.submit(JANUARY, MARCH, List.of("EUR", "USD"), ZoneOffset.UTC));
+        ReportJob second = TenantContext.callAs("report-b",
+                () -> reportJobService.submit(JANUARY, MARCH, List.of("USD", "EUR", "EUR"), ZoneOffset.UTC));
+        ReportJob otherRange = TenantContext.callAs("report-b",
+                () -> reportJobService.submit(JANUARY, JANUARY, List.of("EUR"), ZoneOffset.UTC));
+        ReportJob otherTenant = TenantContext.callAs("report-c",
+                () -> reportJobService.submit(JANUARY, MARCH, List.of("EUR", "USD"), ZoneOffset.UTC));
+        assertEquals(first.getId(), second.getId());
+        assertNotEquals(first.getId(), otherRange.getId());
+        assertNotEquals(first.getId(), otherTenant.getId());
+        assertNotEquals(ReportJob.Status.DONE, TenantContext.callAs("report-b",
+                () -> reportJobService.findJob(first.getId())).orElseThrow().getStatus());
+
+        gate.countDown();
+        assertEquals(ReportJob.Status.DONE, awaitFinished("report-b", first.getId()).getStatus());
+        // Finished jobs are not joined: the data may have changed since
+        ReportJob again = TenantContext.callAs("report-b",
+                () -> reportJobService.submit(JANUARY, MARCH, List.of("EUR", "USD"), ZoneOffset.UTC));
+        assertNotEquals(first.getId(), again.getId());
+        awaitFinished("report-b", again.getId());
+        awaitFinished("report-b", otherRange.getId());
+        awaitFinished("report-c", otherTenant.getId());
+    }
+
+    @Test
+    void eachTenantKeepsAtMostTheConfiguredNumberOfJobs() throws Exception {
+        createData("report-e");
+        ReportJobService capped = new ReportJobService(expenseRepository, categoryRepository, expenseService,
+                expenseArchive, transactionManager, 1, 100, 100, 2, Duration.ofHours(1));
+        try {
+            // Given: two finished jobs, the cap
+            ReportJob january = TenantContext.callAs("report-e",
+                    () -> capped.submit(JANUARY, JANUARY, List.of("EUR"), ZoneOffset.UTC));
+            awaitFinished(capped, "report-e", january.getId());
+            ReportJob february = TenantContext.callAs("report-e",
+                    () -> capped.submit(JANUARY.plusMonths(1), JANUARY.plusMonths(1), List.of("EUR"), ZoneOffset.UTC));
+            awaitFinished(capped, "report-e", february.getId());
+
+            // When
+            ReportJob march = TenantContext.callAs("report-e",
+                    () -> capped.submit(MARCH, MARCH, List.of("EUR"), ZoneOffset.UTC));
+
+            // Then: the oldest finished job made room
+            assertTrue(TenantContext.callAs("report-e", () -> capped.findJob(january.getId())).isEmpty());
+            assertTrue(TenantContext.callAs("report-e", () -> capped.findJob(february.getId())).isPresent());
+            assertEquals(ReportJob.Status.DONE, awaitFinished(capped, "report-e", march.getId()).getStatus());
+
+            // And: other tenants have their own allowance
+            ReportJob other = TenantContext.callAs("report-f",
+                    () -> capped.submit(JANUARY, JANUARY, List.of("EUR"), ZoneOffset.UTC));
+            awaitFinished(capped, "report-f", other.getId());
+            assertTrue(TenantContext.callAs("report-e", () -> capped.findJob(february.getId())).isPresent());
+        } finally {
+            capped.shutdown();
+        }
+    }
+
+    @Test
+    void jobsArePolledAndDownloadedOverHttp() throws Exception {
+        createData("report-d");
+        String location = mockMvc.perform(post("/api/reports")
+                        .header(TenantFilter.TENANT_HEADER, "report-d")
+                        .param("from", "2023-01").param("to", "2023-02").param("currencies", "EUR"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.totalParts").value(2))
+                .andReturn().getResponse().getHeader("Location");
+        String id = location.substring(location.lastIndexOf('/') + 1);
+        awaitFinished("report-d", id);
+
+        mockMvc.perform(get(location).header(TenantFilter.TENANT_HEADER, "report-d"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"));
+        mockMvc.perform(get(location + "/result").param("download", "true").header(TenantFilter.TENANT_HEADER, "report-d"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"report-" + id + ".json\""))
+                .andExpect(jsonPath("$.rows.length()").value(2))
+                .andExpect(jsonPath("$.rows[0].month").value("2023-01"));
+        mockMvc.perform(get(location + "/result").header(TenantFilter.TENANT_HEADER, "report-other"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/reports")
+                        .header(TenantFilter.TENANT_HEADER, "report-d")
+                        .param("from", "2023-01").param("to", "2023-02").param("currencies", "EUR")
+                        .param("timezone", "Nowhere/Special"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantContext;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SingleFlightIntegrationTest {
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void concurrentIdenticalCallsShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger shares = new AtomicInteger();
+        long coalescedBefore = singleFlight.getStats().get("coalesced");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> TenantContext.callAs("flight-a", () ->
+                        singleFlight.execute("test.shared", List.of("key"), Duration.ofSeconds(30), () -> {
+                            executions.incrementAndGet();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return new Object();
+                        }, result -> shares.incrementAndGet()))));
+            }
+            // Release the first call once the other seven are waiting on it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (singleFlight.getStats().get("coalesced") - coalescedBefore < 7 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            Object first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Object> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, executions.get());
+            assertEquals(1, shares.get());
+            assertEquals(7, singleFlight.getStats().get("coalesced") - coalescedBefore);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitingCallRunsItsOwnQueryAfterTheTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        long timeoutsBefore = singleFlight.getStats().get("timeouts");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> TenantContext.callAs("flight-b", () ->
+                    singleFlight.execute("test.slow", List.of(), Duration.ofSeconds(30), () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "slow";
+                    }, result -> { })));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            String own = TenantContext.callAs("flight-b", () ->
+                    singleFlight.execute("test.slow", List.of(), Duration.ofMillis(50), () -> "own", result -> { }));
+            assertEquals("own", own);
+            assertEquals(1, singleFlight.getStats().get("timeouts") - timeoutsBefore);
+
+            release.countDown();
+            assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sameCallOfAnotherTenantIsNotShared() {
+        String a = TenantContext.callAs("flight-c", () -> singleFlight.execute("test.tenant", List.of(), () -> "c", result -> { }));
+        String b = TenantContext.callAs("flight-d", () -> singleFlight.execute("test.tenant", List.of(), () -> "d", result -> { }));
+        assertEquals("c", a);
+        assertEquals("d", b);
+    }
+
+    @Test
+    void sharedCategoriesAreUsableOutsideTheLoadingSession() throws Exception {
+        TenantContext.runAs("flight-e", () -> {
+            Category root = categoryService.saveCategory(new Category("Housing", TransactionType.EXPENSE));
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE, root));
+            categoryService.saveCategory(new Category("Deposit", TransactionType.EXPENSE, rent));
+        });
+
+        // Given: a second caller joins the first one's query
+        CountDownLatch release = new CountDownLatch(1);
+        long coalescedBefore = singleFlight.getStats().get("coalesced");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<Category>>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> TenantContext.callAs("flight-e", () ->
+                        singleFlight.execute("test.roots", List.of(), Duration.ofSeconds(30), () -> {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return categoryRepository.findByTypeAndParentIsNull(TransactionType.EXPENSE);
+                        }, CategoryService::initializeChildren))));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (singleFlight.getStats().get("coalesced") - coalescedBefore < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // Then: the shared trees were loaded in the loading session
+            Category root = results.get(1).get(10, TimeUnit.SECONDS).get(0);
+            assertSame(root, results.get(0).get(10, TimeUnit.SECONDS).get(0));
+            assertTrue(Hibernate.isInitialized(root.getChildren()));
+            assertEquals("Rent", root.getChildren().get(0).getName());
+            assertTrue(Hibernate.isInitialized(root.getChildren().get(0).getChildren()));
+            assertEquals("Deposit", root.getChildren().get(0).getChildren().get(0).getName());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // And: a result no one else gets is left for its caller's session to load
+        List<Category> alone = TenantContext.callAs("flight-e", () -> singleFlight.execute("test.roots", List.of(),
+                () -> categoryRepository.findByTypeAndParentIsNull(TransactionType.EXPENSE), CategoryService::initializeChildren));
+        assertFalse(Hibernate.isInitialized(alone.get(0).getChildren()));
+    }
+
+    @Test
+    void waitingCallsHoldNoConnection() throws Exception {
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        long coalescedBefore = singleFlight.getStats().get("coalesced");
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            // Given: a running query that the service reads below coalesce with
+            int idle = pool.getActiveConnections();
+            Future<List<Expense>> first = executor.submit(() -> TenantContext.callAs("flight-f", () ->
+                    singleFlight.execute("expenses.all", List.of(), Duration.ofSeconds(30), () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return expenseRepository.findAllOrderByMomentDesc();
+                    }, CategoryService::initializeCategoryTrees)));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // When: four more callers wait for it through the service
+            List<Future<List<Expense>>> waiting = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                waiting.add(executor.submit(() -> TenantContext.callAs("flight-f", expenseService::findAllExpenses)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (singleFlight.getStats().get("coalesced") - coalescedBefore < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(4, singleFlight.getStats().get("coalesced") - coalescedBefore);
+
+            // Then: only the running query holds a connection
+            assertEquals(idle + 1, pool.getActiveConnections());
+            release.countDown();
+            List<Expense> result = first.get(10, TimeUnit.SECONDS);
+            for (Future<List<Expense>> call : waiting) {
+                assertSame(result, call.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void callsInsideATransactionRunInItAndAreNotCoalesced() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long executionsBefore = singleFlight.getStats().get("executions");
+        transaction.execute(status -> singleFlight.execute("test.writing", List.of(), () -> "w", result -> { }));
+
+        transaction.setReadOnly(true);
+        transaction.execute(status -> singleFlight.execute("test.reading", List.of(), () -> "r", result -> { }));
+        assertEquals(executionsBefore, singleFlight.getStats().get("executions"));
+
+        singleFlight.execute("test.outside", List.of(), () -> "o", result -> { });
+        assertEquals(executionsBefore + 1, singleFlight.getStats().get("executions"));
+    }
+}
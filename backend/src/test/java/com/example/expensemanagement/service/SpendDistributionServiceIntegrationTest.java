@@ -0,0 +1,229 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.SpendDistribution;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.tenant.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SpendDistributionServiceIntegrationTest {
+
+    private static final YearMonth MARCH = YearMonth.of(2024, 3);
+    private static final YearMonth APRIL = YearMonth.of(2024, 4);
+
+    @Autowired
+    private SpendDistributionService spendDistributionService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Expense newExpense(Category category, String sum, String moment) {
+        Expense expense = new Expense();
+        expense.setDescription("Expense " + sum);
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expense;
+    }
+
+    private long sketchRows(String tenantId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM spend_sketches WHERE tenant_id = ?", Long.class, tenantId);
+    }
+
+    @Test
+    void percentilesFollowExpenseWritesAcrossMonthsAndSubtrees() {
+        TenantContext.runAs("distribution-a", () -> {
+            // Given: 1.00 .. 100.00 in Groceries in March, ten times 500.00 in Food in April
+            Category food = categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE));
+            Category groceries = categoryService.saveCategory(new Category("Groceries", TransactionType.EXPENSE, food));
+            List<Expense> march = new ArrayList<>();
+            for (int i = 1; i <= 100; i++) {
+                march.add(expenseService.saveExpense(newExpense(groceries, i + ".00", "2024-03-15T10:00:00Z")));
+            }
+            for (int i = 0; i < 10; i++) {
+                expenseService.saveExpense(newExpense(food, "500.00", "2024-04-02T10:00:00Z"));
+            }
+
+            // Then
+            SpendDistribution groceriesInMarch = spendDistributionService.distribution(groceries.getId(), "EUR", MARCH, MARCH,
+                    false, List.of(50.0, 90.0));
+            assertEquals(100, groceriesInMarch.getCount());
+            assertEquals(0, new BigDecimal("5050.00").compareTo(groceriesInMarch.getTotal()));
+            assertEquals(50.0, groceriesInMarch.getPercentiles().get("p50").doubleValue(), 0.5);
+            assertEquals(90.0, groceriesInMarch.getPercentiles().get("p90").doubleValue(), 0.9);
+            assertEquals(100.0, groceriesInMarch.getMax().doubleValue(), 1.0);
+
+            SpendDistribution foodOnly = spendDistributionService.distribution(food.getId(), "EUR", MARCH, APRIL,
+                    false, List.of(50.0));
+            assertEquals(10, foodOnly.getCount());
+            SpendDistribution foodTree = spendDistributionService.distribution(food.getId(), "EUR", MARCH, APRIL,
+                    true, List.of(50.0, 99.5));
+            assertEquals(110, foodTree.getCount());
+            assertEquals(500.0, foodTree.getPercentiles().get("p99.5").doubleValue(), 5.0);
+            assertEquals(0, spendDistributionService.distribution(food.getId(), "USD", MARCH, APRIL, true, List.of(50.0)).getCount());
+
+            // When: the largest March expense moves to April and grows, the smallest is deleted
+            Expense largest = march.get(99);
+            largest.setSum(new BigDecimal("1000.00"));
+            largest.setMoment(Instant.parse("2024-04-20T10:00:00Z"));
+            expenseService.updateExpense(largest.getId(), largest);
+            expenseService.deleteExpense(march.get(0).getId());
+
+            // Then
+            SpendDistribution afterWrites = spendDistributionService.distribution(groceries.getId(), "EUR", MARCH, MARCH,
+                    false, List.of(50.0));
+            assertEquals(98, afterWrites.getCount());
+            assertEquals(2.0, afterWrites.getMin().doubleValue(), 0.03);
+            assertEquals(99.0, afterWrites.getMax().doubleValue(), 1.0);
+            assertEquals(1000.0, spendDistributionService.distribution(food.getId(), "EUR", APRIL, APRIL,
+                    true, List.of(50.0)).getMax().doubleValue(), 10.0);
+        });
+    }
+
+    @Test
+    void emptySketchesAreRemovedAndRebuildMatchesIncrementalSketches() {
+        TenantContext.runAs("distribution-b", () -> {
+            Category rent = categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE));
+            List<Expense> expenses = new ArrayList<>();
+            for (int i = 1; i <= 30; i++) {
+                expenses.add(expenseService.saveExpense(newExpense(rent, (i * 13) + ".50", "2024-0" + (1 + i % 3) + "-10T08:00:00Z")));
+            }
+            assertEquals(3, sketchRows("distribution-b"));
+            SpendDistribution incremental = spendDistributionService.distribution(rent.getId(), "EUR",
+                    YearMonth.of(2024, 1), MARCH, false, List.of(25.0, 50.0, 75.0));
+
+            assertEquals(3, spendDistributionService.rebuild("distribution-b"));
+            SpendDistribution rebuilt = spendDistributionService.distribution(rent.getId(), "EUR",
+                    YearMonth.of(2024, 1), MARCH, false, List.of(25.0, 50.0, 75.0));
+            assertEquals(incremental.getPercentiles(), rebuilt.getPercentiles());
+            assertEquals(incremental.getTotal(), rebuilt.getTotal());
+
+            expenses.forEach(expense -> expenseService.deleteExpense(expense.getId()));
+            assertEquals(0, sketchRows("distribution-b"));
+            categoryService.deleteCategory(rent.getId());
+        });
+    }
+
+    @Test
+    void oppositeMovesBetweenTwoSketchesDoNotDeadlock() throws Exception {
+        Category[] categories = TenantContext.callAs("distribution-c", () -> new Category[]{
+                categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE)),
+                categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE))});
+        LocalDate month = MARCH.atDay(1);
+        SpendDistributionService.Sample rent =
+                new SpendDistributionService.Sample("distribution-c", categories[0].getId(), "EUR", month, 1000);
+        SpendDistributionService.Sample food =
+                new SpendDistributionService.Sample("distribution-c", categories[1].getId(), "EUR", month, 1000);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < 50; i++) {
+            transaction.executeWithoutResult(status -> {
+                spendDistributionService.replace(null, rent);
+                spendDistributionService.replace(null, food);
+            });
+        }
+
+        // When: two writers keep moving an amount between the sketches in opposite directions
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> writers = List.of(
+                    executor.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            transaction.executeWithoutResult(status -> spendDistributionService.replace(rent, food));
+                        }
+                    }),
+                    executor.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            transaction.executeWithoutResult(status -> spendDistributionService.replace(food, rent));
+                        }
+                    }));
+
+            // Then: both finish and every move is counted
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        TenantContext.runAs("distribution-c", () -> {
+            for (Category category : categories) {
+                assertEquals(50, spendDistributionService.distribution(category.getId(), "EUR", MARCH, MARCH, false,
+                        List.of(50.0)).getCount());
+            }
+        });
+    }
+
+    @Test
+    void distributionEndpointValidatesItsParameters() throws Exception {
+        Long categoryId = TenantContext.callAs("distribution-c", () -> {
+            Category travel = categoryService.saveCategory(new Category("Travel", TransactionType.EXPENSE));
+            expenseService.saveExpense(newExpense(travel, "120.00", "2024-03-01T10:00:00Z"));
+            return travel.getId();
+        });
+
+        mockMvc.perform(get("/api/categories/" + categoryId + "/distribution")
+                        .header("X-Tenant-Id", "distribution-c")
+                        .param("currency", "EUR").param("from", "2024-03").param("to", "2024-03")
+                        .param("percentiles", "50,90"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.from").value("2024-03"))
+                .andExpect(jsonPath("$.percentiles.p90").isNumber())
+                .andExpect(jsonPath("$.histogram[0].count").value(1));
+        mockMvc.perform(get("/api/categories/" + categoryId + "/distribution")
+                        .header("X-Tenant-Id", "distribution-c")
+                        .param("currency", "EUR").param("from", "2024-04").param("to", "2024-03"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/categories/" + categoryId + "/distribution")
+                        .header("X-Tenant-Id", "distribution-c")
+                        .param("currency", "EUR").param("from", "2024-03").param("to", "2024-03")
+                        .param("percentiles", "150"))
+                .andExpect(status().isBadRequest());
+        // Categories of other tenants are not found
+        mockMvc.perform(get("/api/categories/" + categoryId + "/distribution")
+                        .header("X-Tenant-Id", "distribution-d")
+                        .param("currency", "EUR").param("from", "2024-03").param("to", "2024-03"))
+                .andExpect(status().isNotFound());
+    }
+}
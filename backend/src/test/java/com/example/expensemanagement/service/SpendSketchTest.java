@@ -0,0 +1,67 @@
+package com.example.expensemanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpendSketchTest {
+
+    @Test
+    void quantilesStayWithinTheRelativeAccuracy() {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] cents = new long[20_000];
+        SpendSketch sketch = new SpendSketch();
+        for (int i = 0; i < cents.length; i++) {
+            // Log-normal with a long tail, like real spend
+            cents[i] = Math.max(1, Math.round(Math.exp(7 + 1.5 * random.nextGaussian())));
+            sketch.update(cents[i], 1);
+        }
+        Arrays.sort(cents);
+        for (double q : new double[]{0, 0.1, 0.5, 0.9, 0.99, 1}) {
+            double exact = cents[(int) Math.floor(q * (cents.length - 1))] / 100.0;
+            double estimate = sketch.quantile(q).doubleValue();
+            assertEquals(exact, estimate, exact * SpendSketch.RELATIVE_ACCURACY + 0.01, "quantile " + q);
+        }
+        assertEquals(cents.length, sketch.getCount());
+        assertTrue(sketch.encode().length < 2_000, "encoded size " + sketch.encode().length);
+    }
+
+    @Test
+    void mergedSketchesEqualTheSketchOfAllAmounts() {
+        SpendSketch all = new SpendSketch();
+        SpendSketch first = new SpendSketch();
+        SpendSketch second = new SpendSketch();
+        for (long cents = 0; cents < 1000; cents++) {
+            all.update(cents * 7, 1);
+            (cents % 2 == 0 ? first : second).update(cents * 7, 1);
+        }
+        first.merge(second);
+
+        assertArrayEquals(all.encode(), first.encode());
+        assertEquals(new BigDecimal("34965.00"), first.getTotal());
+    }
+
+    @Test
+    void removedAmountsAndEncodingRoundTrip() {
+        SpendSketch sketch = new SpendSketch();
+        sketch.update(1000, 1);
+        sketch.update(5000, 1);
+        sketch.update(0, 1);
+
+        SpendSketch decoded = SpendSketch.decode(sketch.encode());
+        decoded.update(5000, -1);
+        decoded.update(0, -1);
+
+        assertEquals(1, decoded.getCount());
+        assertEquals(new BigDecimal("10.00"), decoded.getTotal());
+        assertEquals(10.0, decoded.quantile(0.5).doubleValue(), 0.1);
+        decoded.update(1000, -1);
+        assertTrue(decoded.isEmpty());
+        assertNull(decoded.quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> SpendSketch.decode(new byte[]{1, (byte) 0x80}));
+    }
+}
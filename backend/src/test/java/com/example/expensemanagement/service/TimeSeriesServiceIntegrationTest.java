@@ -0,0 +1,111 @@
+package com.example.expensemanagement.service;
+
+import com.example.expensemanagement.dto.Granularity;
+import com.example.expensemanagement.dto.TimeSeries;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.repository.CategoryRepository;
+import com.example.expensemanagement.repository.ExpenseRepository;
+import com.example.expensemanagement.tenant.TenantFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+class TimeSeriesServiceIntegrationTest {
+
+    private static final ZoneId AMSTERDAM = ZoneId.of("Europe/Amsterdam");
+
+    @Autowired
+    private TimeSeriesService timeSeriesService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private void saveExpense(String moment, String sum, TransactionType type) {
+        Category category = categoryRepository.save(new Category("Groceries", type));
+        Expense expense = new Expense();
+        expense.setSum(new BigDecimal(sum));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.parse(moment));
+        expense.setType(type);
+        expense.setCategory(category);
+        expenseRepository.save(expense);
+    }
+
+    @Test
+    void buildTimeSeries_shouldBucketByLocalDayAcrossDstChange() {
+        // Given: 2024-03-31 is the spring-forward day in Amsterdam (23 hours long)
+        saveExpense("2024-03-30T23:30:00Z", "10.00", TransactionType.EXPENSE); // 00:30 local on the 31st
+        saveExpense("2024-03-31T21:30:00Z", "5.00", TransactionType.EXPENSE);  // 23:30 local on the 31st
+        saveExpense("2024-03-31T22:30:00Z", "7.00", TransactionType.INCOME);   // 00:30 local on April 1st
+
+        // When
+        TimeSeries series = timeSeriesService.buildTimeSeries("EUR",
+                LocalDate.parse("2024-03-30"), LocalDate.parse("2024-04-02"), AMSTERDAM, Granularity.DAY);
+
+        // Then
+        assertEquals(4, series.getPoints().size(), "Every day in the range should have a bucket");
+        TimeSeries.Point march31 = series.getPoints().get(1);
+        assertEquals(LocalDate.parse("2024-03-31"), march31.getPeriod());
+        assertEquals(0, new BigDecimal("15.00").compareTo(march31.getExpense()));
+        assertEquals(0, new BigDecimal("7.00").compareTo(series.getPoints().get(2).getIncome()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(series.getPoints().get(3).getExpense()), "Empty days should be zero-filled");
+    }
+
+    @Test
+    void buildTimeSeries_shouldAlignMonthlyBucketsToCalendarMonths() {
+        // Given
+        saveExpense("2024-01-31T22:59:00Z", "3.00", TransactionType.EXPENSE);  // January 31st 23:59 local
+        saveExpense("2024-01-31T23:00:00Z", "4.00", TransactionType.EXPENSE);  // February 1st 00:00 local
+
+        // When
+        TimeSeries series = timeSeriesService.buildTimeSeries("EUR",
+                LocalDate.parse("2024-01-15"), LocalDate.parse("2024-03-10"), AMSTERDAM, Granularity.MONTH);
+
+        // Then
+        assertEquals(3, series.getPoints().size());
+        assertEquals(LocalDate.parse("2024-01-01"), series.getPoints().get(0).getPeriod());
+        assertEquals(0, new BigDecimal("3.00").compareTo(series.getPoints().get(0).getExpense()));
+        assertEquals(0, new BigDecimal("4.00").compareTo(series.getPoints().get(1).getExpense()));
+    }
+
+    @Test
+    void buildTimeSeries_shouldRejectRangesWithTooManyPeriods() throws Exception {
+        // Given: exactly the maximum number of days, and one more
+        LocalDate start = LocalDate.parse("2020-01-01");
+        LocalDate last = start.plusDays(TimeSeriesService.MAX_BUCKETS - 1);
+
+        // Then
+        assertEquals(TimeSeriesService.MAX_BUCKETS, timeSeriesService.buildTimeSeries("EUR", start, last,
+                AMSTERDAM, Granularity.DAY).getPoints().size());
+        assertThrows(IllegalArgumentException.class, () -> timeSeriesService.buildTimeSeries("EUR", start,
+                last.plusDays(1), AMSTERDAM, Granularity.DAY));
+        mockMvc.perform(get("/api/expenses/time-series").header(TenantFilter.TENANT_HEADER, "series-a")
+                        .param("currency", "EUR").param("startDate", "0001-01-01").param("endDate", "9999-12-31"))
+                .andExpect(status().isBadRequest());
+    }
+}
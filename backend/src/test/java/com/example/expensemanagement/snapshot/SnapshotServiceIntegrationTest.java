@@ -0,0 +1,222 @@
+package com.example.expensemanagement.snapshot;
+
+import com.example.expensemanagement.dto.SnapshotSummary;
+import com.example.expensemanagement.service.BalanceService;
+import com.example.expensemanagement.service.SpendDistributionService;
+import com.example.expensemanagement.tenant.ShardRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshots go between separate in-memory databases, so the restore starts
+ * from empty shards. The per-tenant rebuild after a restore goes through the
+ * application's services and so runs against the test database, where these
+ * tenants have no rows.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SnapshotServiceIntegrationTest {
+
+    private static final String TENANT = "snapshot-a";
+
+    @Autowired
+    private SpendDistributionService spendDistributionService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @TempDir
+    private Path directory;
+
+    private SnapshotService snapshotService(DataSource dataSource) {
+        // Tiny blocks, so both tables span several blocks loaded in parallel
+        return new SnapshotService(new ShardRegistry(dataSource), spendDistributionService, balanceService,
+                directory.toString(), false, false, 3, 2);
+    }
+
+    private static DataSource freshDatabase(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+
+    private static OffsetDateTime utc(String instant) {
+        return Instant.parse(instant).atOffset(ZoneOffset.UTC);
+    }
+
+    // A child stored before its parent, an expense without description, non-ASCII text, microsecond moments
+    private static void seed(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO categories (id, tenant_id, name, type) VALUES (1, ?, 'Groceries', 'EXPENSE')", TENANT);
+        jdbc.update("INSERT INTO categories (id, tenant_id, name, type) VALUES (2, ?, 'Food', 'EXPENSE')", TENANT);
+        jdbc.update("INSERT INTO categories (id, tenant_id, name, type) VALUES (3, ?, 'Salary', 'INCOME')", TENANT);
+        jdbc.update("INSERT INTO categories (id, tenant_id, name, type) VALUES (4, 'snapshot-b', 'Café ☕', 'EXPENSE')");
+        jdbc.update("UPDATE categories SET parent_id = 2 WHERE id = 1");
+        String insert = "INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        for (int i = 0; i < 10; i++) {
+            jdbc.update(insert, TENANT, "Groceries " + i, new java.math.BigDecimal(i + ".25"), "EUR",
+                    utc("2024-05-01T10:00:00.123456Z").plusDays(i), "EXPENSE", 1);
+        }
+        jdbc.update(insert, TENANT, null, new java.math.BigDecimal("2500.00"), "USD", utc("2024-04-30T23:59:59Z"), "INCOME", 3);
+        jdbc.update(insert, "snapshot-b", "Croissant façon maison", new java.math.BigDecimal("-1.10"), "CHF",
+                utc("1999-12-31T23:00:00Z"), "EXPENSE", 4);
+    }
+
+    private static List<Map<String, Object>> rows(JdbcTemplate jdbc, String table) {
+        return jdbc.queryForList("SELECT * FROM " + table + " ORDER BY id");
+    }
+
+    // The expenses indexes and constraints, as H2 would create them
+    private static List<String> indexes(JdbcTemplate jdbc) {
+        return jdbc.queryForList("SCRIPT NODATA NOSETTINGS TABLE expenses", String.class).stream()
+                .filter(statement -> statement.startsWith("CREATE INDEX") || statement.startsWith("ALTER TABLE"))
+                .toList();
+    }
+
+    @Test
+    void restoreReproducesTheExportedTablesWithTheirIds() {
+        // Given
+        DataSource source = freshDatabase("snapshot-source");
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        seed(sourceJdbc);
+
+        // When
+        List<SnapshotSummary> exported = snapshotService(source).exportAll();
+        DataSource target = freshDatabase("snapshot-target");
+        List<SnapshotSummary> restored = snapshotService(target).restoreAll();
+
+        // Then
+        assertEquals(1, exported.size());
+        assertEquals(4, exported.get(0).getCategories());
+        assertEquals(12, exported.get(0).getExpenses());
+        assertTrue(Files.exists(directory.resolve(ShardRegistry.SINGLE_SHARD + SnapshotFile.EXTENSION)));
+        assertEquals(1, restored.size());
+        assertEquals(12, restored.get(0).getExpenses());
+        assertEquals(exported.get(0).getCreatedAt(), restored.get(0).getCreatedAt());
+
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        assertEquals(rows(sourceJdbc, "categories"), rows(targetJdbc, "categories"));
+        assertEquals(rows(sourceJdbc, "expenses"), rows(targetJdbc, "expenses"));
+        assertEquals(indexes(sourceJdbc), indexes(targetJdbc));
+
+        // And: new rows get fresh ids, and a second restore leaves the data alone
+        targetJdbc.update("INSERT INTO categories (tenant_id, name, type) VALUES (?, 'Rent', 'EXPENSE')", TENANT);
+        assertEquals(5L, targetJdbc.queryForObject("SELECT MAX(id) FROM categories", Long.class));
+        assertTrue(snapshotService(target).restoreAll().isEmpty());
+        assertEquals(5L, targetJdbc.queryForObject("SELECT COUNT(*) FROM categories", Long.class));
+    }
+
+    @Test
+    void corruptOrTruncatedSnapshotsAreRejectedAndLeaveTheShardEmpty() throws IOException {
+        // Given
+        DataSource source = freshDatabase("snapshot-corrupt-source");
+        seed(new JdbcTemplate(source));
+        snapshotService(source).exportAll();
+        Path file = directory.resolve(ShardRegistry.SINGLE_SHARD + SnapshotFile.EXTENSION);
+        byte[] original = Files.readAllBytes(file);
+
+        // When: a flipped bit in the last expense block (the trailer is 19 bytes)
+        byte[] corrupt = original.clone();
+        corrupt[corrupt.length - 22] ^= 0x10;
+        Files.write(file, corrupt);
+        DataSource target = freshDatabase("snapshot-corrupt-target");
+
+        // Then
+        IllegalStateException checksum = assertThrows(IllegalStateException.class, () -> snapshotService(target).restoreAll());
+        assertTrue(checksum.getMessage().contains("Checksum mismatch"), checksum.getMessage());
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        assertEquals(0L, targetJdbc.queryForObject("SELECT COUNT(*) FROM expenses", Long.class));
+        assertEquals(0L, targetJdbc.queryForObject("SELECT COUNT(*) FROM categories", Long.class));
+
+        // And: the identities were moved past the snapshot's ids before its first row was loaded
+        targetJdbc.update("INSERT INTO categories (tenant_id, name, type) VALUES (?, 'Rent', 'EXPENSE')", TENANT);
+        assertEquals(5L, targetJdbc.queryForObject("SELECT MAX(id) FROM categories", Long.class));
+        targetJdbc.update("DELETE FROM categories");
+
+        // When: the file is cut short
+        Files.write(file, java.util.Arrays.copyOf(original, original.length - 40));
+
+        // Then
+        IllegalStateException truncated = assertThrows(IllegalStateException.class, () -> snapshotService(target).restoreAll());
+        assertTrue(truncated.getMessage().contains("Truncated"), truncated.getMessage());
+        assertEquals(0L, targetJdbc.queryForObject("SELECT COUNT(*) FROM categories", Long.class));
+    }
+
+    @Test
+    void failedRebuildLeavesNoSketchesOrCheckpointsBehind() {
+        // Given: a rebuild that writes derived rows for the first tenant, then fails on the second
+        DataSource source = freshDatabase("snapshot-rebuild-source");
+        seed(new JdbcTemplate(source));
+        snapshotService(source).exportAll();
+        DataSource target = freshDatabase("snapshot-rebuild-target");
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        AtomicInteger rebuilt = new AtomicInteger();
+        SpendDistributionService failing = mock(SpendDistributionService.class);
+        when(failing.rebuild(anyString())).thenAnswer(invocation -> {
+            String tenantId = invocation.getArgument(0);
+            targetJdbc.update("INSERT INTO spend_sketches (tenant_id, currency, category_id, month_start, sketch) "
+                    + "VALUES (?, 'EUR', 1, DATE '2024-05-01', X'00')", tenantId);
+            targetJdbc.update("INSERT INTO balance_checkpoints (tenant_id, currency, period_start, balance) "
+                    + "VALUES (?, 'EUR', TIMESTAMP WITH TIME ZONE '2024-06-01 00:00:00+00', 0)", tenantId);
+            if (rebuilt.incrementAndGet() == 2) {
+                throw new IllegalStateException("Rebuild failed");
+            }
+            return 1;
+        });
+
+        // When
+        IllegalStateException failed = assertThrows(IllegalStateException.class, () -> new SnapshotService(
+                new ShardRegistry(target), failing, balanceService, directory.toString(), false, false, 3, 2).restoreAll());
+
+        // Then
+        assertTrue(failed.getMessage().contains("Rebuild failed"), failed.getMessage());
+        for (String table : List.of("categories", "expenses", "spend_sketches", "balance_checkpoints")) {
+            assertEquals(0L, targetJdbc.queryForObject("SELECT COUNT(*) FROM " + table, Long.class), table);
+        }
+    }
+
+    @Test
+    void expensesOfMissingCategoriesFailTheRestoreAndKeepTheIndexes() {
+        // Given: a snapshot taken while the foreign key was not enforced
+        DataSource source = freshDatabase("snapshot-orphan-source");
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        seed(sourceJdbc);
+        sourceJdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        sourceJdbc.update("INSERT INTO expenses (tenant_id, description, sum, currency, moment, type, category_id) "
+                + "VALUES (?, 'Orphan', 1.00, 'EUR', ?, 'EXPENSE', 99)", TENANT, utc("2024-05-01T10:00:00Z"));
+        sourceJdbc.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        snapshotService(source).exportAll();
+        DataSource target = freshDatabase("snapshot-orphan-target");
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        List<String> indexes = indexes(targetJdbc);
+
+        // When
+        IllegalStateException failed = assertThrows(IllegalStateException.class, () -> snapshotService(target).restoreAll());
+
+        // Then
+        assertTrue(failed.getMessage().contains("FK_EXPENSES_CATEGORY"), failed.getMessage());
+        assertEquals(0L, targetJdbc.queryForObject("SELECT COUNT(*) FROM expenses", Long.class));
+        assertEquals(indexes, indexes(targetJdbc));
+    }
+}
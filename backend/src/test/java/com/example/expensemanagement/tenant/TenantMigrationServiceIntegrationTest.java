@@ -0,0 +1,281 @@
+package com.example.expensemanagement.tenant;
+
+import com.example.expensemanagement.archive.ExpenseArchive;
+import com.example.expensemanagement.archive.ExpenseArchiver;
+import com.example.expensemanagement.entity.Category;
+import com.example.expensemanagement.entity.Expense;
+import com.example.expensemanagement.entity.Frequency;
+import com.example.expensemanagement.entity.RecurringTransaction;
+import com.example.expensemanagement.entity.TransactionType;
+import com.example.expensemanagement.service.CategoryService;
+import com.example.expensemanagement.service.ExpenseService;
+import com.example.expensemanagement.service.RecurringTransactionScheduler;
+import com.example.expensemanagement.service.RecurringTransactionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles({"test", "sharded"})
+class TenantMigrationServiceIntegrationTest {
+
+    @Autowired
+    private TenantMigrationService tenantMigrationService;
+
+    @Autowired
+    private ShardRegistry shardRegistry;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ExpenseArchive expenseArchive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecurringTransactionService recurringTransactionService;
+
+    @Autowired
+    private RecurringTransactionScheduler recurringTransactionScheduler;
+
+    private Expense newExpense(Category category) {
+        Expense expense = new Expense();
+        expense.setSum(new BigDecimal("42.00"));
+        expense.setCurrency("EUR");
+        expense.setMoment(Instant.parse("2024-05-01T10:00:00Z"));
+        expense.setType(TransactionType.EXPENSE);
+        expense.setCategory(category);
+        return expense;
+    }
+
+    private long countOn(String shard, String tenantId) {
+        return new JdbcTemplate(shardRegistry.getDataSource(shard))
+                .queryForObject("SELECT COUNT(*) FROM expenses WHERE tenant_id = ?", Long.class, tenantId);
+    }
+
+    private String otherShard(String shard) {
+        return shardRegistry.getShardNames().stream().filter(s -> !s.equals(shard)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void tenantsShouldOnlySeeTheirOwnRows() {
+        // Given
+        Category food = TenantContext.callAs("isolated", () ->
+                categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE)));
+        Expense expense = TenantContext.callAs("isolated", () -> expenseService.saveExpense(newExpense(food)));
+
+        // Then
+        assertTrue(TenantContext.callAs("isolated", () -> expenseService.findById(expense.getId())).isPresent());
+        assertFalse(TenantContext.callAs("other", () -> expenseService.findById(expense.getId())).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> TenantContext.callAs("other",
+                () -> expenseService.saveExpense(newExpense(food))), "Another tenant's category must not be usable");
+    }
+
+    @Test
+    void moveTenant_shouldCopyRowsAndReroute() {
+        // Given
+        Category parent = TenantContext.callAs("movable", () ->
+                categoryService.saveCategory(new Category("Home", TransactionType.EXPENSE)));
+        Category child = TenantContext.callAs("movable", () ->
+                categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE, parent)));
+        TenantContext.runAs("movable", () -> expenseService.saveExpense(newExpense(child)));
+        String source = shardRegistry.shardFor("movable");
+        String target = shardRegistry.getShardNames().stream().filter(s -> !s.equals(source)).findFirst().orElseThrow();
+
+        // When
+        Map<String, Integer> moved = tenantMigrationService.moveTenant("movable", target);
+
+        // Then
+        assertEquals(2, moved.get("categories"));
+        assertEquals(1, moved.get("expenses"));
+        assertEquals(target, shardRegistry.shardFor("movable"));
+        assertEquals(0, countOn(source, "movable"));
+        assertEquals(1, countOn(target, "movable"));
+        assertEquals(1, TenantContext.callAs("movable", () -> expenseService.findAllExpenses()).size());
+        Category movedChild = TenantContext.callAs("movable", () -> expenseService.findAllExpenses()).get(0).getCategory();
+        assertEquals("Home", movedChild.getParent().getName(), "Category hierarchy should survive the move");
+    }
+
+    @Test
+    void moveTenant_shouldWaitForWritesInFlight() throws Exception {
+        // Given: a write of the tenant in progress, as a request holds it
+        Category food = TenantContext.callAs("draining", () ->
+                categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE)));
+        String source = shardRegistry.shardFor("draining");
+        String target = otherShard(source);
+        assertTrue(shardRegistry.tryEnterWrite("draining"));
+
+        // When
+        CompletableFuture<Map<String, Integer>> move =
+                CompletableFuture.supplyAsync(() -> tenantMigrationService.moveTenant("draining", target));
+
+        // Then: the move waits, and new writes are turned away meanwhile
+        assertThrows(TimeoutException.class, () -> move.get(300, TimeUnit.MILLISECONDS));
+        assertTrue(shardRegistry.isMoving("draining"));
+        assertFalse(CompletableFuture.supplyAsync(() -> shardRegistry.tryEnterWrite("draining")).get());
+        TenantContext.runAs("draining", () -> expenseService.saveExpense(newExpense(food)));
+        shardRegistry.exitWrite("draining");
+        assertEquals(1, move.get(10, TimeUnit.SECONDS).get("expenses"), "The write in flight should move along");
+        assertEquals(1, countOn(target, "draining"));
+        assertEquals(0, countOn(source, "draining"));
+        assertFalse(shardRegistry.isMoving("draining"));
+    }
+
+    @Test
+    void moveTenant_shouldBeAbandonedWhenTheSourceChangesDuringTheCopy() {
+        // Given
+        Category food = TenantContext.callAs("raced", () ->
+                categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE)));
+        Expense expense = TenantContext.callAs("raced", () -> expenseService.saveExpense(newExpense(food)));
+        String source = shardRegistry.shardFor("raced");
+        String target = otherShard(source);
+
+        // And: a write from elsewhere commits on the source between the copy and the switch
+        AtomicBoolean raced = new AtomicBoolean();
+        DataSource racingSource = new DelegatingDataSource(shardRegistry.getDataSource(source)) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                boolean beginning = StackWalker.getInstance()
+                        .walk(frames -> frames.anyMatch(frame -> frame.getMethodName().equals("doBegin")));
+                if (beginning && raced.compareAndSet(false, true)) {
+                    new JdbcTemplate(getTargetDataSource())
+                            .update("UPDATE expenses SET sum = 43.00 WHERE id = ?", expense.getId());
+                }
+                return super.getConnection();
+            }
+        };
+        Map<String, DataSource> shards = new LinkedHashMap<>(shardRegistry.getDataSources());
+        shards.put(source, racingSource);
+        TenantMigrationService racingMigration = new TenantMigrationService(
+                new ShardRegistry(shards, Map.of("raced", source), Duration.ZERO), eventPublisher, expenseArchive, Duration.ofSeconds(5));
+
+        // When
+        IllegalStateException abandoned = assertThrows(IllegalStateException.class,
+                () -> racingMigration.moveTenant("raced", target));
+
+        // Then: nothing is lost, the tenant stays where its latest write is
+        assertTrue(raced.get());
+        assertTrue(abandoned.getMessage().contains("during the move"), abandoned.getMessage());
+        assertEquals(1, countOn(source, "raced"));
+        assertEquals(0, countOn(target, "raced"));
+        assertEquals(0, new BigDecimal("43.00").compareTo(new JdbcTemplate(shardRegistry.getDataSource(source))
+                .queryForObject("SELECT sum FROM expenses WHERE id = ?", BigDecimal.class, expense.getId())));
+    }
+
+    @Test
+    void moveTenant_shouldRefuseTenantsWithArchivedExpenses(@TempDir Path archiveDirectory) throws Exception {
+        // Given: an old expense, and an archiver writing into its own directory
+        Category food = TenantContext.callAs("archived", () ->
+                categoryService.saveCategory(new Category("Food", TransactionType.EXPENSE)));
+        Expense old = newExpense(food);
+        old.setMoment(Instant.parse("2001-05-01T10:00:00Z"));
+        TenantContext.runAs("archived", () -> expenseService.saveExpense(old));
+        String source = shardRegistry.shardFor("archived");
+        ExpenseArchive archive = new ExpenseArchive(true, archiveDirectory.toString(), 1);
+        ExpenseArchiver archiver = new ExpenseArchiver(archive, jdbcTemplate, transactionManager, shardRegistry, "P2Y", 10);
+        Instant cutoff = Instant.parse("2002-01-01T00:00:00Z");
+
+        // Then: a tenant is not archived while it moves
+        assertTrue(shardRegistry.beginMove("archived", 1, TimeUnit.SECONDS));
+        try {
+            assertEquals(0, archiver.archiveOlderThan(cutoff));
+        } finally {
+            shardRegistry.endMove("archived");
+        }
+        assertEquals(1, countOn(source, "archived"));
+
+        // When: archived, then moved
+        assertEquals(1, archiver.archiveOlderThan(cutoff));
+        TenantMigrationService migration = new TenantMigrationService(shardRegistry, eventPublisher, archive, Duration.ofSeconds(5));
+        IllegalStateException refused = assertThrows(IllegalStateException.class,
+                () -> migration.moveTenant("archived", otherShard(source)));
+
+        // Then: the segments keep matching the shard's ids
+        assertTrue(refused.getMessage().contains("archived expenses"), refused.getMessage());
+        assertEquals(source, shardRegistry.shardFor("archived"));
+        assertFalse(shardRegistry.isMoving("archived"));
+        assertTrue(shardRegistry.tryEnterWrite("archived"));
+        shardRegistry.exitWrite("archived");
+    }
+
+    @Test
+    void writeGatesExistOnlyWhileUsed() {
+        // When: writes of many tenants come and go
+        for (int i = 0; i < 100; i++) {
+            String tenantId = "gated-" + i;
+            assertTrue(shardRegistry.tryEnterWrite(tenantId));
+            assertTrue(shardRegistry.hasWriteGate(tenantId));
+            shardRegistry.exitWrite(tenantId);
+            shardRegistry.runWriting(tenantId, () -> assertTrue(shardRegistry.hasWriteGate(tenantId)));
+        }
+
+        // Then: none of their gates is kept
+        for (int i = 0; i < 100; i++) {
+            assertFalse(shardRegistry.hasWriteGate("gated-" + i));
+        }
+    }
+
+    @Test
+    void recurringOccurrencesWaitWhileTheTenantMoves() throws Exception {
+        // Given: a due recurring transaction of a tenant being moved
+        Category rent = TenantContext.callAs("recurring", () ->
+                categoryService.saveCategory(new Category("Rent", TransactionType.EXPENSE)));
+        RecurringTransaction recurring = new RecurringTransaction();
+        recurring.setDescription("Rent");
+        recurring.setSum(new BigDecimal("950.00"));
+        recurring.setCurrency("EUR");
+        recurring.setType(TransactionType.EXPENSE);
+        recurring.setCategory(rent);
+        recurring.setFrequency(Frequency.MONTHLY);
+        recurring.setStartMoment(Instant.parse("2024-01-31T08:00:00Z"));
+        recurring.setZone("UTC");
+        TenantContext.runAs("recurring", () -> recurringTransactionService.saveRecurringTransaction(recurring));
+        String source = shardRegistry.shardFor("recurring");
+        Instant now = Instant.parse("2024-02-15T00:00:00Z");
+
+        // Then: nothing is generated for it until the move is over
+        assertTrue(shardRegistry.beginMove("recurring", 1, TimeUnit.SECONDS));
+        try {
+            assertEquals(0, recurringTransactionScheduler.generateDueOccurrences(now));
+        } finally {
+            shardRegistry.endMove("recurring");
+        }
+        assertEquals(0, countOn(source, "recurring"));
+        assertEquals(1, recurringTransactionScheduler.generateDueOccurrences(now));
+        assertEquals(1, countOn(source, "recurring"));
+        assertFalse(shardRegistry.hasWriteGate("recurring"));
+    }
+}
@@ -3,6 +3,9 @@ import React, { useState, useEffect } from 'react';
 // Get API base URL from environment variable with fallback
 const API_BASE_URL = process.env.REACT_APP_API_BASE_URL || 'http://localhost:8080/api';
 
+// Newest expenses shown for the selected period
+const DASHBOARD_PAGE_SIZE = 200;
+
 function MainPage() {
   const [message, setMessage] = useState('');
   const [isLoading, setIsLoading] = useState(false);
@@ -26,29 +29,16 @@ function MainPage() {
   const [quickFilter, setQuickFilter] = useState('today');
   const [categories, setCategories] = useState([]);
 
-  // Load expenses when component mounts or date filter changes
-  useEffect(() => {
-    loadExpenses();
-  }, [dateFilter]);
+  const [expenseCount, setExpenseCount] = useState(0);
+  const [totals, setTotals] = useState({ expenses: {}, incomes: {} });
 
-  // Load categories when transaction type changes
+  // Load the dashboard when component mounts, the date filter or the transaction type changes
   useEffect(() => {
-    loadCategories();
-  }, [newExpense.type]);
-
-  const loadCategories = async () => {
-    try {
-      const response = await fetch(`${API_BASE_URL}/categories/type/${newExpense.type}/tree`);
-      if (response.ok) {
-        const data = await response.json();
-        setCategories(data);
-      }
-    } catch (error) {
-      console.error('Error loading categories:', error);
-    }
-  };
+    loadDashboard();
+  }, [dateFilter, newExpense.type]);
 
-  const loadExpenses = async () => {
+  // Category tree, newest expenses of the period and the period totals in one request
+  const loadDashboard = async () => {
     try {
       // Get client timezone offset in format like "+02:00" or "-05:00"
       const timezoneOffset = new Date().getTimezoneOffset();
@@ -57,14 +47,17 @@ function MainPage() {
       const sign = timezoneOffset <= 0 ? '+' : '-';
       const timezone = `${sign}${offsetHours.toString().padStart(2, '0')}:${offsetMinutes.toString().padStart(2, '0')}`;
       
-      const url = `${API_BASE_URL}/expenses/date-range?startDate=${dateFilter.startDate}&endDate=${dateFilter.endDate}&timezone=${encodeURIComponent(timezone)}`;
+      const url = `${API_BASE_URL}/dashboard?startDate=${dateFilter.startDate}&endDate=${dateFilter.endDate}&timezone=${encodeURIComponent(timezone)}&type=${newExpense.type}&pageSize=${DASHBOARD_PAGE_SIZE}`;
       const response = await fetch(url);
       if (response.ok) {
         const data = await response.json();
-        setExpenses(data);
+        setCategories(data.categories);
+        setExpenses(data.expenses);
+        setExpenseCount(data.expenseCount);
+        setTotals({ expenses: data.expenseTotals, incomes: data.incomeTotals });
       }
     } catch (error) {
-      console.error('Error loading expenses:', error);
+      console.error('Error loading dashboard:', error);
     }
   };
 
@@ -94,8 +87,8 @@ function MainPage() {
 
       if (response.ok) {
         const createdExpense = await response.json();
-        // Reload expenses to get filtered data from server
-        await loadExpenses();
+        // Reload the dashboard to get filtered data and totals from server
+        await loadDashboard();
         setNewExpense({ 
           description: '', 
           sum: '', 
@@ -163,7 +156,7 @@ function MainPage() {
       });
 
       if (response.ok) {
-        setExpenses(expenses.filter(expense => expense.id !== id));
+        await loadDashboard();
         setMessage('Expense deleted successfully!');
       } else {
         setMessage('Error: Failed to delete expense');
@@ -178,23 +171,8 @@ function MainPage() {
     return new Date(dateString).toLocaleString();
   };
 
-  const getTotalExpenses = () => {
-    const totals = {
-      expenses: {},
-      incomes: {}
-    };
-    
-    expenses.forEach(expense => {
-      const category = expense.type === 'INCOME' ? 'incomes' : 'expenses';
-      
-      if (!totals[category][expense.currency]) {
-        totals[category][expense.currency] = 0;
-      }
-      totals[category][expense.currency] += expense.sum;
-    });
-    
-    return totals;
-  };
+  // Totals of the whole period, computed by the server
+  const getTotalExpenses = () => totals;
 
   const handleSort = (key) => {
     let direction = 'asc';
@@ -466,6 +444,9 @@ function MainPage() {
               />
             </div>
           </div>
+          {expenseCount > expenses.length && (
+            <p className="no-expenses">Showing the newest {expenses.length} of {expenseCount} transactions.</p>
+          )}
           {expenses.length === 0 ? (
             <p className="no-expenses">No expenses recorded yet.</p>
           ) : (